@@ -0,0 +1,119 @@
+package udacity.android.inventory.activities;
+
+import android.content.Intent;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.widget.TextView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import udacity.android.inventory.R;
+import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.model.Item;
+
+import static android.support.test.espresso.Espresso.onView;
+import static android.support.test.espresso.action.ViewActions.click;
+import static android.support.test.espresso.action.ViewActions.closeSoftKeyboard;
+import static android.support.test.espresso.action.ViewActions.typeText;
+import static android.support.test.espresso.matcher.RootMatchers.isDialog;
+import static android.support.test.espresso.matcher.ViewMatchers.withId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test that drives the write paths of the details
+ * screen. The debug StrictMode policy of InventoryApplication kills the
+ * process if one of them writes to disk on the main thread, which fails
+ * the test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DetailsActivityStrictModeTest {
+
+    /** The longest time a write may take to reach the database. */
+    private static final long TIMEOUT_MS = 5000;
+
+    @Rule
+    public ActivityTestRule<DetailsActivity> activityRule = new ActivityTestRule<>(DetailsActivity.class, false, false);
+
+    private InventoryDbHelper dbHelper;
+    private long itemId;
+
+    @Before
+    public void setUp() {
+        dbHelper = InventoryDbHelper.getInstance(InstrumentationRegistry.getTargetContext());
+        itemId = dbHelper.insert(new Item("StrictMode Details Item", 250, 5, "supplier@example.com", null)).getId();
+
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), DetailsActivity.class);
+        intent.putExtra(DetailsActivity.EXTRA_ITEM_ID, itemId);
+        activityRule.launchActivity(intent);
+    }
+
+    @After
+    public void tearDown() {
+        Item current = dbHelper.getItem(itemId);
+        if(current != null) {
+            dbHelper.delete(current);
+        }
+    }
+
+    @Test
+    public void updateQuantity_doesNotWriteOnMainThread() throws InterruptedException {
+        onView(withId(R.id.sold_items_radio_button)).perform(click());
+        onView(withId(R.id.quantity_edit_text_view)).perform(typeText("2"), closeSoftKeyboard());
+        onView(withId(R.id.update_button)).perform(click());
+
+        // The loader shows the written quantity
+        String expected = InstrumentationRegistry.getTargetContext().getString(R.string.item_quantity) + ": 3";
+        final TextView quantityTextView = (TextView) activityRule.getActivity().findViewById(R.id.quantity_text_view);
+        final String[] text = new String[1];
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        do {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    text[0] = String.valueOf(quantityTextView.getText());
+                }
+            });
+            if(expected.equals(text[0])) {
+                break;
+            }
+            Thread.sleep(50);
+        } while(SystemClock.uptimeMillis() < deadline);
+
+        assertEquals(expected, text[0]);
+        assertEquals(3, dbHelper.getItem(itemId).getQuantity());
+    }
+
+    @Test
+    public void updateThreshold_doesNotWriteOnMainThread() throws InterruptedException {
+        // The threshold is written without a callback, so the database is polled
+        onView(withId(R.id.threshold_edit_text_view)).perform(typeText("9"), closeSoftKeyboard());
+        onView(withId(R.id.threshold_button)).perform(click());
+
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while(dbHelper.getItem(itemId).getReorderThreshold() != 9 && SystemClock.uptimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(9, dbHelper.getItem(itemId).getReorderThreshold());
+    }
+
+    @Test
+    public void delete_doesNotWriteOnMainThread() throws InterruptedException {
+        onView(withId(R.id.delete_button)).perform(click());
+        onView(withId(android.R.id.button1)).inRoot(isDialog()).perform(click());
+
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while(dbHelper.getItem(itemId) != null && SystemClock.uptimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertNull(dbHelper.getItem(itemId));
+        assertTrue(activityRule.getActivity().isFinishing());
+    }
+}
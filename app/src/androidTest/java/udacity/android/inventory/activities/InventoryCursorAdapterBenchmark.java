@@ -0,0 +1,302 @@
+package udacity.android.inventory.activities;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.ViewGroup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.inventory.R;
+import udacity.android.inventory.data.ColumnarInventory;
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.data.InventoryTestData;
+import udacity.android.inventory.image.ImageLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation benchmark for the bind path of the inventory list.
+ * The rows are read from an in-memory database or a database file of
+ * the benchmark, split into pages the same way the loader does, so
+ * user data is not touched.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryCursorAdapterBenchmark {
+
+    private static final String LOG_TAG = InventoryCursorAdapterBenchmark.class.getSimpleName();
+
+    private static final int PAGE_SIZE = 500;
+    private static final int PAGE_COUNT = 2;
+
+    private static final String DATABASE_NAME = "inventory_adapter_benchmark.db";
+
+    // The rows cycle through this many images, so every bind shows another image
+    private static final int IMAGE_COUNT = 8;
+
+    @Rule
+    public ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class);
+
+    @Test
+    public void bindView_allocatesNothingInSteadyState() throws Exception {
+        final MainActivity activity = activityRule.getActivity();
+        final SQLiteDatabase db = SQLiteDatabase.create(null);
+        final int[] allocations = new int[1];
+        File[] files = createImages(activity);
+
+        try {
+            String[] images = new String[IMAGE_COUNT];
+            for(int i = 0; i < IMAGE_COUNT; i++) {
+                images[i] = Uri.fromFile(files[i]).toString();
+            }
+            loadThumbnails(activity, images);
+
+            fillTable(db, PAGE_SIZE * PAGE_COUNT, images);
+            Cursor[] pages = new Cursor[PAGE_COUNT];
+            final PagedCursor cursor = createPagedCursor(db, pages);
+
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    InventoryCursorAdapter adapter = new InventoryCursorAdapter(activity);
+                    adapter.swapCursor(cursor);
+                    ViewGroup parent = (ViewGroup) activity.findViewById(R.id.list);
+                    InventoryCursorAdapter.ViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+
+                    // The first pass grows the row buffers to the longest values
+                    // and keeps the cache key of each thumbnail
+                    bindAll(adapter, holder);
+
+                    Debug.resetThreadAllocCount();
+                    Debug.startAllocCounting();
+                    bindAll(adapter, holder);
+                    Debug.stopAllocCounting();
+                    allocations[0] = Debug.getThreadAllocCount();
+                }
+            });
+
+            closePages(pages);
+        } finally {
+            db.close();
+            for(File file : files) {
+                file.delete();
+            }
+        }
+
+        Log.i(LOG_TAG, "bind " + PAGE_SIZE * PAGE_COUNT + " rows: " + allocations[0] + " allocations");
+        assertEquals(0, allocations[0]);
+    }
+
+    @Test
+    public void columnarInventory_versusCursorAt100kItems() {
+        final MainActivity activity = activityRule.getActivity();
+        final long[] bindNanos = new long[2];
+        int rows = 100000;
+        InventoryDbHelper dbHelper = InventoryTestData.createDatabase(activity, DATABASE_NAME, rows);
+
+        try {
+            // Without images no thumbnail is loaded, so only the rows are bound
+            ContentValues noImage = new ContentValues();
+            noImage.putNull(InventoryEntry.COLUMN_IMAGE);
+            dbHelper.getWritableDatabase().update(InventoryEntry.TABLE_NAME, noImage, null, null);
+
+            // The first load fills the page cache of the connection, which is native memory too
+            assertEquals(rows, ColumnarInventory.load(dbHelper).size());
+
+            // The loader keeps the pages, whose windows are native memory, and a snapshot of their rows
+            long heapBefore = usedHeapBytes();
+            long nativeBefore = usedNativeBytes();
+            Cursor[] pages = new Cursor[rows / PAGE_SIZE];
+            final PagedCursor cursor = createPagedCursor(dbHelper.getReadableDatabase(), pages);
+            long cursorHeapBytes = usedHeapBytes() - heapBefore;
+            long cursorNativeBytes = usedNativeBytes() - nativeBefore;
+
+            // The columnar inventory closes its pages once they are read
+            heapBefore = usedHeapBytes();
+            nativeBefore = usedNativeBytes();
+            final ColumnarInventory columns = ColumnarInventory.load(dbHelper);
+            long columnHeapBytes = usedHeapBytes() - heapBefore;
+            long columnNativeBytes = usedNativeBytes() - nativeBefore;
+            assertEquals(rows, columns.size());
+
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    ViewGroup parent = (ViewGroup) activity.findViewById(R.id.list);
+
+                    InventoryCursorAdapter adapter = new InventoryCursorAdapter(activity);
+                    adapter.swapCursor(cursor);
+                    InventoryCursorAdapter.ViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+                    bindAll(adapter, holder);
+                    long start = System.nanoTime();
+                    bindAll(adapter, holder);
+                    bindNanos[0] = System.nanoTime() - start;
+
+                    adapter = new InventoryCursorAdapter(activity);
+                    adapter.setColumns(columns);
+                    holder = adapter.onCreateViewHolder(parent, 0);
+                    bindAll(adapter, holder);
+                    start = System.nanoTime();
+                    bindAll(adapter, holder);
+                    bindNanos[1] = System.nanoTime() - start;
+                }
+            });
+
+            closePages(pages);
+
+            Log.i(LOG_TAG, rows + " rows: cursor " + cursorHeapBytes / 1024 + " KiB heap + "
+                    + cursorNativeBytes / 1024 + " KiB native in " + rows / PAGE_SIZE + " windows, bind "
+                    + bindNanos[0] / rows + " ns/row; columnar " + columnHeapBytes / 1024 + " KiB heap + "
+                    + columnNativeBytes / 1024 + " KiB native, bind " + bindNanos[1] / rows + " ns/row");
+        } finally {
+            dbHelper.close();
+            activity.deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    /**
+     * Binds every row to the same ViewHolder, as the RecyclerView does
+     * when a recycled row is reused.
+     */
+    private static void bindAll(InventoryCursorAdapter adapter, InventoryCursorAdapter.ViewHolder holder) {
+        for(int position = 0; position < adapter.getItemCount(); position++) {
+            adapter.onBindViewHolder(holder, position);
+        }
+    }
+
+    /**
+     * Writes small images to the cache directory.
+     */
+    private static File[] createImages(MainActivity activity) throws IOException {
+        File[] files = new File[IMAGE_COUNT];
+        Bitmap bitmap = Bitmap.createBitmap(64, 64, Bitmap.Config.RGB_565);
+        for(int i = 0; i < IMAGE_COUNT; i++) {
+            bitmap.eraseColor(0xff000000 | i * 0x1f1f1f);
+            files[i] = new File(activity.getCacheDir(), "benchmark_" + i + ".png");
+            FileOutputStream out = new FileOutputStream(files[i]);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                out.close();
+            }
+        }
+        bitmap.recycle();
+        return files;
+    }
+
+    /**
+     * Loads the thumbnails of the images into the memory cache, at the
+     * size the list shows them.
+     */
+    private static void loadThumbnails(final MainActivity activity, final String[] images)
+            throws InterruptedException {
+        final CountDownLatch loaded = new CountDownLatch(images.length);
+        final int size = activity.getResources().getDimensionPixelSize(R.dimen.thumbnail_dimen);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ImageLoader imageLoader = ImageLoader.getInstance(activity);
+                for(String image : images) {
+                    imageLoader.loadThumbnail(Uri.parse(image), size, ImageLoader.PRIORITY_VISIBLE,
+                            new ImageLoader.Callback() {
+                                @Override
+                                public void onImageLoaded(Bitmap bitmap) {
+                                    if(bitmap != null) {
+                                        loaded.countDown();
+                                    }
+                                }
+                            });
+                }
+            }
+        });
+
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Fills the table. The rows cycle through the images.
+     */
+    private static void fillTable(SQLiteDatabase db, int rows, String[] images) {
+        db.execSQL(InventoryEntry.CREATE_INVENTORY_TABLE);
+
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for(int i = 0; i < rows; i++) {
+                values.put(InventoryEntry.COLUMN_DESCRIPTION, "Benchmark Item " + i);
+                values.put(InventoryEntry.COLUMN_PRICE_CENTS, i * 125);
+                values.put(InventoryEntry.COLUMN_QUANTITY, i % 100);
+                // The list does not read the supplier, so no suppliers table is needed
+                values.put(InventoryEntry.COLUMN_SUPPLIER_ID, i);
+                values.put(InventoryEntry.COLUMN_IMAGE, images[i % images.length]);
+                db.insert(InventoryEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the rows of the table as pages of the list projection,
+     * filling the given array with the pages.
+     */
+    private static PagedCursor createPagedCursor(SQLiteDatabase db, Cursor[] pages) {
+        List<InventorySnapshot> snapshots = new ArrayList<>();
+        for(int page = 0; page < pages.length; page++) {
+            pages[page] = db.query(InventoryEntry.TABLE_NAME, InventoryEntry.LIST_PROJECTION,
+                    InventoryEntry._ID + " > ?", new String[] { String.valueOf(page * PAGE_SIZE) },
+                    null, null, InventoryEntry._ID, String.valueOf(PAGE_SIZE));
+
+            // Also fills the window before counting starts
+            snapshots.add(InventorySnapshot.read(pages[page]));
+        }
+        return new PagedCursor(pages, InventorySnapshot.concat(snapshots), null, null);
+    }
+
+    /**
+     * Closes the pages, which the paged cursor leaves open like the loader's.
+     */
+    private static void closePages(Cursor[] pages) {
+        for(Cursor page : pages) {
+            page.close();
+        }
+    }
+
+    private static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns the allocated native heap, where the cursor windows are,
+     * after the finalizers of unreachable windows have run.
+     */
+    private static long usedNativeBytes() {
+        Runtime.getRuntime().gc();
+        System.runFinalization();
+        return Debug.getNativeHeapAllocatedSize();
+    }
+}
@@ -0,0 +1,157 @@
+package udacity.android.inventory.activities;
+
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import udacity.android.inventory.R;
+import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.model.Item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test for the rows of the main screen's list, which
+ * have to keep the quantities written by the write queue when the
+ * next page of the inventory is loaded.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainActivityPagingTest {
+
+    /** The longest time a queued sale or a page may take to load. */
+    private static final long TIMEOUT_MS = 5000;
+
+    /** The number of items added, so a page follows the sold item. */
+    private static final int ITEM_COUNT = 2 * CursorLoader.DEFAULT_PAGE_SIZE;
+
+    @Rule
+    public ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class, false, false);
+
+    private InventoryDbHelper dbHelper;
+    private long[] ids;
+
+    @Before
+    public void setUp() {
+        dbHelper = InventoryDbHelper.getInstance(InstrumentationRegistry.getTargetContext());
+
+        List<Item> items = new ArrayList<>(ITEM_COUNT);
+        for(int i = 0; i < ITEM_COUNT; i++) {
+            items.add(new Item("Paging Item " + i, 100, 5, "supplier@example.com", null));
+        }
+        ids = dbHelper.insertAll(items);
+    }
+
+    @After
+    public void tearDown() {
+        for(long id : ids) {
+            Item item = dbHelper.getItem(id);
+            if(item != null) {
+                dbHelper.delete(item);
+            }
+        }
+    }
+
+    @Test
+    public void sale_keepsItsQuantityWhenTheNextPageLoads() throws InterruptedException {
+        final MainActivity activity = activityRule.launchActivity(null);
+        final RecyclerView list = (RecyclerView) activity.findViewById(R.id.list);
+        final long id = ids[0];
+
+        // Loads pages until the sold item is shown
+        final int[] position = { -1 };
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while(position[0] == -1 && SystemClock.uptimeMillis() < deadline) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    position[0] = positionOf(list, id);
+                    if(position[0] == -1 && list.getAdapter() != null && list.getAdapter().getItemCount() > 0) {
+                        list.scrollToPosition(list.getAdapter().getItemCount() - 1);
+                    }
+                }
+            });
+            Thread.sleep(50);
+        }
+        assertTrue(position[0] != -1);
+
+        // The path of the sale button of the row, then waits for the write queue
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.saleButtonClicked(id, 5);
+            }
+        });
+        final int[] pending = new int[1];
+        deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        do {
+            Thread.sleep(50);
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    pending[0] = activity.pendingQuantityDelta(id);
+                }
+            });
+        } while(pending[0] != 0 && SystemClock.uptimeMillis() < deadline);
+        assertEquals(4, dbHelper.getItem(id).getQuantity());
+
+        // Showing the end of the list loads the page after the sold item
+        final int[] count = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                count[0] = list.getAdapter().getItemCount();
+                list.scrollToPosition(count[0] - 1);
+            }
+        });
+        final int[] loaded = new int[1];
+        deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        do {
+            Thread.sleep(50);
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    loaded[0] = list.getAdapter().getItemCount();
+                }
+            });
+        } while(loaded[0] == count[0] && SystemClock.uptimeMillis() < deadline);
+        assertTrue(loaded[0] > count[0]);
+
+        // A row bound now shows the written quantity
+        final int[] quantity = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                InventoryCursorAdapter adapter = (InventoryCursorAdapter) list.getAdapter();
+                InventoryCursorAdapter.ViewHolder holder = adapter.createViewHolder(list, 0);
+                adapter.bindViewHolder(holder, positionOf(list, id));
+                quantity[0] = holder.quantity;
+                adapter.onViewRecycled(holder);
+            }
+        });
+        assertEquals(4, quantity[0]);
+    }
+
+    /** Returns the position of an item in the list, or -1 if it is not loaded. */
+    private static int positionOf(RecyclerView list, long id) {
+        RecyclerView.Adapter<?> adapter = list.getAdapter();
+        int count = adapter == null ? 0 : adapter.getItemCount();
+        for(int position = 0; position < count; position++) {
+            if(adapter.getItemId(position) == id) {
+                return position;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,129 @@
+package udacity.android.inventory.activities;
+
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import udacity.android.inventory.R;
+import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.model.Item;
+
+import static android.support.test.espresso.Espresso.onView;
+import static android.support.test.espresso.action.ViewActions.click;
+import static android.support.test.espresso.action.ViewActions.closeSoftKeyboard;
+import static android.support.test.espresso.action.ViewActions.typeText;
+import static android.support.test.espresso.assertion.ViewAssertions.matches;
+import static android.support.test.espresso.matcher.ViewMatchers.hasSibling;
+import static android.support.test.espresso.matcher.ViewMatchers.isDisplayed;
+import static android.support.test.espresso.matcher.ViewMatchers.withChild;
+import static android.support.test.espresso.matcher.ViewMatchers.withId;
+import static android.support.test.espresso.matcher.ViewMatchers.withText;
+import static org.hamcrest.CoreMatchers.allOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test that drives the write paths of the main screen.
+ * The debug StrictMode policy of InventoryApplication kills the process
+ * if one of them writes to disk on the main thread, which fails the test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainActivityStrictModeTest {
+
+    /** The description of the item the tests sell. */
+    private static final String ITEM_DESCRIPTION = "StrictMode Sale Item";
+
+    /** The longest time a queued sale may take to be written. */
+    private static final long TIMEOUT_MS = 5000;
+
+    @Rule
+    public ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class, false, false);
+
+    private InventoryDbHelper dbHelper;
+    private Item item;
+
+    @Before
+    public void setUp() {
+        dbHelper = InventoryDbHelper.getInstance(InstrumentationRegistry.getTargetContext());
+        item = dbHelper.insert(new Item(ITEM_DESCRIPTION, 250, 5, "supplier@example.com", null));
+    }
+
+    @After
+    public void tearDown() {
+        Item current = dbHelper.getItem(item.getId());
+        if(current != null) {
+            dbHelper.delete(current);
+        }
+    }
+
+    @Test
+    public void addItem_doesNotWriteOnMainThread() {
+        activityRule.launchActivity(null);
+        onView(withId(R.id.add_button)).perform(click());
+
+        onView(withId(R.id.description_edit_text)).perform(typeText("StrictMode Item"), closeSoftKeyboard());
+        onView(withId(R.id.price_edit_text)).perform(typeText("1.50"), closeSoftKeyboard());
+        onView(withId(R.id.quantity_edit_text)).perform(typeText("3"), closeSoftKeyboard());
+        onView(withId(R.id.email_edit_text)).perform(typeText("supplier@example.com"), closeSoftKeyboard());
+        onView(withText(R.string.add_button_text)).perform(click());
+    }
+
+    @Test
+    public void sale_doesNotWriteOnMainThread() throws InterruptedException {
+        MainActivity activity = activityRule.launchActivity(null);
+        scrollToItem(activity, item.getId());
+
+        onView(allOf(withId(R.id.sale_button), hasSibling(withChild(withText(ITEM_DESCRIPTION)))))
+                .perform(click());
+
+        // The write queue writes the sale a short time later, then updates the row and the header
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while(dbHelper.getItem(item.getId()).getQuantity() != 4 && SystemClock.uptimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(4, dbHelper.getItem(item.getId()).getQuantity());
+        onView(withId(R.id.summary_text_view)).check(matches(isDisplayed()));
+    }
+
+    /**
+     * Scrolls the list to the row of an item, scrolling to the end
+     * first as long as the loaded pages do not hold the item.
+     */
+    private static void scrollToItem(MainActivity activity, final long id) {
+        final RecyclerView list = (RecyclerView) activity.findViewById(R.id.list);
+        final boolean[] found = new boolean[1];
+        for(int attempt = 0; attempt < 100 && !found[0]; attempt++) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    RecyclerView.Adapter<?> adapter = list.getAdapter();
+                    int count = adapter == null ? 0 : adapter.getItemCount();
+                    for(int position = 0; position < count; position++) {
+                        if(adapter.getItemId(position) == id) {
+                            list.scrollToPosition(position);
+                            found[0] = true;
+                            return;
+                        }
+                    }
+
+                    // Showing the end of the list loads the next page
+                    if(count > 0) {
+                        list.scrollToPosition(count - 1);
+                    }
+                }
+            });
+
+            // Waits for the list to lay out and the loaders to finish
+            onView(withId(R.id.list)).check(matches(isDisplayed()));
+        }
+        assertTrue(found[0]);
+    }
+}
@@ -0,0 +1,95 @@
+package udacity.android.inventory.activities;
+
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.widget.TextView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import udacity.android.inventory.R;
+import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.model.InventorySummary;
+import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.Money;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumentation test for the summary header of the main screen,
+ * which has to follow the sales written by the write queue.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainActivitySummaryTest {
+
+    /** The longest time the header may take to show a change. */
+    private static final long TIMEOUT_MS = 5000;
+
+    @Rule
+    public ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class, false, false);
+
+    private InventoryDbHelper dbHelper;
+    private Item item;
+
+    @Before
+    public void setUp() {
+        dbHelper = InventoryDbHelper.getInstance(InstrumentationRegistry.getTargetContext());
+        item = dbHelper.insert(new Item("Summary Item", 250, 10, "supplier@example.com", null));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.delete(item);
+    }
+
+    @Test
+    public void sale_updatesTheSummaryHeader() throws InterruptedException {
+        final MainActivity activity = activityRule.launchActivity(null);
+        InventorySummary before = dbHelper.getSummary();
+        waitForText(activity, formatSummary(activity, before));
+
+        // The path of the sale button of the row
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                activity.saleButtonClicked(item.getId(), item.getQuantity());
+            }
+        });
+
+        InventorySummary after = new InventorySummary(before.getItemCount(), before.getUnitCount() - 1,
+                before.getStockValueCents() - item.getPriceCents(), before.getLowStockCount());
+        waitForText(activity, formatSummary(activity, after));
+        assertEquals(after, dbHelper.getSummary());
+    }
+
+    private static String formatSummary(MainActivity activity, InventorySummary summary) {
+        return activity.getString(R.string.summary_format, summary.getItemCount(), summary.getUnitCount(),
+                Money.format(summary.getStockValueCents()), summary.getLowStockCount());
+    }
+
+    /** Waits until the header shows the text, failing after TIMEOUT_MS. */
+    private static void waitForText(MainActivity activity, String expected) throws InterruptedException {
+        final TextView summaryTextView = (TextView) activity.findViewById(R.id.summary_text_view);
+        final String[] text = new String[1];
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        do {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    text[0] = String.valueOf(summaryTextView.getText());
+                }
+            });
+            if(expected.equals(text[0])) {
+                return;
+            }
+            Thread.sleep(50);
+        } while(SystemClock.uptimeMillis() < deadline);
+
+        assertEquals(expected, text[0]);
+    }
+}
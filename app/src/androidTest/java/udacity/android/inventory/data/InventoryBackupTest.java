@@ -0,0 +1,168 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import udacity.android.inventory.data.InventoryContract.InventoryMovementEntry;
+import udacity.android.inventory.model.Item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static udacity.android.inventory.data.InventoryTestData.countRows;
+import static udacity.android.inventory.data.InventoryTestData.createItems;
+
+/**
+ * Instrumentation tests for the binary snapshot backup and restore of
+ * the inventory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryBackupTest {
+
+    private static final String DATABASE_NAME = "inventory_backup_test.db";
+
+    private static final int SIZE = 2500;
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+    private File snapshot;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+        snapshot = new File(context.getCacheDir(), "inventory_test.snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        snapshot.delete();
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void restore_replacesItemsInEitherLayout() throws IOException {
+        long[] ids = dbHelper.insertAll(createItems(SIZE));
+        long stockValue = dbHelper.getStockValueCents();
+        Item nullImage = dbHelper.insert(new Item("No image", 10, 1, "other@example.com", null));
+
+        for(int layout = InventoryBackup.LAYOUT_ROWS; layout <= InventoryBackup.LAYOUT_COLUMNS; layout++) {
+            assertEquals(SIZE + 1, InventoryBackup.backup(dbHelper, snapshot, layout));
+
+            // Changes made after the backup are undone by the restore
+            dbHelper.delete(dbHelper.getItem(ids[7]));
+            dbHelper.insert(new Item("After backup", 10, 1, "supplier@example.com", null));
+
+            assertEquals(SIZE + 1, InventoryBackup.restore(dbHelper, snapshot));
+            assertEquals(SIZE + 1, countRows(dbHelper));
+            assertEquals(stockValue + 10, dbHelper.getStockValueCents());
+            assertEquals("Item 7", dbHelper.getItem(ids[7]).getDescription());
+            assertNull(dbHelper.getItem(nullImage.getId()).getImage());
+            assertEquals("other@example.com", dbHelper.getItem(nullImage.getId()).getSupplierEmail());
+            assertTrue(dbHelper.checkSummary());
+            assertTrue(dbHelper.checkLedger());
+        }
+    }
+
+    @Test
+    public void restore_keepsReorderThresholds() throws IOException {
+        Item item = new Item("Widget", 150, 3, "supplier@example.com", null);
+        item.setReorderThreshold(17);
+        long id = dbHelper.insert(item).getId();
+
+        InventoryBackup.backup(dbHelper, snapshot, InventoryBackup.LAYOUT_COLUMNS);
+        InventoryBackup.restore(dbHelper, snapshot);
+
+        assertEquals(17, dbHelper.getItem(id).getReorderThreshold());
+    }
+
+    @Test
+    public void restore_keepsTheSalesOfRestoredItems() throws IOException {
+        long id = dbHelper.insert(new Item("Widget", 150, 10, "supplier@example.com", null)).getId();
+        dbHelper.adjustQuantity(id, -2);
+        InventoryBackup.backup(dbHelper, snapshot, InventoryBackup.LAYOUT_ROWS);
+
+        // A sale after the backup, and an item the snapshot does not have
+        dbHelper.adjustQuantity(id, -3);
+        long added = dbHelper.insert(new Item("After backup", 10, 4, "supplier@example.com", null)).getId();
+        dbHelper.adjustQuantity(added, -1);
+
+        InventoryBackup.restore(dbHelper, snapshot);
+
+        // Both sales are kept and an adjustment brings back the backed up quantity
+        assertEquals(8, dbHelper.getItem(id).getQuantity());
+        assertEquals(2, countMovements(id, InventoryMovementEntry.KIND_SALE));
+        assertEquals(2, countMovements(id, InventoryMovementEntry.KIND_ADJUSTMENT));
+        assertEquals(0, countMovements(added, InventoryMovementEntry.KIND_SALE));
+        assertTrue(dbHelper.checkLedger());
+
+        // The triggers are back, so a deleted item takes its movements along
+        dbHelper.delete(dbHelper.getItem(id));
+        assertEquals(0, countMovements(id, InventoryMovementEntry.KIND_SALE));
+    }
+
+    @Test
+    public void restore_rejectsDamagedSnapshot() throws IOException {
+        dbHelper.insertAll(createItems(SIZE));
+        InventoryBackup.backup(dbHelper, snapshot, InventoryBackup.LAYOUT_ROWS);
+
+        RandomAccessFile damaged = new RandomAccessFile(snapshot, "rw");
+        try {
+            damaged.seek(snapshot.length() / 2);
+            int b = damaged.read();
+            damaged.seek(snapshot.length() / 2);
+            damaged.write(b ^ 0xFF);
+        } finally {
+            damaged.close();
+        }
+
+        // The snapshot is rejected before any row is changed
+        dbHelper.insert(new Item("After backup", 10, 1, "supplier@example.com", null));
+        try {
+            InventoryBackup.restore(dbHelper, snapshot);
+            fail("Damaged snapshot restored.");
+        } catch(IOException expected) {
+            assertEquals(SIZE + 1, countRows(dbHelper));
+        }
+    }
+
+    @Test
+    public void restore_rejectsOtherFiles() throws IOException {
+        FileOutputStream out = new FileOutputStream(snapshot);
+        try {
+            out.write(new byte[200]);
+        } finally {
+            out.close();
+        }
+
+        try {
+            InventoryBackup.restore(dbHelper, snapshot);
+            fail("Other file restored.");
+        } catch(IOException expected) {
+            assertEquals(0, countRows(dbHelper));
+        }
+    }
+
+    private long countMovements(long id, int kind) {
+        return DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                "SELECT COUNT(*) FROM " + InventoryMovementEntry.TABLE_NAME +
+                        " WHERE " + InventoryMovementEntry.COLUMN_ITEM_ID + " = ? AND " +
+                        InventoryMovementEntry.COLUMN_KIND + " = ?",
+                new String[] { String.valueOf(id), String.valueOf(kind) });
+    }
+}
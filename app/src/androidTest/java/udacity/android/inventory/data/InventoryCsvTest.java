@@ -0,0 +1,164 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import udacity.android.inventory.model.Item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static udacity.android.inventory.data.InventoryTestData.clearTable;
+import static udacity.android.inventory.data.InventoryTestData.countRows;
+import static udacity.android.inventory.data.InventoryTestData.createItems;
+
+/**
+ * Instrumentation tests for the CSV import and export of the inventory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryCsvTest {
+
+    private static final String DATABASE_NAME = "inventory_csv_test.db";
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void export_thenImportRestoresEveryItem() throws IOException {
+        int size = 2500;
+        dbHelper.insertAll(createItems(size));
+        long stockValue = dbHelper.getStockValueCents();
+
+        StringWriter out = new StringWriter();
+        CountingProgress progress = new CountingProgress();
+        assertEquals(size, InventoryCsv.exportCsv(dbHelper, out, progress).getRows());
+        assertEquals(size / InventoryCsv.PROGRESS_INTERVAL, progress.reports);
+        assertTrue(out.toString().startsWith(InventoryCsv.EXPORT_HEADER + "\r\n"));
+
+        clearTable(dbHelper);
+        InventoryCsv.Result result = InventoryCsv.importCsv(dbHelper, new StringReader(out.toString()),
+                new CountingProgress());
+
+        assertEquals(size, result.getRows());
+        assertEquals(0, result.getRejected());
+        assertEquals(size, countRows(dbHelper));
+        assertEquals(stockValue, dbHelper.getStockValueCents());
+        assertTrue(dbHelper.checkSummary());
+    }
+
+    @Test
+    public void export_quotesFieldsWithSeparators() throws IOException {
+        List<Item> items = new ArrayList<>();
+        items.add(new Item("Pipe, 12\" long", 1299, 3, "supplier@example.com", null));
+        items.add(new Item("Two\r\nlines", 5, 0, "supplier@example.com", "content://image/2"));
+        dbHelper.insertAll(items);
+
+        StringWriter out = new StringWriter();
+        InventoryCsv.exportCsv(dbHelper, out, new CountingProgress());
+        assertEquals(InventoryCsv.EXPORT_HEADER + "\r\n"
+                + "\"Pipe, 12\"\" long\",12.99,3,supplier@example.com,,5\r\n"
+                + "\"Two\r\nlines\",0.05,0,supplier@example.com,content://image/2,5\r\n", out.toString());
+
+        clearTable(dbHelper);
+        InventoryCsv.importCsv(dbHelper, new StringReader(out.toString()), new CountingProgress());
+        dbHelper.getItemCache().clear();
+        assertEquals("Pipe, 12\" long", dbHelper.getItem(dbHelper.search("pipe", 1)[0]).getDescription());
+        assertEquals("Two\r\nlines", dbHelper.getItem(dbHelper.search("lines", 1)[0]).getDescription());
+    }
+
+    @Test
+    public void import_skipsAndReportsInvalidRecords() throws IOException {
+        String csv = InventoryCsv.EXPORT_HEADER + "\r\n"
+                + "Widget,1.50,3,supplier@example.com,,\r\n"
+                + "\"Broken, item\",12.x9,1,supplier@example.com,\r\n"
+                + ",1.00,1,supplier@example.com\r\n"
+                + "Gadget,,,supplier@example.com,,12\r\n";
+
+        InventoryCsv.Result result = InventoryCsv.importCsv(dbHelper, new StringReader(csv), new CountingProgress());
+
+        assertEquals(2, result.getRows());
+        assertEquals(2, result.getRejected());
+        assertEquals(3, result.getFirstRejectedLine());
+        assertEquals(2, countRows(dbHelper));
+    }
+
+    @Test
+    public void import_rejectsARecordWithAStrayQuote() throws IOException {
+        // The stray quote runs over the records up to the field length limit
+        String record = "Widget,1.50,3,supplier@example.com,,\r\n";
+        int records = CsvReader.MAX_FIELD_LENGTH / record.length() * 2;
+        StringBuilder csv = new StringBuilder(InventoryCsv.EXPORT_HEADER + "\r\n");
+        csv.append('"').append(record);
+        for(int i = 0; i < records; i++) {
+            csv.append(record);
+        }
+        csv.append("Gadget,\"2.00,1,supplier@example.com,,\r\n");
+
+        InventoryCsv.Result result = InventoryCsv.importCsv(dbHelper, new StringReader(csv.toString()),
+                new CountingProgress());
+
+        // Only the lines of the quotes are rejected, the records they ran over are imported
+        assertEquals(records, result.getRows());
+        assertEquals(2, result.getRejected());
+        assertEquals(2, result.getFirstRejectedLine());
+        assertEquals(records, countRows(dbHelper));
+    }
+
+    @Test
+    public void import_stopsWhenCancelled() throws IOException {
+        StringWriter out = new StringWriter();
+        dbHelper.insertAll(createItems(InventoryCsv.IMPORT_CHUNK_SIZE * 2));
+        InventoryCsv.exportCsv(dbHelper, out, new CountingProgress());
+        clearTable(dbHelper);
+
+        // Cancelled at the first progress report, after the first rows were read
+        CountingProgress progress = new CountingProgress();
+        progress.cancelAfter = 1;
+        InventoryCsv.Result result = InventoryCsv.importCsv(dbHelper, new StringReader(out.toString()), progress);
+
+        assertTrue(result.isCancelled());
+        assertEquals(InventoryCsv.PROGRESS_INTERVAL, result.getRows());
+        assertEquals(InventoryCsv.PROGRESS_INTERVAL, countRows(dbHelper));
+    }
+
+    /** Counts the progress reports and cancels after a number of them. */
+    private static final class CountingProgress implements InventoryCsv.Progress {
+
+        int reports;
+        int cancelAfter = Integer.MAX_VALUE;
+
+        @Override
+        public void onProgress(long rows) {
+            reports++;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return reports >= cancelAfter;
+        }
+    }
+}
@@ -0,0 +1,746 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Parcel;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.inventory.model.InventorySummary;
+import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.SupplierOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static udacity.android.inventory.data.InventoryTestData.clearTable;
+import static udacity.android.inventory.data.InventoryTestData.copyOf;
+import static udacity.android.inventory.data.InventoryTestData.countMovements;
+import static udacity.android.inventory.data.InventoryTestData.countRows;
+import static udacity.android.inventory.data.InventoryTestData.createItems;
+import static udacity.android.inventory.data.InventoryTestData.createVersion1Database;
+import static udacity.android.inventory.data.InventoryTestData.expectedStockValueCents;
+
+/**
+ * Instrumentation benchmarks for the database layer. Each run uses its
+ * own database file which is deleted afterwards. Timings are written to
+ * logcat under the class log tag. The behaviour of each component is
+ * covered by its own test class; the benchmarks only check that the
+ * work they time was done.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryDbHelperBenchmark {
+
+    private static final String LOG_TAG = InventoryDbHelperBenchmark.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "inventory_benchmark.db";
+
+    private static final int[] SIZES = { 1000, 10000, 100000 };
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void insertAll_versusPerRowInsert() {
+        for(int size : SIZES) {
+            List<Item> items = createItems(size);
+
+            long start = System.nanoTime();
+            for(Item item : items) {
+                dbHelper.insert(item);
+            }
+            long perRowMs = (System.nanoTime() - start) / 1000000;
+            assertEquals(size, countRows(dbHelper));
+            clearTable(dbHelper);
+
+            items = createItems(size);
+            start = System.nanoTime();
+            long[] ids = dbHelper.insertAll(items);
+            long bulkMs = (System.nanoTime() - start) / 1000000;
+            assertEquals(size, ids.length);
+            assertEquals(size, countRows(dbHelper));
+            clearTable(dbHelper);
+
+            Log.i(LOG_TAG, "insert " + size + " items: per-row " + perRowMs
+                    + " ms, insertAll " + bulkMs + " ms");
+        }
+    }
+
+    @Test
+    public void listProjection_versusFullRows() {
+        int size = 10000;
+        dbHelper.insertAll(createItems(size));
+
+        // Full rows, as read by the list before the list projection
+        long start = System.nanoTime();
+        Cursor full = dbHelper.getReadableDatabase().query(InventoryContract.InventoryEntry.TABLE_NAME,
+                null, null, null, null, null, InventoryContract.InventoryEntry._ID);
+        int fullRowsPerWindow = rowsInFirstWindow(full);
+        scroll(full);
+        long fullMs = (System.nanoTime() - start) / 1000000;
+        full.close();
+
+        // List columns from the covering index
+        start = System.nanoTime();
+        Cursor list = dbHelper.queryPage(0, size);
+        int listRowsPerWindow = rowsInFirstWindow(list);
+        scroll(list);
+        long listMs = (System.nanoTime() - start) / 1000000;
+        assertEquals(size, list.getCount());
+        list.close();
+
+        Log.i(LOG_TAG, "scroll " + size + " rows: full rows " + fullRowsPerWindow + " rows/window "
+                + fullMs + " ms, list projection " + listRowsPerWindow + " rows/window " + listMs + " ms");
+    }
+
+    @Test
+    public void search_at100kItems() {
+        int size = 100000;
+        dbHelper.insertAll(createItems(size));
+
+        // Warm up the page cache
+        dbHelper.search("item", 20);
+
+        String[] queries = { "item 4242", "supplier7", "ite", "item 99999" };
+        for(String query : queries) {
+            long start = System.nanoTime();
+            long[] ids = dbHelper.search(query, 20);
+            long micros = (System.nanoTime() - start) / 1000;
+            assertTrue(ids.length > 0);
+
+            Log.i(LOG_TAG, "search '" + query + "' over " + size + " items: "
+                    + ids.length + " results in " + micros + " us");
+        }
+    }
+
+    @Test
+    public void saleTaps_writeQueueVersusSynchronousUpdate() throws InterruptedException {
+        int items = 20;
+        int taps = 5000;
+        long[] ids = dbHelper.insertAll(createItems(items));
+        for(long id : ids) {
+            dbHelper.adjustQuantity(id, taps);
+        }
+
+        // One guarded update per tap
+        long start = System.nanoTime();
+        for(int i = 0; i < taps; i++) {
+            dbHelper.adjustQuantity(ids[i % items], -1);
+        }
+        long syncMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+        // Coalesced through the write queue, until every tap is written
+        HandlerThread writeThread = new HandlerThread("writes");
+        writeThread.start();
+        HandlerThread callbackThread = new HandlerThread("callbacks");
+        callbackThread.start();
+        final CountDownLatch written = new CountDownLatch(1);
+        final QuantityWriteQueue[] queue = new QuantityWriteQueue[1];
+        queue[0] = new QuantityWriteQueue(dbHelper, new Handler(writeThread.getLooper()),
+                new QuantityWriteQueue.Listener() {
+            @Override
+            public void onQuantitiesWritten(long[] ids, int[] quantities, int count) {
+                if(!queue[0].hasPending()) {
+                    written.countDown();
+                }
+            }
+
+            @Override
+            public void onQuantitiesFailed(long[] ids, int count) {
+                // The quantities checked below are wrong
+                written.countDown();
+            }
+        }, QuantityWriteQueue.DEFAULT_FLUSH_DELAY_MS, QuantityWriteQueue.DEFAULT_CAPACITY,
+                callbackThread.getLooper());
+
+        start = System.nanoTime();
+        for(int i = 0; i < taps; i++) {
+            queue[0].enqueue(ids[i % items], -1);
+        }
+        queue[0].drain();
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        long queueMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+        writeThread.quit();
+        callbackThread.quit();
+
+        // Each item started at its index, gained taps and lost taps / items twice
+        for(int i = 0; i < items; i++) {
+            assertEquals(i + taps - 2 * taps / items, dbHelper.getItem(ids[i]).getQuantity());
+        }
+
+        Log.i(LOG_TAG, taps + " sale taps: synchronous " + (taps * 1000L / syncMs)
+                + " taps/s, write queue " + (taps * 1000L / queueMs) + " taps/s");
+    }
+
+    @Test
+    public void stockValue_inSqlVersusJavaSum() {
+        int size = 100000;
+        List<Item> items = createItems(size);
+        dbHelper.insertAll(items);
+
+        long expected = 0;
+        for(Item item : items) {
+            expected += item.getPriceCents() * item.getQuantity();
+        }
+
+        // Every row read into an Item and summed in Java
+        long start = System.nanoTime();
+        long javaSum = 0;
+        Cursor cursor = dbHelper.query();
+        try {
+            while(cursor.moveToNext()) {
+                Item item = new Item(cursor.getLong(0), cursor.getString(1), cursor.getLong(2),
+                        cursor.getInt(3), cursor.getString(4), cursor.getString(5));
+                javaSum += item.getPriceCents() * item.getQuantity();
+            }
+        } finally {
+            cursor.close();
+        }
+        long javaMs = (System.nanoTime() - start) / 1000000;
+
+        // Summed by SQLite
+        start = System.nanoTime();
+        long sqlSum = dbHelper.getStockValueCents();
+        long sqlMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(expected, javaSum);
+        assertEquals(expected, sqlSum);
+
+        Log.i(LOG_TAG, "stock value of " + size + " items: Java sum " + javaMs
+                + " ms, SQL sum " + sqlMs + " ms");
+    }
+
+    @Test
+    public void summary_triggersVersusFullAggregate() {
+        int size = 100000;
+        long[] ids = dbHelper.insertAll(createItems(size));
+
+        // Sales, restocks, price changes and deletes, all kept in the summary by the triggers
+        for(int i = 0; i < 1000; i++) {
+            dbHelper.adjustQuantity(ids[i], i % 2 == 0 ? -(i % 50) : 7);
+        }
+        for(int i = 1000; i < 1100; i++) {
+            Item item = copyOf(dbHelper.getItem(ids[i]));
+            item.setPriceCents(item.getPriceCents() + 99);
+            dbHelper.update(item);
+        }
+        for(int i = 1100; i < 1200; i++) {
+            dbHelper.delete(dbHelper.getItem(ids[i]));
+        }
+
+        long start = System.nanoTime();
+        InventorySummary summary = dbHelper.getSummary();
+        long summaryMicros = (System.nanoTime() - start) / 1000;
+
+        // The check recomputes every total from scratch
+        start = System.nanoTime();
+        assertTrue(dbHelper.checkSummary());
+        long aggregateMicros = (System.nanoTime() - start) / 1000;
+
+        assertEquals(size - 100, summary.getItemCount());
+        assertEquals(dbHelper.getStockValueCents(), summary.getStockValueCents());
+
+        Log.i(LOG_TAG, "summary of " + size + " items: summary row " + summaryMicros
+                + " us, full aggregate " + aggregateMicros + " us");
+    }
+
+    @Test
+    public void migration_fromVersion1At100kItems() {
+        int size = 100000;
+        createVersion1Database(context, DATABASE_NAME, size).close();
+
+        // Opening the database runs every migration step
+        long start = System.nanoTime();
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long migrationMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(InventoryContract.DATABASE_VERSION, db.getVersion());
+        assertEquals(size, countRows(dbHelper));
+        assertEquals(expectedStockValueCents(size), dbHelper.getStockValueCents());
+
+        Log.i(LOG_TAG, "migrate " + size + " items from version 1 to "
+                + InventoryContract.DATABASE_VERSION + ": " + migrationMs + " ms");
+    }
+
+    @Test
+    public void profiles_concurrentReadWriteLatency() throws InterruptedException {
+        DatabaseProfile[] profiles = { DatabaseProfile.DURABLE, DatabaseProfile.THROUGHPUT };
+        for(DatabaseProfile profile : profiles) {
+            String name = "inventory_profile_benchmark.db";
+            context.deleteDatabase(name);
+            final InventoryDbHelper helper = new InventoryDbHelper(context, name, profile);
+            long[] ids = helper.insertAll(createItems(10000));
+
+            // A reader scrolls the first page of the list while sales are written
+            final long[] readNanos = new long[100000];
+            final int[] reads = new int[1];
+            final CountDownLatch done = new CountDownLatch(1);
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while(done.getCount() > 0 && reads[0] < readNanos.length) {
+                        long start = System.nanoTime();
+                        Cursor page = helper.queryPage(0, 500);
+                        scroll(page);
+                        page.close();
+                        readNanos[reads[0]++] = System.nanoTime() - start;
+                    }
+                }
+            });
+            reader.start();
+
+            int writes = 2000;
+            long[] writeNanos = new long[writes];
+            for(int i = 0; i < writes; i++) {
+                long start = System.nanoTime();
+                helper.adjustQuantity(ids[i % 500], i % 2 == 0 ? 1 : -1);
+                writeNanos[i] = System.nanoTime() - start;
+            }
+            done.countDown();
+            reader.join();
+
+            assertTrue(helper.checkSummary());
+            assertEquals("wal", DatabaseUtils.stringForQuery(helper.getReadableDatabase(),
+                    "PRAGMA journal_mode", null));
+            helper.close();
+            context.deleteDatabase(name);
+
+            Log.i(LOG_TAG, profile + ": write p50 " + percentileMicros(writeNanos, writes, 50)
+                    + " us, p99 " + percentileMicros(writeNanos, writes, 99)
+                    + " us; " + reads[0] + " concurrent reads p50 " + percentileMicros(readNanos, reads[0], 50)
+                    + " us, p99 " + percentileMicros(readNanos, reads[0], 99) + " us");
+        }
+    }
+
+    @Test
+    public void updateAndDelete_cachedStatementsVersusContentValues() {
+        int size = 10000;
+        List<Item> items = createItems(size);
+        dbHelper.insertAll(items);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        String selection = InventoryContract.InventoryEntry._ID + "= ?";
+
+        // Selection, arguments and values built and parsed for every row, as before the cache
+        long start = System.nanoTime();
+        for(Item item : items) {
+            item.setQuantity(item.getQuantity() + 1);
+            db.update(InventoryContract.InventoryEntry.TABLE_NAME, InventoryDbHelper.toContentValues(item),
+                    selection, new String[] { String.valueOf(item.getId()) });
+        }
+        long valuesUpdateMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+        start = System.nanoTime();
+        for(Item item : items) {
+            item.setQuantity(item.getQuantity() + 1);
+            dbHelper.update(item);
+        }
+        long cachedUpdateMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+        assertEquals(items.get(7).getQuantity(), dbHelper.getItem(items.get(7).getId()).getQuantity());
+        assertTrue(dbHelper.checkSummary());
+
+        int half = size / 2;
+        start = System.nanoTime();
+        for(Item item : items.subList(0, half)) {
+            db.delete(InventoryContract.InventoryEntry.TABLE_NAME, selection,
+                    new String[] { String.valueOf(item.getId()) });
+        }
+        long valuesDeleteMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+        start = System.nanoTime();
+        for(Item item : items.subList(half, size)) {
+            dbHelper.delete(item);
+        }
+        long cachedDeleteMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+        assertEquals(0, countRows(dbHelper));
+
+        Log.i(LOG_TAG, size + " updates: ContentValues " + (size * 1000L / valuesUpdateMs)
+                + " rows/s, cached statement " + (size * 1000L / cachedUpdateMs) + " rows/s; "
+                + half + " deletes: ContentValues " + (half * 1000L / valuesDeleteMs)
+                + " rows/s, cached statement " + (half * 1000L / cachedDeleteMs) + " rows/s");
+    }
+
+    @Test
+    public void getItem_identityMapVersusQueryAndParcel() {
+        int size = 10000;
+        long[] ids = dbHelper.insertAll(createItems(size));
+        int opens = 10000;
+        int workingSet = ItemCache.DEFAULT_MAX_SIZE / 2;
+
+        // Each open of the details screen read the row and copied it through a Parcel
+        long start = System.nanoTime();
+        for(int i = 0; i < opens; i++) {
+            Item item = dbHelper.getItem(ids[i % workingSet]);
+            dbHelper.getItemCache().remove(item.getId());
+
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeParcelable(item, 0);
+                parcel.setDataPosition(0);
+                parcel.readParcelable(Item.class.getClassLoader());
+            } finally {
+                parcel.recycle();
+            }
+        }
+        long copyMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+        start = System.nanoTime();
+        for(int i = 0; i < opens; i++) {
+            dbHelper.getItem(ids[i % workingSet]);
+        }
+        long sharedMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+        Log.i(LOG_TAG, opens + " item reads of " + workingSet + " items: query and Parcel "
+                + (opens * 1000L / copyMs) + " reads/s, identity map " + (opens * 1000L / sharedMs) + " reads/s");
+    }
+
+    @Test
+    public void csv_exportAndImportAt100kItems() throws IOException {
+        int size = 100000;
+        dbHelper.insertAll(createItems(size));
+        long stockValue = dbHelper.getStockValueCents();
+        File file = new File(context.getCacheDir(), "inventory_benchmark.csv");
+        HeapProgress progress = new HeapProgress();
+
+        long start = System.nanoTime();
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            assertEquals(size, InventoryCsv.exportCsv(dbHelper, out, progress).getRows());
+        } finally {
+            out.close();
+        }
+        long exportMs = (System.nanoTime() - start) / 1000000;
+        long exportPeak = progress.peakBytes;
+
+        clearTable(dbHelper);
+        progress = new HeapProgress();
+        start = System.nanoTime();
+        Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        InventoryCsv.Result result;
+        try {
+            result = InventoryCsv.importCsv(dbHelper, in, progress);
+        } finally {
+            in.close();
+        }
+        long importMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(size, result.getRows());
+        assertEquals(stockValue, dbHelper.getStockValueCents());
+
+        Log.i(LOG_TAG, "csv of " + size + " items, " + (file.length() / 1024) + " KiB: export "
+                + exportMs + " ms, peak heap " + (exportPeak / 1024) + " KiB; import " + importMs
+                + " ms, peak heap " + (progress.peakBytes / 1024) + " KiB");
+        file.delete();
+    }
+
+    @Test
+    public void backup_snapshotVersusFileCopyAt100kItems() throws IOException {
+        int size = 100000;
+        dbHelper.insertAll(createItems(size));
+        long stockValue = dbHelper.getStockValueCents();
+
+        // A file copy is only complete once the WAL is checkpointed into the database
+        File copy = new File(context.getCacheDir(), "inventory_benchmark_copy.db");
+        long start = System.nanoTime();
+        Cursor checkpoint = dbHelper.getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+        checkpoint.moveToFirst();
+        checkpoint.close();
+        copyFile(context.getDatabasePath(DATABASE_NAME), copy);
+        long copyMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+        StringBuilder results = new StringBuilder("backup of " + size + " items: file copy " + copyMs
+                + " ms, " + (copy.length() / 1024) + " KiB");
+        copy.delete();
+
+        File snapshot = new File(context.getCacheDir(), "inventory_benchmark.snapshot");
+        String[] layouts = { "rows", "columns" };
+        for(int layout = InventoryBackup.LAYOUT_ROWS; layout <= InventoryBackup.LAYOUT_COLUMNS; layout++) {
+            start = System.nanoTime();
+            assertEquals(size, InventoryBackup.backup(dbHelper, snapshot, layout));
+            long backupMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+            start = System.nanoTime();
+            assertEquals(size, InventoryBackup.restore(dbHelper, snapshot));
+            long restoreMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+            assertEquals(stockValue, dbHelper.getStockValueCents());
+
+            results.append("; ").append(layouts[layout]).append(" snapshot ")
+                    .append(snapshot.length() / 1024).append(" KiB, backup ")
+                    .append(size * 1000L / backupMs).append(" items/s, restore ")
+                    .append(size * 1000L / restoreMs).append(" items/s");
+        }
+
+        snapshot.delete();
+        Log.i(LOG_TAG, results.toString());
+    }
+
+    @Test
+    public void reorder_lowStockBySupplierAt100kItems() {
+        int size = 100000;
+        int suppliers = 5000;
+
+        // Thresholds of 0, 5 and 10 units over quantities of 0 to 49
+        List<Item> items = new ArrayList<>(size);
+        boolean[] supplierIsLow = new boolean[suppliers];
+        int lowItems = 0;
+        int lowSuppliers = 0;
+        for(int i = 0; i < size; i++) {
+            Item item = new Item("Item " + i, (i % 1000) * 10, i % 50,
+                    "supplier" + (i % suppliers) + "@example.com", null);
+            item.setReorderThreshold((i % 3) * 5);
+            items.add(item);
+
+            if(item.isLowStock()) {
+                lowItems++;
+                if(!supplierIsLow[i % suppliers]) {
+                    supplierIsLow[i % suppliers] = true;
+                    lowSuppliers++;
+                }
+            }
+        }
+        long[] ids = dbHelper.insertAll(items);
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        // One order per supplier from the partial index
+        final long[] lines = new long[1];
+        long start = System.nanoTime();
+        int orders = ReorderEngine.forEachOrder(dbHelper, new ReorderEngine.OrderListener() {
+            @Override
+            public boolean onOrder(SupplierOrder order) {
+                lines[0] += order.getLineCount();
+                return true;
+            }
+        });
+        long indexedMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(lowSuppliers, orders);
+        assertEquals(lowItems, lines[0]);
+
+        // The same rows found by scanning and sorting the table
+        start = System.nanoTime();
+        Cursor scan = db.rawQuery("SELECT _id, description, quantity, reorder_threshold, supplier_id FROM inventory"
+                + " NOT INDEXED WHERE " + InventoryContract.InventoryEntry.LOW_STOCK_SELECTION
+                + " ORDER BY supplier_id, _id", null);
+        try {
+            while(scan.moveToNext()) {
+                scan.getLong(4);
+            }
+            assertEquals(lowItems, scan.getCount());
+        } finally {
+            scan.close();
+        }
+        long scanMs = (System.nanoTime() - start) / 1000000;
+
+        // The order of a single item's supplier, as built by the order button
+        int samples = 1000;
+        start = System.nanoTime();
+        for(int i = 0; i < samples; i++) {
+            Item item = dbHelper.getItem(ids[i * (size / samples)]);
+            ReorderEngine.getOrder(dbHelper, item);
+        }
+        long supplierMicros = (System.nanoTime() - start) / 1000 / samples;
+
+        Log.i(LOG_TAG, "reorder of " + size + " items, " + lowItems + " low at " + orders
+                + " suppliers: partial index " + indexedMs + " ms, table scan " + scanMs
+                + " ms, one supplier " + supplierMicros + " us");
+    }
+
+    @Test
+    public void suppliers_internedLookupsAt100kItems() {
+        int size = 100000;
+        int suppliers = 5000;
+        List<Item> items = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            items.add(new Item("Item " + i, (i % 1000) * 10, i % 50,
+                    "supplier" + (i % suppliers) + "@example.com", null));
+        }
+        dbHelper.insertAll(items);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        // The items of a supplier from the index, then by scanning the table
+        SupplierCache cache = dbHelper.getSupplierCache();
+        int samples = 100;
+        long start = System.nanoTime();
+        for(int i = 0; i < samples; i++) {
+            long supplierId = cache.findId(db, "supplier" + i + "@example.com");
+            assertEquals(size / suppliers, DatabaseUtils.longForQuery(db,
+                    "SELECT COUNT(*) FROM inventory WHERE supplier_id = ?",
+                    new String[] { String.valueOf(supplierId) }));
+        }
+        long indexedMicros = (System.nanoTime() - start) / 1000 / samples;
+
+        start = System.nanoTime();
+        for(int i = 0; i < samples; i++) {
+            long supplierId = cache.findId(db, "supplier" + i + "@example.com");
+            assertEquals(size / suppliers, DatabaseUtils.longForQuery(db,
+                    "SELECT COUNT(*) FROM inventory NOT INDEXED WHERE supplier_id = ?",
+                    new String[] { String.valueOf(supplierId) }));
+        }
+        long scanMicros = (System.nanoTime() - start) / 1000 / samples;
+
+        Log.i(LOG_TAG, "items of one of " + suppliers + " suppliers at " + size + " items: supplier index "
+                + indexedMicros + " us, table scan " + scanMicros + " us");
+    }
+
+    @Test
+    public void ledger_salesAndCompactionAt100kItems() {
+        int size = 100000;
+        long[] ids = dbHelper.insertAll(createItems(size));
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        // Every item with stock starts with one opening adjustment
+        long opening = DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM inventory WHERE quantity != 0", null);
+        assertEquals(opening, countMovements(dbHelper));
+
+        // Rounds of sale and restock taps, written as the write queue does
+        int batch = 10000;
+        int rounds = 5;
+        int[] deltas = new int[batch];
+        int[] quantities = new int[batch];
+        long start = System.nanoTime();
+        for(int round = 0; round < rounds; round++) {
+            Arrays.fill(deltas, round % 2 == 0 ? -1 : 1);
+            dbHelper.adjustQuantities(ids, deltas, batch, quantities);
+        }
+        long batchMicros = (System.nanoTime() - start) / 1000 / (rounds * batch);
+        assertTrue(dbHelper.checkLedger());
+
+        // Moves every movement so far to one day a month ago, then sells once more today
+        long now = System.currentTimeMillis() / 1000;
+        long day = InventoryContract.InventoryMovementEntry.SECONDS_PER_DAY;
+        long oldTime = (now / day - 30) * day + 3600;
+        db.execSQL("UPDATE stock_movements SET time = ?", new Object[] { oldTime });
+        for(int i = 0; i < 1000; i++) {
+            dbHelper.adjustQuantity(ids[i], 1);
+        }
+
+        long movements = countMovements(dbHelper);
+        long groups = DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM (SELECT DISTINCT item_id, kind FROM stock_movements WHERE time < ?)",
+                new String[] { String.valueOf(oldTime + day) });
+        long recent = DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM stock_movements WHERE time >= ?",
+                new String[] { String.valueOf(oldTime + day) });
+
+        start = System.nanoTime();
+        int removed = dbHelper.compactLedger(now - 7 * day);
+        long compactMs = (System.nanoTime() - start) / 1000000;
+
+        // The old movements are one per item and kind
+        assertEquals(groups + recent, countMovements(dbHelper));
+        assertEquals(movements - groups - recent, removed);
+
+        start = System.nanoTime();
+        assertTrue(dbHelper.checkLedger());
+        long checkMs = (System.nanoTime() - start) / 1000000;
+
+        Log.i(LOG_TAG, "ledger of " + size + " items: batched tap " + batchMicros + " us, compact "
+                + movements + " movements to " + (movements - removed) + " in " + compactMs
+                + " ms, check " + checkMs + " ms");
+    }
+
+    /** Helpers */
+
+    private static void copyFile(File from, File to) throws IOException {
+        FileChannel in = new FileInputStream(from).getChannel();
+        try {
+            FileChannel out = new FileOutputStream(to).getChannel();
+            try {
+                long position = 0;
+                long size = in.size();
+                while(position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Samples the used heap at every progress report of a CSV transfer. */
+    private static final class HeapProgress implements InventoryCsv.Progress {
+
+        long peakBytes;
+
+        @Override
+        public void onProgress(long rows) {
+            Runtime runtime = Runtime.getRuntime();
+            peakBytes = Math.max(peakBytes, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private static int rowsInFirstWindow(Cursor cursor) {
+        // getCount fills the first window
+        cursor.getCount();
+        CursorWindow window = ((SQLiteCursor) cursor).getWindow();
+        return window == null ? 0 : window.getNumRows();
+    }
+
+    private static void scroll(Cursor cursor) {
+        int description = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_DESCRIPTION);
+        int price = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_PRICE_CENTS);
+        int quantity = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_QUANTITY);
+        while(cursor.moveToNext()) {
+            cursor.getString(description);
+            cursor.getLong(price);
+            cursor.getInt(quantity);
+        }
+    }
+
+    private static long percentileMicros(long[] nanos, int count, int percentile) {
+        if(count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, count * percentile / 100)] / 1000;
+    }
+}
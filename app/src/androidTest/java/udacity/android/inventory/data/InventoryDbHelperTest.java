@@ -0,0 +1,354 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryContract.InventoryMovementEntry;
+import udacity.android.inventory.model.InventorySummary;
+import udacity.android.inventory.model.Item;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static udacity.android.inventory.data.InventoryTestData.copyOf;
+import static udacity.android.inventory.data.InventoryTestData.countMovements;
+import static udacity.android.inventory.data.InventoryTestData.countRows;
+import static udacity.android.inventory.data.InventoryTestData.createItems;
+
+/**
+ * Instrumentation tests for the reads and writes of InventoryDbHelper,
+ * the summary row and the stock movements ledger. Each test uses its
+ * own database file which is deleted afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryDbHelperTest {
+
+    private static final String DATABASE_NAME = "inventory_helper_test.db";
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void insertAll_writesEveryChunk() {
+        List<Item> items = createItems(2500);
+        long[] ids = dbHelper.insertAll(items, 1000);
+
+        assertEquals(2500, ids.length);
+        assertEquals(2500, countRows(dbHelper));
+        for(int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], items.get(i).getId());
+            if(i > 0) {
+                assertTrue(ids[i] > ids[i - 1]);
+            }
+        }
+        assertEquals("Item 1234", dbHelper.getItem(ids[1234]).getDescription());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insertAll_rejectsEmptyChunks() {
+        dbHelper.insertAll(createItems(1), 0);
+    }
+
+    @Test
+    public void insert_setsIdOrRejectsRow() {
+        Item item = dbHelper.insert(new Item("Widget", 150, 3, "supplier@example.com", null));
+        assertTrue(item.getId() > 0);
+
+        // The supplier is required
+        Item rejected = dbHelper.insert(new Item("No supplier", 150, 3, null, null));
+        assertEquals(-1, rejected.getId());
+        assertEquals(1, countRows(dbHelper));
+    }
+
+    @Test
+    public void queryPage_readsRowsAfterTheLastId() {
+        long[] ids = dbHelper.insertAll(createItems(250));
+
+        long lastId = 0;
+        int read = 0;
+        int[] pageSizes = new int[3];
+        for(int page = 0; page < pageSizes.length; page++) {
+            Cursor cursor = dbHelper.queryPage(lastId, 100);
+            try {
+                pageSizes[page] = cursor.getCount();
+                assertEquals(InventoryEntry.LIST_PROJECTION.length, cursor.getColumnCount());
+                while(cursor.moveToNext()) {
+                    assertEquals(ids[read++], cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry._ID)));
+                    lastId = cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry._ID));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        assertArrayEquals(new int[] { 100, 100, 50 }, pageSizes);
+        assertEquals(250, read);
+    }
+
+    @Test
+    public void search_matchesWordPrefixesBestFirst() {
+        List<Item> items = new ArrayList<>();
+        items.add(new Item("Blue Pens", 100, 1, "office@example.com", null));
+        items.add(new Item("Red pen", 100, 1, "office@example.com", null));
+        items.add(new Item("Stapler", 100, 1, "bluebird@example.com", null));
+        long[] ids = dbHelper.insertAll(items);
+
+        assertArrayEquals(new long[] { ids[0] }, dbHelper.search("blu pen", 20));
+
+        // A description hit ranks above a supplier hit
+        long[] blue = dbHelper.search("blu", 20);
+        assertEquals(2, blue.length);
+        assertEquals(ids[0], blue[0]);
+
+        assertEquals(1, dbHelper.search("pens", 20).length);
+        assertEquals(1, dbHelper.search("blu", 1).length);
+        assertEquals(0, dbHelper.search(" \"- ", 20).length);
+
+        // The index follows updates and deletes
+        Item stapler = copyOf(dbHelper.getItem(ids[2]));
+        stapler.setDescription("Blue stapler");
+        dbHelper.update(stapler);
+        assertEquals(ids[2], dbHelper.search("stapler", 20)[0]);
+        dbHelper.delete(dbHelper.getItem(ids[0]));
+        assertArrayEquals(new long[] { ids[2] }, dbHelper.search("blue", 20));
+    }
+
+    @Test
+    public void adjustQuantity_rejectsNegativeStock() {
+        long id = dbHelper.insert(new Item("Widget", 150, 2, "supplier@example.com", null)).getId();
+
+        assertEquals(InventoryDbHelper.ADJUST_REJECTED, dbHelper.adjustQuantity(id, -3));
+        assertEquals(2, dbHelper.getItem(id).getQuantity());
+        assertEquals(0, dbHelper.adjustQuantity(id, -2));
+        assertEquals(5, dbHelper.adjustQuantity(id, 5));
+        assertEquals(InventoryDbHelper.ADJUST_REJECTED, dbHelper.adjustQuantity(id + 1, 1));
+    }
+
+    @Test
+    public void adjustQuantities_guardsEachDelta() {
+        List<Item> items = new ArrayList<>();
+        items.add(new Item("One", 100, 1, "supplier@example.com", null));
+        items.add(new Item("Two", 100, 2, "supplier@example.com", null));
+        long[] ids = dbHelper.insertAll(items);
+
+        long[] batch = { ids[0], ids[1], ids[1] + 100 };
+        int[] deltas = { -2, -1, 1 };
+        int[] quantities = new int[3];
+        dbHelper.adjustQuantities(batch, deltas, 3, quantities);
+
+        // The rejected sale reports the unchanged quantity
+        assertArrayEquals(new int[] { 1, 1, InventoryDbHelper.ADJUST_REJECTED }, quantities);
+        assertEquals(1, dbHelper.getItem(ids[1]).getQuantity());
+    }
+
+    @Test
+    public void update_andDeleteWriteTheRow() {
+        long id = dbHelper.insert(new Item("Widget", 150, 2, "supplier@example.com", null)).getId();
+
+        dbHelper.update(new Item(id, "Gadget", 275, 9, "other@example.com", "content://image/1"));
+        dbHelper.getItemCache().clear();
+        Item item = dbHelper.getItem(id);
+        assertEquals("Gadget", item.getDescription());
+        assertEquals(275, item.getPriceCents());
+        assertEquals(9, item.getQuantity());
+        assertEquals("other@example.com", item.getSupplierEmail());
+        assertEquals("content://image/1", item.getImage());
+
+        dbHelper.delete(item);
+        assertEquals(0, countRows(dbHelper));
+        assertTrue(dbHelper.checkSummary());
+    }
+
+    @Test
+    public void stockValue_sumsPriceTimesQuantity() {
+        List<Item> items = createItems(2000);
+        dbHelper.insertAll(items);
+
+        long expected = 0;
+        for(Item item : items) {
+            expected += item.getPriceCents() * item.getQuantity();
+        }
+        assertEquals(expected, dbHelper.getStockValueCents());
+
+        // The per supplier values add up to the total
+        long supplierSum = 0;
+        int suppliers = 0;
+        Cursor cursor = dbHelper.queryStockValueBySupplier();
+        try {
+            int value = cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_STOCK_VALUE_CENTS);
+            while(cursor.moveToNext()) {
+                supplierSum += cursor.getLong(value);
+                suppliers++;
+            }
+        } finally {
+            cursor.close();
+        }
+        assertEquals(expected, supplierSum);
+        assertEquals(100, suppliers);
+    }
+
+    @Test
+    public void summary_followsEveryWrite() {
+        long[] ids = dbHelper.insertAll(createItems(1000));
+
+        // Sales, restocks, price changes and deletes, all kept in the summary by the triggers
+        for(int i = 0; i < 100; i++) {
+            dbHelper.adjustQuantity(ids[i], i % 2 == 0 ? -(i % 50) : 7);
+        }
+        for(int i = 100; i < 110; i++) {
+            Item item = copyOf(dbHelper.getItem(ids[i]));
+            item.setPriceCents(item.getPriceCents() + 99);
+            dbHelper.update(item);
+        }
+        for(int i = 110; i < 120; i++) {
+            dbHelper.delete(dbHelper.getItem(ids[i]));
+        }
+
+        InventorySummary summary = dbHelper.getSummary();
+        assertTrue(dbHelper.checkSummary());
+        assertEquals(990, summary.getItemCount());
+        assertEquals(dbHelper.getStockValueCents(), summary.getStockValueCents());
+        assertEquals(DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                "SELECT SUM(quantity) FROM inventory", null), summary.getUnitCount());
+    }
+
+    @Test
+    public void checkSummary_rebuildsABrokenSummary() {
+        dbHelper.insertAll(createItems(100));
+        InventorySummary summary = dbHelper.getSummary();
+
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + InventoryContract.InventorySummaryEntry.TABLE_NAME
+                + " SET " + InventoryContract.InventorySummaryEntry.COLUMN_UNIT_COUNT + " = 0");
+        assertFalse(dbHelper.checkSummary());
+        assertEquals(summary, dbHelper.getSummary());
+        assertTrue(dbHelper.checkSummary());
+    }
+
+    @Test
+    public void ledger_recordsEveryQuantityChange() {
+        List<Item> items = new ArrayList<>();
+        items.add(new Item("Stocked", 100, 5, "supplier@example.com", null));
+        items.add(new Item("Empty", 100, 0, "supplier@example.com", null));
+        long[] ids = dbHelper.insertAll(items);
+
+        // Only an item with stock opens with an adjustment
+        assertEquals(1, countMovements(dbHelper));
+
+        dbHelper.adjustQuantity(ids[0], -2);
+        dbHelper.adjustQuantity(ids[1], 4);
+        dbHelper.adjustQuantity(ids[1], -10);
+        dbHelper.adjustQuantities(new long[] { ids[0], ids[1] }, new int[] { -1, 0 }, 2, new int[2]);
+        Item item = copyOf(dbHelper.getItem(ids[1]));
+        item.setQuantity(20);
+        dbHelper.update(item);
+
+        assertEquals(1, countKind(ids[0], InventoryMovementEntry.KIND_ADJUSTMENT));
+        assertEquals(2, countKind(ids[0], InventoryMovementEntry.KIND_SALE));
+        assertEquals(1, countKind(ids[1], InventoryMovementEntry.KIND_RESTOCK));
+        assertEquals(0, countKind(ids[1], InventoryMovementEntry.KIND_SALE));
+        assertEquals(1, countKind(ids[1], InventoryMovementEntry.KIND_ADJUSTMENT));
+        assertTrue(dbHelper.checkLedger());
+    }
+
+    @Test
+    public void compactLedger_foldsOldMovementsAndKeepsTotals() {
+        long[] ids = dbHelper.insertAll(createItems(200));
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int[] deltas = new int[ids.length];
+        int[] quantities = new int[ids.length];
+        for(int round = 0; round < 4; round++) {
+            Arrays.fill(deltas, round % 2 == 0 ? -1 : 1);
+            dbHelper.adjustQuantities(ids, deltas, ids.length, quantities);
+        }
+
+        // Moves every movement so far to one day a month ago, then restocks once more today
+        long now = System.currentTimeMillis() / 1000;
+        long day = InventoryMovementEntry.SECONDS_PER_DAY;
+        long oldTime = (now / day - 30) * day + 3600;
+        db.execSQL("UPDATE stock_movements SET time = ?", new Object[] { oldTime });
+        for(int i = 0; i < 10; i++) {
+            dbHelper.adjustQuantity(ids[i], 1);
+        }
+
+        long movements = countMovements(dbHelper);
+        long groups = DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM (SELECT DISTINCT item_id, kind FROM stock_movements WHERE time < ?)",
+                new String[] { String.valueOf(oldTime + day) });
+
+        int removed = dbHelper.compactLedger(now - 7 * day);
+
+        // The old movements are one per item and kind, the recent ones are kept
+        assertEquals(movements - groups - 10, removed);
+        assertEquals(groups + 10, countMovements(dbHelper));
+        assertEquals(0, dbHelper.compactLedger(now - 7 * day));
+        assertTrue(dbHelper.checkLedger());
+
+        // A folded movement keeps the number of movements it replaced
+        assertEquals(2, DatabaseUtils.longForQuery(db, "SELECT count FROM stock_movements WHERE item_id = ? AND kind = ?",
+                new String[] { String.valueOf(ids[1]), String.valueOf(InventoryMovementEntry.KIND_SALE) }));
+    }
+
+    @Test
+    public void checkLedger_rebuildsStaleQuantities() {
+        long id = dbHelper.insert(new Item("Widget", 150, 4, "supplier@example.com", null)).getId();
+        dbHelper.adjustQuantity(id, -1);
+        assertTrue(dbHelper.checkLedger());
+
+        // A quantity changed other than through the helper is rebuilt from its movements
+        dbHelper.getWritableDatabase().execSQL("UPDATE inventory SET quantity = quantity + 5 WHERE _id = ?",
+                new Object[] { id });
+        assertFalse(dbHelper.checkLedger());
+        assertEquals(3, dbHelper.getItem(id).getQuantity());
+        assertTrue(dbHelper.checkSummary());
+        assertTrue(dbHelper.checkLedger());
+    }
+
+    @Test
+    public void delete_removesTheMovementsOfTheItem() {
+        long[] ids = dbHelper.insertAll(createItems(3));
+        dbHelper.adjustQuantity(ids[2], 3);
+
+        dbHelper.delete(dbHelper.getItem(ids[2]));
+        assertEquals(0, countItemMovements(ids[2]));
+        assertEquals(1, countItemMovements(ids[1]));
+    }
+
+    private long countKind(long id, int kind) {
+        return DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                "SELECT COUNT(*) FROM stock_movements WHERE item_id = ? AND kind = ?",
+                new String[] { String.valueOf(id), String.valueOf(kind) });
+    }
+
+    private long countItemMovements(long id) {
+        return DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(),
+                "SELECT COUNT(*) FROM stock_movements WHERE item_id = ?", new String[] { String.valueOf(id) });
+    }
+}
@@ -0,0 +1,114 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import udacity.android.inventory.model.Item;
+
+/**
+ * Builds the items and databases shared by the instrumentation tests
+ * and benchmarks of the database layer. createDatabase is public for
+ * the benchmarks of the list, which need a database helper.
+ */
+public final class InventoryTestData {
+
+    private InventoryTestData() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns items with 100 suppliers, prices of 0 to 99.90 and
+     * quantities of 0 to 49.
+     */
+    static List<Item> createItems(int count) {
+        List<Item> items = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            items.add(new Item("Item " + i, (i % 1000) * 10, i % 50,
+                    "supplier" + (i % 100) + "@example.com",
+                    "content://media/external/images/media/" + i));
+        }
+        return items;
+    }
+
+    /**
+     * Returns a helper for a new database file holding the items of
+     * createItems, so user data is not touched.
+     */
+    public static InventoryDbHelper createDatabase(Context context, String name, int count) {
+        context.deleteDatabase(name);
+        InventoryDbHelper dbHelper = new InventoryDbHelper(context, name);
+        dbHelper.insertAll(createItems(count));
+        return dbHelper;
+    }
+
+    /**
+     * Returns a copy of an item, to edit an item read from the shared
+     * instances without changing them.
+     */
+    static Item copyOf(Item item) {
+        return new Item(item.getId(), item.getDescription(), item.getPriceCents(), item.getQuantity(),
+                item.getSupplierEmail(), item.getImage(), item.getReorderThreshold());
+    }
+
+    /**
+     * Writes a database with the schema of version 1, the inventory table
+     * alone with the price stored as REAL dollars, and leaves it open.
+     */
+    static SQLiteDatabase createVersion1Database(Context context, String name, int count) {
+        File file = context.getDatabasePath(name);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.execSQL("CREATE TABLE inventory(_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "description TEXT NOT NULL,price REAL NOT NULL DEFAULT 0," +
+                "quantity INTEGER NOT NULL DEFAULT 0,supplier TEXT NOT NULL,image TEXT)");
+
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO inventory(description,price,quantity,supplier,image) VALUES (?,?,?,?,?)");
+        db.beginTransaction();
+        try {
+            for(int i = 0; i < count; i++) {
+                insert.bindString(1, "Item " + i);
+                insert.bindDouble(2, (i % 1000) / 10.0);
+                insert.bindLong(3, i % 50);
+                insert.bindString(4, "supplier" + (i % 100) + "@example.com");
+                insert.bindString(5, "content://media/external/images/media/" + i);
+                insert.executeInsert();
+            }
+            db.setVersion(1);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+        return db;
+    }
+
+    /** The stock value in cents of the items of createItems and createVersion1Database. */
+    static long expectedStockValueCents(int count) {
+        long total = 0;
+        for(int i = 0; i < count; i++) {
+            total += (i % 1000) * 10L * (i % 50);
+        }
+        return total;
+    }
+
+    static long countRows(InventoryDbHelper dbHelper) {
+        return DatabaseUtils.queryNumEntries(
+                dbHelper.getReadableDatabase(), InventoryContract.InventoryEntry.TABLE_NAME);
+    }
+
+    static long countMovements(InventoryDbHelper dbHelper) {
+        return DatabaseUtils.queryNumEntries(
+                dbHelper.getReadableDatabase(), InventoryContract.InventoryMovementEntry.TABLE_NAME);
+    }
+
+    static void clearTable(InventoryDbHelper dbHelper) {
+        dbHelper.getWritableDatabase().delete(InventoryContract.InventoryEntry.TABLE_NAME, null, null);
+    }
+}
@@ -0,0 +1,143 @@
+package udacity.android.inventory.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.model.Item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static udacity.android.inventory.data.InventoryTestData.createItems;
+
+/**
+ * Instrumentation tests for the shared item instances of the database
+ * helper.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemCacheTest {
+
+    private static final String DATABASE_NAME = "inventory_cache_test.db";
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void getItem_returnsOneInstancePerRow() {
+        long[] ids = dbHelper.insertAll(createItems(10));
+
+        Item item = dbHelper.getItem(ids[3]);
+        assertSame(item, dbHelper.getItem(ids[3]));
+        assertNull(dbHelper.getItem(ids[9] + 1));
+    }
+
+    @Test
+    public void writes_replaceTheSharedInstance() {
+        long[] ids = dbHelper.insertAll(createItems(10));
+        Item item = dbHelper.getItem(ids[3]);
+        int quantity = item.getQuantity();
+
+        // The written item is read from memory, and the instance read before is left alone
+        int written = dbHelper.adjustQuantity(ids[3], 5);
+        Item adjusted = dbHelper.getItem(ids[3]);
+        assertEquals(written, adjusted.getQuantity());
+        assertEquals(quantity, item.getQuantity());
+        assertSame(adjusted, dbHelper.getItem(ids[3]));
+
+        dbHelper.adjustQuantities(new long[] { ids[3] }, new int[] { -2 }, 1, new int[1]);
+        assertEquals(written - 2, dbHelper.getItem(ids[3]).getQuantity());
+        assertEquals(written, adjusted.getQuantity());
+
+        Item renamed = new Item(ids[3], "Renamed", 123, 4, "new@example.com", null);
+        dbHelper.update(renamed);
+        Item updated = dbHelper.getItem(ids[3]);
+        assertNotSame(renamed, updated);
+        assertEquals("Renamed", updated.getDescription());
+        assertEquals(123, updated.getPriceCents());
+        assertEquals(4, updated.getQuantity());
+        assertEquals("new@example.com", updated.getSupplierEmail());
+
+        // Changing the item passed to the write does not change the cache
+        renamed.setQuantity(99);
+        assertEquals(4, dbHelper.getItem(ids[3]).getQuantity());
+
+        dbHelper.delete(updated);
+        assertNull(dbHelper.getItem(ids[3]));
+    }
+
+    @Test
+    public void update_copiesOnlyWrittenValues() {
+        ItemCache cache = new ItemCache(4);
+        Item item = cache.putIfAbsent(new Item(1, "Widget", 150, 3, "supplier@example.com", null));
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_QUANTITY, 8);
+        values.put(InventoryEntry.COLUMN_IMAGE, "content://image/1");
+        cache.update(1, values);
+
+        Item written = cache.get(1);
+        assertEquals(8, written.getQuantity());
+        assertEquals("content://image/1", written.getImage());
+        assertEquals("Widget", written.getDescription());
+        assertEquals(150, written.getPriceCents());
+
+        // The replaced instance is unchanged
+        assertEquals(3, item.getQuantity());
+        assertNull(item.getImage());
+    }
+
+    @Test
+    public void putIfAbsent_keepsTheFirstInstance() {
+        ItemCache cache = new ItemCache(4);
+        Item first = new Item(1, "Widget", 150, 3, "supplier@example.com", null);
+        assertSame(first, cache.putIfAbsent(first));
+        assertSame(first, cache.putIfAbsent(new Item(1, "Widget", 150, 3, "supplier@example.com", null)));
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsedItems() {
+        ItemCache cache = new ItemCache(3);
+        for(long id = 1; id <= 3; id++) {
+            cache.putIfAbsent(new Item(id, "Item " + id, 100, 1, "supplier@example.com", null));
+        }
+
+        // Reading the first item makes the second the least recently used
+        cache.get(1);
+        cache.putIfAbsent(new Item(4, "Item 4", 100, 1, "supplier@example.com", null));
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get(2));
+        assertEquals("Item 1", cache.get(1).getDescription());
+    }
+
+    @Test
+    public void getItem_keepsAtMostTheMaximumSize() {
+        long[] ids = dbHelper.insertAll(createItems(ItemCache.DEFAULT_MAX_SIZE + 50));
+        for(long id : ids) {
+            dbHelper.getItem(id);
+        }
+        assertEquals(ItemCache.DEFAULT_MAX_SIZE, dbHelper.getItemCache().size());
+    }
+}
@@ -0,0 +1,247 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.inventory.model.InventorySummary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static udacity.android.inventory.data.InventoryTestData.createItems;
+
+/**
+ * Instrumentation tests for the write-behind queue of quantity changes,
+ * written on one background thread and reported on another.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QuantityWriteQueueTest {
+
+    private static final String DATABASE_NAME = "inventory_queue_test.db";
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+    private HandlerThread writeThread;
+    private HandlerThread callbackThread;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+
+        writeThread = new HandlerThread("writes");
+        writeThread.start();
+        callbackThread = new HandlerThread("callbacks");
+        callbackThread.start();
+    }
+
+    @After
+    public void tearDown() {
+        writeThread.quit();
+        callbackThread.quit();
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void enqueue_coalescesTapsPerItem() throws InterruptedException {
+        int items = 20;
+        int taps = 500;
+        long[] ids = dbHelper.insertAll(createItems(items));
+        for(long id : ids) {
+            dbHelper.adjustQuantity(id, taps);
+        }
+
+        RecordingListener listener = new RecordingListener();
+        QuantityWriteQueue queue = createQueue(listener, QuantityWriteQueue.DEFAULT_FLUSH_DELAY_MS,
+                QuantityWriteQueue.DEFAULT_CAPACITY);
+        listener.queue = queue;
+
+        for(int i = 0; i < taps; i++) {
+            queue.enqueue(ids[i % items], -1);
+        }
+
+        // Until written the sales are reported as pending
+        assertTrue(queue.hasPending());
+        assertEquals(-taps / items, queue.pendingDelta(ids[0]));
+
+        queue.drain();
+        assertTrue(listener.written.await(10, TimeUnit.SECONDS));
+        assertFalse(queue.hasPending());
+        assertEquals(0, queue.pendingDelta(ids[0]));
+
+        // Each item started at its index and gained taps before the sales
+        for(int i = 0; i < items; i++) {
+            assertEquals(i + taps - taps / items, dbHelper.getItem(ids[i]).getQuantity());
+        }
+        assertEquals(ids[items - 1], listener.lastIds[listener.lastCount - 1]);
+        assertTrue(dbHelper.checkLedger());
+    }
+
+    @Test
+    public void drain_keepsTheSummaryCurrent() throws InterruptedException {
+        int items = 20;
+        int taps = 500;
+        long[] ids = dbHelper.insertAll(createItems(items));
+        for(long id : ids) {
+            dbHelper.adjustQuantity(id, taps);
+        }
+        InventorySummary before = dbHelper.getSummary();
+
+        RecordingListener listener = new RecordingListener();
+        QuantityWriteQueue queue = createQueue(listener, QuantityWriteQueue.DEFAULT_FLUSH_DELAY_MS,
+                QuantityWriteQueue.DEFAULT_CAPACITY);
+        listener.queue = queue;
+
+        for(int i = 0; i < taps; i++) {
+            queue.enqueue(ids[i % items], -1);
+        }
+        queue.drain();
+        assertTrue(listener.written.await(10, TimeUnit.SECONDS));
+
+        // Each item was sold taps / items times at a price of 10 cents per index
+        long soldValue = 0;
+        for(int i = 0; i < items; i++) {
+            soldValue += (taps / items) * i * 10L;
+        }
+        InventorySummary after = dbHelper.getSummary();
+        assertEquals(before.getItemCount(), after.getItemCount());
+        assertEquals(before.getUnitCount() - taps, after.getUnitCount());
+        assertEquals(before.getStockValueCents() - soldValue, after.getStockValueCents());
+        assertTrue(dbHelper.checkSummary());
+    }
+
+    @Test
+    public void enqueue_writesAtCapacityWithoutWaiting() throws InterruptedException {
+        long[] ids = dbHelper.insertAll(createItems(4));
+        for(long id : ids) {
+            dbHelper.adjustQuantity(id, 10);
+        }
+
+        RecordingListener listener = new RecordingListener();
+        QuantityWriteQueue queue = createQueue(listener, TimeUnit.MINUTES.toMillis(1), ids.length);
+        listener.queue = queue;
+
+        for(long id : ids) {
+            queue.enqueue(id, -1);
+        }
+        assertTrue(listener.written.await(10, TimeUnit.SECONDS));
+        assertEquals(ids.length, listener.lastCount);
+        assertEquals(9, listener.lastQuantities[0]);
+    }
+
+    @Test
+    public void enqueue_reportsRejectedSalesWithTheStoredQuantity() throws InterruptedException {
+        // The first item has no stock
+        long[] ids = dbHelper.insertAll(createItems(2));
+
+        RecordingListener listener = new RecordingListener();
+        QuantityWriteQueue queue = createQueue(listener, 0, QuantityWriteQueue.DEFAULT_CAPACITY);
+        listener.queue = queue;
+
+        queue.enqueue(ids[0], -1);
+        assertTrue(listener.written.await(10, TimeUnit.SECONDS));
+        assertEquals(0, listener.lastQuantities[0]);
+        assertEquals(0, dbHelper.getItem(ids[0]).getQuantity());
+    }
+
+    @Test
+    public void flush_dropsTheChangesOfAFailedWrite() throws InterruptedException {
+        FailingDbHelper failingHelper = new FailingDbHelper(context, DATABASE_NAME);
+        try {
+            long[] ids = failingHelper.insertAll(createItems(3));
+
+            RecordingListener listener = new RecordingListener();
+            QuantityWriteQueue queue = createQueue(failingHelper, listener, TimeUnit.MINUTES.toMillis(1), 2);
+            listener.queue = queue;
+
+            queue.enqueue(ids[1], -1);
+            queue.enqueue(ids[2], -1);
+            assertTrue(listener.failed.await(10, TimeUnit.SECONDS));
+            assertEquals(2, listener.failedCount);
+            assertFalse(queue.hasPending());
+            assertEquals(0, queue.pendingDelta(ids[1]));
+            assertEquals(1, failingHelper.getItem(ids[1]).getQuantity());
+            assertEquals(2, failingHelper.getItem(ids[2]).getQuantity());
+
+            // The write thread survives and writes the next change
+            queue.enqueue(ids[2], -1);
+            queue.drain();
+            assertTrue(listener.written.await(10, TimeUnit.SECONDS));
+            assertEquals(1, listener.lastQuantities[0]);
+            assertTrue(failingHelper.checkLedger());
+        } finally {
+            failingHelper.close();
+        }
+    }
+
+    private QuantityWriteQueue createQueue(QuantityWriteQueue.Listener listener, long flushDelayMs, int capacity) {
+        return createQueue(dbHelper, listener, flushDelayMs, capacity);
+    }
+
+    private QuantityWriteQueue createQueue(InventoryDbHelper helper, QuantityWriteQueue.Listener listener,
+                                           long flushDelayMs, int capacity) {
+        return new QuantityWriteQueue(helper, new Handler(writeThread.getLooper()), listener, flushDelayMs,
+                capacity, callbackThread.getLooper());
+    }
+
+    /** Fails the first batch of quantity changes, as a full disk would. */
+    private static class FailingDbHelper extends InventoryDbHelper {
+
+        private int failures = 1;
+
+        FailingDbHelper(Context context, String name) {
+            super(context, name);
+        }
+
+        @Override
+        public void adjustQuantities(long[] ids, int[] deltas, int count, int[] quantities) {
+            if(failures > 0) {
+                failures--;
+                throw new SQLiteException("database or disk is full");
+            }
+            super.adjustQuantities(ids, deltas, count, quantities);
+        }
+    }
+
+    /** Keeps the last write and counts down once nothing is pending, or once a write failed. */
+    private static class RecordingListener implements QuantityWriteQueue.Listener {
+
+        final CountDownLatch written = new CountDownLatch(1);
+        final CountDownLatch failed = new CountDownLatch(1);
+        QuantityWriteQueue queue;
+        long[] lastIds;
+        int[] lastQuantities;
+        int lastCount;
+        int failedCount;
+
+        @Override
+        public void onQuantitiesWritten(long[] ids, int[] quantities, int count) {
+            lastIds = ids;
+            lastQuantities = quantities;
+            lastCount = count;
+            if(!queue.hasPending()) {
+                written.countDown();
+            }
+        }
+
+        @Override
+        public void onQuantitiesFailed(long[] ids, int count) {
+            failedCount = count;
+            failed.countDown();
+        }
+    }
+}
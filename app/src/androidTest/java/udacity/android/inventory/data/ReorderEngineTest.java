@@ -0,0 +1,148 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.SupplierOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static udacity.android.inventory.data.InventoryTestData.copyOf;
+
+/**
+ * Instrumentation tests for the supplier orders built from the low
+ * stock items.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReorderEngineTest {
+
+    private static final String DATABASE_NAME = "inventory_reorder_test.db";
+
+    private static final int SIZE = 3000;
+    private static final int SUPPLIERS = 200;
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+
+    private long[] ids;
+    private int lowItems;
+    private int lowSuppliers;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+
+        // Thresholds of 0, 5 and 10 units over quantities of 0 to 49
+        List<Item> items = new ArrayList<>(SIZE);
+        boolean[] supplierIsLow = new boolean[SUPPLIERS];
+        for(int i = 0; i < SIZE; i++) {
+            Item item = new Item("Item " + i, (i % 1000) * 10, i % 50,
+                    "supplier" + (i % SUPPLIERS) + "@example.com", null);
+            item.setReorderThreshold((i % 3) * 5);
+            items.add(item);
+
+            if(item.isLowStock()) {
+                lowItems++;
+                if(!supplierIsLow[i % SUPPLIERS]) {
+                    supplierIsLow[i % SUPPLIERS] = true;
+                    lowSuppliers++;
+                }
+            }
+        }
+        ids = dbHelper.insertAll(items);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void forEachOrder_listsEverySupplierOnce() {
+        final Set<String> ordered = new HashSet<>();
+        final long[] lines = new long[1];
+        int orders = ReorderEngine.forEachOrder(dbHelper, new ReorderEngine.OrderListener() {
+            @Override
+            public boolean onOrder(SupplierOrder order) {
+                assertTrue(ordered.add(order.getSupplierEmail()));
+                lines[0] += order.getLineCount();
+                return true;
+            }
+        });
+
+        assertEquals(lowSuppliers, orders);
+        assertEquals(lowItems, lines[0]);
+        assertEquals(lowItems, dbHelper.getSummary().getLowStockCount());
+    }
+
+    @Test
+    public void forEachOrder_stopsWhenTheListenerDoes() {
+        final int[] calls = new int[1];
+        ReorderEngine.forEachOrder(dbHelper, new ReorderEngine.OrderListener() {
+            @Override
+            public boolean onOrder(SupplierOrder order) {
+                calls[0]++;
+                return false;
+            }
+        });
+
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void lowStockSelection_usesThePartialIndex() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        if(!InventoryDbHelper.supportsPartialIndexes(db)) {
+            return;
+        }
+
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN SELECT _id FROM inventory WHERE "
+                + InventoryContract.InventoryEntry.LOW_STOCK_SELECTION + " ORDER BY supplier_id, _id", null);
+        try {
+            assertTrue(plan.moveToFirst());
+            assertTrue(plan.getString(3), plan.getString(3).contains(
+                    InventoryContract.InventoryEntry.LOW_STOCK_INDEX_NAME));
+        } finally {
+            plan.close();
+        }
+    }
+
+    @Test
+    public void getOrder_listsTheItemFirst() {
+        for(int i = 0; i < 50; i++) {
+            Item item = dbHelper.getItem(ids[i * (SIZE / 50)]);
+            SupplierOrder order = ReorderEngine.getOrder(dbHelper, item);
+
+            assertEquals(item.getSupplierEmail(), order.getSupplierEmail());
+            assertEquals(item.getId(), order.getItemId(0));
+        }
+    }
+
+    @Test
+    public void update_countsAChangedThreshold() {
+        Item item = copyOf(dbHelper.getItem(ids[1]));
+        boolean wasLow = item.isLowStock();
+        item.setReorderThreshold(wasLow ? 0 : item.getQuantity() + 1);
+        dbHelper.update(item);
+
+        assertEquals(wasLow ? lowItems - 1 : lowItems + 1, dbHelper.getSummary().getLowStockCount());
+        assertTrue(dbHelper.checkSummary());
+    }
+}
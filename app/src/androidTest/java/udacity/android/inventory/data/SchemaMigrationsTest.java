@@ -0,0 +1,132 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import udacity.android.inventory.model.Item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static udacity.android.inventory.data.InventoryTestData.countMovements;
+import static udacity.android.inventory.data.InventoryTestData.countRows;
+import static udacity.android.inventory.data.InventoryTestData.createVersion1Database;
+import static udacity.android.inventory.data.InventoryTestData.expectedStockValueCents;
+
+/**
+ * Instrumentation tests for the upgrade of a version 1 database through
+ * every migration step.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SchemaMigrationsTest {
+
+    private static final String DATABASE_NAME = "inventory_migration_test.db";
+
+    private static final int SIZE = 2000;
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void migrate_fromVersion1KeepsEveryRow() {
+        createVersion1Database(context, DATABASE_NAME, SIZE).close();
+
+        // Opening the database runs every migration step
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        assertEquals(InventoryContract.DATABASE_VERSION, db.getVersion());
+        assertEquals(SIZE, countRows(dbHelper));
+        assertEquals(expectedStockValueCents(SIZE), dbHelper.getStockValueCents());
+        assertEquals(20, dbHelper.search("item", 20).length);
+        assertTrue(dbHelper.checkSummary());
+
+        // Each of the 100 emails is stored once
+        assertEquals(100, DatabaseUtils.queryNumEntries(db, InventoryContract.InventorySupplierEntry.TABLE_NAME));
+
+        // Each item with stock opens the ledger with its quantity
+        assertEquals(DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM inventory WHERE quantity != 0", null),
+                countMovements(dbHelper));
+        assertTrue(dbHelper.checkLedger());
+
+        // Prices were converted from dollars to cents and thresholds defaulted
+        Item item = dbHelper.getItem(123);
+        assertEquals("Item 122", item.getDescription());
+        assertEquals(1220, item.getPriceCents());
+        assertEquals("supplier22@example.com", item.getSupplierEmail());
+        assertEquals(Item.DEFAULT_REORDER_THRESHOLD, item.getReorderThreshold());
+    }
+
+    @Test
+    public void migrate_resumesInterruptedCopy() {
+        SQLiteDatabase db = createVersion1Database(context, DATABASE_NAME, SIZE);
+
+        // Runs the steps before the copy, then copies part of the rows as if the
+        // upgrade had been stopped after a few chunks
+        SchemaMigrations.migrate(db, 1, 4);
+        db.execSQL("CREATE TABLE inventory_v5(_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "description TEXT NOT NULL,price_cents INTEGER NOT NULL DEFAULT 0," +
+                "quantity INTEGER NOT NULL DEFAULT 0,supplier TEXT NOT NULL,image TEXT)");
+        db.execSQL("INSERT INTO inventory_v5 SELECT _id,description,CAST(ROUND(price * 100) AS INTEGER)," +
+                "quantity,supplier,image FROM inventory WHERE _id <= " + SIZE / 2);
+        db.close();
+
+        assertEquals(InventoryContract.DATABASE_VERSION, dbHelper.getWritableDatabase().getVersion());
+        assertEquals(SIZE, countRows(dbHelper));
+        assertEquals(expectedStockValueCents(SIZE), dbHelper.getStockValueCents());
+        assertTrue(dbHelper.checkSummary());
+        assertTrue(dbHelper.checkLedger());
+    }
+
+    @Test
+    public void migrate_failedStepKeepsTheLastCompletedVersion() {
+        SQLiteDatabase db = createVersion1Database(context, DATABASE_NAME, SIZE);
+
+        // A view in place of the new table of the version 5 copy makes the copy fail
+        db.execSQL("CREATE VIEW inventory_v5 AS SELECT 1");
+        db.close();
+
+        try {
+            dbHelper.getWritableDatabase();
+            fail("The copy into a view should fail");
+        } catch(SQLiteException expected) {
+            // The steps before the copy stay committed, the old table is kept
+        }
+
+        db = SQLiteDatabase.openDatabase(context.getDatabasePath(DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        assertEquals(4, db.getVersion());
+        assertEquals(SIZE, DatabaseUtils.longForQuery(db, "SELECT COUNT(price) FROM inventory", null));
+
+        // The next open runs the failed step again
+        db.execSQL("DROP VIEW inventory_v5");
+        db.close();
+
+        assertEquals(InventoryContract.DATABASE_VERSION, dbHelper.getWritableDatabase().getVersion());
+        assertEquals(SIZE, countRows(dbHelper));
+        assertEquals(expectedStockValueCents(SIZE), dbHelper.getStockValueCents());
+        assertTrue(dbHelper.checkSummary());
+        assertTrue(dbHelper.checkLedger());
+    }
+}
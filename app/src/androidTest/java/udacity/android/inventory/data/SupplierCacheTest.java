@@ -0,0 +1,117 @@
+package udacity.android.inventory.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import udacity.android.inventory.model.Item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static udacity.android.inventory.data.InventoryTestData.createItems;
+
+/**
+ * Instrumentation tests for the suppliers table and its in-memory cache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SupplierCacheTest {
+
+    private static final String DATABASE_NAME = "inventory_supplier_test.db";
+
+    /** createItems uses 100 suppliers. */
+    private static final int SIZE = 1000;
+    private static final int SUPPLIERS = 100;
+
+    private Context context;
+    private InventoryDbHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new InventoryDbHelper(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void insertAll_writesOneRowPerSupplier() {
+        dbHelper.insertAll(createItems(SIZE));
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        assertEquals(SUPPLIERS, DatabaseUtils.queryNumEntries(db, InventoryContract.InventorySupplierEntry.TABLE_NAME));
+
+        SupplierCache cache = dbHelper.getSupplierCache();
+        long supplierId = cache.findId(db, "supplier7@example.com");
+        assertEquals(SIZE / SUPPLIERS, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM inventory WHERE supplier_id = ?",
+                new String[] { String.valueOf(supplierId) }));
+        assertEquals("supplier7@example.com", cache.getEmail(db, supplierId));
+    }
+
+    @Test
+    public void supplierSelection_usesTheSupplierIndex() {
+        Cursor plan = dbHelper.getReadableDatabase().rawQuery(
+                "EXPLAIN QUERY PLAN SELECT _id FROM inventory WHERE supplier_id = 1", null);
+        try {
+            assertTrue(plan.moveToFirst());
+            assertTrue(plan.getString(3), plan.getString(3).contains(
+                    InventoryContract.InventoryEntry.SUPPLIER_INDEX_NAME));
+        } finally {
+            plan.close();
+        }
+    }
+
+    @Test
+    public void getItem_sharesTheEmailOfASupplier() {
+        long[] ids = dbHelper.insertAll(createItems(SIZE));
+
+        // Items of one supplier read from the table share one email instance
+        dbHelper.getItemCache().clear();
+        Item first = dbHelper.getItem(ids[0]);
+        Item second = dbHelper.getItem(ids[SUPPLIERS]);
+
+        assertEquals("supplier0@example.com", first.getSupplierEmail());
+        assertSame(first.getSupplierEmail(), second.getSupplierEmail());
+    }
+
+    @Test
+    public void endTransaction_dropsSuppliersOfARollback() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        SupplierCache cache = dbHelper.getSupplierCache();
+
+        db.beginTransaction();
+        try {
+            cache.getId(db, "rolled.back@example.com");
+        } finally {
+            db.endTransaction();
+            cache.endTransaction(db, false);
+        }
+
+        assertEquals(SupplierCache.NO_SUPPLIER, cache.findId(db, "rolled.back@example.com"));
+    }
+
+    @Test
+    public void findId_doesNotAddUnknownSuppliers() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        SupplierCache cache = dbHelper.getSupplierCache();
+
+        assertEquals(SupplierCache.NO_SUPPLIER, cache.findId(db, "unknown@example.com"));
+        assertNull(cache.getEmail(db, 12345));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, InventoryContract.InventorySupplierEntry.TABLE_NAME));
+    }
+}
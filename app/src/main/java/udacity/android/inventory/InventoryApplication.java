@@ -0,0 +1,35 @@
+package udacity.android.inventory;
+
+import android.app.Application;
+import android.os.StrictMode;
+
+/**
+ * This is the Application class for the inventory. In debug builds it
+ * installs a StrictMode policy that kills the process when the main
+ * thread writes to disk. SQLite does its I/O in native code, so the
+ * database helper also reports every write as a custom slow call.
+ * Any database write that is not routed through the InventoryWriter
+ * therefore fails the instrumentation tests.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class InventoryApplication extends Application {
+
+    /**
+     * This method is called when the application is created.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        if(BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskWrites()
+                    .detectCustomSlowCalls()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+        }
+    }
+}
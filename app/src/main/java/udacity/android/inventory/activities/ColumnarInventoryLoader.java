@@ -0,0 +1,119 @@
+package udacity.android.inventory.activities;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+
+import udacity.android.inventory.data.ColumnarInventory;
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryDbHelper;
+
+/**
+ * This class is a Loader that reads the whole inventory into a
+ * ColumnarInventory on a background thread. Once delivered, the
+ * inventory is patched in place by the list with its own writes, so
+ * changes while the loader is started do not read it again. Changes
+ * made while it is stopped, by the details screen or another app,
+ * read it again when it starts.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class ColumnarInventoryLoader extends AsyncTaskLoader<ColumnarInventory> {
+
+    /** Database helper object. */
+    private final InventoryDbHelper dbHelper;
+
+    /** The last delivered result. */
+    private ColumnarInventory inventory;
+
+    /** Notices changes to the inventory content URI. */
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+    private boolean observerRegistered;
+
+    /**
+     * Constructor.
+     *
+     * @param context The context.
+     * @param dbHelper A database helper object.
+     */
+    public ColumnarInventoryLoader(Context context, InventoryDbHelper dbHelper) {
+        super(context);
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * This method delivers the current result if there is one and
+     * forces a load if there is not or if the data changed while the
+     * loader was stopped.
+     */
+    @Override
+    protected void onStartLoading() {
+        if(!observerRegistered) {
+            getContext().getContentResolver().registerContentObserver(InventoryEntry.CONTENT_URI, true, observer);
+            observerRegistered = true;
+        }
+
+        if(inventory != null) {
+            deliverResult(inventory);
+        }
+
+        if(takeContentChanged() || inventory == null) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * This method ignores changes while the delivered inventory is
+     * shown, since the list patches it with its writes. A change during
+     * the first load restarts it, so the write is not missed.
+     */
+    @Override
+    public void onContentChanged() {
+        if(isStarted() && inventory != null) {
+            return;
+        }
+        super.onContentChanged();
+    }
+
+    /**
+     * This method reads the inventory on a background thread.
+     *
+     * @return The inventory.
+     */
+    @Override
+    public ColumnarInventory loadInBackground() {
+        return ColumnarInventory.load(dbHelper);
+    }
+
+    /**
+     * This method keeps the result so it can be delivered again.
+     *
+     * @param data The result to deliver.
+     */
+    @Override
+    public void deliverResult(ColumnarInventory data) {
+        if(isReset()) {
+            return;
+        }
+
+        inventory = data;
+        if(isStarted()) {
+            super.deliverResult(data);
+        }
+    }
+
+    /**
+     * This method stops observing the inventory when the loader is reset.
+     */
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLoad();
+
+        if(observerRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(observer);
+            observerRegistered = false;
+        }
+        inventory = null;
+    }
+}
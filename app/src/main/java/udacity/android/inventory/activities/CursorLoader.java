@@ -4,22 +4,71 @@ import android.content.AsyncTaskLoader;
 import android.content.Context;
 import android.database.Cursor;
 
+import android.support.v7.util.DiffUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
 import udacity.android.inventory.data.InventoryDbHelper;
 
 /**
  * This class is a custom Loader that queries the database
  * on a background thread to prevent performance issues on
- * the UI thread. It queries the database for all Items and
- * returns the result set as a Cursor.
+ * the UI thread. The inventory is loaded in pages using
+ * keyset pagination: the first page is loaded right away
+ * and later pages are appended when requested, so the list
+ * never holds more rows than the user has scrolled through.
+ * The loaded pages are returned as a single Cursor. The loader
+ * observes the inventory content URI and queries the loaded
+ * pages again when the inventory changes. Each result carries
+ * the changes from the last delivered result, computed on the
+ * background thread so the list only updates the changed rows.
+ * Writes that do not notify the URI mark the pages stale instead,
+ * so they are queried again with the next page rather than right away.
  *
  * @author Joseph Stewart
- * @version 2.1
+ * @version 2.3
  */
 public class CursorLoader extends AsyncTaskLoader<Cursor> {
 
+    /** The default number of rows per page. */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
     /** Database helper object. */
     InventoryDbHelper dbHelper;
 
+    /** The number of rows per page. */
+    private final int pageSize;
+
+    /** The loaded pages, the snapshot of each page and the id of its last row. */
+    private final List<Cursor> pages = new ArrayList<>();
+    private final List<InventorySnapshot> pageSnapshots = new ArrayList<>();
+    private final List<Long> pageLastIds = new ArrayList<>();
+
+    /** Pages replaced by a reload, closed once the new result is delivered. */
+    private final List<Cursor> retiredPages = new ArrayList<>();
+
+    /** The number of pages the list wants to show and the number loaded. */
+    private volatile int requestedPages = 1;
+    private volatile int loadedPages;
+
+    /** True if the loaded pages must be queried again. */
+    private volatile boolean reloadPending = true;
+
+    /** True if the last page was full, so there may be more rows. */
+    private volatile boolean lastPageFull;
+
+    /** The last delivered result. */
+    private Cursor cursor;
+
+    /** The snapshot of the last result passed to the callbacks. */
+    private volatile InventorySnapshot deliveredSnapshot = InventorySnapshot.EMPTY;
+
+    /** Reloads the pages when the inventory content URI changes. */
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+    private boolean observerRegistered;
+
     /**
      * Constructor.
      *
@@ -27,21 +76,85 @@ public class CursorLoader extends AsyncTaskLoader<Cursor> {
      * @param dbHelper A database helper object.
      */
     public CursorLoader(Context context, InventoryDbHelper dbHelper) {
+        this(context, dbHelper, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context The context.
+     * @param dbHelper A database helper object.
+     * @param pageSize The number of rows per page.
+     */
+    public CursorLoader(Context context, InventoryDbHelper dbHelper, int pageSize) {
         super(context);
         this.dbHelper = dbHelper;
+        this.pageSize = pageSize;
     }
 
     /**
-     * This method forces the load when the loader starts.
+     * This method delivers the current result if there is one and
+     * forces a load if there is not or if the data has changed.
      */
     @Override
     protected void onStartLoading() {
+        if(!observerRegistered) {
+            getContext().getContentResolver().registerContentObserver(InventoryEntry.CONTENT_URI, true, observer);
+            observerRegistered = true;
+        }
+
+        if(cursor != null) {
+            deliverResult(cursor);
+        }
+
+        if(takeContentChanged() || cursor == null) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * This method requests that the loaded pages are queried again,
+     * for example after the data has been changed.
+     */
+    @Override
+    public void onContentChanged() {
+        reloadPending = true;
+        super.onContentChanged();
+    }
+
+    /**
+     * This method makes the next load query the loaded pages again,
+     * without loading them now. It is called after writes that do not
+     * notify the inventory URI, whose values the list already shows,
+     * so reused pages do not bring the old values back.
+     */
+    public void markPagesStale() {
+        reloadPending = true;
+    }
+
+    /**
+     * This method requests the page after the last loaded page. It
+     * does nothing if a page is already being loaded or if the last
+     * page showed there are no more rows.
+     *
+     * @return True if a new page was requested.
+     */
+    public boolean loadNextPage() {
+        if(!lastPageFull || requestedPages > loadedPages) {
+            return false;
+        }
+
+        requestedPages++;
         forceLoad();
+        return true;
     }
 
     /**
-     * The method loads the result set on a background
-     * thread and returns a cursor.
+     * The method loads the requested pages on a background
+     * thread and returns a cursor over all of them. Pages that
+     * are already loaded are reused unless a reload is pending.
+     * The rows are compared to the last delivered result here,
+     * off the UI thread.
      *
      * @return The result set from the database query.
      */
@@ -51,7 +164,121 @@ public class CursorLoader extends AsyncTaskLoader<Cursor> {
             return null;
         }
 
-        // Retrieve items from database
-        return dbHelper.query();
+        synchronized(pages) {
+            if(reloadPending) {
+                reloadPending = false;
+                synchronized(retiredPages) {
+                    retiredPages.addAll(pages);
+                }
+                pages.clear();
+                pageSnapshots.clear();
+                pageLastIds.clear();
+            }
+
+            // Retrieve pages from the database until enough are loaded
+            while(pages.size() < requestedPages) {
+                long afterId = pageLastIds.isEmpty() ? 0 : pageLastIds.get(pageLastIds.size() - 1);
+                Cursor page = dbHelper.queryPage(afterId, pageSize);
+
+                // Read the rows before the page is shared with the UI thread
+                InventorySnapshot pageSnapshot = InventorySnapshot.read(page);
+                int count = pageSnapshot.count;
+                if(count > 0) {
+                    afterId = pageSnapshot.ids[count - 1];
+                }
+
+                pages.add(page);
+                pageSnapshots.add(pageSnapshot);
+                pageLastIds.add(afterId);
+                lastPageFull = count == pageSize;
+
+                if(!lastPageFull) {
+                    requestedPages = pages.size();
+                }
+            }
+            loadedPages = pages.size();
+
+            InventorySnapshot snapshot = InventorySnapshot.concat(pageSnapshots);
+            InventorySnapshot diffBase = deliveredSnapshot;
+            DiffUtil.DiffResult diff = snapshot.diffFrom(diffBase);
+
+            return new PagedCursor(pages.toArray(new Cursor[pages.size()]), snapshot, diffBase, diff);
+        }
+    }
+
+    /**
+     * This method delivers the result and closes the pages that
+     * were replaced by it. A result whose pages were marked stale
+     * while it was loaded is dropped and the pages are loaded again.
+     *
+     * @param data The result to deliver.
+     */
+    @Override
+    public void deliverResult(Cursor data) {
+        if(isReset()) {
+            return;
+        }
+
+        if(reloadPending && data != null && data != cursor) {
+            forceLoad();
+            return;
+        }
+
+        Cursor oldCursor = cursor;
+        cursor = data;
+
+        if(isStarted()) {
+            if(data instanceof PagedCursor) {
+                deliveredSnapshot = ((PagedCursor) data).getSnapshot();
+            }
+            super.deliverResult(data);
+        }
+
+        // Only a new result makes the replaced pages unreachable
+        if(data != oldCursor) {
+            closeRetiredPages();
+        }
+    }
+
+    /**
+     * This method closes all pages when the loader is reset.
+     */
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLoad();
+
+        if(observerRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(observer);
+            observerRegistered = false;
+        }
+
+        synchronized(pages) {
+            for(Cursor page : pages) {
+                page.close();
+            }
+            pages.clear();
+            pageSnapshots.clear();
+            pageLastIds.clear();
+            requestedPages = 1;
+            loadedPages = 0;
+            reloadPending = true;
+        }
+
+        closeRetiredPages();
+        cursor = null;
+        deliveredSnapshot = InventorySnapshot.EMPTY;
+    }
+
+    /**
+     * This method closes pages that are no longer part of the result.
+     */
+    private void closeRetiredPages() {
+        synchronized(retiredPages) {
+            for(Cursor page : retiredPages) {
+                page.close();
+            }
+            retiredPages.clear();
+        }
     }
 }
@@ -1,12 +1,14 @@
 package udacity.android.inventory.activities;
 
+import android.app.LoaderManager;
+import android.content.ContentUris;
+import android.content.ContentValues;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.Loader;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.ParcelFileDescriptor;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
@@ -19,40 +21,63 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
-import java.io.FileDescriptor;
-import java.io.IOException;
-
 import udacity.android.inventory.R;
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
 import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.data.InventoryWriter;
+import udacity.android.inventory.image.ImageLoader;
 import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.Money;
+import udacity.android.inventory.model.SupplierOrder;
 
 /**
  * This is the DetailsActivity which shows the details of
  * a selected Item object. The user can update the quantity
- * on hand, delete the item, or send an email to the supplier
- * to more of the item.
+ * on hand and the reorder threshold, delete the item, or send
+ * an email to the supplier to order more of the item, together
+ * with the supplier's other items which are low on stock. It is
+ * started with the id of the item and loads the instance shared
+ * through the database helper on a background thread, so no copy of
+ * the item is passed. The loader loads it again after each write.
  *
  * @author Joseph Stewart
- * @version 1.2
+ * @version 1.5
  */
 public class DetailsActivity extends AppCompatActivity {
 
     /** The log tag for this class. */
     private static final String LOG_TAG = DetailsActivity.class.getSimpleName();
 
+    /** The Intent extra holding the id of the item to show. */
+    public static final String EXTRA_ITEM_ID = "udacity.android.inventory.extra.ITEM_ID";
+
+    /** The id of the item loader. */
+    private static final int ITEM_LOADER_ID = 0;
+
     /** Buttons */
     private Button deleteButton;
     private Button orderButton;
     private Button updateButton;
+    private Button thresholdButton;
     private EditText editText;
+    private EditText thresholdEditText;
     private RadioGroup radioGroup;
 
-    /** Provides access to database operations */
-    InventoryDbHelper dbHelper;
+    /** Runs database writes on a background thread */
+    private InventoryWriter writer;
 
-    /** The item currently being displayed */
+    /** Database helper object, which shares the item instances. */
+    private InventoryDbHelper dbHelper;
+
+    /** The id of the item being displayed */
+    private long itemId;
+
+    /** The shared instance of the item being displayed, null until it is loaded */
     private Item currentItem;
 
+    /** The image of the item being displayed */
+    private String shownImage;
+
     /** Error text if the input is incorrect. */
     private TextView quantityInputError;
 
@@ -67,14 +92,18 @@ public class DetailsActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_details);
 
-        // Initialize dbHelper
-        dbHelper = new InventoryDbHelper(this);
+        // Initialize writer and the item id
+        writer = InventoryWriter.getInstance(this);
+        dbHelper = InventoryDbHelper.getInstance(this);
+        itemId = getIntent().getLongExtra(EXTRA_ITEM_ID, -1);
 
         // Initialize buttons
         deleteButton = (Button) findViewById(R.id.delete_button);
         orderButton = (Button) findViewById(R.id.order_button);
         updateButton = (Button) findViewById(R.id.update_button);
         editText = (EditText) findViewById(R.id.quantity_edit_text_view);
+        thresholdButton = (Button) findViewById(R.id.threshold_button);
+        thresholdEditText = (EditText) findViewById(R.id.threshold_edit_text_view);
         radioGroup = (RadioGroup) findViewById(R.id.modify_quantity_radiogroup);
 
         // Hide the keyboard when the activity starts
@@ -85,8 +114,60 @@ public class DetailsActivity extends AppCompatActivity {
 
         setOnClickListeners();
 
-        currentItem = (Item) getIntent().getExtras().get("Item");
+        // Load the item on a background thread
+        getLoaderManager().initLoader(ITEM_LOADER_ID, null, itemCallbacks);
+    }
+
+    /**
+     * This method loads the item again when the activity comes back,
+     * since sales from the list are written without notifying the
+     * URI of the item.
+     */
+    @Override
+    protected void onRestart() {
+        super.onRestart();
+
+        Loader<?> loader = getLoaderManager().getLoader(ITEM_LOADER_ID);
+        if(loader != null) {
+            loader.onContentChanged();
+        }
+    }
+
+    /** Shows the item read by the item loader. */
+    private final LoaderManager.LoaderCallbacks<Item> itemCallbacks = new LoaderManager.LoaderCallbacks<Item>() {
+        @Override
+        public Loader<Item> onCreateLoader(int id, Bundle args) {
+            return new ItemLoader(DetailsActivity.this, dbHelper, itemId);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<Item> loader, Item item) {
+            // The item was deleted
+            if(item == null) {
+                finish();
+                return;
+            }
+
+            currentItem = item;
+            showItem();
+
+            String image = item.getImage();
+            if(image != null && !image.equals(shownImage)) {
+                shownImage = image;
+                loadItemImage(Uri.parse(image));
+            }
+        }
+
+        @Override
+        public void onLoaderReset(Loader<Item> loader) {
+            currentItem = null;
+        }
+    };
 
+    /**
+     * This method sets the text views to the current item.
+     */
+    private void showItem() {
         // TextView for the description
         TextView descriptionTextView = (TextView) findViewById(R.id.description_text_view);
         descriptionTextView.setText(currentItem.getDescription());
@@ -96,15 +177,11 @@ public class DetailsActivity extends AppCompatActivity {
 
         String price = getString(R.string.item_price) + ": "
                 + getString(R.string.dollar_symbol)
-                + String.valueOf(currentItem.getPrice());
+                + Money.format(currentItem.getPriceCents());
         priceTextView.setText(price);
 
-        // TextView for the quantity
-        TextView quantityTextView = (TextView) findViewById(R.id.quantity_text_view);
-
-        String quantity = getString(R.string.item_quantity) + ": "
-                + String.valueOf(currentItem.getQuantity());
-        quantityTextView.setText(quantity);
+        showQuantity();
+        showReorderThreshold();
 
         // TextView for the supplier email
         TextView emailTextView = (TextView) findViewById(R.id.email_text_view);
@@ -112,41 +189,49 @@ public class DetailsActivity extends AppCompatActivity {
         String email = getString(R.string.supplier_email) + ": "
                 + currentItem.getSupplierEmail();
         emailTextView.setText(email);
+    }
 
-        if(currentItem.getImage() != null) {
-            ImageView itemImage = (ImageView) findViewById(R.id.item_image_view);
-            itemImage.setImageBitmap(getItemImage(Uri.parse(currentItem.getImage())));
-        }
+    /**
+     * This method sets the quantity text view to the current item.
+     */
+    private void showQuantity() {
+        TextView quantityTextView = (TextView) findViewById(R.id.quantity_text_view);
+
+        String quantity = getString(R.string.item_quantity) + ": "
+                + String.valueOf(currentItem.getQuantity());
+        quantityTextView.setText(quantity);
     }
 
     /**
-     * This method searches for the item image based on the passed in uri
-     * and returns it.
+     * This method sets the reorder threshold text view to the current item.
+     */
+    private void showReorderThreshold() {
+        TextView thresholdTextView = (TextView) findViewById(R.id.reorder_threshold_text_view);
+
+        String threshold = getString(R.string.reorder_threshold) + ": "
+                + String.valueOf(currentItem.getReorderThreshold());
+        thresholdTextView.setText(threshold);
+    }
+
+    /**
+     * This method loads the item image based on the passed in uri on a
+     * background thread, downsampled to the size of the image view, and
+     * displays it.
      *
      * @param uri The location of the image.
-     * @return The image.
      */
-    private Bitmap getItemImage(Uri uri) {
-        ParcelFileDescriptor parcelFileDescriptor = null;
-        try {
-            parcelFileDescriptor = getContentResolver().openFileDescriptor(uri, "r");
-            FileDescriptor fileDescriptor = parcelFileDescriptor.getFileDescriptor();
-            Bitmap image = BitmapFactory.decodeFileDescriptor(fileDescriptor);
-            parcelFileDescriptor.close();
-            return image;
-        } catch (Exception e) {
-            Log.e(LOG_TAG, "Could not load image.", e);
-            return null;
-        } finally {
-            try {
-                if (parcelFileDescriptor != null) {
-                    parcelFileDescriptor.close();
+    private void loadItemImage(Uri uri) {
+        final ImageView itemImage = (ImageView) findViewById(R.id.item_image_view);
+        int size = getResources().getDimensionPixelSize(R.dimen.image_dimen);
+
+        ImageLoader.getInstance(this).load(uri, size, size, new ImageLoader.Callback() {
+            @Override
+            public void onImageLoaded(Bitmap bitmap) {
+                if(bitmap != null && !isFinishing()) {
+                    itemImage.setImageBitmap(bitmap);
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
-                Log.e(LOG_TAG, "Error closing ParcelFile Descriptor");
             }
-        }
+        });
     }
 
     /**
@@ -164,16 +249,44 @@ public class DetailsActivity extends AppCompatActivity {
         orderButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                // Send email to supplier to resupply product
-                Intent emailIntent = new Intent(Intent.ACTION_SENDTO, Uri.fromParts(
-                        "mailto", currentItem.getSupplierEmail(), null));
+                if(currentItem == null) {
+                    return;
+                }
 
-                // Adds the subject line
-                emailIntent.putExtra(Intent.EXTRA_SUBJECT, "Product Order For " + currentItem.getDescription());
+                // Order the item with the supplier's other low stock items in one email
+                writer.prepareOrder(currentItem, new InventoryWriter.Callback<SupplierOrder>() {
+                    @Override
+                    public void onComplete(SupplierOrder order) {
+                        if(order != null && !isFinishing()) {
+                            sendOrder(order);
+                        }
+                    }
+                });
+            }
+        });
+
+        thresholdButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                String enteredText = thresholdEditText.getText().toString().trim();
+                thresholdEditText.setText("");
+
+                int threshold;
+                try {
+                    threshold = Integer.parseInt(enteredText);
+                } catch (NumberFormatException ex) {
+                    Log.e(LOG_TAG, "Could not parse entered text to an integer.", ex);
+                    return;
+                }
 
-                if (emailIntent.resolveActivity(getPackageManager()) != null) {
-                    startActivity(emailIntent);
+                if(threshold < 0) {
+                    return;
                 }
+
+                // The loader shows the written threshold
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_REORDER_THRESHOLD, threshold);
+                writer.update(getItemUri(), values, null);
             }
         });
 
@@ -202,45 +315,67 @@ public class DetailsActivity extends AppCompatActivity {
                 // Get radio buttons to determine how to modify the quantity
                 RadioButton soldButton = (RadioButton) radioGroup.getChildAt(0);
 
-                // Get the current quantity of selected items in inventory
-                int currentQuantity = currentItem.getQuantity();
-
-                // Determine which radio button is selected and adjust current quantity
-                if (soldButton.isChecked()) {
-                    if (modifyQuantityAmount <= currentQuantity) {
-                        currentQuantity -= modifyQuantityAmount;
-
-                        if (quantityInputError.getVisibility() == View.VISIBLE) {
+                // Determine which radio button is selected to get the change in quantity
+                int delta = soldButton.isChecked() ? -modifyQuantityAmount : modifyQuantityAmount;
+
+                // Update data in database, which rejects selling more than is on hand
+                writer.adjustQuantity(itemId, delta, new InventoryWriter.Callback<Integer>() {
+                    @Override
+                    public void onComplete(Integer currentQuantity) {
+                        if (currentQuantity == null || currentQuantity == InventoryDbHelper.ADJUST_REJECTED) {
+                            quantityInputError.setVisibility(View.VISIBLE);
+                        } else if (quantityInputError.getVisibility() == View.VISIBLE) {
+                            // The loader shows the written quantity
                             quantityInputError.setVisibility(View.GONE);
                         }
-                    } else {
-                        quantityInputError.setVisibility(View.VISIBLE);
                     }
-                } else {
-                    currentQuantity += modifyQuantityAmount;
-
-                    if (quantityInputError.getVisibility() == View.VISIBLE) {
-                        quantityInputError.setVisibility(View.GONE);
-                    }
-                }
-
-                // Update the current item
-                currentItem.setQuantity(currentQuantity);
-                TextView quantityTextView = (TextView) findViewById(R.id.quantity_text_view);
-                String quantity = getString(R.string.item_quantity) + ": "
-                        + String.valueOf(currentItem.getQuantity());
-                quantityTextView.setText(quantity);
+                });
 
                 // Reset the views
                 radioGroup.clearCheck();
                 editText.setText("");
-
-                // Update data in database
-                dbHelper.update(currentItem);
             }
         });
     }
 
+    /**
+     * This method composes an email to the supplier with a line for
+     * each item of the order.
+     *
+     * @param order The order of the supplier.
+     */
+    private void sendOrder(SupplierOrder order) {
+        Intent emailIntent = new Intent(Intent.ACTION_SENDTO, Uri.fromParts(
+                "mailto", order.getSupplierEmail(), null));
+
+        // Adds the subject line
+        String subject = order.getLineCount() == 1
+                ? getString(R.string.order_subject_single, order.getDescription(0))
+                : getString(R.string.order_subject, order.getLineCount());
+        emailIntent.putExtra(Intent.EXTRA_SUBJECT, subject);
+
+        // Adds a line per item
+        StringBuilder body = new StringBuilder(getString(R.string.order_intro)).append('\n');
+        for(int line = 0; line < order.getLineCount(); line++) {
+            body.append('\n').append(getString(R.string.order_line,
+                    order.getOrderQuantity(line), order.getDescription(line)));
+        }
+        emailIntent.putExtra(Intent.EXTRA_TEXT, body.toString());
+
+        if (emailIntent.resolveActivity(getPackageManager()) != null) {
+            startActivity(emailIntent);
+        }
+    }
+
+    /**
+     * This method returns the content URI of the current item.
+     *
+     * @return The URI.
+     */
+    private Uri getItemUri() {
+        return ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, itemId);
+    }
+
     /**
      * This method creates and shows an AlertDialog to prompt the
      * user to confirm deletion.
@@ -255,12 +390,11 @@ public class DetailsActivity extends AppCompatActivity {
         alertDialogBuilder.setPositiveButton(R.string.delete_button_label, new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                // Delete item from database
-                dbHelper.delete(currentItem);
+                // Delete item from database, the list refreshes when notified
+                writer.delete(getItemUri(), null);
 
                 // Go back to the MainActivity
-                Intent intent = new Intent(DetailsActivity.this, MainActivity.class);
-                startActivity(intent);
+                finish();
             }
         });
 
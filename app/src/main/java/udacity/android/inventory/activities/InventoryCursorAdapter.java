@@ -1,152 +1,427 @@
 package udacity.android.inventory.activities;
 
-import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.support.v4.util.LongSparseArray;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
-import android.widget.CursorAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.util.Locale;
-
 import udacity.android.inventory.R;
-import udacity.android.inventory.data.InventoryContract;
+import udacity.android.inventory.data.ColumnarInventory;
+import udacity.android.inventory.image.ImageLoader;
 import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.Money;
 
 /**
- * This is a custom CursorAdapter class to facilitate the display of
- * inventory items. This class makes use of the ViewHolder pattern to
- * recycle the views to minimize calls to the findViewById method.
+ * This is a custom RecyclerView adapter over a cursor to facilitate the
+ * display of inventory items. Each new cursor comes with a snapshot of
+ * its rows and the changes from the previous snapshot, computed on the
+ * loader thread, so only the changed rows are bound again and the scroll
+ * position is kept. Items have stable ids from the _ID column.
+ * Thumbnails are loaded asynchronously; each load is bound to the
+ * ViewHolder of its row and is cancelled when the row is recycled.
+ * Binding a row does not allocate: the rows are bound from the
+ * snapshot, which the loader has already read, so the cursor is not
+ * read again; the numbers are formatted into buffers owned by the
+ * ViewHolder, the click listeners are shared and read the row from the
+ * view tag, and each ViewHolder reuses one thumbnail request for every
+ * image.
+ * Instead of a cursor, the adapter can show a ColumnarInventory, which
+ * holds every row in memory and is patched in place by the list.
  *
  * @author Joseph Stewart
- * @version 2.2
+ * @version 2.4
  *
  */
-public class InventoryCursorAdapter extends CursorAdapter {
+public class InventoryCursorAdapter extends RecyclerView.Adapter<InventoryCursorAdapter.ViewHolder> {
+
+    // The number of rows past the visible rows whose thumbnails are prefetched
+    private static final int PREFETCH_ROWS = 10;
+
+    // The size of the number buffers after the labels
+    private static final int NUMBER_BUFFER_SIZE = 24;
 
     // The context of the MainActivity
     private final MainActivity activity;
 
-    // The ViewHolder to recycle the views
-    private ViewHolder viewHolder;
+    // The current cursor and the snapshot of its rows
+    private PagedCursor cursor;
+    private InventorySnapshot snapshot = InventorySnapshot.EMPTY;
+
+    // The rows in memory, shown instead of the cursor when set
+    private ColumnarInventory columns;
+
+    // Quantities changed since the cursor was loaded, by item id
+    private final LongSparseArray<Integer> quantityOverrides = new LongSparseArray<>();
+
+    // Loads the thumbnails
+    private final ImageLoader imageLoader;
+    private final int thumbnailSize;
+
+    // The position up to which thumbnails have been prefetched
+    private int prefetchedUntil;
+
+    // The labels in front of the price and quantity
+    private final char[] priceLabel;
+    private final char[] quantityLabel;
+
+    // Sells one of the item of the row the clicked button belongs to
+    private final View.OnClickListener saleClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ViewHolder holder = (ViewHolder) v.getTag();
+            activity.saleButtonClicked(holder.id, holder.quantity);
+        }
+    };
+
+    // Navigates to the details of the item of the clicked row
+    private final View.OnClickListener rowClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ViewHolder holder = (ViewHolder) v.getTag();
+            goToDetailsActivity(holder.id);
+        }
+    };
 
     /**
      * This class holds references to the displayed views to minimize
      * calls to the findViewById method for efficiency.
      */
-    private static class ViewHolder {
+    static class ViewHolder extends RecyclerView.ViewHolder implements ImageLoader.Callback {
         // The text views for display
         TextView descriptionTextView;
         TextView priceTextView;
         TextView quantityTextView;
+        ImageView thumbnailImageView;
+        Button saleButton;
+
+        // The item bound to the row and its displayed quantity
+        long id;
+        int quantity;
+
+        // The text shown by the row, reused for every bind
+        char[] price;
+        char[] quantityText;
+
+        // The image the thumbnail shows or is loading, and the request reused for every image
+        String thumbnailUri;
+        ImageLoader.Request thumbnailRequest;
+
+        ViewHolder(View view) {
+            super(view);
+        }
+
+        /**
+         * This method shows a loaded thumbnail. The request is cancelled
+         * when the row is bound to another image, so the thumbnail
+         * always belongs to the current image.
+         *
+         * @param bitmap The thumbnail, or null if it could not be loaded.
+         */
+        @Override
+        public void onImageLoaded(Bitmap bitmap) {
+            thumbnailImageView.setImageBitmap(bitmap);
+        }
     }
 
-    public InventoryCursorAdapter(MainActivity context, Cursor c) {
-        super(context, c, 0);
+    public InventoryCursorAdapter(MainActivity context) {
         activity = context;
+        imageLoader = ImageLoader.getInstance(context);
+        thumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_dimen);
+
+        priceLabel = (context.getString(R.string.item_price) + ": "
+                + context.getString(R.string.dollar_symbol)).toCharArray();
+        quantityLabel = (context.getString(R.string.item_quantity) + ": ").toCharArray();
+
+        setHasStableIds(true);
+    }
+
+    /**
+     * This method records the new quantity of an item so its row can be
+     * bound again without querying the database. The recorded values are
+     * dropped when a new cursor is set. The columnar inventory is
+     * patched instead.
+     *
+     * @param id The id of the item.
+     * @param quantity The new quantity.
+     */
+    public void updateQuantity(long id, int quantity) {
+        if(columns != null) {
+            columns.setQuantity(id, quantity);
+        } else {
+            quantityOverrides.put(id, quantity);
+        }
+    }
+
+    /**
+     * This method adds a newly inserted item to the columnar inventory
+     * and shows its row. A cursor is loaded again by its loader instead,
+     * so nothing is done without a columnar inventory.
+     *
+     * @param id The id of the new item.
+     * @param item The item.
+     */
+    public void insertItem(long id, Item item) {
+        if(columns != null) {
+            int position = columns.put(id, item.getDescription(), item.getPriceCents(), item.getQuantity(),
+                    item.getImage());
+            notifyItemInserted(position);
+        }
+    }
+
+    /**
+     * This method binds the row of an item again if it is in the list.
+     *
+     * @param id The id of the item.
+     */
+    public void refreshItem(long id) {
+        int position = columns != null ? columns.positionOf(id) : snapshot.positionOf(id);
+        if(position != -1) {
+            notifyItemChanged(position);
+        }
+    }
+
+    /**
+     * This method shows a columnar inventory instead of the cursor, or
+     * the cursor again if it is null. Every row is bound again.
+     *
+     * @param newColumns The inventory, may be null.
+     */
+    public void setColumns(ColumnarInventory newColumns) {
+        columns = newColumns;
+        quantityOverrides.clear();
+        prefetchedUntil = 0;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * This method sets a new cursor and drops the recorded quantities,
+     * since the new cursor already holds the current values. If the
+     * changes of the cursor were computed against the snapshot shown
+     * now, only those changes are dispatched; otherwise every row is
+     * bound again. The loader owns the pages, so the old cursor is not
+     * closed.
+     *
+     * @param newCursor The new cursor, may be null.
+     */
+    public void swapCursor(PagedCursor newCursor) {
+        if(newCursor == cursor) {
+            return;
+        }
+
+        InventorySnapshot previous = snapshot;
+        cursor = newCursor;
+        snapshot = newCursor == null ? InventorySnapshot.EMPTY : newCursor.getSnapshot();
+        quantityOverrides.clear();
+        prefetchedUntil = 0;
+
+        if(newCursor != null && newCursor.getDiff() != null && newCursor.getDiffBase() == previous) {
+            newCursor.getDiff().dispatchUpdatesTo(this);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * This method returns the number of rows.
+     *
+     * @return The number of rows.
+     */
+    @Override
+    public int getItemCount() {
+        return columns != null ? columns.size() : snapshot.count;
+    }
+
+    /**
+     * This method returns the stable id of a row.
+     *
+     * @param position The position of the row.
+     * @return The _ID of the item.
+     */
+    @Override
+    public long getItemId(int position) {
+        return columns != null ? columns.getId(position) : snapshot.ids[position];
+    }
+
+    /**
+     * This method cancels the thumbnail load of a row that scrolled off
+     * the screen, so the decode threads only work on visible rows.
+     *
+     * @param holder The recycled row.
+     */
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        cancelThumbnail(holder);
+        holder.thumbnailUri = null;
+    }
+
+    /**
+     * This method starts low priority thumbnail loads for the rows after
+     * the visible rows, so they are cached when the user scrolls to them.
+     *
+     * @param lastVisiblePosition The position of the last visible row.
+     */
+    public void prefetchThumbnails(int lastVisiblePosition) {
+        int from = Math.max(prefetchedUntil, lastVisiblePosition + 1);
+        int to = Math.min(getItemCount(), lastVisiblePosition + 1 + PREFETCH_ROWS);
+
+        for(int position = from; position < to; position++) {
+            String image = columns != null ? columns.getImage(position) : snapshot.images[position];
+            if(image != null && image.length() > 0) {
+                imageLoader.loadThumbnail(Uri.parse(image), thumbnailSize, ImageLoader.PRIORITY_PREFETCH, null);
+            }
+        }
+
+        prefetchedUntil = Math.max(prefetchedUntil, to);
     }
 
     /**
      * This method assigns resource id's to the relevant fields in the ViewHolder
-     * and sets the ViewHolder as a tag for the view to recycle.
+     * and sets the ViewHolder as a tag for the view and its sale button. The
+     * labels are copied into the text buffers once here.
      *
-     * @param context The context.
-     * @param cursor The cursor.
      * @param viewGroup The view group.
-     * @return The view.
+     * @param viewType The view type, there is only one.
+     * @return The ViewHolder.
      */
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup viewGroup) {
-        View view = LayoutInflater.from(context).inflate(R.layout.list_item, viewGroup, false);
-        viewHolder = new ViewHolder();
+    public ViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
+        View view = LayoutInflater.from(viewGroup.getContext()).inflate(R.layout.list_item, viewGroup, false);
+        ViewHolder viewHolder = new ViewHolder(view);
         viewHolder.descriptionTextView = (TextView) view.findViewById(R.id.description_text_view);
         viewHolder.priceTextView = (TextView) view.findViewById(R.id.price_text_view);
         viewHolder.quantityTextView = (TextView) view.findViewById(R.id.quantity_text_view);
+        viewHolder.thumbnailImageView = (ImageView) view.findViewById(R.id.thumbnail_image_view);
+        viewHolder.saleButton = (Button) view.findViewById(R.id.sale_button);
+        viewHolder.thumbnailRequest = imageLoader.newRequest(viewHolder);
+
+        viewHolder.price = new char[priceLabel.length + NUMBER_BUFFER_SIZE];
+        System.arraycopy(priceLabel, 0, viewHolder.price, 0, priceLabel.length);
+        viewHolder.quantityText = new char[quantityLabel.length + NUMBER_BUFFER_SIZE];
+        System.arraycopy(quantityLabel, 0, viewHolder.quantityText, 0, quantityLabel.length);
+
+        // The listeners are shared by all rows and find the row by the tag
         view.setTag(viewHolder);
-        return view;
+        view.setOnClickListener(rowClickListener);
+        viewHolder.saleButton.setTag(viewHolder);
+        viewHolder.saleButton.setOnClickListener(saleClickListener);
+        return viewHolder;
     }
 
     /**
-     * This method takes action relevant to the current view in the adapter.
-     * It sets the display values and action listener for the sale button and
-     * view.
+     * This method sets the display values of a row. The row is read from
+     * the columnar inventory or from the snapshot of the cursor, which
+     * both hold the descriptions and images as Strings, so no objects are
+     * allocated once the number buffers are large enough.
      *
-     * @param view The current view.
-     * @param context The context.
-     * @param cursor The current cursor.
+     * @param viewHolder The ViewHolder of the row.
+     * @param position The position of the row.
      */
     @Override
-    public void bindView(View view, final Context context, final Cursor cursor) {
-        // Get the viewHolder
-        viewHolder = (ViewHolder) view.getTag();
+    public void onBindViewHolder(ViewHolder viewHolder, int position) {
+        if(columns != null) {
+            // TextView for the description
+            viewHolder.descriptionTextView.setText(columns.getDescription(position));
+
+            bindNumbers(viewHolder, columns.getId(position), columns.getPriceCents(position),
+                    columns.getQuantity(position));
 
-        final Item currentItem = constructItem(cursor);
+            // ImageView for the thumbnail
+            bindThumbnail(viewHolder, columns.getImage(position));
+            return;
+        }
 
-        // Set the display values
         // TextView for the description
-        viewHolder.descriptionTextView.setText(currentItem.getDescription());
+        viewHolder.descriptionTextView.setText(snapshot.descriptions[position]);
+
+        bindNumbers(viewHolder, snapshot.ids[position], snapshot.priceCents[position],
+                snapshot.quantities[position]);
+
+        // ImageView for the thumbnail
+        bindThumbnail(viewHolder, snapshot.images[position]);
+    }
+
+    /**
+     * This method sets the item of a row and shows its price and its
+     * quantity, including changes not yet in the rows.
+     *
+     * @param viewHolder The ViewHolder of the row.
+     * @param id The id of the item.
+     * @param priceCents The price in cents.
+     * @param quantity The quantity in the rows.
+     */
+    private void bindNumbers(ViewHolder viewHolder, long id, long priceCents, int quantity) {
+        Integer quantityOverride = quantityOverrides.get(id);
+        if(quantityOverride != null) {
+            quantity = quantityOverride;
+        }
+
+        // Show the sales that are still waiting to be written
+        quantity += activity.pendingQuantityDelta(id);
+
+        viewHolder.id = id;
+        viewHolder.quantity = quantity;
 
         // TextView for the price
-        String priceLabel = activity.getString(R.string.item_price) + ": " + activity.getString(R.string.dollar_symbol);
-        String formatPrice = String.format(Locale.US, "%.2f", currentItem.getPrice());
-        viewHolder.priceTextView.setText(priceLabel + formatPrice);
+        int priceLength = Money.format(priceCents, viewHolder.price, priceLabel.length);
+        viewHolder.priceTextView.setText(viewHolder.price, 0, priceLength);
 
         // TextView for the quantity
-        String quantity = activity.getString(R.string.item_quantity) + ": "
-                + String.valueOf(currentItem.getQuantity());
-        viewHolder.quantityTextView.setText(quantity);
-
-        // Set the action for clicking the sale button
-        Button saleButton = (Button) view.findViewById(R.id.sale_button);
-        saleButton.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                activity.saleButtonClicked(currentItem);
-            }
-        });
+        int quantityLength = Money.formatInteger(quantity, viewHolder.quantityText, quantityLabel.length);
+        viewHolder.quantityTextView.setText(viewHolder.quantityText, 0, quantityLength);
+    }
 
-        // Navigate to item's detail page when clicked
-        view.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                goToDetailsActivity(currentItem);
-            }
-        });
+    /**
+     * This method shows the thumbnail of an image in a row. A load that
+     * is still pending for a different image is cancelled first.
+     *
+     * @param holder The ViewHolder of the row.
+     * @param image The URI of the image, may be null.
+     */
+    private void bindThumbnail(ViewHolder holder, String image) {
+        // The row already shows or loads this image
+        if(image == null ? holder.thumbnailUri == null : image.equals(holder.thumbnailUri)) {
+            return;
+        }
+
+        holder.thumbnailUri = image;
+        holder.thumbnailImageView.setImageDrawable(null);
+
+        if(image == null || image.length() == 0) {
+            cancelThumbnail(holder);
+            return;
+        }
+
+        // Cancels the previous image, a cached thumbnail is shown right away
+        imageLoader.loadThumbnail(holder.thumbnailRequest, image, thumbnailSize, ImageLoader.PRIORITY_VISIBLE);
     }
 
     /**
-     * This method navigates to the DetailsActivity for the selected
-     * Item object. Item implements Parcelable so it can be transported
-     * via putExtra.
+     * This method cancels the pending thumbnail load of a row.
      *
-     * @param currentItem The selected Item.
+     * @param holder The ViewHolder of the row.
      */
-    private void goToDetailsActivity(Item currentItem) {
-        Intent intent = new Intent(activity, DetailsActivity.class);
-        intent.putExtra("Item", currentItem);
-        activity.startActivity(intent);
+    private void cancelThumbnail(ViewHolder holder) {
+        holder.thumbnailRequest.cancel();
     }
 
     /**
-     * This method constructs an Item object from a cursor.
+     * This method navigates to the DetailsActivity for the selected
+     * item. Only the id is passed, the activity reads the shared
+     * instance of the item from the database helper.
      *
-     * @param cursor The cursor of column data.
-     * @return The constructed Item object.
-     */
-    private Item constructItem(Cursor cursor) {
-        // Obtain values from the cursor
-        long id = cursor.getLong(cursor.getColumnIndex(InventoryContract.InventoryEntry._ID));
-        String description = cursor.getString(cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_DESCRIPTION));
-        double price = cursor.getDouble(cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_PRICE));
-        int quantity = cursor.getInt(cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_QUANTITY));
-        String email = cursor.getString(cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_EMAIL));
-        String image = cursor.getString(cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_IMAGE));
-
-        // Construct and return object from values
-        return new Item(id, description, price, quantity, email, image);
+     * @param id The id of the selected item.
+     */
+    private void goToDetailsActivity(long id) {
+        Intent intent = new Intent(activity, DetailsActivity.class);
+        intent.putExtra(DetailsActivity.EXTRA_ITEM_ID, id);
+        activity.startActivity(intent);
     }
 
 }
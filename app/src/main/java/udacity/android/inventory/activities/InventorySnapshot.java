@@ -0,0 +1,162 @@
+package udacity.android.inventory.activities;
+
+import android.database.Cursor;
+import android.support.v7.util.DiffUtil;
+
+import java.util.List;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+
+/**
+ * This class is an immutable copy of the displayed columns of the
+ * rows of the inventory list, in list order. Snapshots are read on
+ * the loader thread and compared there, so the list only receives
+ * the changed rows. The list binds its rows from the snapshot, so the
+ * pages are only read once.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+final class InventorySnapshot {
+
+    /** The snapshot of an empty list. */
+    static final InventorySnapshot EMPTY = new InventorySnapshot(0);
+
+    /** The number of rows. */
+    final int count;
+
+    /** The displayed columns, indexed by position. The ids are ascending. */
+    final long[] ids;
+    final String[] descriptions;
+    final long[] priceCents;
+    final int[] quantities;
+    final String[] images;
+
+    /**
+     * Constructor.
+     *
+     * @param count The number of rows.
+     */
+    private InventorySnapshot(int count) {
+        this.count = count;
+        ids = new long[count];
+        descriptions = new String[count];
+        priceCents = new long[count];
+        quantities = new int[count];
+        images = new String[count];
+    }
+
+    /**
+     * This method reads every row of a page. The position of the page
+     * is moved back before the first row afterwards.
+     *
+     * @param page A cursor over the list projection.
+     * @return The snapshot of the page.
+     */
+    static InventorySnapshot read(Cursor page) {
+        InventorySnapshot snapshot = new InventorySnapshot(page.getCount());
+
+        int idIndex = page.getColumnIndexOrThrow(InventoryEntry._ID);
+        int descriptionIndex = page.getColumnIndexOrThrow(InventoryEntry.COLUMN_DESCRIPTION);
+        int priceIndex = page.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRICE_CENTS);
+        int quantityIndex = page.getColumnIndexOrThrow(InventoryEntry.COLUMN_QUANTITY);
+        int imageIndex = page.getColumnIndexOrThrow(InventoryEntry.COLUMN_IMAGE);
+
+        for(int i = 0; page.moveToPosition(i); i++) {
+            snapshot.ids[i] = page.getLong(idIndex);
+            snapshot.descriptions[i] = page.getString(descriptionIndex);
+            snapshot.priceCents[i] = page.getLong(priceIndex);
+            snapshot.quantities[i] = page.getInt(quantityIndex);
+            snapshot.images[i] = page.getString(imageIndex);
+        }
+        page.moveToPosition(-1);
+
+        return snapshot;
+    }
+
+    /**
+     * This method joins the snapshots of consecutive pages.
+     *
+     * @param parts The snapshots of the pages, in list order.
+     * @return The snapshot of all pages.
+     */
+    static InventorySnapshot concat(List<InventorySnapshot> parts) {
+        int count = 0;
+        for(InventorySnapshot part : parts) {
+            count += part.count;
+        }
+
+        InventorySnapshot snapshot = new InventorySnapshot(count);
+        int offset = 0;
+        for(InventorySnapshot part : parts) {
+            System.arraycopy(part.ids, 0, snapshot.ids, offset, part.count);
+            System.arraycopy(part.descriptions, 0, snapshot.descriptions, offset, part.count);
+            System.arraycopy(part.priceCents, 0, snapshot.priceCents, offset, part.count);
+            System.arraycopy(part.quantities, 0, snapshot.quantities, offset, part.count);
+            System.arraycopy(part.images, 0, snapshot.images, offset, part.count);
+            offset += part.count;
+        }
+        return snapshot;
+    }
+
+    /**
+     * This method returns the position of an item.
+     *
+     * @param id The id of the item.
+     * @return The position, or -1 if the item is not in the snapshot.
+     */
+    int positionOf(long id) {
+        int low = 0;
+        int high = count - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            if(ids[middle] < id) {
+                low = middle + 1;
+            } else if(ids[middle] > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This method compares this snapshot to the one shown before it.
+     * Rows keep their relative order, so moves are not detected. It is
+     * run on a background thread.
+     *
+     * @param previous The previous snapshot.
+     * @return The changes from the previous snapshot to this one.
+     */
+    DiffUtil.DiffResult diffFrom(final InventorySnapshot previous) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return previous.count;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return count;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return previous.ids[oldPosition] == ids[newPosition];
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return previous.quantities[oldPosition] == quantities[newPosition]
+                        && previous.priceCents[oldPosition] == priceCents[newPosition]
+                        && equals(previous.descriptions[oldPosition], descriptions[newPosition])
+                        && equals(previous.images[oldPosition], images[newPosition]);
+            }
+
+            private boolean equals(String a, String b) {
+                return a == null ? b == null : a.equals(b);
+            }
+        }, false);
+    }
+}
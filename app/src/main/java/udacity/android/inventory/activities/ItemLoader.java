@@ -0,0 +1,114 @@
+package udacity.android.inventory.activities;
+
+import android.content.AsyncTaskLoader;
+import android.content.ContentUris;
+import android.content.Context;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.model.Item;
+
+/**
+ * This class is a Loader that reads a single item on a background
+ * thread. The item usually comes from the item cache of the database
+ * helper, but a miss reads the row. The loader observes the URI of the
+ * item and reloads when it changes, and delivers null once the item
+ * no longer exists.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class ItemLoader extends AsyncTaskLoader<Item> {
+
+    /** Database helper object. */
+    private final InventoryDbHelper dbHelper;
+
+    /** The id of the item. */
+    private final long id;
+
+    /** The last delivered result, and whether there is one. */
+    private Item item;
+    private boolean loaded;
+
+    /** Reloads the item when its content URI changes. */
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+    private boolean observerRegistered;
+
+    /**
+     * Constructor.
+     *
+     * @param context The context.
+     * @param dbHelper A database helper object.
+     * @param id The id of the item.
+     */
+    public ItemLoader(Context context, InventoryDbHelper dbHelper, long id) {
+        super(context);
+        this.dbHelper = dbHelper;
+        this.id = id;
+    }
+
+    /**
+     * This method delivers the current result if there is one and
+     * forces a load if there is not or if the item has changed.
+     */
+    @Override
+    protected void onStartLoading() {
+        if(!observerRegistered) {
+            getContext().getContentResolver().registerContentObserver(
+                    ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id), false, observer);
+            observerRegistered = true;
+        }
+
+        if(loaded) {
+            deliverResult(item);
+        }
+
+        if(takeContentChanged() || !loaded) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * This method reads the item on a background thread.
+     *
+     * @return The item, or null if it does not exist.
+     */
+    @Override
+    public Item loadInBackground() {
+        return dbHelper.getItem(id);
+    }
+
+    /**
+     * This method keeps the result so it can be delivered again.
+     *
+     * @param data The result to deliver.
+     */
+    @Override
+    public void deliverResult(Item data) {
+        if(isReset()) {
+            return;
+        }
+
+        item = data;
+        loaded = true;
+        if(isStarted()) {
+            super.deliverResult(data);
+        }
+    }
+
+    /**
+     * This method stops observing the item when the loader is reset.
+     */
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLoad();
+
+        if(observerRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(observer);
+            observerRegistered = false;
+        }
+        item = null;
+        loaded = false;
+    }
+}
@@ -1,50 +1,105 @@
 package udacity.android.inventory.activities;
 
 import android.app.LoaderManager;
+import android.content.ContentUris;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
 import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
-import android.util.Log;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.File;
+
 import udacity.android.inventory.R;
+import udacity.android.inventory.data.ColumnarInventory;
+import udacity.android.inventory.data.CsvTransfer;
+import udacity.android.inventory.data.InventoryCsv;
 import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.data.InventoryWriter;
+import udacity.android.inventory.data.QuantityWriteQueue;
+import udacity.android.inventory.model.InventorySummary;
 import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.ItemValidator;
+import udacity.android.inventory.model.Money;
 
 /**
  * This is the MainActivity for the application. It loads the inventory
  * items from the database on a background thread and displays them
- * in a ListView.
+ * in a RecyclerView, below a header with totals over the inventory.
+ * Its menu imports items from and exports them to CSV files.
  *
  * @author Joseph Stewart
- * @version 2.2
+ * @version 2.5
  */
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor>,
+        QuantityWriteQueue.Listener, CsvTransfer.Listener {
 
     /** Log tag to identify class in error logs. */
     public static final String LOG_TAG = MainActivity.class.getSimpleName();
 
-    /** The ListView to display the inventory. */
-    private ListView listView;
+    /** The ids of the inventory loader and the summary loader. */
+    private static final int INVENTORY_LOADER_ID = 0;
+    private static final int SUMMARY_LOADER_ID = 1;
+
+    /** The number of rows from the end of the list at which the next page is loaded. */
+    private static final int PREFETCH_DISTANCE = 10;
+
+    /** The request codes of the documents picked for a CSV import and export. */
+    private static final int IMPORT_REQUEST_CODE = 1;
+    private static final int EXPORT_REQUEST_CODE = 2;
+
+    /** The file name suggested for a CSV export. */
+    private static final String EXPORT_FILE_NAME = "inventory.csv";
+
+    /** The RecyclerView to display the inventory. */
+    private RecyclerView listView;
+
+    /** Lays out the rows of the list. */
+    private LinearLayoutManager layoutManager;
 
     /** The TextView for when there is no data to display. */
     private TextView emptyStateTextView;
 
+    /** The TextView for the totals over the inventory. */
+    private TextView summaryTextView;
+
     /** Helper class for database interaction. */
     private InventoryDbHelper dbHelper;
 
     /** The cursor adapter */
     private InventoryCursorAdapter adapter;
 
+    /** Runs database writes on a background thread. */
+    private InventoryWriter writer;
+
+    /** Coalesces sales and writes them on the writer thread. */
+    private QuantityWriteQueue writeQueue;
+
+    /** Checks the values entered for a new item. */
+    private final ItemValidator validator = new ItemValidator();
+
+    /** Whether the list shows the inventory in memory instead of a cursor. */
+    private boolean columnarList;
+
+    /** The running CSV import or export, kept across configuration changes. */
+    private CsvTransfer transfer;
+
+    /** Shows the progress of the transfer. */
+    private AlertDialog transferDialog;
+
     /**
      * This method is called when the activity is created.
      *
@@ -56,15 +111,44 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         setContentView(R.layout.activity_main);
 
         // Provides access to the database
-        dbHelper = new InventoryDbHelper(this);
-
-        // Set the empty state view if there is no data to display
-        listView = (ListView) findViewById(R.id.list);
+        dbHelper = InventoryDbHelper.getInstance(this);
+        writer = InventoryWriter.getInstance(this);
+        writeQueue = new QuantityWriteQueue(writer, this);
+
+        // Set up the list, the empty state view is shown when there is no data to display
+        listView = (RecyclerView) findViewById(R.id.list);
+        layoutManager = new LinearLayoutManager(this);
+        listView.setLayoutManager(layoutManager);
         emptyStateTextView = (TextView) findViewById(R.id.empty_view);
-        listView.setEmptyView(emptyStateTextView);
+
+        // Load the next page when the user scrolls close to the end of the list
+        listView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int lastVisibleItem = layoutManager.findLastVisibleItemPosition();
+                int totalItemCount = layoutManager.getItemCount();
+                if(totalItemCount > 0 && lastVisibleItem >= totalItemCount - 1 - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+
+                // Warm the thumbnails of the rows below the screen
+                if(adapter != null && lastVisibleItem != RecyclerView.NO_POSITION) {
+                    adapter.prefetchThumbnails(lastVisibleItem);
+                }
+            }
+        });
 
         // Initializes the loader manager.
-        getLoaderManager().initLoader(0, null, this);
+        columnarList = getResources().getBoolean(R.bool.columnar_inventory_list);
+        if(columnarList) {
+            getLoaderManager().initLoader(INVENTORY_LOADER_ID, null, columnarCallbacks);
+        } else {
+            getLoaderManager().initLoader(INVENTORY_LOADER_ID, null, this);
+        }
+
+        // Shows the totals, reloaded whenever the inventory changes
+        summaryTextView = (TextView) findViewById(R.id.summary_text_view);
+        getLoaderManager().initLoader(SUMMARY_LOADER_ID, null, summaryCallbacks);
 
         // Declares and initializes add button and sets OnClickListener
         Button addButton = (Button) findViewById(R.id.add_button);
@@ -74,6 +158,233 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
                 addNewItem();
             }
         });
+
+        // Follow a transfer started before a configuration change
+        transfer = (CsvTransfer) getLastCustomNonConfigurationInstance();
+        if(transfer != null) {
+            transfer.setListener(this);
+        }
+    }
+
+    /**
+     * This method writes the queued sales when the activity is paused.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        writeQueue.drain();
+    }
+
+    /**
+     * This method writes the queued sales when the activity is destroyed.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        writeQueue.drain();
+
+        // A transfer continues through a configuration change and stops when
+        // the activity is left
+        if(transfer != null) {
+            transfer.setListener(null);
+            if(isFinishing()) {
+                transfer.cancel();
+            }
+        }
+        dismissTransferDialog();
+    }
+
+    /**
+     * This method keeps the running transfer for the next instance of
+     * the activity.
+     *
+     * @return The transfer, or null if there is none.
+     */
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return transfer;
+    }
+
+    /**
+     * This method adds the CSV import and export to the menu.
+     *
+     * @param menu The options menu.
+     * @return True to show the menu.
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        return true;
+    }
+
+    /**
+     * This method starts the picked CSV import or export, unless one is
+     * already running.
+     *
+     * @param item The selected menu item.
+     * @return True if the item was handled.
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch(item.getItemId()) {
+            case R.id.action_import_csv:
+                if(transfer == null) {
+                    pickImportDocument();
+                }
+                return true;
+            case R.id.action_export_csv:
+                if(transfer == null) {
+                    pickExportDocument();
+                }
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    /**
+     * This method lets the user pick the CSV document to import.
+     */
+    private void pickImportDocument() {
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+
+        if(intent.resolveActivity(getPackageManager()) != null) {
+            startActivityForResult(intent, IMPORT_REQUEST_CODE);
+        }
+    }
+
+    /**
+     * This method lets the user pick the document to export to. Before
+     * API 19 there is no document picker, so the export is written to
+     * the external files of the app.
+     */
+    private void pickExportDocument() {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("text/csv");
+            intent.putExtra(Intent.EXTRA_TITLE, EXPORT_FILE_NAME);
+
+            if(intent.resolveActivity(getPackageManager()) != null) {
+                startActivityForResult(intent, EXPORT_REQUEST_CODE);
+            }
+            return;
+        }
+
+        File directory = getExternalFilesDir(null);
+        if(directory == null) {
+            Toast.makeText(getApplicationContext(), R.string.transfer_failed, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        transfer = CsvTransfer.startExport(this, Uri.fromFile(new File(directory, EXPORT_FILE_NAME)), this);
+        onTransferProgress(transfer, 0);
+    }
+
+    /**
+     * This method starts the transfer of the picked document.
+     *
+     * @param requestCode The request code of the picker.
+     * @param resultCode The result of the picker.
+     * @param data The picked document.
+     */
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+
+        if(resultCode != RESULT_OK || data == null || data.getData() == null || transfer != null) {
+            return;
+        }
+
+        if(requestCode == IMPORT_REQUEST_CODE) {
+            transfer = CsvTransfer.startImport(this, data.getData(), this);
+        } else if(requestCode == EXPORT_REQUEST_CODE) {
+            transfer = CsvTransfer.startExport(this, data.getData(), this);
+        } else {
+            return;
+        }
+        onTransferProgress(transfer, 0);
+    }
+
+    /**
+     * This method shows the progress of the transfer in a dialog which
+     * can cancel it.
+     *
+     * @param transfer The transfer.
+     * @param rows The number of rows transferred so far.
+     */
+    @Override
+    public void onTransferProgress(final CsvTransfer transfer, long rows) {
+        if(transfer.isCancelled()) {
+            return;
+        }
+
+        if(transferDialog == null) {
+            transferDialog = new AlertDialog.Builder(this)
+                    .setTitle(transfer.isImport() ? R.string.import_title : R.string.export_title)
+                    .setMessage(getString(R.string.transfer_progress, rows))
+                    .setCancelable(false)
+                    .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            transfer.cancel();
+                            transferDialog = null;
+                        }
+                    })
+                    .show();
+        } else {
+            transferDialog.setMessage(getString(R.string.transfer_progress, rows));
+        }
+    }
+
+    /**
+     * This method reports the result of the transfer.
+     *
+     * @param transfer The transfer.
+     * @param result The result, or null if the file could not be read or written.
+     */
+    @Override
+    public void onTransferComplete(CsvTransfer transfer, InventoryCsv.Result result) {
+        this.transfer = null;
+        dismissTransferDialog();
+
+        if(result == null) {
+            Toast.makeText(getApplicationContext(), R.string.transfer_failed, Toast.LENGTH_LONG).show();
+        } else if(result.isCancelled()) {
+            Toast.makeText(getApplicationContext(), getString(R.string.transfer_cancelled, result.getRows()),
+                    Toast.LENGTH_LONG).show();
+        } else if(transfer.isImport()) {
+            Toast.makeText(getApplicationContext(), getString(R.string.import_result, result.getRows()),
+                    Toast.LENGTH_LONG).show();
+        } else {
+            Toast.makeText(getApplicationContext(), getString(R.string.export_result, result.getRows()),
+                    Toast.LENGTH_LONG).show();
+        }
+
+        if(result != null && result.getRejected() > 0) {
+            Toast.makeText(getApplicationContext(), getString(R.string.import_rejected,
+                    result.getRejected(), result.getFirstRejectedLine()), Toast.LENGTH_LONG).show();
+        }
+
+        // The columnar list ignores change notifications while it is shown
+        if(transfer.isImport() && columnarList) {
+            Loader<?> loader = getLoaderManager().getLoader(INVENTORY_LOADER_ID);
+            if(loader != null) {
+                loader.forceLoad();
+            }
+        }
+    }
+
+    /**
+     * This method closes the transfer progress dialog if it is shown.
+     */
+    private void dismissTransferDialog() {
+        if(transferDialog != null) {
+            transferDialog.dismiss();
+            transferDialog = null;
+        }
     }
 
     /**
@@ -101,12 +412,6 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
                     @Override
                     public void onClick(View view) {
 
-                        // The state of inputs
-                        boolean descriptionValid = false;
-                        boolean priceValid = false;
-                        boolean quantityValid = false;
-                        boolean emailValid = false;
-
                         // Get the edit text fields
                         EditText descText = (EditText) alertDialog.findViewById(R.id.description_edit_text);
                         EditText priceText = (EditText) alertDialog.findViewById(R.id.price_edit_text);
@@ -114,89 +419,30 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
                         EditText emailText = (EditText) alertDialog.findViewById(R.id.email_edit_text);
                         EditText imageText = (EditText) alertDialog.findViewById(R.id.image_edit_text);
 
-                        // Obtain the entered text
-                        String description = descText.getText().toString().trim();
-                        String priceString = priceText.getText().toString().trim();
-                        String quantityString = quantityText.getText().toString().trim();
-                        String email = emailText.getText().toString().trim();
-                        String image = imageText.getText().toString().trim();
-
-                        // Verify the form is not blank
-                        if(description.length() == 0 && priceString.length() == 0
-                                && quantityString.length() == 0 && email.length() == 0
-                                && image.length() == 0) {
-
-                            // Notify user that blank form is unacceptable
-                            Toast.makeText(getApplicationContext(), "Form Cannot Be Blank.", Toast.LENGTH_SHORT).show();
+                        // Validate the entered text
+                        int errors = validator.validate(descText.getText().toString(),
+                                priceText.getText().toString(), quantityText.getText().toString(),
+                                emailText.getText().toString(), imageText.getText().toString());
+
+                        if(errors == ItemValidator.VALID) {
+                            // Add item to database, the loader refreshes the view when notified
+                            // and the columnar list adds the row itself
+                            final Item item = validator.getItem();
+                            writer.insert(InventoryDbHelper.toContentValues(item), columnarList
+                                    ? new InventoryWriter.Callback<Uri>() {
+                                        @Override
+                                        public void onComplete(Uri uri) {
+                                            if(uri != null && adapter != null) {
+                                                adapter.insertItem(ContentUris.parseId(uri), item);
+                                                updateEmptyView();
+                                            }
+                                        }
+                                    } : null);
+
+                            //Dismiss once inputs are validated
+                            alertDialog.dismiss();
                         } else {
-                            // Price and Quantity can be zero if information about a new product is
-                            // not determined yet. Values set to zero if edit texts left blank
-                            if(priceString.equals("")) {
-                                priceString = "0";
-                            }
-
-                            if(quantityString.equals("")) {
-                                quantityString = "0";
-                            }
-
-                            // Numerical values
-                            double price = 0;
-                            int quantity = 0;
-
-                            // Parse the values to numbers
-                            try {
-                                price = Double.parseDouble(priceString);
-                                quantity = Integer.parseInt(quantityString);
-                            } catch(NumberFormatException ex) {
-                                // Log the error
-                                Log.e(LOG_TAG, "Price and Quantity are incorrect.", ex);
-
-                                // Notify user that quantity and price must be numbers
-                                Toast.makeText(getApplicationContext(), "Price and Quantity must be numbers", Toast.LENGTH_SHORT).show();
-                            }
-
-                            if(price < 0) {
-                                // Notify user that quantity and price must be >= 0
-                                Toast.makeText(getApplicationContext(), "Price and Quantity must be >= 0", Toast.LENGTH_SHORT).show();
-                            } else {
-                                priceValid = true;
-                            }
-
-                            if(quantity < 0) {
-                                // Notify user that quantity and price must be >= 0
-                                Toast.makeText(getApplicationContext(), "Price and Quantity must be >= 0", Toast.LENGTH_SHORT).show();
-                            } else {
-                                quantityValid = true;
-                            }
-
-                            // User must enter an item description
-                            if(description.equals("")) {
-                                // Notify user that description and email are required
-                                Toast.makeText(getApplicationContext(), "Description and Email are required.", Toast.LENGTH_SHORT).show();
-                            } else {
-                                descriptionValid = true;
-                            }
-
-                            // User must enter a supplier email
-                            if(email.equals("")) {
-                                // Notify user that description and email are required
-                                Toast.makeText(getApplicationContext(), "Description and Email are required.", Toast.LENGTH_SHORT).show();
-                            } else {
-                                emailValid = true;
-                            }
-
-                            if(descriptionValid && priceValid && quantityValid && emailValid) {
-                                // Create an Item object
-                                Item item = new Item(description, price, quantity, email, image);
-
-                                // Add item to database and refresh view
-                                dbHelper.insert(item);
-                                Intent intent = new Intent(MainActivity.this, MainActivity.class);
-                                startActivity(intent);
-
-                                //Dismiss once inputs are validated
-                                alertDialog.dismiss();
-                            }
+                            showValidationErrors(errors);
                         }
                     }
                 });
@@ -207,6 +453,34 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         alertDialog.show();
     }
 
+    /**
+     * This method notifies the user of the problems with the values
+     * entered for a new item.
+     *
+     * @param errors The problems found by the ItemValidator.
+     */
+    private void showValidationErrors(int errors) {
+        if((errors & ItemValidator.BLANK_FORM) != 0) {
+            // Notify user that blank form is unacceptable
+            Toast.makeText(getApplicationContext(), "Form Cannot Be Blank.", Toast.LENGTH_SHORT).show();
+        }
+
+        if((errors & ItemValidator.NOT_A_NUMBER) != 0) {
+            // Notify user that quantity and price must be numbers
+            Toast.makeText(getApplicationContext(), "Price and Quantity must be numbers", Toast.LENGTH_SHORT).show();
+        }
+
+        if((errors & ItemValidator.NEGATIVE_NUMBER) != 0) {
+            // Notify user that quantity and price must be >= 0
+            Toast.makeText(getApplicationContext(), "Price and Quantity must be >= 0", Toast.LENGTH_SHORT).show();
+        }
+
+        if((errors & ItemValidator.MISSING_REQUIRED) != 0) {
+            // Notify user that description and email are required
+            Toast.makeText(getApplicationContext(), "Description and Email are required.", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     /**
      * This method creates and returns a CursorLoader when the
      * LoaderManager is initialized.
@@ -222,7 +496,9 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
 
     /**
      * This method is called after the data is loaded. It hides
-     * the progressbar and sets the adapter.
+     * the progressbar and passes the new cursor to the adapter,
+     * which only updates the rows that changed, so the scroll
+     * position is kept.
      *
      * @param loader The loader.
      * @param cursor The cursor is passed to the adapter.
@@ -232,43 +508,192 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         // Hide the loading spinner when the data is finished loading
         findViewById(R.id.loading_spinner).setVisibility(View.GONE);
 
-        // Set the adapter
-        adapter = new InventoryCursorAdapter(this, cursor);
-        listView.setAdapter(adapter);
+        createAdapter();
+        adapter.swapCursor((PagedCursor) cursor);
 
         emptyStateTextView.setText(R.string.no_content);
+        updateEmptyView();
+    }
+
+    /**
+     * This method sets the adapter once, later results are passed to it.
+     */
+    private void createAdapter() {
+        if(adapter == null) {
+            adapter = new InventoryCursorAdapter(this);
+            listView.setAdapter(adapter);
+        }
+    }
+
+    /**
+     * This method shows the empty state view if the list has no items.
+     */
+    private void updateEmptyView() {
+        emptyStateTextView.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
     /**
-     * This method clears the loader when it is reset.
+     * This method clears the adapter's cursor when the loader is reset.
      *
      * @param loader The loader.
      */
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
-        loader = null;
+        if(adapter != null) {
+            adapter.swapCursor(null);
+            updateEmptyView();
+        }
+    }
+
+    /** Shows the inventory read into memory by the columnar loader. */
+    private final LoaderManager.LoaderCallbacks<ColumnarInventory> columnarCallbacks =
+            new LoaderManager.LoaderCallbacks<ColumnarInventory>() {
+        @Override
+        public Loader<ColumnarInventory> onCreateLoader(int id, Bundle args) {
+            return new ColumnarInventoryLoader(MainActivity.this, dbHelper);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<ColumnarInventory> loader, ColumnarInventory inventory) {
+            findViewById(R.id.loading_spinner).setVisibility(View.GONE);
+
+            createAdapter();
+            adapter.setColumns(inventory);
+
+            emptyStateTextView.setText(R.string.no_content);
+            updateEmptyView();
+        }
+
+        @Override
+        public void onLoaderReset(Loader<ColumnarInventory> loader) {
+            if(adapter != null) {
+                adapter.setColumns(null);
+                updateEmptyView();
+            }
+        }
+    };
+
+    /** Shows the summary read by the summary loader. */
+    private final LoaderManager.LoaderCallbacks<InventorySummary> summaryCallbacks =
+            new LoaderManager.LoaderCallbacks<InventorySummary>() {
+        @Override
+        public Loader<InventorySummary> onCreateLoader(int id, Bundle args) {
+            return new SummaryLoader(MainActivity.this, dbHelper);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<InventorySummary> loader, InventorySummary summary) {
+            summaryTextView.setText(getString(R.string.summary_format, summary.getItemCount(),
+                    summary.getUnitCount(), Money.format(summary.getStockValueCents()),
+                    summary.getLowStockCount()));
+        }
+
+        @Override
+        public void onLoaderReset(Loader<InventorySummary> loader) {
+            summaryTextView.setText(null);
+        }
+    };
+
+    /**
+     * This method asks the loader for the next page of the inventory.
+     */
+    private void loadNextPage() {
+        // The columnar inventory is read whole
+        Loader<?> loader = getLoaderManager().getLoader(INVENTORY_LOADER_ID);
+        if(loader instanceof CursorLoader) {
+            ((CursorLoader) loader).loadNextPage();
+        }
+    }
+
+    /**
+     * This method binds the row of an item again, without binding
+     * the other rows or querying the database.
+     *
+     * @param id The id of the item.
+     */
+    private void refreshRow(long id) {
+        if(adapter != null) {
+            adapter.refreshItem(id);
+        }
     }
 
     /**
      * This method is called from the InventoryCursorAdapter class
-     * from the sale button action listener. The current Item is
-     * passed in and the quantity on hand is decremented if there
-     * are > 0 of the item on hand. The display and database are
-     * updated.
+     * from the sale button action listener. If there are > 0 of the
+     * selected item on hand, the sale is queued to be written on a
+     * background thread and the row of the item is updated on the
+     * display right away.
+     *
+     * @param id The id of the selected item.
+     * @param quantity The displayed quantity of the item.
+     */
+    public void saleButtonClicked(long id, int quantity) {
+        if(quantity > 0) {
+            writeQueue.enqueue(id, -1);
+            refreshRow(id);
+        }
+    }
+
+    /**
+     * This method returns the total of the queued sales of an item
+     * that have not been written yet.
      *
-     * @param item The selected item.
+     * @param id The id of the item.
+     * @return The change in quantity.
      */
-    public void saleButtonClicked(Item item) {
-        int currentQuantity = item.getQuantity();
+    int pendingQuantityDelta(long id) {
+        return writeQueue.pendingDelta(id);
+    }
+
+    /**
+     * This method is called by the write queue after queued sales were
+     * written. The rows of the items are updated with the quantities
+     * from the database. The queue does not notify the inventory URI,
+     * which would reload the whole list, so the summary loader is told
+     * of the change here and the list loader queries its pages again
+     * when the next page is loaded.
+     *
+     * @param ids The ids of the written items.
+     * @param quantities The quantity of each item in the database.
+     * @param count The number of written items.
+     */
+    @Override
+    public void onQuantitiesWritten(long[] ids, int[] quantities, int count) {
+        Loader<?> summaryLoader = getLoaderManager().getLoader(SUMMARY_LOADER_ID);
+        if(summaryLoader != null) {
+            summaryLoader.onContentChanged();
+        }
+
+        Loader<?> listLoader = getLoaderManager().getLoader(INVENTORY_LOADER_ID);
+        if(listLoader instanceof CursorLoader) {
+            ((CursorLoader) listLoader).markPagesStale();
+        }
 
-        if(currentQuantity > 0) {
-            // Update the object value
-            item.setQuantity(item.getQuantity() - 1);
+        if(adapter == null) {
+            return;
+        }
 
-            // Update the database
-            new InventoryDbHelper(this).update(item);
+        for(int i = 0; i < count; i++) {
+            if(quantities[i] != InventoryDbHelper.ADJUST_REJECTED) {
+                adapter.updateQuantity(ids[i], quantities[i]);
+                refreshRow(ids[i]);
+            }
         }
+    }
 
-        adapter.swapCursor(dbHelper.query());
+    /**
+     * This method is called by the write queue after queued sales could
+     * not be written. The rows of the items show the stored quantities
+     * again.
+     *
+     * @param ids The ids of the items whose sales were dropped.
+     * @param count The number of items.
+     */
+    @Override
+    public void onQuantitiesFailed(long[] ids, int count) {
+        for(int i = 0; i < count; i++) {
+            refreshRow(ids[i]);
+        }
+        Toast.makeText(getApplicationContext(), R.string.sale_failed, Toast.LENGTH_SHORT).show();
     }
 }
@@ -0,0 +1,120 @@
+package udacity.android.inventory.activities;
+
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.DataSetObserver;
+import android.database.MergeCursor;
+import android.support.v7.util.DiffUtil;
+
+/**
+ * This class is a MergeCursor over the pages of the inventory list.
+ * It also carries the snapshot of its rows, which the adapter binds
+ * from instead of reading the pages again, and the changes from the
+ * snapshot delivered before it.
+ *
+ * The pages are shared by the results of the loader, which owns and
+ * closes them. Each result merges its own wrappers of the pages, so
+ * MergeCursor does not register observers on the shared pages, which
+ * would stay registered after the result is replaced, and closing a
+ * result does not close the pages.
+ *
+ * @author Joseph Stewart
+ * @version 1.2
+ */
+class PagedCursor extends MergeCursor {
+
+    /** The rows of the pages, and the changes from diffBase to them. */
+    private final InventorySnapshot snapshot;
+    private final InventorySnapshot diffBase;
+    private final DiffUtil.DiffResult diff;
+
+    /**
+     * Constructor.
+     *
+     * @param pages The pages, in list order.
+     * @param snapshot The rows of the pages.
+     * @param diffBase The snapshot the changes were computed from, may be null.
+     * @param diff The changes from diffBase to snapshot, may be null.
+     */
+    PagedCursor(Cursor[] pages, InventorySnapshot snapshot, InventorySnapshot diffBase,
+                DiffUtil.DiffResult diff) {
+        super(wrap(pages));
+        this.snapshot = snapshot;
+        this.diffBase = diffBase;
+        this.diff = diff;
+    }
+
+    /**
+     * This method returns the rows of the pages.
+     *
+     * @return The snapshot.
+     */
+    InventorySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * This method returns the snapshot the changes were computed from.
+     *
+     * @return The snapshot, or null if there are no changes.
+     */
+    InventorySnapshot getDiffBase() {
+        return diffBase;
+    }
+
+    /**
+     * This method returns the changes from getDiffBase to getSnapshot.
+     *
+     * @return The changes, or null if they were not computed.
+     */
+    DiffUtil.DiffResult getDiff() {
+        return diff;
+    }
+
+    /**
+     * This method wraps the pages for one result.
+     *
+     * @param pages The pages, in list order.
+     * @return The wrapped pages.
+     */
+    private static Cursor[] wrap(Cursor[] pages) {
+        Cursor[] wrapped = new Cursor[pages.length];
+        for(int i = 0; i < pages.length; i++) {
+            wrapped[i] = pages[i] == null ? null : new SharedPage(pages[i]);
+        }
+        return wrapped;
+    }
+
+    /**
+     * This class is a page as seen by one result. It neither registers
+     * observers on the page nor closes it.
+     */
+    private static class SharedPage extends CursorWrapper {
+
+        SharedPage(Cursor page) {
+            super(page);
+        }
+
+        @Override
+        public void registerContentObserver(ContentObserver observer) {
+        }
+
+        @Override
+        public void unregisterContentObserver(ContentObserver observer) {
+        }
+
+        @Override
+        public void registerDataSetObserver(DataSetObserver observer) {
+        }
+
+        @Override
+        public void unregisterDataSetObserver(DataSetObserver observer) {
+        }
+
+        @Override
+        public void close() {
+            // The loader closes the page once no result uses it
+        }
+    }
+}
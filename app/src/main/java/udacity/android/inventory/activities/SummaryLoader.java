@@ -0,0 +1,103 @@
+package udacity.android.inventory.activities;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.model.InventorySummary;
+
+/**
+ * This class is a Loader that reads the inventory summary on a
+ * background thread. The summary is a single row kept current by the
+ * database, so every reload is cheap. The loader observes the
+ * inventory content URI and reloads when the inventory changes.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class SummaryLoader extends AsyncTaskLoader<InventorySummary> {
+
+    /** Database helper object. */
+    private final InventoryDbHelper dbHelper;
+
+    /** The last delivered result. */
+    private InventorySummary summary;
+
+    /** Reloads the summary when the inventory content URI changes. */
+    private final ForceLoadContentObserver observer = new ForceLoadContentObserver();
+    private boolean observerRegistered;
+
+    /**
+     * Constructor.
+     *
+     * @param context The context.
+     * @param dbHelper A database helper object.
+     */
+    public SummaryLoader(Context context, InventoryDbHelper dbHelper) {
+        super(context);
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * This method delivers the current result if there is one and
+     * forces a load if there is not or if the data has changed.
+     */
+    @Override
+    protected void onStartLoading() {
+        if(!observerRegistered) {
+            getContext().getContentResolver().registerContentObserver(InventoryEntry.CONTENT_URI, true, observer);
+            observerRegistered = true;
+        }
+
+        if(summary != null) {
+            deliverResult(summary);
+        }
+
+        if(takeContentChanged() || summary == null) {
+            forceLoad();
+        }
+    }
+
+    /**
+     * This method reads the summary on a background thread.
+     *
+     * @return The summary.
+     */
+    @Override
+    public InventorySummary loadInBackground() {
+        return dbHelper.getSummary();
+    }
+
+    /**
+     * This method keeps the result so it can be delivered again.
+     *
+     * @param data The result to deliver.
+     */
+    @Override
+    public void deliverResult(InventorySummary data) {
+        if(isReset()) {
+            return;
+        }
+
+        summary = data;
+        if(isStarted()) {
+            super.deliverResult(data);
+        }
+    }
+
+    /**
+     * This method stops observing the inventory when the loader is reset.
+     */
+    @Override
+    protected void onReset() {
+        super.onReset();
+        cancelLoad();
+
+        if(observerRegistered) {
+            getContext().getContentResolver().unregisterContentObserver(observer);
+            observerRegistered = false;
+        }
+        summary = null;
+    }
+}
@@ -0,0 +1,257 @@
+package udacity.android.inventory.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+
+/**
+ * This class holds the list columns of the whole inventory in memory,
+ * one primitive array per column in ascending id order, so the list
+ * can be shown without a cursor or cursor windows. Equal descriptions
+ * share one String.
+ *
+ * It is read once from the database on a background thread and then
+ * patched in place with the writes of the list, instead of being read
+ * again. After it is handed to the main thread it must only be read
+ * and patched there.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class ColumnarInventory {
+
+    /** The number of rows read per query while loading. */
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private int size;
+    private long[] ids;
+    private String[] descriptions;
+    private long[] priceCents;
+    private int[] quantities;
+    private String[] images;
+
+    /** The shared instance of each description. */
+    private final HashMap<String, String> descriptionPool = new HashMap<>();
+
+    /**
+     * Constructor for an empty inventory, filled with put.
+     */
+    public ColumnarInventory() {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The number of rows to allocate room for.
+     */
+    private ColumnarInventory(int capacity) {
+        capacity = Math.max(capacity, 16);
+        ids = new long[capacity];
+        descriptions = new String[capacity];
+        priceCents = new long[capacity];
+        quantities = new int[capacity];
+        images = new String[capacity];
+    }
+
+    /**
+     * This method reads the list columns of every row from the covering
+     * list index, a page at a time. It is run on a background thread.
+     *
+     * @param dbHelper The database helper.
+     * @return The inventory.
+     */
+    public static ColumnarInventory load(InventoryDbHelper dbHelper) {
+        ColumnarInventory inventory = new ColumnarInventory(
+                (int) DatabaseUtils.queryNumEntries(
+                        dbHelper.getReadableDatabase(), InventoryEntry.TABLE_NAME));
+
+        long lastId = 0;
+        int read;
+        do {
+            Cursor page = dbHelper.queryPage(lastId, LOAD_PAGE_SIZE);
+            try {
+                read = page.getCount();
+                inventory.append(page);
+            } finally {
+                page.close();
+            }
+
+            if(inventory.size > 0) {
+                lastId = inventory.ids[inventory.size - 1];
+            }
+        } while(read == LOAD_PAGE_SIZE);
+
+        return inventory;
+    }
+
+    /**
+     * This method appends the rows of a page of the list projection.
+     *
+     * @param page The page, ordered by id after the rows already read.
+     */
+    private void append(Cursor page) {
+        int idIndex = page.getColumnIndexOrThrow(InventoryEntry._ID);
+        int descriptionIndex = page.getColumnIndexOrThrow(InventoryEntry.COLUMN_DESCRIPTION);
+        int priceIndex = page.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRICE_CENTS);
+        int quantityIndex = page.getColumnIndexOrThrow(InventoryEntry.COLUMN_QUANTITY);
+        int imageIndex = page.getColumnIndexOrThrow(InventoryEntry.COLUMN_IMAGE);
+
+        ensureCapacity(size + page.getCount());
+        while(page.moveToNext()) {
+            ids[size] = page.getLong(idIndex);
+            descriptions[size] = intern(page.getString(descriptionIndex));
+            priceCents[size] = page.getLong(priceIndex);
+            quantities[size] = page.getInt(quantityIndex);
+            images[size] = page.getString(imageIndex);
+            size++;
+        }
+    }
+
+    /** Accessors, by position in id order. */
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(int position) {
+        return ids[position];
+    }
+
+    public String getDescription(int position) {
+        return descriptions[position];
+    }
+
+    public long getPriceCents(int position) {
+        return priceCents[position];
+    }
+
+    public int getQuantity(int position) {
+        return quantities[position];
+    }
+
+    public String getImage(int position) {
+        return images[position];
+    }
+
+    /**
+     * This method returns the position of an item.
+     *
+     * @param id The id of the item.
+     * @return The position, or -1 if the item is not in the inventory.
+     */
+    public int positionOf(long id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        return position < 0 ? -1 : position;
+    }
+
+    /** Patches, each returns the position of the changed row. */
+
+    /**
+     * This method sets the quantity of an item.
+     *
+     * @param id The id of the item.
+     * @param quantity The new quantity.
+     * @return The position of the item, or -1 if it is not in the inventory.
+     */
+    public int setQuantity(long id, int quantity) {
+        int position = positionOf(id);
+        if(position != -1) {
+            quantities[position] = quantity;
+        }
+        return position;
+    }
+
+    /**
+     * This method adds an item or replaces the columns of an existing
+     * one. A new item goes to its position in id order, which is the
+     * end for a newly inserted row.
+     *
+     * @param id The id of the item.
+     * @param description The description.
+     * @param priceCents The price in cents.
+     * @param quantity The quantity.
+     * @param image The image URI, may be null.
+     * @return The position of the item.
+     */
+    public int put(long id, String description, long priceCents, int quantity, String image) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if(position < 0) {
+            position = -position - 1;
+            ensureCapacity(size + 1);
+            shift(position, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        descriptions[position] = intern(description);
+        this.priceCents[position] = priceCents;
+        quantities[position] = quantity;
+        images[position] = image;
+        return position;
+    }
+
+    /**
+     * This method removes an item.
+     *
+     * @param id The id of the item.
+     * @return The position the item had, or -1 if it was not in the inventory.
+     */
+    public int remove(long id) {
+        int position = positionOf(id);
+        if(position != -1) {
+            shift(position + 1, position, size - position - 1);
+            size--;
+            descriptions[size] = null;
+            images[size] = null;
+        }
+        return position;
+    }
+
+    /**
+     * This method moves a range of rows within every column.
+     */
+    private void shift(int from, int to, int count) {
+        System.arraycopy(ids, from, ids, to, count);
+        System.arraycopy(descriptions, from, descriptions, to, count);
+        System.arraycopy(priceCents, from, priceCents, to, count);
+        System.arraycopy(quantities, from, quantities, to, count);
+        System.arraycopy(images, from, images, to, count);
+    }
+
+    /**
+     * This method grows the columns by half when they are full.
+     */
+    private void ensureCapacity(int capacity) {
+        if(capacity <= ids.length) {
+            return;
+        }
+
+        capacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        images = Arrays.copyOf(images, capacity);
+    }
+
+    /**
+     * This method returns the shared instance of a description.
+     */
+    private String intern(String description) {
+        if(description == null) {
+            return null;
+        }
+
+        String shared = descriptionPool.get(description);
+        if(shared == null) {
+            descriptionPool.put(description, description);
+            shared = description;
+        }
+        return shared;
+    }
+}
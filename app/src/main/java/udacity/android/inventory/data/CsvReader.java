@@ -0,0 +1,292 @@
+package udacity.android.inventory.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * This class reads comma separated values one record at a time from a
+ * stream, following RFC 4180: fields may be quoted, a quote inside a
+ * quoted field is doubled, and quoted fields may contain commas and
+ * line breaks. Records end with CRLF, LF or CR. Blank lines and a
+ * leading byte order mark are skipped.
+ *
+ * The input is read through a fixed buffer and the fields of a record
+ * replace those of the previous one, so the memory used does not grow
+ * with the length of the input. A quoted field longer than
+ * MAX_FIELD_LENGTH, or still open at the end of the input, is usually
+ * a stray quote running over the following records. Its record is
+ * marked as malformed and reading resumes at the line after the one
+ * the quote opened on, so the records it ran over are read again. An
+ * unquoted field longer than MAX_FIELD_LENGTH ends its record at the
+ * next line break, which is also marked as malformed.
+ *
+ * @author Joseph Stewart
+ * @version 1.2
+ */
+final class CsvReader {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    /** The longest field that is read, longer fields make the record malformed. */
+    static final int MAX_FIELD_LENGTH = 16 * 1024;
+
+    private final Reader in;
+    private final char[] inputBuffer = new char[BUFFER_SIZE];
+    private char[] buffer = inputBuffer;
+    private int position;
+    private int limit;
+    private boolean started;
+
+    /** The fields of the current record. */
+    private String[] fields = new String[8];
+    private int fieldCount;
+    private final StringBuilder field = new StringBuilder();
+    private boolean malformed;
+
+    /** The characters read since the current quote opened, and its line. */
+    private final StringBuilder quotedText = new StringBuilder();
+    private long quoteLine;
+
+    /** The line the current record starts on, from 1. */
+    private long recordLine;
+    private long line = 1;
+
+    /**
+     * Constructor.
+     *
+     * @param in The input, which is closed by close.
+     */
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * This method reads the next record.
+     *
+     * @return False at the end of the input.
+     * @throws IOException If the input cannot be read.
+     */
+    boolean readRecord() throws IOException {
+        if(!started) {
+            started = true;
+            if(fill() && buffer[position] == BYTE_ORDER_MARK) {
+                position++;
+            }
+        }
+
+        // Skip blank lines
+        int c;
+        do {
+            c = read();
+            if(c == '\r' && peek() == '\n') {
+                read();
+            }
+        } while(c == '\r' || c == '\n');
+
+        if(c == -1) {
+            fieldCount = 0;
+            return false;
+        }
+
+        recordLine = line;
+        fieldCount = 0;
+        field.setLength(0);
+        malformed = false;
+        boolean quoted = false;
+
+        while(true) {
+            if(field.length() > MAX_FIELD_LENGTH) {
+                // Do not buffer the rest of the input behind a stray quote
+                malformed = true;
+                if(quoted) {
+                    quotedText.append((char) c);
+                    resumeAfterQuoteLine();
+                } else {
+                    skipLine(c);
+                }
+                endField();
+                return true;
+            }
+
+            if(quoted) {
+                if(c == -1) {
+                    // An unterminated quote ends with the input
+                    malformed = true;
+                    resumeAfterQuoteLine();
+                    endField();
+                    return true;
+                }
+
+                quotedText.append((char) c);
+                if(c == '"') {
+                    if(peek() == '"') {
+                        quotedText.append((char) read());
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if(c == ',') {
+                endField();
+            } else if(c == '\r' || c == '\n' || c == -1) {
+                if(c == '\r' && peek() == '\n') {
+                    read();
+                }
+                endField();
+                return true;
+            } else if(c == '"' && field.length() == 0) {
+                quoted = true;
+                quotedText.setLength(0);
+                quoteLine = line;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * This method returns the number of fields of the current record.
+     *
+     * @return The number of fields.
+     */
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * This method returns a field of the current record.
+     *
+     * @param index The index of the field.
+     * @return The field, or null if the record has fewer fields.
+     */
+    String getField(int index) {
+        return index < fieldCount ? fields[index] : null;
+    }
+
+    /**
+     * This method returns whether the current record has a field that
+     * is too long or a quote that is never closed. Its last field is
+     * cut off, so the record should be rejected.
+     *
+     * @return True if the record is malformed.
+     */
+    boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * This method returns the line of the input the current record
+     * starts on, for reporting rejected records.
+     *
+     * @return The line number, from 1.
+     */
+    long getRecordLine() {
+        return recordLine;
+    }
+
+    /**
+     * This method closes the input.
+     *
+     * @throws IOException If the input cannot be closed.
+     */
+    void close() throws IOException {
+        in.close();
+    }
+
+    private void endField() {
+        if(fieldCount == fields.length) {
+            fields = Arrays.copyOf(fields, fieldCount * 2);
+        }
+        fields[fieldCount++] = field.toString();
+        field.setLength(0);
+    }
+
+    /**
+     * This method skips the rest of the line, up to and including the
+     * line break.
+     *
+     * @param c The current character.
+     * @throws IOException If the input cannot be read.
+     */
+    private void skipLine(int c) throws IOException {
+        while(c != '\r' && c != '\n' && c != -1) {
+            c = read();
+        }
+        if(c == '\r' && peek() == '\n') {
+            read();
+        }
+    }
+
+    /**
+     * This method makes the input continue at the line after the one
+     * the current quote opened on. The characters read since the quote
+     * opened are put back in front of the unread input, from the first
+     * line break on.
+     */
+    private void resumeAfterQuoteLine() {
+        int length = quotedText.length();
+        int lineEnd = 0;
+        while(lineEnd < length && quotedText.charAt(lineEnd) != '\r' && quotedText.charAt(lineEnd) != '\n') {
+            lineEnd++;
+        }
+        if(lineEnd == length) {
+            // The quote did not run over a line break
+            return;
+        }
+
+        int next = lineEnd + 1;
+        if(quotedText.charAt(lineEnd) == '\r') {
+            if(next < length && quotedText.charAt(next) == '\n') {
+                next++;
+            } else if(next == length && position < limit && buffer[position] == '\n') {
+                position++;
+            }
+        }
+
+        int unread = limit - position;
+        char[] input = new char[length - next + unread];
+        quotedText.getChars(next, length, input, 0);
+        System.arraycopy(buffer, position, input, length - next, unread);
+        buffer = input;
+        position = 0;
+        limit = input.length;
+        line = quoteLine + 1;
+        quotedText.setLength(0);
+    }
+
+    private int read() throws IOException {
+        if(position == limit && !fill()) {
+            return -1;
+        }
+
+        char c = buffer[position++];
+        if(c == '\n' || (c == '\r' && peek() != '\n')) {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if(position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        // The input put back by resumeAfterQuoteLine is not refilled
+        buffer = inputBuffer;
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if(limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,245 @@
+package udacity.android.inventory.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+
+/**
+ * This class runs a CSV import or export of the inventory on its own
+ * background thread, so a long transfer does not hold up the writer
+ * thread. Progress and the result are passed to the listener on the
+ * main thread. A transfer can be cancelled, and outlives the activity
+ * which started it: the next instance of the activity sets itself as
+ * the listener and receives the result if the transfer has finished.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class CsvTransfer implements InventoryCsv.Progress {
+
+    /** Log tag for this class */
+    public static final String LOG_TAG = CsvTransfer.class.getSimpleName();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Interface to receive the progress and the result of a transfer on
+     * the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called as rows are transferred.
+         *
+         * @param transfer The transfer.
+         * @param rows The number of rows transferred so far.
+         */
+        void onTransferProgress(CsvTransfer transfer, long rows);
+
+        /**
+         * Called once when the transfer is done.
+         *
+         * @param transfer The transfer.
+         * @param result The result, or null if the file could not be
+         *               read or written.
+         */
+        void onTransferComplete(CsvTransfer transfer, InventoryCsv.Result result);
+    }
+
+    private final boolean isImport;
+    private final ContentResolver resolver;
+    private final InventoryDbHelper dbHelper;
+    private final Uri uri;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile boolean cancelled;
+
+    /** Main thread state. */
+    private Listener listener;
+    private long rows;
+    private boolean complete;
+    private InventoryCsv.Result result;
+
+    /**
+     * This method starts importing a CSV document as new items.
+     *
+     * @param context The calling context.
+     * @param source The document to read.
+     * @param listener Receives the progress and the result, may be null.
+     * @return The transfer.
+     */
+    public static CsvTransfer startImport(Context context, Uri source, Listener listener) {
+        return new CsvTransfer(context, true, source, listener).start();
+    }
+
+    /**
+     * This method starts exporting every item to a CSV document.
+     *
+     * @param context The calling context.
+     * @param destination The document to write, replaced if it exists.
+     * @param listener Receives the progress and the result, may be null.
+     * @return The transfer.
+     */
+    public static CsvTransfer startExport(Context context, Uri destination, Listener listener) {
+        return new CsvTransfer(context, false, destination, listener).start();
+    }
+
+    /**
+     * Constructor.
+     */
+    private CsvTransfer(Context context, boolean isImport, Uri uri, Listener listener) {
+        this.isImport = isImport;
+        this.uri = uri;
+        this.listener = listener;
+        resolver = context.getContentResolver();
+        dbHelper = InventoryDbHelper.getInstance(context);
+    }
+
+    private CsvTransfer start() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final InventoryCsv.Result result = transfer();
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        complete(result);
+                    }
+                });
+            }
+        }, LOG_TAG).start();
+        return this;
+    }
+
+    /**
+     * This method runs the transfer on the background thread.
+     *
+     * @return The result, or null if it failed.
+     */
+    private InventoryCsv.Result transfer() {
+        try {
+            return isImport ? importDocument() : exportDocument();
+        } catch(IOException | RuntimeException e) {
+            Log.e(LOG_TAG, "Transfer of " + uri + " failed.", e);
+            return null;
+        } finally {
+            if(isImport) {
+                // Rows committed before a failure or cancellation are shown too
+                resolver.notifyChange(InventoryEntry.CONTENT_URI, null);
+            }
+        }
+    }
+
+    private InventoryCsv.Result importDocument() throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if(in == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+
+        Reader reader = new InputStreamReader(in, UTF_8);
+        try {
+            return InventoryCsv.importCsv(dbHelper, reader, this);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private InventoryCsv.Result exportDocument() throws IOException {
+        OutputStream out = resolver.openOutputStream(uri, "wt");
+        if(out == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        try {
+            return InventoryCsv.exportCsv(dbHelper, writer, this);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * This method passes the progress to the main thread.
+     *
+     * @param rows The number of rows transferred so far.
+     */
+    @Override
+    public void onProgress(final long rows) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                CsvTransfer.this.rows = rows;
+                if(listener != null && !complete) {
+                    listener.onTransferProgress(CsvTransfer.this, rows);
+                }
+            }
+        });
+    }
+
+    /**
+     * This method asks the transfer to stop. An import keeps the rows
+     * committed so far and an export leaves the rows written so far.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * This method returns whether this is an import.
+     *
+     * @return True for an import, false for an export.
+     */
+    public boolean isImport() {
+        return isImport;
+    }
+
+    /**
+     * This method sets the listener, on the main thread. A listener set
+     * after the transfer finished receives the result right away.
+     *
+     * @param listener The listener, or null to stop receiving calls.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if(listener == null) {
+            return;
+        }
+
+        if(complete) {
+            listener.onTransferComplete(this, result);
+        } else {
+            listener.onTransferProgress(this, rows);
+        }
+    }
+
+    private void complete(InventoryCsv.Result result) {
+        this.result = result;
+        complete = true;
+        if(listener != null) {
+            listener.onTransferComplete(this, result);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package udacity.android.inventory.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+
+/**
+ * This class holds the SQLite settings the inventory database is
+ * opened with: the journal mode, page size, page cache size,
+ * synchronous level and how often the write-ahead log is checkpointed.
+ * Profiles are immutable and applied by InventoryDbHelper when the
+ * database is configured.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class DatabaseProfile {
+
+    /** Synchronous levels, as numbered by SQLite. */
+    public static final int SYNCHRONOUS_OFF = 0;
+    public static final int SYNCHRONOUS_NORMAL = 1;
+    public static final int SYNCHRONOUS_FULL = 2;
+
+    /**
+     * Write-ahead logging with every commit synced to storage. Readers
+     * do not wait for writers, and a commit survives a power loss.
+     */
+    public static final DatabaseProfile DURABLE =
+            new DatabaseProfile("durable", true, 4096, 2048, SYNCHRONOUS_FULL, 1000);
+
+    /**
+     * Write-ahead logging synced only at checkpoints, with a larger page
+     * cache and fewer checkpoints. The last commits may be lost on a
+     * power loss, but the database is never corrupted.
+     */
+    public static final DatabaseProfile THROUGHPUT =
+            new DatabaseProfile("throughput", true, 4096, 8192, SYNCHRONOUS_NORMAL, 4000);
+
+    private final String name;
+    private final boolean writeAheadLogging;
+    private final int pageSize;
+    private final int cacheSizeKib;
+    private final int synchronous;
+    private final int checkpointPages;
+
+    /**
+     * Constructor.
+     *
+     * @param name The name of the profile, for logging.
+     * @param writeAheadLogging Whether the write-ahead log is used instead
+     *                          of the rollback journal.
+     * @param pageSize The page size in bytes. It only applies to a new
+     *                 database, the page size of an existing file is kept.
+     * @param cacheSizeKib The page cache of the writing connection in KiB.
+     * @param synchronous The synchronous level, one of the SYNCHRONOUS constants.
+     * @param checkpointPages The number of pages in the write-ahead log
+     *                        after which a commit checkpoints it.
+     */
+    public DatabaseProfile(String name, boolean writeAheadLogging, int pageSize, int cacheSizeKib,
+                           int synchronous, int checkpointPages) {
+        if(synchronous < SYNCHRONOUS_OFF || synchronous > SYNCHRONOUS_FULL) {
+            throw new IllegalArgumentException("Invalid synchronous level: " + synchronous);
+        }
+        if(Integer.bitCount(pageSize) != 1 || pageSize < 512 || pageSize > 65536) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        if(cacheSizeKib <= 0 || checkpointPages <= 0) {
+            throw new IllegalArgumentException("Cache size and checkpoint pages must be positive");
+        }
+
+        this.name = name;
+        this.writeAheadLogging = writeAheadLogging;
+        this.pageSize = pageSize;
+        this.cacheSizeKib = cacheSizeKib;
+        this.synchronous = synchronous;
+        this.checkpointPages = checkpointPages;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getCacheSizeKib() {
+        return cacheSizeKib;
+    }
+
+    public int getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCheckpointPages() {
+        return checkpointPages;
+    }
+
+    /**
+     * This method applies the profile to an open database. The page
+     * cache and synchronous level are settings of a connection, they
+     * apply to the connection used for writing.
+     *
+     * @param db The database, outside of a transaction.
+     */
+    void apply(SQLiteDatabase db) {
+        // Only changes the page size before the first table is created
+        db.execSQL("PRAGMA page_size = " + pageSize);
+
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            db.setWriteAheadLoggingEnabled(writeAheadLogging);
+        } else if(writeAheadLogging) {
+            db.enableWriteAheadLogging();
+        } else {
+            db.disableWriteAheadLogging();
+        }
+
+        // A negative cache size is in KiB instead of pages
+        db.execSQL("PRAGMA cache_size = -" + cacheSizeKib);
+        db.execSQL("PRAGMA synchronous = " + synchronous);
+
+        // The pragma returns the new value, which execSQL does not allow
+        if(writeAheadLogging) {
+            DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint = " + checkpointPages, null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (WAL " + writeAheadLogging + ", page " + pageSize + " B, cache " + cacheSizeKib
+                + " KiB, synchronous " + synchronous + ", checkpoint " + checkpointPages + " pages)";
+    }
+}
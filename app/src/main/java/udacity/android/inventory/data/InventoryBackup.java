@@ -0,0 +1,670 @@
+package udacity.android.inventory.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryContract.InventoryMovementEntry;
+import udacity.android.inventory.model.Item;
+
+/**
+ * This class writes the inventory to a compact binary snapshot file
+ * and restores it. Unlike a copy of the database file, a snapshot is
+ * read inside a transaction, so it is consistent while the database
+ * is in use, and it holds only the inventory rows.
+ *
+ * The file starts with a fixed header: the magic number, the format
+ * version, the layout and the schema version and time of the backup.
+ * It ends with a fixed footer: the row count, the offsets of the
+ * column blocks and a CRC32 of every byte before the checksum. Numbers
+ * in the body are variable length, signed ones zigzag encoded, and ids
+ * are stored as the difference to the previous id. Strings are UTF-8
+ * prefixed with their length plus one, zero for null.
+ *
+ * In the row layout each row is prefixed with its length, so a reader
+ * can skip fields added by a later version. In the column layout each
+ * column is stored as one block, which keeps similar values together.
+ *
+ * Version 2 added the reorder threshold, as the last field of a row and
+ * the last column block. Version 1 snapshots restore the items with the
+ * default threshold.
+ *
+ * A snapshot does not hold the stock movements. A restore keeps the
+ * movements of the items it restores, so their sales history survives.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+public final class InventoryBackup {
+
+    /** The version of the file format written. */
+    public static final int FORMAT_VERSION = 2;
+
+    /** The layouts of the body. */
+    public static final int LAYOUT_ROWS = 0;
+    public static final int LAYOUT_COLUMNS = 1;
+
+    /** "INVB" */
+    private static final int MAGIC = 0x494E5642;
+
+    private static final int HEADER_SIZE = 20;
+
+    /**
+     * The stored columns, in the order of the column blocks. The
+     * supplier is read as its id and stored as its email, so snapshots
+     * do not depend on the ids of the suppliers table.
+     */
+    private static final String[] COLUMNS = {
+            InventoryEntry.COLUMN_DESCRIPTION,
+            InventoryEntry.COLUMN_PRICE_CENTS,
+            InventoryEntry.COLUMN_QUANTITY,
+            InventoryEntry.COLUMN_SUPPLIER_ID,
+            InventoryEntry.COLUMN_IMAGE,
+            InventoryEntry.COLUMN_REORDER_THRESHOLD
+    };
+    private static final int DESCRIPTION = 0;
+    private static final int PRICE_CENTS = 1;
+    private static final int QUANTITY = 2;
+    private static final int SUPPLIER_EMAIL = 3;
+    private static final int IMAGE = 4;
+    private static final int REORDER_THRESHOLD = 5;
+
+    /** The footer of the version written. */
+    private static final int FOOTER_SIZE = footerSize(FORMAT_VERSION);
+
+    /** The number of rows read per query by a backup. */
+    private static final int PAGE_SIZE = 1000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Inserts a row with its id. */
+    private static final String RESTORE_SQL = "INSERT INTO " + InventoryEntry.TABLE_NAME + " (" +
+            InventoryEntry._ID + ", " +
+            InventoryEntry.COLUMN_DESCRIPTION + ", " +
+            InventoryEntry.COLUMN_PRICE_CENTS + ", " +
+            InventoryEntry.COLUMN_QUANTITY + ", " +
+            InventoryEntry.COLUMN_SUPPLIER_ID + ", " +
+            InventoryEntry.COLUMN_IMAGE + ", " +
+            InventoryEntry.COLUMN_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Private constructor throws AssertionError to
+     * prevent instantiation.
+     */
+    private InventoryBackup() {
+        throw new AssertionError();
+    }
+
+    /**
+     * This method returns the number of columns stored by a format version.
+     */
+    private static int columnCount(int version) {
+        return version == 1 ? IMAGE + 1 : COLUMNS.length;
+    }
+
+    /**
+     * This method returns the size of the footer of a format version: the
+     * row count, the offsets of the id block and each column block, and
+     * the checksum.
+     */
+    private static int footerSize(int version) {
+        return 8 + 8 * (columnCount(version) + 1) + 4;
+    }
+
+    /**
+     * This method writes every item to a snapshot file. The rows are
+     * read inside a transaction, which keeps other writers waiting but
+     * not readers, so the snapshot is consistent.
+     *
+     * @param dbHelper The database helper.
+     * @param file The file to write, replaced if it exists.
+     * @param layout LAYOUT_ROWS or LAYOUT_COLUMNS.
+     * @return The number of rows written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static long backup(InventoryDbHelper dbHelper, File file, int layout) throws IOException {
+        if(layout != LAYOUT_ROWS && layout != LAYOUT_COLUMNS) {
+            throw new IllegalArgumentException("Unknown layout: " + layout);
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        SupplierCache suppliers = dbHelper.getSupplierCache();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            SnapshotWriter writer = new SnapshotWriter(out.getChannel());
+            writer.writeHeader(layout);
+
+            long[] offsets = new long[COLUMNS.length + 1];
+            long rows;
+            boolean committed = false;
+            db.beginTransactionNonExclusive();
+            try {
+                if(layout == LAYOUT_ROWS) {
+                    rows = writeRows(db, suppliers, writer);
+                } else {
+                    rows = writeColumn(db, suppliers, writer, -1);
+                    for(int column = 0; column < COLUMNS.length; column++) {
+                        offsets[column + 1] = writer.position();
+                        writeColumn(db, suppliers, writer, column);
+                    }
+                }
+                db.setTransactionSuccessful();
+                committed = true;
+            } finally {
+                db.endTransaction();
+                suppliers.endTransaction(db, committed);
+            }
+
+            if(layout == LAYOUT_COLUMNS) {
+                offsets[0] = HEADER_SIZE;
+            }
+            writer.writeFooter(rows, offsets);
+            out.getFD().sync();
+            return rows;
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * This method replaces every item with the items of a snapshot file.
+     * The file is memory mapped and its checksum verified before any row
+     * is changed. The rows are then deleted and the snapshot inserted
+     * with their ids in one transaction, so a failed restore changes
+     * nothing. Observers of the inventory are not notified.
+     *
+     * The stock movements of the restored ids are kept, and the
+     * movements of items missing from the snapshot are removed. Where
+     * the restored quantity differs from the sum of the kept movements,
+     * an adjustment is appended, so the sales history survives a
+     * restore and the ledger still adds up. The snapshot is expected to
+     * come from this inventory, as the movements are matched by id.
+     *
+     * @param dbHelper The database helper.
+     * @param file The snapshot file.
+     * @return The number of rows restored.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static long restore(InventoryDbHelper dbHelper, File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            if(channel.size() < HEADER_SIZE + footerSize(1)) {
+                throw new IOException("Not an inventory snapshot: " + file);
+            }
+
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int version = readHeader(map);
+            int layout = map.get(6);
+            if(map.limit() < HEADER_SIZE + footerSize(version)) {
+                throw new IOException("Not an inventory snapshot: " + file);
+            }
+            verifyChecksum(map);
+
+            map.position(map.limit() - footerSize(version));
+            long rows = map.getLong();
+            long[] offsets = new long[columnCount(version) + 1];
+            for(int i = 0; i < offsets.length; i++) {
+                offsets[i] = map.getLong();
+            }
+
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            SupplierCache suppliers = dbHelper.getSupplierCache();
+            SQLiteStatement insert = db.compileStatement(RESTORE_SQL);
+            boolean committed = false;
+            db.beginTransaction();
+            try {
+                // The ledger triggers would remove every movement and add an
+                // opening adjustment per row, so the ledger is fixed up below
+                db.execSQL("DROP TRIGGER IF EXISTS " + InventoryMovementEntry.INSERT_TRIGGER_NAME);
+                db.execSQL("DROP TRIGGER IF EXISTS " + InventoryMovementEntry.DELETE_TRIGGER_NAME);
+                db.delete(InventoryEntry.TABLE_NAME, null, null);
+
+                if(layout == LAYOUT_ROWS) {
+                    map.position(HEADER_SIZE);
+                    restoreRows(db, suppliers, map, rows, insert);
+                } else {
+                    restoreColumns(db, suppliers, map, rows, offsets, insert);
+                }
+
+                db.execSQL(InventoryMovementEntry.DELETE_ORPHANED_MOVEMENTS);
+                db.execSQL(InventoryMovementEntry.RECONCILE_MOVEMENTS);
+                db.execSQL(InventoryMovementEntry.CREATE_INSERT_TRIGGER);
+                db.execSQL(InventoryMovementEntry.CREATE_DELETE_TRIGGER);
+                db.setTransactionSuccessful();
+                committed = true;
+            } finally {
+                db.endTransaction();
+                suppliers.endTransaction(db, committed);
+                insert.close();
+
+                // The shared items may no longer match their rows
+                dbHelper.getItemCache().clear();
+            }
+            return rows;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * This method writes every row, prefixed with its length.
+     *
+     * @return The number of rows.
+     */
+    private static long writeRows(SQLiteDatabase db, SupplierCache suppliers, SnapshotWriter writer)
+            throws IOException {
+        String[] args = new String[] { "0", String.valueOf(PAGE_SIZE) };
+        String sql = pageSql(COLUMNS);
+        Encoder row = new Encoder();
+        long rows = 0;
+        long lastId = 0;
+
+        int read;
+        do {
+            Cursor page = db.rawQuery(sql, args);
+            try {
+                read = page.getCount();
+                while(page.moveToNext()) {
+                    long id = page.getLong(0);
+                    row.reset();
+                    row.writeVarLong(id - lastId);
+                    row.writeString(page.getString(1 + DESCRIPTION));
+                    row.writeZigZag(page.getLong(1 + PRICE_CENTS));
+                    row.writeZigZag(page.getLong(1 + QUANTITY));
+                    row.writeString(suppliers.getEmail(db, page.getLong(1 + SUPPLIER_EMAIL)));
+                    row.writeString(page.getString(1 + IMAGE));
+                    row.writeZigZag(page.getLong(1 + REORDER_THRESHOLD));
+
+                    writer.writeVarLong(row.size);
+                    writer.write(row.bytes, 0, row.size);
+                    lastId = id;
+                    rows++;
+                }
+            } finally {
+                page.close();
+            }
+            args[0] = String.valueOf(lastId);
+        } while(read == PAGE_SIZE);
+
+        return rows;
+    }
+
+    /**
+     * This method writes the block of one column.
+     *
+     * @param column The index of the column, or -1 for the ids.
+     * @return The number of rows.
+     */
+    private static long writeColumn(SQLiteDatabase db, SupplierCache suppliers, SnapshotWriter writer, int column)
+            throws IOException {
+        String[] args = new String[] { "0", String.valueOf(PAGE_SIZE) };
+        String sql = pageSql(column == -1 ? new String[0] : new String[] { COLUMNS[column] });
+        Encoder values = new Encoder();
+        long rows = 0;
+        long lastId = 0;
+
+        int read;
+        do {
+            Cursor page = db.rawQuery(sql, args);
+            try {
+                read = page.getCount();
+                values.reset();
+                while(page.moveToNext()) {
+                    long id = page.getLong(0);
+                    switch(column) {
+                        case -1:
+                            values.writeVarLong(id - lastId);
+                            break;
+                        case PRICE_CENTS:
+                        case QUANTITY:
+                        case REORDER_THRESHOLD:
+                            values.writeZigZag(page.getLong(1));
+                            break;
+                        case SUPPLIER_EMAIL:
+                            values.writeString(suppliers.getEmail(db, page.getLong(1)));
+                            break;
+                        default:
+                            values.writeString(page.getString(1));
+                    }
+                    lastId = id;
+                    rows++;
+                }
+                writer.write(values.bytes, 0, values.size);
+            } finally {
+                page.close();
+            }
+            args[0] = String.valueOf(lastId);
+        } while(read == PAGE_SIZE);
+
+        return rows;
+    }
+
+    /**
+     * This method returns the query of a page of ids and columns after an id.
+     */
+    private static String pageSql(String[] columns) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(InventoryEntry._ID);
+        for(String column : columns) {
+            sql.append(", ").append(column);
+        }
+        return sql.append(" FROM ").append(InventoryEntry.TABLE_NAME)
+                .append(" WHERE ").append(InventoryEntry._ID).append(" > ? ORDER BY ")
+                .append(InventoryEntry._ID).append(" LIMIT ?").toString();
+    }
+
+    /**
+     * This method inserts the rows of the row layout. Fields after the
+     * known ones are skipped, and missing ones take their default.
+     */
+    private static void restoreRows(SQLiteDatabase db, SupplierCache suppliers, ByteBuffer map, long rows,
+                                    SQLiteStatement insert) {
+        Decoder decoder = new Decoder(map);
+        long id = 0;
+        for(long i = 0; i < rows; i++) {
+            int length = (int) decoder.readVarLong();
+            int end = map.position() + length;
+
+            id += decoder.readVarLong();
+            insert.bindLong(1, id);
+            bindString(insert, 2, decoder.readString());
+            insert.bindLong(3, decoder.readZigZag());
+            insert.bindLong(4, decoder.readZigZag());
+            bindSupplier(db, suppliers, insert, decoder.readString());
+            bindString(insert, 6, decoder.readString());
+            insert.bindLong(7, map.position() < end ? decoder.readZigZag() : Item.DEFAULT_REORDER_THRESHOLD);
+            insert.executeInsert();
+
+            map.position(end);
+        }
+    }
+
+    /**
+     * This method inserts the rows of the column layout, reading each
+     * row from a view of the mapped file per column block. Columns the
+     * snapshot has no block for take their default.
+     */
+    private static void restoreColumns(SQLiteDatabase db, SupplierCache suppliers, ByteBuffer map, long rows,
+                                       long[] offsets, SQLiteStatement insert) {
+        Decoder[] blocks = new Decoder[offsets.length];
+        for(int i = 0; i < blocks.length; i++) {
+            ByteBuffer block = map.duplicate();
+            block.position((int) offsets[i]);
+            blocks[i] = new Decoder(block);
+        }
+
+        Decoder ids = blocks[0];
+        Decoder thresholds = blocks.length > 1 + REORDER_THRESHOLD ? blocks[1 + REORDER_THRESHOLD] : null;
+        long id = 0;
+        for(long i = 0; i < rows; i++) {
+            id += ids.readVarLong();
+            insert.bindLong(1, id);
+            bindString(insert, 2, blocks[1 + DESCRIPTION].readString());
+            insert.bindLong(3, blocks[1 + PRICE_CENTS].readZigZag());
+            insert.bindLong(4, blocks[1 + QUANTITY].readZigZag());
+            bindSupplier(db, suppliers, insert, blocks[1 + SUPPLIER_EMAIL].readString());
+            bindString(insert, 6, blocks[1 + IMAGE].readString());
+            insert.bindLong(7, thresholds != null ? thresholds.readZigZag() : Item.DEFAULT_REORDER_THRESHOLD);
+            insert.executeInsert();
+        }
+    }
+
+    /**
+     * This method binds the id of the supplier with an email, added if
+     * it is new. A missing email is bound as null and rejected.
+     */
+    private static void bindSupplier(SQLiteDatabase db, SupplierCache suppliers, SQLiteStatement insert,
+                                     String email) {
+        if(email == null) {
+            insert.bindNull(5);
+        } else {
+            insert.bindLong(5, suppliers.getId(db, email));
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if(value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * This method checks the header of a snapshot.
+     *
+     * @return The format version.
+     * @throws IOException If the file is not a snapshot this version can read.
+     */
+    private static int readHeader(ByteBuffer map) throws IOException {
+        map.position(0);
+        if(map.getInt() != MAGIC) {
+            throw new IOException("Not an inventory snapshot.");
+        }
+
+        int version = map.getShort();
+        if(version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        int layout = map.get();
+        if(layout != LAYOUT_ROWS && layout != LAYOUT_COLUMNS) {
+            throw new IOException("Unknown snapshot layout " + layout);
+        }
+
+        map.get();
+        int schemaVersion = map.getInt();
+        if(schemaVersion > InventoryContract.DATABASE_VERSION) {
+            throw new IOException("Snapshot of a newer database version " + schemaVersion);
+        }
+        return version;
+    }
+
+    /**
+     * This method compares the checksum of a snapshot with its content.
+     *
+     * @throws IOException If the file is damaged.
+     */
+    private static void verifyChecksum(ByteBuffer map) throws IOException {
+        ByteBuffer content = map.duplicate();
+        content.position(0);
+        content.limit(map.limit() - 4);
+
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[BUFFER_SIZE];
+        while(content.hasRemaining()) {
+            int length = Math.min(chunk.length, content.remaining());
+            content.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+
+        if((int) crc.getValue() != map.getInt(map.limit() - 4)) {
+            throw new IOException("Snapshot checksum does not match.");
+        }
+    }
+
+    /**
+     * This class encodes values into a growable byte array.
+     */
+    static final class Encoder {
+
+        byte[] bytes = new byte[256];
+        int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            if(value == null) {
+                writeVarLong(0);
+                return;
+            }
+
+            byte[] utf8 = value.getBytes(UTF_8);
+            writeVarLong(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        private void ensure(int length) {
+            if(size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+            }
+        }
+    }
+
+    /**
+     * This class decodes values from a buffer.
+     */
+    static final class Decoder {
+
+        private final ByteBuffer buffer;
+        private byte[] scratch = new byte[256];
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+            return value;
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarLong() - 1;
+            if(length < 0) {
+                return null;
+            }
+
+            if(length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, UTF_8);
+        }
+    }
+
+    /**
+     * This class writes a snapshot through a buffer to a file channel,
+     * updating the checksum with each flushed buffer.
+     */
+    private static final class SnapshotWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private long flushed;
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void writeHeader(int layout) throws IOException {
+            buffer.putInt(MAGIC);
+            buffer.putShort((short) FORMAT_VERSION);
+            buffer.put((byte) layout);
+            buffer.put((byte) 0);
+            buffer.putInt(InventoryContract.DATABASE_VERSION);
+            buffer.putLong(System.currentTimeMillis());
+        }
+
+        void writeFooter(long rows, long[] offsets) throws IOException {
+            ensure(FOOTER_SIZE - 4);
+            buffer.putLong(rows);
+            for(long offset : offsets) {
+                buffer.putLong(offset);
+            }
+            flush();
+
+            // The checksum covers every byte before it
+            buffer.putInt((int) crc.getValue());
+            flush();
+        }
+
+        void writeVarLong(long value) throws IOException {
+            ensure(10);
+            while((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            if(length > buffer.remaining()) {
+                flush();
+            }
+
+            if(length > buffer.capacity()) {
+                crc.update(bytes, offset, length);
+                writeFully(ByteBuffer.wrap(bytes, offset, length));
+            } else {
+                buffer.put(bytes, offset, length);
+            }
+        }
+
+        private void ensure(int length) throws IOException {
+            if(buffer.remaining() < length) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.array(), 0, buffer.limit());
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while(bytes.hasRemaining()) {
+                flushed += channel.write(bytes);
+            }
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package udacity.android.inventory.data;
 
+import android.content.ContentResolver;
+import android.net.Uri;
 import android.provider.BaseColumns;
 
+import udacity.android.inventory.model.Item;
+
 /**
  * This class serves as a contract for interacting with the
  * inventory database.
@@ -15,7 +19,27 @@ public final class InventoryContract {
     public final static String DATABASE_NAME = "inventory.db";
 
     /** The version of the database. */
-    public final static int DATABASE_VERSION = 1;
+    public final static int DATABASE_VERSION = 9;
+
+    /** The authority of the inventory content provider. */
+    public final static String CONTENT_AUTHORITY = "udacity.android.inventory";
+
+    /** The base of all content URIs of the provider. */
+    public final static Uri BASE_CONTENT_URI = Uri.parse("content://" + CONTENT_AUTHORITY);
+
+    /** The path of the inventory table. */
+    public final static String PATH_INVENTORY = "inventory";
+
+    /**
+     * Provider method to add a delta to the quantity of an item. The arg
+     * is the item id and the extras hold EXTRA_DELTA. The result holds
+     * EXTRA_QUANTITY, the new quantity or InventoryDbHelper.ADJUST_REJECTED.
+     */
+    public final static String METHOD_ADJUST_QUANTITY = "adjustQuantity";
+
+    /** Extras of the provider methods. */
+    public final static String EXTRA_DELTA = "delta";
+    public final static String EXTRA_QUANTITY = "quantity";
 
     /**
      * Private constructor throws AssertionError to
@@ -37,6 +61,17 @@ public final class InventoryContract {
         /** Table name for the inventory table */
         public final static String TABLE_NAME = "inventory";
 
+        /** The content URI of the inventory table. */
+        public final static Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_INVENTORY);
+
+        /** The MIME type of a list of items. */
+        public final static String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY;
+
+        /** The MIME type of a single item. */
+        public final static String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY;
+
         /** Column names. */
 
         /**
@@ -54,11 +89,11 @@ public final class InventoryContract {
         public final static String COLUMN_DESCRIPTION = "description";
 
         /**
-         * The price of the item.
+         * The price of the item in cents, so totals are exact.
          *
-         * Type: REAL
+         * Type: INTEGER
          */
-        public final static String COLUMN_PRICE = "price";
+        public final static String COLUMN_PRICE_CENTS = "price_cents";
 
         /**
          * The quantity of the item.
@@ -68,7 +103,16 @@ public final class InventoryContract {
         public final static String COLUMN_QUANTITY = "quantity";
 
         /**
-         * The supplier of the item.
+         * The id of the supplier of the item in the suppliers table.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SUPPLIER_ID = "supplier_id";
+
+        /**
+         * The email of the supplier of the item. It is not stored in
+         * this table: the provider joins it from the suppliers table in
+         * queries, and stores the id of the supplier for it in writes.
          *
          * Type: TEXT
          */
@@ -81,6 +125,14 @@ public final class InventoryContract {
          */
         public final static String COLUMN_IMAGE = "image";
 
+        /**
+         * The item is low on stock, and should be reordered, when its
+         * quantity falls below this number. Zero never reorders.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_REORDER_THRESHOLD = "reorder_threshold";
+
         /**
          * String to create the table if it does not already exist.
          */
@@ -88,10 +140,532 @@ public final class InventoryContract {
                 InventoryContract.InventoryEntry.TABLE_NAME + "(" +
                 InventoryContract.InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
                 InventoryContract.InventoryEntry.COLUMN_DESCRIPTION + " TEXT NOT NULL," +
-                InventoryContract.InventoryEntry.COLUMN_PRICE + " REAL NOT NULL DEFAULT 0," +
+                InventoryContract.InventoryEntry.COLUMN_PRICE_CENTS + " INTEGER NOT NULL DEFAULT 0," +
                 InventoryContract.InventoryEntry.COLUMN_QUANTITY + " INTEGER NOT NULL DEFAULT 0," +
-                InventoryContract.InventoryEntry.COLUMN_SUPPLIER_EMAIL + " TEXT NOT NULL," +
-                InventoryEntry.COLUMN_IMAGE + " TEXT" + ");";
+                InventoryContract.InventoryEntry.COLUMN_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES " +
+                InventorySupplierEntry.TABLE_NAME + "(" + InventorySupplierEntry._ID + ")," +
+                InventoryEntry.COLUMN_IMAGE + " TEXT," +
+                InventoryEntry.COLUMN_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT " +
+                Item.DEFAULT_REORDER_THRESHOLD + ");";
+
+        /**
+         * The columns displayed by the main list, including the image for
+         * the thumbnail. The supplier is only needed by the details screen.
+         */
+        public static final String[] LIST_PROJECTION = {
+                _ID,
+                COLUMN_DESCRIPTION,
+                COLUMN_PRICE_CENTS,
+                COLUMN_QUANTITY,
+                COLUMN_IMAGE
+        };
+
+        /** Name of the covering index for the main list. */
+        public static final String LIST_INDEX_NAME = "inventory_list_index";
+
+        /**
+         * String to create the covering index for the main list. It is
+         * ordered by id so the keyset pages are read from the index alone
+         * without visiting the wider table rows.
+         */
+        public static final String CREATE_LIST_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                LIST_INDEX_NAME + " ON " + TABLE_NAME + "(" +
+                _ID + "," +
+                COLUMN_DESCRIPTION + "," +
+                COLUMN_PRICE_CENTS + "," +
+                COLUMN_QUANTITY + "," +
+                COLUMN_IMAGE + ");";
+
+        /** Name of the index of the items of each supplier. */
+        public static final String SUPPLIER_INDEX_NAME = "inventory_supplier_index";
+
+        /**
+         * String to create the index of the items of each supplier, so
+         * the items of a supplier are found without scanning the table.
+         */
+        public static final String CREATE_SUPPLIER_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                SUPPLIER_INDEX_NAME + " ON " + TABLE_NAME + "(" + COLUMN_SUPPLIER_ID + ");";
+
+        /** The condition of the rows which are low on stock. */
+        public static final String LOW_STOCK_SELECTION =
+                COLUMN_QUANTITY + " < " + COLUMN_REORDER_THRESHOLD;
+
+        /** Name of the partial index of the rows which are low on stock. */
+        public static final String LOW_STOCK_INDEX_NAME = "inventory_low_stock_index";
+
+        /**
+         * String to create the partial index of the rows which are low on
+         * stock, ordered by supplier. It only holds the few rows below
+         * their threshold, so it is cheap to keep, and a query with
+         * LOW_STOCK_SELECTION reads them grouped by supplier without
+         * scanning or sorting the table. Partial indexes need SQLite
+         * 3.8.0, see InventoryDbHelper.createLowStockIndex.
+         */
+        public static final String CREATE_LOW_STOCK_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                LOW_STOCK_INDEX_NAME + " ON " + TABLE_NAME + "(" +
+                COLUMN_SUPPLIER_ID + ") WHERE " + LOW_STOCK_SELECTION + ";";
+
+        /**
+         * The value of the stock of a group of items in cents, the sum
+         * of the price times the quantity. Computed by the valuation
+         * queries, it is not stored.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_STOCK_VALUE_CENTS = "stock_value_cents";
+
+    }
+
+    /**
+     * Inner class to represent the suppliers table, which stores each
+     * supplier email once. Items refer to their supplier by id.
+     *
+     * @author Joseph Stewart
+     * @version 1.0
+     */
+    public static final class InventorySupplierEntry implements BaseColumns {
+
+        /** Table name for the suppliers table */
+        public final static String TABLE_NAME = "suppliers";
+
+        /** Column names. */
+
+        /**
+         * Unique ID number for each supplier.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * The email of the supplier, unique.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_EMAIL = "email";
+
+        /**
+         * String to create the table if it does not already exist. The
+         * unique constraint indexes the emails.
+         */
+        public static final String CREATE_SUPPLIERS_TABLE = "CREATE TABLE IF NOT EXISTS " +
+                TABLE_NAME + "(" +
+                _ID + " INTEGER PRIMARY KEY," +
+                COLUMN_EMAIL + " TEXT NOT NULL UNIQUE);";
+
+    }
+
+    /**
+     * Inner class to represent the stock movements table, an append-only
+     * ledger of every change to the quantity of an item. The quantity
+     * column of the inventory table is a projection of the ledger: it
+     * always equals the sum of the deltas of the movements of the item,
+     * and every write which changes it appends a movement in the same
+     * transaction. Rows hold integers only, so each stays a few bytes.
+     *
+     * Movements older than a few days are folded into one row per item,
+     * kind and day by compaction, which keeps the sum of each item.
+     *
+     * @author Joseph Stewart
+     * @version 1.1
+     */
+    public static final class InventoryMovementEntry implements BaseColumns {
+
+        /** Table name for the stock movements table */
+        public final static String TABLE_NAME = "stock_movements";
+
+        /** Kinds of movement. */
+        public static final int KIND_SALE = 1;
+        public static final int KIND_RESTOCK = 2;
+        public static final int KIND_ADJUSTMENT = 3;
+
+        /** The length of the days movements are folded into, in seconds. */
+        public static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+        /** Column names. */
+
+        /**
+         * Unique ID number for each movement, in the order they were added.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * The id of the item in the inventory table.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ITEM_ID = "item_id";
+
+        /**
+         * KIND_SALE, KIND_RESTOCK or KIND_ADJUSTMENT.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_KIND = "kind";
+
+        /**
+         * The change in quantity, negative for a sale.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_DELTA = "delta";
+
+        /**
+         * The number of movements folded into the row, 1 until compacted.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_COUNT = "count";
+
+        /**
+         * The time of the movement in seconds since the epoch, or the
+         * start of the UTC day of a folded row.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_TIME = "time";
+
+        /**
+         * String to create the table if it does not already exist.
+         */
+        public static final String CREATE_MOVEMENTS_TABLE = "CREATE TABLE IF NOT EXISTS " +
+                TABLE_NAME + "(" +
+                _ID + " INTEGER PRIMARY KEY," +
+                COLUMN_ITEM_ID + " INTEGER NOT NULL," +
+                COLUMN_KIND + " INTEGER NOT NULL," +
+                COLUMN_DELTA + " INTEGER NOT NULL," +
+                COLUMN_COUNT + " INTEGER NOT NULL DEFAULT 1," +
+                COLUMN_TIME + " INTEGER NOT NULL);";
+
+        /** Name of the index of the movements of each item. */
+        public static final String ITEM_INDEX_NAME = TABLE_NAME + "_item_index";
+
+        /**
+         * String to create the index of the movements of each item, in
+         * the order they were added.
+         */
+        public static final String CREATE_ITEM_INDEX = "CREATE INDEX IF NOT EXISTS " +
+                ITEM_INDEX_NAME + " ON " + TABLE_NAME + "(" + COLUMN_ITEM_ID + ");";
+
+        /** The current time in seconds, in SQL. */
+        private static final String NOW = "CAST(strftime('%s', 'now') AS INTEGER)";
+
+        /**
+         * String to append an opening adjustment for every item with a
+         * quantity, used when the table is created.
+         */
+        public static final String POPULATE_MOVEMENTS = "INSERT INTO " + TABLE_NAME + "(" +
+                COLUMN_ITEM_ID + "," + COLUMN_KIND + "," + COLUMN_DELTA + "," + COLUMN_TIME + ") SELECT " +
+                InventoryEntry._ID + "," + KIND_ADJUSTMENT + "," + InventoryEntry.COLUMN_QUANTITY + "," + NOW +
+                " FROM " + InventoryEntry.TABLE_NAME +
+                " WHERE " + InventoryEntry.COLUMN_QUANTITY + " != 0;";
+
+        /** Names of the triggers which follow the rows of the inventory table. */
+        public static final String INSERT_TRIGGER_NAME = TABLE_NAME + "_insert";
+        public static final String DELETE_TRIGGER_NAME = TABLE_NAME + "_delete";
+
+        /**
+         * Trigger to append the opening adjustment of an inserted item,
+         * so every way of inserting rows keeps the projection.
+         */
+        public static final String CREATE_INSERT_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+                INSERT_TRIGGER_NAME + " AFTER INSERT ON " + InventoryEntry.TABLE_NAME +
+                " WHEN new." + InventoryEntry.COLUMN_QUANTITY + " != 0 BEGIN " +
+                "INSERT INTO " + TABLE_NAME + "(" +
+                COLUMN_ITEM_ID + "," + COLUMN_KIND + "," + COLUMN_DELTA + "," + COLUMN_TIME + ") VALUES (" +
+                "new." + InventoryEntry._ID + "," + KIND_ADJUSTMENT + ",new." + InventoryEntry.COLUMN_QUANTITY + "," +
+                NOW + "); END;";
+
+        /**
+         * Trigger to remove the movements of a deleted item.
+         */
+        public static final String CREATE_DELETE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+                DELETE_TRIGGER_NAME + " AFTER DELETE ON " + InventoryEntry.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_ITEM_ID + " = old." + InventoryEntry._ID + "; END;";
+
+        /**
+         * The number of items whose quantity is not the sum of their
+         * movements, zero while the projection is current.
+         */
+        public static final String SELECT_STALE_COUNT = "SELECT COUNT(*) FROM " + InventoryEntry.TABLE_NAME +
+                " WHERE " + InventoryEntry.COLUMN_QUANTITY + " != " + sumOfMovements();
+
+        /**
+         * String to rewrite the quantity of every stale item from its
+         * movements.
+         */
+        public static final String REBUILD_QUANTITIES = "UPDATE " + InventoryEntry.TABLE_NAME +
+                " SET " + InventoryEntry.COLUMN_QUANTITY + " = " + sumOfMovements() +
+                " WHERE " + InventoryEntry.COLUMN_QUANTITY + " != " + sumOfMovements() + ";";
+
+        /**
+         * String to remove the movements of items which are no longer in
+         * the inventory table, for writes which drop the triggers.
+         */
+        public static final String DELETE_ORPHANED_MOVEMENTS = "DELETE FROM " + TABLE_NAME +
+                " WHERE " + COLUMN_ITEM_ID + " NOT IN (SELECT " + InventoryEntry._ID +
+                " FROM " + InventoryEntry.TABLE_NAME + ");";
+
+        /**
+         * String to append an adjustment for every item whose quantity is
+         * not the sum of its movements, so the projection is current
+         * again and the earlier movements are kept.
+         */
+        public static final String RECONCILE_MOVEMENTS = "INSERT INTO " + TABLE_NAME + "(" +
+                COLUMN_ITEM_ID + "," + COLUMN_KIND + "," + COLUMN_DELTA + "," + COLUMN_TIME + ") SELECT " +
+                InventoryEntry._ID + "," + KIND_ADJUSTMENT + "," +
+                InventoryEntry.COLUMN_QUANTITY + " - " + sumOfMovements() + "," + NOW +
+                " FROM " + InventoryEntry.TABLE_NAME +
+                " WHERE " + InventoryEntry.COLUMN_QUANTITY + " != " + sumOfMovements() + ";";
+
+        /**
+         * The sum of the deltas of the movements of a row of the
+         * inventory table, in a query over it.
+         */
+        private static String sumOfMovements() {
+            return "(SELECT IFNULL(SUM(" + COLUMN_DELTA + "), 0) FROM " + TABLE_NAME +
+                    " WHERE " + COLUMN_ITEM_ID + " = " + InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + ")";
+        }
+
+    }
+
+    /**
+     * Inner class to represent the full-text search table which mirrors
+     * the description and supplier of every row of the inventory table.
+     * The docid of each row is the id of the inventory row. The table is
+     * kept in sync by triggers on the inventory table.
+     *
+     * @author Joseph Stewart
+     * @version 1.0
+     */
+    public static final class InventorySearchEntry {
+
+        /** Table name for the full-text search table */
+        public final static String TABLE_NAME = "inventory_fts";
+
+        /** Column names. */
+
+        /**
+         * The id of the mirrored inventory row.
+         *
+         * Type: INTEGER
+         */
+        public final static String DOCID = "docid";
+
+        /**
+         * The description of the item.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_DESCRIPTION = InventoryEntry.COLUMN_DESCRIPTION;
+
+        /**
+         * The supplier of the item.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SUPPLIER_EMAIL = InventoryEntry.COLUMN_SUPPLIER_EMAIL;
+
+        /**
+         * String to create the table if it does not already exist.
+         */
+        public static final String CREATE_SEARCH_TABLE = "CREATE VIRTUAL TABLE IF NOT EXISTS " +
+                TABLE_NAME + " USING fts4(" +
+                COLUMN_DESCRIPTION + "," +
+                COLUMN_SUPPLIER_EMAIL + ");";
+
+        /**
+         * String to copy the rows already in the inventory table.
+         */
+        public static final String POPULATE_SEARCH_TABLE = "INSERT INTO " + TABLE_NAME + "(" +
+                DOCID + "," + COLUMN_DESCRIPTION + "," + COLUMN_SUPPLIER_EMAIL + ") SELECT " +
+                InventoryEntry._ID + "," +
+                InventoryEntry.COLUMN_DESCRIPTION + "," +
+                supplierEmail("") + " FROM " + InventoryEntry.TABLE_NAME + ";";
+
+        /**
+         * The email of the supplier of a row of the inventory table.
+         *
+         * @param row The prefix of the row columns, "new." in a trigger
+         *            and empty in a query.
+         */
+        private static String supplierEmail(String row) {
+            return "(SELECT " + InventorySupplierEntry.COLUMN_EMAIL + " FROM " + InventorySupplierEntry.TABLE_NAME +
+                    " WHERE " + InventorySupplierEntry._ID + " = " + row + InventoryEntry.COLUMN_SUPPLIER_ID + ")";
+        }
+
+        /** Names of the triggers which keep the table in sync. */
+        public static final String INSERT_TRIGGER_NAME = TABLE_NAME + "_insert";
+        public static final String UPDATE_TRIGGER_NAME = TABLE_NAME + "_update";
+        public static final String DELETE_TRIGGER_NAME = TABLE_NAME + "_delete";
+
+        /**
+         * Triggers to mirror inserts, updates and deletes of the inventory table.
+         */
+        public static final String CREATE_INSERT_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+                INSERT_TRIGGER_NAME + " AFTER INSERT ON " + InventoryEntry.TABLE_NAME + " BEGIN " +
+                "INSERT INTO " + TABLE_NAME + "(" +
+                DOCID + "," + COLUMN_DESCRIPTION + "," + COLUMN_SUPPLIER_EMAIL + ") VALUES (" +
+                "new." + InventoryEntry._ID + "," +
+                "new." + InventoryEntry.COLUMN_DESCRIPTION + "," +
+                supplierEmail("new.") + "); END;";
+
+        public static final String CREATE_UPDATE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+                UPDATE_TRIGGER_NAME + " AFTER UPDATE OF " +
+                InventoryEntry.COLUMN_DESCRIPTION + "," + InventoryEntry.COLUMN_SUPPLIER_ID +
+                " ON " + InventoryEntry.TABLE_NAME + " BEGIN " +
+                "UPDATE " + TABLE_NAME + " SET " +
+                COLUMN_DESCRIPTION + " = new." + InventoryEntry.COLUMN_DESCRIPTION + "," +
+                COLUMN_SUPPLIER_EMAIL + " = " + supplierEmail("new.") +
+                " WHERE " + DOCID + " = old." + InventoryEntry._ID + "; END;";
+
+        public static final String CREATE_DELETE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+                DELETE_TRIGGER_NAME + " AFTER DELETE ON " + InventoryEntry.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + TABLE_NAME + " WHERE " + DOCID + " = old." + InventoryEntry._ID + "; END;";
+
+    }
+
+    /**
+     * Inner class to represent the summary table, a single row holding
+     * totals over the inventory table. The row is kept current by
+     * triggers on the inventory table, so reading it does not scan the
+     * inventory.
+     *
+     * @author Joseph Stewart
+     * @version 1.0
+     */
+    public static final class InventorySummaryEntry implements BaseColumns {
+
+        /** Table name for the summary table */
+        public final static String TABLE_NAME = "inventory_summary";
+
+        /** The id of the only row. */
+        public final static long SUMMARY_ID = 1;
+
+        /** Column names. */
+
+        /**
+         * The id of the row, always SUMMARY_ID.
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * The number of items.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_ITEM_COUNT = "item_count";
+
+        /**
+         * The total quantity of all items.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UNIT_COUNT = "unit_count";
+
+        /**
+         * The value of the stock in cents, the sum of the price times the
+         * quantity of all items.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_STOCK_VALUE_CENTS = InventoryEntry.COLUMN_STOCK_VALUE_CENTS;
+
+        /**
+         * The number of items with fewer units than their reorder threshold.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_LOW_STOCK_COUNT = "low_stock_count";
+
+        /**
+         * String to create the table if it does not already exist.
+         */
+        public static final String CREATE_SUMMARY_TABLE = "CREATE TABLE IF NOT EXISTS " +
+                TABLE_NAME + "(" +
+                _ID + " INTEGER PRIMARY KEY," +
+                COLUMN_ITEM_COUNT + " INTEGER NOT NULL DEFAULT 0," +
+                COLUMN_UNIT_COUNT + " INTEGER NOT NULL DEFAULT 0," +
+                COLUMN_STOCK_VALUE_CENTS + " INTEGER NOT NULL DEFAULT 0," +
+                COLUMN_LOW_STOCK_COUNT + " INTEGER NOT NULL DEFAULT 0);";
+
+        /**
+         * Whether a row of the inventory table is low on stock, as 0 or 1.
+         *
+         * @param row The prefix of the row columns, "new." or "old." in a
+         *            trigger and empty in a query.
+         */
+        private static String lowStock(String row) {
+            return "(" + row + InventoryEntry.COLUMN_QUANTITY + " < " +
+                    row + InventoryEntry.COLUMN_REORDER_THRESHOLD + ")";
+        }
+
+        /**
+         * The totals computed from scratch over the inventory table, in
+         * the column order of the summary table.
+         */
+        public static final String SELECT_TOTALS = "SELECT " + SUMMARY_ID + "," +
+                "COUNT(*)," +
+                "IFNULL(SUM(" + InventoryEntry.COLUMN_QUANTITY + "), 0)," +
+                "IFNULL(SUM(" + InventoryEntry.COLUMN_PRICE_CENTS + " * " + InventoryEntry.COLUMN_QUANTITY + "), 0)," +
+                "IFNULL(SUM" + lowStock("") + ", 0)" +
+                " FROM " + InventoryEntry.TABLE_NAME;
+
+        /**
+         * String to write the summary row from scratch, used when the
+         * table is created and to repair it.
+         */
+        public static final String REBUILD_SUMMARY = "INSERT OR REPLACE INTO " + TABLE_NAME + "(" +
+                _ID + "," + COLUMN_ITEM_COUNT + "," + COLUMN_UNIT_COUNT + "," +
+                COLUMN_STOCK_VALUE_CENTS + "," + COLUMN_LOW_STOCK_COUNT + ") " + SELECT_TOTALS + ";";
+
+        /** Names of the triggers which keep the summary current. */
+        public static final String INSERT_TRIGGER_NAME = TABLE_NAME + "_insert";
+        public static final String UPDATE_TRIGGER_NAME = TABLE_NAME + "_update";
+        public static final String DELETE_TRIGGER_NAME = TABLE_NAME + "_delete";
+
+        /**
+         * Triggers to add inserted rows to the totals, subtract deleted
+         * rows, and apply the difference of updated rows.
+         */
+        public static final String CREATE_INSERT_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+                INSERT_TRIGGER_NAME + " AFTER INSERT ON " + InventoryEntry.TABLE_NAME + " BEGIN " +
+                "UPDATE " + TABLE_NAME + " SET " +
+                COLUMN_ITEM_COUNT + " = " + COLUMN_ITEM_COUNT + " + 1," +
+                COLUMN_UNIT_COUNT + " = " + COLUMN_UNIT_COUNT + " + new." + InventoryEntry.COLUMN_QUANTITY + "," +
+                COLUMN_STOCK_VALUE_CENTS + " = " + COLUMN_STOCK_VALUE_CENTS + " + new." +
+                InventoryEntry.COLUMN_PRICE_CENTS + " * new." + InventoryEntry.COLUMN_QUANTITY + "," +
+                COLUMN_LOW_STOCK_COUNT + " = " + COLUMN_LOW_STOCK_COUNT + " + " + lowStock("new.") +
+                " WHERE " + _ID + " = " + SUMMARY_ID + "; END;";
+
+        public static final String CREATE_UPDATE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+                UPDATE_TRIGGER_NAME + " AFTER UPDATE OF " +
+                InventoryEntry.COLUMN_PRICE_CENTS + "," + InventoryEntry.COLUMN_QUANTITY + "," +
+                InventoryEntry.COLUMN_REORDER_THRESHOLD +
+                " ON " + InventoryEntry.TABLE_NAME + " BEGIN " +
+                "UPDATE " + TABLE_NAME + " SET " +
+                COLUMN_UNIT_COUNT + " = " + COLUMN_UNIT_COUNT + " + new." + InventoryEntry.COLUMN_QUANTITY +
+                " - old." + InventoryEntry.COLUMN_QUANTITY + "," +
+                COLUMN_STOCK_VALUE_CENTS + " = " + COLUMN_STOCK_VALUE_CENTS + " + new." +
+                InventoryEntry.COLUMN_PRICE_CENTS + " * new." + InventoryEntry.COLUMN_QUANTITY + " - old." +
+                InventoryEntry.COLUMN_PRICE_CENTS + " * old." + InventoryEntry.COLUMN_QUANTITY + "," +
+                COLUMN_LOW_STOCK_COUNT + " = " + COLUMN_LOW_STOCK_COUNT + " + " + lowStock("new.") +
+                " - " + lowStock("old.") +
+                " WHERE " + _ID + " = " + SUMMARY_ID + "; END;";
+
+        public static final String CREATE_DELETE_TRIGGER = "CREATE TRIGGER IF NOT EXISTS " +
+                DELETE_TRIGGER_NAME + " AFTER DELETE ON " + InventoryEntry.TABLE_NAME + " BEGIN " +
+                "UPDATE " + TABLE_NAME + " SET " +
+                COLUMN_ITEM_COUNT + " = " + COLUMN_ITEM_COUNT + " - 1," +
+                COLUMN_UNIT_COUNT + " = " + COLUMN_UNIT_COUNT + " - old." + InventoryEntry.COLUMN_QUANTITY + "," +
+                COLUMN_STOCK_VALUE_CENTS + " = " + COLUMN_STOCK_VALUE_CENTS + " - old." +
+                InventoryEntry.COLUMN_PRICE_CENTS + " * old." + InventoryEntry.COLUMN_QUANTITY + "," +
+                COLUMN_LOW_STOCK_COUNT + " = " + COLUMN_LOW_STOCK_COUNT + " - " + lowStock("old.") +
+                " WHERE " + _ID + " = " + SUMMARY_ID + "; END;";
 
     }
 
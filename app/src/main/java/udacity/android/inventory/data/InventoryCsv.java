@@ -0,0 +1,341 @@
+package udacity.android.inventory.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.ItemValidator;
+import udacity.android.inventory.model.Money;
+
+/**
+ * This class imports and exports the inventory as comma separated
+ * values, one item per record with the columns of EXPORT_HEADER. Both
+ * directions stream: an import validates and writes each record as it
+ * is read, and an export writes each row as it is read from a page of
+ * rows, so the memory used does not depend on the number of items.
+ *
+ * The methods run on the calling thread, see CsvTransfer to run them
+ * in the background.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+public final class InventoryCsv {
+
+    /** The header record written by exports and skipped by imports. */
+    public static final String EXPORT_HEADER =
+            "description,price,quantity,supplier_email,image,reorder_threshold";
+
+    /** The number of rows written per transaction by an import. */
+    public static final int IMPORT_CHUNK_SIZE = 5000;
+
+    /** The number of rows between progress reports. */
+    public static final int PROGRESS_INTERVAL = 1000;
+
+    /** The number of rows read per query by an export. */
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    private static final String RECORD_END = "\r\n";
+
+    /**
+     * Reads the exported columns of a page of rows after an id. The
+     * supplier is read as its id and written as its cached email.
+     */
+    private static final String EXPORT_PAGE_SQL = "SELECT " +
+            InventoryEntry._ID + ", " +
+            InventoryEntry.COLUMN_DESCRIPTION + ", " +
+            InventoryEntry.COLUMN_PRICE_CENTS + ", " +
+            InventoryEntry.COLUMN_QUANTITY + ", " +
+            InventoryEntry.COLUMN_SUPPLIER_ID + ", " +
+            InventoryEntry.COLUMN_IMAGE + ", " +
+            InventoryEntry.COLUMN_REORDER_THRESHOLD + " FROM " + InventoryEntry.TABLE_NAME +
+            " WHERE " + InventoryEntry._ID + " > ? ORDER BY " + InventoryEntry._ID + " LIMIT ?";
+
+    /**
+     * Interface to report the progress of an import or export and to
+     * cancel it. Both methods are called on the thread running it.
+     */
+    public interface Progress {
+
+        /**
+         * Called every PROGRESS_INTERVAL rows.
+         *
+         * @param rows The number of rows imported or exported so far.
+         */
+        void onProgress(long rows);
+
+        /**
+         * Called before each row.
+         *
+         * @return True to stop after the rows written so far.
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * The outcome of an import or export.
+     */
+    public static final class Result {
+
+        private final long rows;
+        private final long rejected;
+        private final long firstRejectedLine;
+        private final boolean cancelled;
+
+        Result(long rows, long rejected, long firstRejectedLine, boolean cancelled) {
+            this.rows = rows;
+            this.rejected = rejected;
+            this.firstRejectedLine = firstRejectedLine;
+            this.cancelled = cancelled;
+        }
+
+        /** The number of items imported or exported. */
+        public long getRows() {
+            return rows;
+        }
+
+        /** The number of records an import skipped as invalid. */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** The line of the first skipped record, or -1 if there is none. */
+        public long getFirstRejectedLine() {
+            return firstRejectedLine;
+        }
+
+        /** Whether the transfer was cancelled before the end. */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Private constructor throws AssertionError to
+     * prevent instantiation.
+     */
+    private InventoryCsv() {
+        throw new AssertionError();
+    }
+
+    /**
+     * This method imports the records of a CSV input as new items. Each
+     * record is checked with the rules of the add item form and skipped
+     * if it is not valid or malformed, like a record with a stray quote.
+     * Missing image and reorder threshold fields are allowed, and a
+     * leading header record is skipped. The items are committed in
+     * transactions of IMPORT_CHUNK_SIZE rows, so a cancelled or failed
+     * import keeps the rows committed before it stopped.
+     *
+     * @param dbHelper The database helper.
+     * @param in The input, which is not closed.
+     * @param progress Receives the progress and is asked for cancellation.
+     * @return The result.
+     * @throws IOException If the input cannot be read.
+     */
+    public static Result importCsv(InventoryDbHelper dbHelper, Reader in, Progress progress) throws IOException {
+        RecordIterator records = new RecordIterator(new CsvReader(in), progress);
+        long rows = dbHelper.insertAll(records, IMPORT_CHUNK_SIZE, null);
+
+        if(records.error != null) {
+            throw records.error;
+        }
+        return new Result(rows, records.rejected, records.firstRejectedLine, records.cancelled);
+    }
+
+    /**
+     * This method writes every item to a CSV output in id order, after
+     * the EXPORT_HEADER record. The rows are read in pages by id, so
+     * items written during the export are not repeated or skipped.
+     *
+     * @param dbHelper The database helper.
+     * @param out The output, which is flushed but not closed.
+     * @param progress Receives the progress and is asked for cancellation.
+     * @return The result.
+     * @throws IOException If the output cannot be written.
+     */
+    public static Result exportCsv(InventoryDbHelper dbHelper, Writer out, Progress progress) throws IOException {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        SupplierCache suppliers = dbHelper.getSupplierCache();
+        String[] args = new String[] { "0", String.valueOf(EXPORT_PAGE_SIZE) };
+        char[] buffer = new char[32];
+        long rows = 0;
+        boolean cancelled = false;
+
+        out.write(EXPORT_HEADER);
+        out.write(RECORD_END);
+
+        int read;
+        do {
+            Cursor page = db.rawQuery(EXPORT_PAGE_SQL, args);
+            try {
+                read = page.getCount();
+                while(page.moveToNext()) {
+                    if(progress.isCancelled()) {
+                        cancelled = true;
+                        break;
+                    }
+
+                    writeField(out, page.getString(1));
+                    out.write(',');
+                    out.write(buffer, 0, Money.format(page.getLong(2), buffer, 0));
+                    out.write(',');
+                    out.write(buffer, 0, Money.formatInteger(page.getInt(3), buffer, 0));
+                    out.write(',');
+                    writeField(out, suppliers.getEmail(db, page.getLong(4)));
+                    out.write(',');
+                    writeField(out, page.getString(5));
+                    out.write(',');
+                    out.write(buffer, 0, Money.formatInteger(page.getInt(6), buffer, 0));
+                    out.write(RECORD_END);
+
+                    args[0] = page.getString(0);
+                    if(++rows % PROGRESS_INTERVAL == 0) {
+                        progress.onProgress(rows);
+                    }
+                }
+            } finally {
+                page.close();
+            }
+        } while(read == EXPORT_PAGE_SIZE && !cancelled);
+
+        out.flush();
+        return new Result(rows, 0, -1, cancelled);
+    }
+
+    /**
+     * This method writes a field, quoted if it holds a comma, a quote
+     * or a line break. A null field is written empty.
+     */
+    private static void writeField(Writer out, String value) throws IOException {
+        if(value == null) {
+            return;
+        }
+
+        boolean quote = false;
+        for(int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+
+        if(!quote) {
+            out.write(value);
+            return;
+        }
+
+        out.write('"');
+        int start = 0;
+        for(int i = 0; i < value.length(); i++) {
+            if(value.charAt(i) == '"') {
+                out.write(value, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+    }
+
+    /**
+     * This class reads the valid records of the input as items, one at
+     * a time, for the streaming insert of the database helper. Reading
+     * stops at the end of the input, when the import is cancelled, or
+     * when the input fails, which is kept to be thrown after the rows
+     * read before are committed.
+     */
+    private static final class RecordIterator implements Iterator<Item> {
+
+        private final CsvReader reader;
+        private final Progress progress;
+        private final ItemValidator validator = new ItemValidator();
+
+        private Item next;
+        private boolean done;
+        private boolean firstRecord = true;
+        private long rows;
+
+        long rejected;
+        long firstRejectedLine = -1;
+        boolean cancelled;
+        IOException error;
+
+        RecordIterator(CsvReader reader, Progress progress) {
+            this.reader = reader;
+            this.progress = progress;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(next == null && !done) {
+                if(progress.isCancelled()) {
+                    cancelled = true;
+                    done = true;
+                    break;
+                }
+
+                try {
+                    if(!reader.readRecord()) {
+                        done = true;
+                        break;
+                    }
+                } catch(IOException e) {
+                    error = e;
+                    done = true;
+                    break;
+                }
+
+                if(firstRecord) {
+                    firstRecord = false;
+                    if(isHeader()) {
+                        continue;
+                    }
+                }
+
+                if(!reader.isMalformed() && validator.validate(reader.getField(0), reader.getField(1), reader.getField(2),
+                        reader.getField(3), reader.getField(4), reader.getField(5)) == ItemValidator.VALID) {
+                    next = validator.getItem();
+                } else {
+                    if(rejected++ == 0) {
+                        firstRejectedLine = reader.getRecordLine();
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Item next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Item item = next;
+            next = null;
+            if(++rows % PROGRESS_INTERVAL == 0) {
+                progress.onProgress(rows);
+            }
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private boolean isHeader() {
+            return "description".equalsIgnoreCase(trim(reader.getField(0)))
+                    && "price".equalsIgnoreCase(trim(reader.getField(1)));
+        }
+
+        private static String trim(String value) {
+            return value == null ? null : value.trim();
+        }
+    }
+}
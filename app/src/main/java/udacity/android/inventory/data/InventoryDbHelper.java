@@ -3,10 +3,26 @@ package udacity.android.inventory.data;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.os.StrictMode;
+import android.util.Log;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
 
 import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryContract.InventoryMovementEntry;
+import udacity.android.inventory.data.InventoryContract.InventorySearchEntry;
+import udacity.android.inventory.data.InventoryContract.InventorySummaryEntry;
+import udacity.android.inventory.data.InventoryContract.InventorySupplierEntry;
+import udacity.android.inventory.model.InventorySummary;
 import udacity.android.inventory.model.Item;
 
 public class InventoryDbHelper extends SQLiteOpenHelper {
@@ -14,13 +30,275 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
     // Log tag for this class
     public static final String LOG_TAG = InventoryDbHelper.class.getSimpleName();
 
+    /** The default number of rows written per transaction by the bulk insert. */
+    public static final int DEFAULT_INSERT_CHUNK_SIZE = 500;
+
+    /** The helper shared by the whole process. */
+    private static InventoryDbHelper instance;
+
+    /** The SQLite settings the database is opened with. */
+    private final DatabaseProfile profile;
+
+    /** The context the database file is found through. */
+    private final Context context;
+
+    /** Whether the database file was brought to the current version. */
+    private boolean upgraded;
+
+    /** The compiled statements of the hot write paths. */
+    private final StatementCache statements = new StatementCache();
+
+    /** The current instance of each recently read item. */
+    private final ItemCache items = new ItemCache(ItemCache.DEFAULT_MAX_SIZE);
+
+    /** The shared email and the id of each supplier. */
+    private final SupplierCache suppliers = new SupplierCache(statements);
+
+    /** Returned by adjustQuantity when the change was not applied. */
+    public static final int ADJUST_REJECTED = -1;
+
+    /** Adds a delta to the quantity of a row unless the result would be negative. */
+    private static final String ADJUST_QUANTITY_SQL = "UPDATE " + InventoryEntry.TABLE_NAME +
+            " SET " + InventoryEntry.COLUMN_QUANTITY + " = " + InventoryEntry.COLUMN_QUANTITY + " + ?" +
+            " WHERE " + InventoryEntry._ID + " = ? AND " + InventoryEntry.COLUMN_QUANTITY + " + ? >= 0";
+
+    /** Appends a sale or restock to the ledger. */
+    private static final String INSERT_MOVEMENT_SQL = "INSERT INTO " + InventoryMovementEntry.TABLE_NAME + " (" +
+            InventoryMovementEntry.COLUMN_ITEM_ID + ", " +
+            InventoryMovementEntry.COLUMN_KIND + ", " +
+            InventoryMovementEntry.COLUMN_DELTA + ", " +
+            InventoryMovementEntry.COLUMN_TIME + ") VALUES (?, ?, ?, ?)";
+
+    /**
+     * Appends an adjustment to a quantity to the ledger for each selected
+     * row whose quantity differs from it. The selection follows.
+     */
+    private static final String INSERT_ADJUSTMENT_SQL = "INSERT INTO " + InventoryMovementEntry.TABLE_NAME + " (" +
+            InventoryMovementEntry.COLUMN_ITEM_ID + ", " +
+            InventoryMovementEntry.COLUMN_KIND + ", " +
+            InventoryMovementEntry.COLUMN_DELTA + ", " +
+            InventoryMovementEntry.COLUMN_TIME + ") SELECT " +
+            InventoryEntry._ID + ", " +
+            InventoryMovementEntry.KIND_ADJUSTMENT + ", ? - " + InventoryEntry.COLUMN_QUANTITY + ", ?" +
+            " FROM " + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry.COLUMN_QUANTITY + " != ?";
+
+    /** Appends the adjustment of a single row. */
+    private static final String INSERT_ITEM_ADJUSTMENT_SQL = INSERT_ADJUSTMENT_SQL +
+            " AND " + InventoryEntry._ID + " = ?";
+
+    /** The first movement of each item, kind and day before a time. */
+    private static final String SELECT_FIRST_MOVEMENTS = "SELECT MIN(" + InventoryMovementEntry._ID + ")" +
+            " FROM " + InventoryMovementEntry.TABLE_NAME +
+            " WHERE " + InventoryMovementEntry.COLUMN_TIME + " < ?" +
+            " GROUP BY " + InventoryMovementEntry.COLUMN_ITEM_ID + ", " + InventoryMovementEntry.COLUMN_KIND + ", " +
+            movementDay("");
+
+    /** The movements of the same item, kind and day as the updated row. */
+    private static final String SAME_GROUP = " FROM " + InventoryMovementEntry.TABLE_NAME + " AS m" +
+            " WHERE m." + InventoryMovementEntry.COLUMN_ITEM_ID + " = " +
+            InventoryMovementEntry.TABLE_NAME + "." + InventoryMovementEntry.COLUMN_ITEM_ID +
+            " AND m." + InventoryMovementEntry.COLUMN_KIND + " = " +
+            InventoryMovementEntry.TABLE_NAME + "." + InventoryMovementEntry.COLUMN_KIND +
+            " AND " + movementDay("m.") + " = " + movementDay(InventoryMovementEntry.TABLE_NAME + ".") + ")";
+
+    /**
+     * Folds the movements of each item, kind and day before a day into
+     * the first of them, dated at the start of the day.
+     */
+    private static final String FOLD_MOVEMENTS_SQL = "UPDATE " + InventoryMovementEntry.TABLE_NAME + " SET " +
+            InventoryMovementEntry.COLUMN_DELTA + " = (SELECT SUM(m." + InventoryMovementEntry.COLUMN_DELTA + ")" +
+            SAME_GROUP + ", " +
+            InventoryMovementEntry.COLUMN_COUNT + " = (SELECT SUM(m." + InventoryMovementEntry.COLUMN_COUNT + ")" +
+            SAME_GROUP + ", " +
+            InventoryMovementEntry.COLUMN_TIME + " = " + movementDay("") + " * " + InventoryMovementEntry.SECONDS_PER_DAY +
+            " WHERE " + InventoryMovementEntry._ID + " IN (" + SELECT_FIRST_MOVEMENTS + " HAVING COUNT(*) > 1)";
+
+    /** Removes the movements folded into the first of their group. */
+    private static final String DELETE_FOLDED_SQL = "DELETE FROM " + InventoryMovementEntry.TABLE_NAME +
+            " WHERE " + InventoryMovementEntry.COLUMN_TIME + " < ? AND " + InventoryMovementEntry._ID +
+            " NOT IN (" + SELECT_FIRST_MOVEMENTS + ")";
+
+    /** Reads the quantity of a row. */
+    private static final String SELECT_QUANTITY_SQL = "SELECT " + InventoryEntry.COLUMN_QUANTITY +
+            " FROM " + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry._ID + " = ?";
+
+    /** Inserts a row. */
+    private static final String INSERT_ITEM_SQL = "INSERT INTO " + InventoryEntry.TABLE_NAME + " (" +
+            InventoryEntry.COLUMN_DESCRIPTION + ", " +
+            InventoryEntry.COLUMN_PRICE_CENTS + ", " +
+            InventoryEntry.COLUMN_QUANTITY + ", " +
+            InventoryEntry.COLUMN_SUPPLIER_ID + ", " +
+            InventoryEntry.COLUMN_IMAGE + ", " +
+            InventoryEntry.COLUMN_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    /** Writes every column of a row, bound in the order of INSERT_ITEM_SQL. */
+    private static final String UPDATE_ITEM_SQL = "UPDATE " + InventoryEntry.TABLE_NAME + " SET " +
+            InventoryEntry.COLUMN_DESCRIPTION + " = ?, " +
+            InventoryEntry.COLUMN_PRICE_CENTS + " = ?, " +
+            InventoryEntry.COLUMN_QUANTITY + " = ?, " +
+            InventoryEntry.COLUMN_SUPPLIER_ID + " = ?, " +
+            InventoryEntry.COLUMN_IMAGE + " = ?, " +
+            InventoryEntry.COLUMN_REORDER_THRESHOLD + " = ? WHERE " + InventoryEntry._ID + " = ?";
+
+    /** Deletes a row. */
+    private static final String DELETE_ITEM_SQL = "DELETE FROM " + InventoryEntry.TABLE_NAME +
+            " WHERE " + InventoryEntry._ID + " = ?";
+
+    /** The value of the stock of the rows summed in cents, computed by SQLite. */
+    private static final String STOCK_VALUE_EXPRESSION = "IFNULL(SUM(" +
+            InventoryEntry.COLUMN_PRICE_CENTS + " * " + InventoryEntry.COLUMN_QUANTITY + "), 0)";
+
+    /** Reads the value of the whole stock. */
+    private static final String SELECT_STOCK_VALUE_SQL = "SELECT " + STOCK_VALUE_EXPRESSION +
+            " FROM " + InventoryEntry.TABLE_NAME;
+
+    /** The inventory table joined with the email of the supplier of each row. */
+    private static final String ITEMS_WITH_SUPPLIER = InventoryEntry.TABLE_NAME + " JOIN " +
+            InventorySupplierEntry.TABLE_NAME + " ON " +
+            InventorySupplierEntry.TABLE_NAME + "." + InventorySupplierEntry._ID + " = " +
+            InventoryEntry.TABLE_NAME + "." + InventoryEntry.COLUMN_SUPPLIER_ID;
+
+    /** Reads every column of every item, with the email of its supplier. */
+    private static final String SELECT_ITEMS_SQL = "SELECT " +
+            InventoryEntry.TABLE_NAME + "." + InventoryEntry._ID + ", " +
+            InventoryEntry.COLUMN_DESCRIPTION + ", " +
+            InventoryEntry.COLUMN_PRICE_CENTS + ", " +
+            InventoryEntry.COLUMN_QUANTITY + ", " +
+            InventorySupplierEntry.COLUMN_EMAIL + " AS " + InventoryEntry.COLUMN_SUPPLIER_EMAIL + ", " +
+            InventoryEntry.COLUMN_IMAGE + ", " +
+            InventoryEntry.COLUMN_REORDER_THRESHOLD + " FROM " + ITEMS_WITH_SUPPLIER;
+
+    /**
+     * The items with the email of their supplier, as a table to query.
+     * SQLite flattens the subquery into the outer query, so selections
+     * on the columns of the inventory table still use its indexes.
+     */
+    static final String ITEMS_TABLE = "(" + SELECT_ITEMS_SQL + ")";
+
+    /**
+     * Reads the value of the stock of each supplier. The rows are grouped
+     * by the supplier index, only the groups are joined and sorted.
+     */
+    private static final String SELECT_STOCK_VALUE_BY_SUPPLIER_SQL = "SELECT " +
+            InventorySupplierEntry.COLUMN_EMAIL + " AS " + InventoryEntry.COLUMN_SUPPLIER_EMAIL + ", " +
+            InventoryEntry.COLUMN_STOCK_VALUE_CENTS + " FROM (SELECT " +
+            InventoryEntry.COLUMN_SUPPLIER_ID + ", " +
+            STOCK_VALUE_EXPRESSION + " AS " + InventoryEntry.COLUMN_STOCK_VALUE_CENTS +
+            " FROM " + InventoryEntry.TABLE_NAME +
+            " GROUP BY " + InventoryEntry.COLUMN_SUPPLIER_ID + ") AS totals JOIN " +
+            InventorySupplierEntry.TABLE_NAME + " ON " +
+            InventorySupplierEntry.TABLE_NAME + "." + InventorySupplierEntry._ID + " = totals." +
+            InventoryEntry.COLUMN_SUPPLIER_ID +
+            " ORDER BY " + InventorySupplierEntry.COLUMN_EMAIL;
+
+    /** Reads the summary row. */
+    private static final String SELECT_SUMMARY_SQL = "SELECT " +
+            InventorySummaryEntry.COLUMN_ITEM_COUNT + ", " +
+            InventorySummaryEntry.COLUMN_UNIT_COUNT + ", " +
+            InventorySummaryEntry.COLUMN_STOCK_VALUE_CENTS + ", " +
+            InventorySummaryEntry.COLUMN_LOW_STOCK_COUNT + " FROM " + InventorySummaryEntry.TABLE_NAME +
+            " WHERE " + InventorySummaryEntry._ID + " = " + InventorySummaryEntry.SUMMARY_ID;
+
     /**
      * Constructor.
      *
      * @param context The calling context.
      */
     public InventoryDbHelper(Context context) {
-        super(context, InventoryContract.DATABASE_NAME, null, InventoryContract.DATABASE_VERSION);
+        this(context, InventoryContract.DATABASE_NAME);
+    }
+
+    /**
+     * This method returns the database helper shared by the activities
+     * and the content provider, so they all use one connection pool.
+     *
+     * @param context The calling context.
+     * @return The shared database helper.
+     */
+    public static synchronized InventoryDbHelper getInstance(Context context) {
+        if(instance == null) {
+            instance = new InventoryDbHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor for a database file other than the default one,
+     * used by the benchmarks so they do not touch user data.
+     *
+     * @param context The calling context.
+     * @param name The database file name.
+     */
+    InventoryDbHelper(Context context, String name) {
+        this(context, name, DatabaseProfile.DURABLE);
+    }
+
+    /**
+     * Constructor for a database file opened with the given settings,
+     * used by the benchmarks to compare profiles.
+     *
+     * @param context The calling context.
+     * @param name The database file name.
+     * @param profile The SQLite settings.
+     */
+    InventoryDbHelper(Context context, String name, DatabaseProfile profile) {
+        super(context, name, null, InventoryContract.DATABASE_VERSION);
+        this.profile = profile;
+        this.context = context;
+    }
+
+    /**
+     * This method applies the profile before the tables are created or
+     * upgraded. It is only called from API 16, see onOpen.
+     *
+     * @param db The database being opened.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        profile.apply(db);
+    }
+
+    /**
+     * This method applies the profile on API 15, where onConfigure is
+     * not called. The tables exist by then, so the database keeps the
+     * default page size.
+     *
+     * @param db The open database.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            profile.apply(db);
+        }
+    }
+
+    /**
+     * This method returns the SQLite settings of the database.
+     *
+     * @return The profile.
+     */
+    public DatabaseProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * This method returns the shared item instances, for the content
+     * provider to apply its writes to.
+     *
+     * @return The item cache.
+     */
+    ItemCache getItemCache() {
+        return items;
+    }
+
+    /**
+     * This method returns the interned suppliers, for the content
+     * provider and the classes which read or write supplier ids.
+     *
+     * @return The supplier cache.
+     */
+    SupplierCache getSupplierCache() {
+        return suppliers;
     }
 
     /**
@@ -31,12 +309,102 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
+        db.execSQL(InventorySupplierEntry.CREATE_SUPPLIERS_TABLE);
         db.execSQL(InventoryEntry.CREATE_INVENTORY_TABLE);
+        db.execSQL(InventoryEntry.CREATE_LIST_INDEX);
+        db.execSQL(InventoryEntry.CREATE_SUPPLIER_INDEX);
+        createLowStockIndex(db);
+
+        // Full-text search table, filled from any existing rows and kept in sync by triggers
+        db.execSQL(InventorySearchEntry.CREATE_SEARCH_TABLE);
+        db.execSQL(InventorySearchEntry.POPULATE_SEARCH_TABLE);
+        db.execSQL(InventorySearchEntry.CREATE_INSERT_TRIGGER);
+        db.execSQL(InventorySearchEntry.CREATE_UPDATE_TRIGGER);
+        db.execSQL(InventorySearchEntry.CREATE_DELETE_TRIGGER);
+
+        createSummaryTable(db);
+        createMovementsTable(db);
+    }
+
+    /**
+     * This method creates the stock movements ledger with an opening
+     * adjustment for any existing rows, and the triggers which follow
+     * the inserted and deleted rows.
+     *
+     * @param db The current database.
+     */
+    static void createMovementsTable(SQLiteDatabase db) {
+        db.execSQL(InventoryMovementEntry.CREATE_MOVEMENTS_TABLE);
+        db.execSQL(InventoryMovementEntry.CREATE_ITEM_INDEX);
+        db.execSQL(InventoryMovementEntry.POPULATE_MOVEMENTS);
+        db.execSQL(InventoryMovementEntry.CREATE_INSERT_TRIGGER);
+        db.execSQL(InventoryMovementEntry.CREATE_DELETE_TRIGGER);
+    }
+
+    /**
+     * This method creates the summary table with its row computed from
+     * any existing rows, and the triggers which keep it current.
+     *
+     * @param db The current database.
+     */
+    private void createSummaryTable(SQLiteDatabase db) {
+        db.execSQL(InventorySummaryEntry.CREATE_SUMMARY_TABLE);
+        db.execSQL(InventorySummaryEntry.REBUILD_SUMMARY);
+        db.execSQL(InventorySummaryEntry.CREATE_INSERT_TRIGGER);
+        db.execSQL(InventorySummaryEntry.CREATE_UPDATE_TRIGGER);
+        db.execSQL(InventorySummaryEntry.CREATE_DELETE_TRIGGER);
+    }
+
+    /**
+     * This method creates the partial index of the rows which are low on
+     * stock. SQLite before 3.8.0, shipped up to API 20, has no partial
+     * indexes; there the index is left out and the low stock queries
+     * scan the table, which only costs time.
+     *
+     * @param db The current database.
+     * @return True if the index was created.
+     */
+    static boolean createLowStockIndex(SQLiteDatabase db) {
+        if(!supportsPartialIndexes(db)) {
+            Log.w(LOG_TAG, "SQLite " + sqliteVersion(db) + " has no partial indexes.");
+            return false;
+        }
+
+        db.execSQL(InventoryEntry.CREATE_LOW_STOCK_INDEX);
+        return true;
+    }
+
+    /**
+     * This method returns whether the SQLite library of the database
+     * supports partial indexes, which were added in 3.8.0.
+     *
+     * @param db The database.
+     * @return True for SQLite 3.8.0 and later.
+     */
+    static boolean supportsPartialIndexes(SQLiteDatabase db) {
+        String[] parts = sqliteVersion(db).split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return major > 3 || (major == 3 && minor >= 8);
+        } catch(NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String sqliteVersion(SQLiteDatabase db) {
+        return DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null);
     }
 
     /**
      * This method is called to ensure the current version of the database
-     * is being utilized.
+     * is being utilized. The rows of every earlier version are kept, the
+     * migration steps after the old version are run in order.
+     *
+     * The database file is normally upgraded before it is opened, see
+     * upgradeBeforeOpen, and this method is not called. If it is, the
+     * steps run inside the transaction of SQLiteOpenHelper and commit
+     * together with the new version, or not at all.
      *
      * @param db The database to be checked.
      * @param oldVersion The old version of the database.
@@ -44,13 +412,76 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Only executed if there exists a new version of the database
-        if(oldVersion != newVersion) {
-            String dropString = "DROP TABLE IF EXISTS " + InventoryEntry.TABLE_NAME;
-            db.execSQL(dropString);
+        // Statements compiled against the old schema are not reused
+        statements.clear();
+        suppliers.clear();
 
-            onCreate(db);
+        SchemaMigrations.migrate(db, oldVersion, newVersion);
+    }
+
+    /**
+     * This method upgrades an existing database file of an earlier
+     * version before SQLiteOpenHelper opens it. The steps run on their
+     * own connection outside of any transaction, so every step, and
+     * every chunk of a table copy, commits on its own and an interrupted
+     * upgrade resumes. A failed step leaves the file at the version of
+     * the last completed step and is run again on the next open.
+     */
+    private synchronized void upgradeBeforeOpen() {
+        if(upgraded) {
+            return;
+        }
+
+        File file = context.getDatabasePath(getDatabaseName());
+        if(file.exists()) {
+            SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            try {
+                int version = db.getVersion();
+                if(version > 0 && version < InventoryContract.DATABASE_VERSION) {
+                    SchemaMigrations.migrate(db, version, InventoryContract.DATABASE_VERSION);
+                }
+            } finally {
+                db.close();
+            }
         }
+        upgraded = true;
+    }
+
+    /**
+     * This method returns the database for writing. Every write goes
+     * through here, so it is reported to StrictMode as a slow call to
+     * catch writes on the main thread in debug builds.
+     *
+     * @return The database.
+     */
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        StrictMode.noteSlowCall("InventoryDbHelper.getWritableDatabase");
+        upgradeBeforeOpen();
+        return super.getWritableDatabase();
+    }
+
+    /**
+     * This method returns the database for reading, after upgrading the
+     * database file like getWritableDatabase.
+     *
+     * @return The database.
+     */
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        upgradeBeforeOpen();
+        return super.getReadableDatabase();
+    }
+
+    /**
+     * This method closes the cached statements and then the database.
+     */
+    @Override
+    public synchronized void close() {
+        statements.clear();
+        items.clear();
+        suppliers.clear();
+        super.close();
     }
 
     /** CRUD Operations */
@@ -65,29 +496,361 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
         // Obtain a database object
         SQLiteDatabase db = this.getWritableDatabase();
 
-        // A container for the values
+        // Obtain the id for the item, -1 if the row is rejected
+        SQLiteStatement statement = statements.acquire(db, INSERT_ITEM_SQL);
+        long id;
+        try {
+            bindItem(db, statement, item);
+            id = statement.executeInsert();
+        } catch(SQLException e) {
+            Log.e(LOG_TAG, "Error inserting " + item, e);
+            id = -1;
+        } finally {
+            statements.release(INSERT_ITEM_SQL, statement);
+        }
+        item.setId(id);
+
+        return item;
+    }
+
+    /**
+     * This method puts the columns of an item in a ContentValues container,
+     * for writing through the helper or the content provider.
+     *
+     * @param item The item.
+     * @return The column values of the item, without the id.
+     */
+    public static ContentValues toContentValues(Item item) {
         ContentValues values = new ContentValues();
         values.put(InventoryContract.InventoryEntry.COLUMN_DESCRIPTION, item.getDescription());
-        values.put(InventoryContract.InventoryEntry.COLUMN_PRICE, item.getPrice());
+        values.put(InventoryContract.InventoryEntry.COLUMN_PRICE_CENTS, item.getPriceCents());
         values.put(InventoryContract.InventoryEntry.COLUMN_QUANTITY, item.getQuantity());
         values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_EMAIL, item.getSupplierEmail());
         values.put(InventoryContract.InventoryEntry.COLUMN_IMAGE, item.getImage());
+        values.put(InventoryContract.InventoryEntry.COLUMN_REORDER_THRESHOLD, item.getReorderThreshold());
+        return values;
+    }
 
-        // Obtain the id for the item
-        long id = db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, values);
-        item.setId(id);
+    /**
+     * This method writes all of the passed in items to the database using
+     * the default chunk size.
+     *
+     * @param items The items to be written.
+     * @return The ids assigned to the items, in iteration order.
+     */
+    public long[] insertAll(Collection<Item> items) {
+        return insertAll(items, DEFAULT_INSERT_CHUNK_SIZE);
+    }
 
-        return item;
+    /**
+     * This method writes all of the passed in items to the database. The
+     * rows are written with a single compiled statement and committed in
+     * transactions of chunkSize rows, so a large catalog costs one sync
+     * per chunk instead of one per row.
+     *
+     * @param items The items to be written.
+     * @param chunkSize The number of rows per transaction.
+     * @return The ids assigned to the items, in iteration order.
+     */
+    public long[] insertAll(Collection<Item> items, int chunkSize) {
+        long[] ids = new long[items.size()];
+        int count = insertAll(items.iterator(), chunkSize, ids);
+
+        if(count != ids.length) {
+            throw new IllegalStateException("Collection changed during insert.");
+        }
+
+        return ids;
+    }
+
+    /**
+     * This method streams items from an iterator into the database in
+     * transactions of chunkSize rows. Each item has its id set once it is
+     * written, and the ids are also copied into the optional ids array.
+     *
+     * @param items The items to be written.
+     * @param chunkSize The number of rows per transaction.
+     * @param ids Receives the assigned ids, may be null.
+     * @return The number of items written.
+     */
+    public int insertAll(Iterator<Item> items, int chunkSize, long[] ids) {
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be > 0: " + chunkSize);
+        }
+
+        // Obtain a database object
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement statement = statements.acquire(db, INSERT_ITEM_SQL);
+
+        int count = 0;
+        try {
+            while(items.hasNext()) {
+                db.beginTransaction();
+                boolean committed = false;
+                try {
+                    int written = 0;
+                    while(written < chunkSize && items.hasNext()) {
+                        Item item = items.next();
+                        bindItem(db, statement, item);
+
+                        long id = statement.executeInsert();
+                        item.setId(id);
+
+                        if(ids != null && count < ids.length) {
+                            ids[count] = id;
+                        }
+
+                        count++;
+                        written++;
+                    }
+                    db.setTransactionSuccessful();
+                    committed = true;
+                } finally {
+                    db.endTransaction();
+                    suppliers.endTransaction(db, committed);
+                }
+            }
+        } finally {
+            statements.release(INSERT_ITEM_SQL, statement);
+        }
+
+        return count;
     }
 
     /**
-     * This method queries the database for all of the data in the table.
+     * This method binds the columns of an item to the insert or update
+     * statement. The supplier is bound as its id, and added if it is
+     * new. A missing value is bound as null and rejected by the table
+     * if the column requires one.
+     *
+     * @param db The writable database.
+     * @param statement The compiled insert or update statement.
+     * @param item The item to bind.
+     */
+    private void bindItem(SQLiteDatabase db, SQLiteStatement statement, Item item) {
+        bindString(statement, 1, item.getDescription());
+        statement.bindLong(2, item.getPriceCents());
+        statement.bindLong(3, item.getQuantity());
+        if(item.getSupplierEmail() == null) {
+            statement.bindNull(4);
+        } else {
+            statement.bindLong(4, suppliers.getId(db, item.getSupplierEmail()));
+        }
+        bindString(statement, 5, item.getImage());
+        statement.bindLong(6, item.getReorderThreshold());
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if(value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * This method queries the database for all of the data in the table,
+     * with the email of the supplier of each item in the column
+     * COLUMN_SUPPLIER_EMAIL.
      *
      * @return The Cursor object holding the result set.
      */
     public Cursor query() {
         // Return a Cursor containing all data from the table
-        return getReadableDatabase().query(InventoryEntry.TABLE_NAME, null, null, null, null, null, null);
+        return getReadableDatabase().rawQuery(SELECT_ITEMS_SQL, null);
+    }
+
+    /**
+     * This method queries one page of the main list using keyset pagination.
+     * Rows are ordered by id and only rows after the passed in id are
+     * returned, so the cost of a page does not grow with its position. Only
+     * the list columns are read, and they are read from the covering list
+     * index, so more rows fit in each CursorWindow.
+     *
+     * @param afterId The id of the last row of the previous page, 0 for the first page.
+     * @param limit The maximum number of rows in the page.
+     * @return The Cursor object holding the page.
+     */
+    public Cursor queryPage(long afterId, int limit) {
+        String table = InventoryEntry.TABLE_NAME + " INDEXED BY " + InventoryEntry.LIST_INDEX_NAME;
+        String selection = InventoryEntry._ID + " > ?";
+        String[] selectionArgs = new String[] { String.valueOf(afterId) };
+
+        return getReadableDatabase().query(table, InventoryEntry.LIST_PROJECTION, selection, selectionArgs,
+                null, null, InventoryEntry._ID, String.valueOf(limit));
+    }
+
+    /**
+     * This method searches the descriptions and suppliers of the inventory.
+     * Every word of the query is matched as a prefix, so "blu pen" finds
+     * "Blue Pens". Matches are ranked with description hits weighted above
+     * supplier hits and rare words weighted above common ones.
+     *
+     * @param query The text entered by the user.
+     * @param limit The maximum number of ids to return.
+     * @return The ids of the best matching items, best match first.
+     */
+    public long[] search(String query, int limit) {
+        String match = SearchRanker.toPrefixQuery(query);
+        if(match == null || limit < 1) {
+            return new long[0];
+        }
+
+        String sql = "SELECT " + InventorySearchEntry.DOCID + ", matchinfo(" +
+                InventorySearchEntry.TABLE_NAME + ", 'pcx') FROM " + InventorySearchEntry.TABLE_NAME +
+                " WHERE " + InventorySearchEntry.TABLE_NAME + " MATCH ?";
+
+        SearchRanker ranker = new SearchRanker(limit);
+        Cursor cursor = getReadableDatabase().rawQuery(sql, new String[] { match });
+        try {
+            while(cursor.moveToNext()) {
+                ranker.offer(cursor.getLong(0), cursor.getBlob(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return ranker.results();
+    }
+
+    /**
+     * This method returns the shared instance of an item. Recently read
+     * items are returned from memory, others are read from the database
+     * and kept. The writes of this helper and the content provider
+     * replace the instance kept, so calling this again after a write
+     * returns the written item. The instance is never changed once
+     * returned and must not be changed by the caller.
+     *
+     * @param id The id of the item.
+     * @return The item, or null if there is no item with the id.
+     */
+    public Item getItem(long id) {
+        Item item = items.get(id);
+        if(item != null) {
+            return item;
+        }
+
+        item = readItem(id);
+        return item == null ? null : items.putIfAbsent(item);
+    }
+
+    /**
+     * This method reads all columns of a single item. The email of the
+     * supplier is the shared instance of the supplier cache.
+     *
+     * @param id The id of the item.
+     * @return The item, or null if there is no item with the id.
+     */
+    private Item readItem(long id) {
+        String selection = InventoryEntry._ID + "= ?";
+        String[] selectionArgs = new String[] { String.valueOf(id) };
+
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(InventoryEntry.TABLE_NAME, null, selection, selectionArgs,
+                null, null, null);
+        try {
+            if(!cursor.moveToFirst()) {
+                return null;
+            }
+
+            return new Item(
+                    cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry._ID)),
+                    cursor.getString(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_DESCRIPTION)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_PRICE_CENTS)),
+                    cursor.getInt(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_QUANTITY)),
+                    suppliers.getEmail(db,
+                            cursor.getLong(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_SUPPLIER_ID))),
+                    cursor.getString(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_IMAGE)),
+                    cursor.getInt(cursor.getColumnIndexOrThrow(InventoryEntry.COLUMN_REORDER_THRESHOLD)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * This method returns the value of the whole stock, the sum of the
+     * price times the quantity of every item. The sum is computed by
+     * SQLite over the integer cents, so it is exact and no rows are
+     * read into Java.
+     *
+     * @return The value of the stock in cents.
+     */
+    public long getStockValueCents() {
+        return DatabaseUtils.longForQuery(getReadableDatabase(), SELECT_STOCK_VALUE_SQL, null);
+    }
+
+    /**
+     * This method returns the value of the stock of each supplier,
+     * computed by SQLite like getStockValueCents.
+     *
+     * @return A Cursor with the columns COLUMN_SUPPLIER_EMAIL and
+     *         COLUMN_STOCK_VALUE_CENTS, one row per supplier.
+     */
+    public Cursor queryStockValueBySupplier() {
+        return getReadableDatabase().rawQuery(SELECT_STOCK_VALUE_BY_SUPPLIER_SQL, null);
+    }
+
+    /**
+     * This method returns the totals over the whole inventory. They are
+     * read from the summary row kept current by triggers, so the cost
+     * does not depend on the size of the inventory.
+     *
+     * @return The summary.
+     */
+    public InventorySummary getSummary() {
+        return readSummary(getReadableDatabase(), SELECT_SUMMARY_SQL);
+    }
+
+    /**
+     * This method compares the summary row with totals computed from
+     * scratch over the inventory table, and rewrites the row if they
+     * differ, for example after rows were changed with the triggers
+     * dropped.
+     *
+     * @return True if the summary row was correct.
+     */
+    public boolean checkSummary() {
+        SQLiteDatabase db = getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            InventorySummary stored = readSummary(db, SELECT_SUMMARY_SQL);
+            InventorySummary computed = readSummary(db, InventorySummaryEntry.SELECT_TOTALS);
+
+            boolean consistent = computed.equals(stored);
+            if(!consistent) {
+                db.execSQL(InventorySummaryEntry.REBUILD_SUMMARY);
+            }
+
+            db.setTransactionSuccessful();
+            return consistent;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * This method reads a summary from a query returning the item count,
+     * unit count, stock value and low stock count columns. The query may
+     * return the summary id first.
+     *
+     * @param db The database.
+     * @param sql The query.
+     * @return The summary, all zero if the query returned no row.
+     */
+    private static InventorySummary readSummary(SQLiteDatabase db, String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            if(!cursor.moveToFirst()) {
+                return new InventorySummary(0, 0, 0, 0);
+            }
+
+            int first = cursor.getColumnCount() - 4;
+            return new InventorySummary(cursor.getLong(first), cursor.getLong(first + 1),
+                    cursor.getLong(first + 2), cursor.getLong(first + 3));
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
@@ -99,19 +862,284 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
         // Obtain a database object
         SQLiteDatabase db = getWritableDatabase();
 
-        // A container for the values
-        ContentValues values = new ContentValues();
-        values.put(InventoryContract.InventoryEntry.COLUMN_DESCRIPTION, item.getDescription());
-        values.put(InventoryContract.InventoryEntry.COLUMN_PRICE, item.getPrice());
-        values.put(InventoryContract.InventoryEntry.COLUMN_QUANTITY, item.getQuantity());
-        values.put(InventoryContract.InventoryEntry.COLUMN_SUPPLIER_EMAIL, item.getSupplierEmail());
-        values.put(InventoryContract.InventoryEntry.COLUMN_IMAGE, item.getImage());
+        SQLiteStatement adjustment = statements.acquire(db, INSERT_ITEM_ADJUSTMENT_SQL);
+        SQLiteStatement statement = statements.acquire(db, UPDATE_ITEM_SQL);
+        boolean updated = false;
+        boolean committed = false;
+        db.beginTransaction();
+        try {
+            // A changed quantity is recorded as an adjustment
+            adjustment.bindLong(1, item.getQuantity());
+            adjustment.bindLong(2, currentTimeSeconds());
+            adjustment.bindLong(3, item.getQuantity());
+            adjustment.bindLong(4, item.getId());
+            adjustment.executeInsert();
 
-        // Determine the row to update
-        String selection = InventoryEntry._ID + "= ?";
-        String[] selectionArgs = new String[] { String.valueOf(item.getId())};
+            bindItem(db, statement, item);
+            statement.bindLong(7, item.getId());
+            updated = statement.executeUpdateDelete() == 1;
+            db.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            db.endTransaction();
+            suppliers.endTransaction(db, committed);
+            statements.release(INSERT_ITEM_ADJUSTMENT_SQL, adjustment);
+            statements.release(UPDATE_ITEM_SQL, statement);
+
+            if(updated && !db.inTransaction()) {
+                items.update(item);
+            } else {
+                items.remove(item.getId());
+            }
+        }
+    }
+
+    /**
+     * This method adds a delta to the quantity of an item inside the
+     * database, so the change is applied to the current value rather
+     * than to a possibly stale copy of the item. The change is rejected
+     * if it would make the quantity negative. It is recorded in the
+     * ledger as a sale if negative and a restock if positive.
+     *
+     * @param id The id of the item.
+     * @param delta The amount to add, negative for a sale.
+     * @return The new quantity, or ADJUST_REJECTED if the item does not
+     *         exist or the quantity would become negative.
+     */
+    public int adjustQuantity(long id, int delta) {
+        // Obtain a database object
+        SQLiteDatabase db = getWritableDatabase();
+
+        SQLiteStatement adjust = statements.acquire(db, ADJUST_QUANTITY_SQL);
+        SQLiteStatement record = statements.acquire(db, INSERT_MOVEMENT_SQL);
+        SQLiteStatement select = statements.acquire(db, SELECT_QUANTITY_SQL);
+        try {
+            int quantity;
+            db.beginTransaction();
+            try {
+                quantity = adjustQuantity(adjust, record, id, delta, currentTimeSeconds())
+                        ? readQuantity(select, id) : ADJUST_REJECTED;
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            cacheQuantity(db, id, quantity);
+            return quantity;
+        } finally {
+            statements.release(ADJUST_QUANTITY_SQL, adjust);
+            statements.release(INSERT_MOVEMENT_SQL, record);
+            statements.release(SELECT_QUANTITY_SQL, select);
+        }
+    }
+
+    /**
+     * This method applies several quantity deltas in one transaction.
+     * Each delta is guarded like in adjustQuantity. The quantity of each
+     * item after the transaction is written to quantities, so a rejected
+     * delta reports the unchanged quantity from the database.
+     *
+     * @param ids The ids of the items.
+     * @param deltas The amount to add to each item.
+     * @param count The number of ids and deltas to apply.
+     * @param quantities Receives the quantity of each item, or
+     *                   ADJUST_REJECTED if the item does not exist.
+     */
+    public void adjustQuantities(long[] ids, int[] deltas, int count, int[] quantities) {
+        // Obtain a database object
+        SQLiteDatabase db = getWritableDatabase();
+
+        SQLiteStatement adjust = statements.acquire(db, ADJUST_QUANTITY_SQL);
+        SQLiteStatement record = statements.acquire(db, INSERT_MOVEMENT_SQL);
+        SQLiteStatement select = statements.acquire(db, SELECT_QUANTITY_SQL);
+        try {
+            long time = currentTimeSeconds();
+            db.beginTransaction();
+            try {
+                for(int i = 0; i < count; i++) {
+                    adjustQuantity(adjust, record, ids[i], deltas[i], time);
+                    quantities[i] = readQuantity(select, ids[i]);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            for(int i = 0; i < count; i++) {
+                cacheQuantity(db, ids[i], quantities[i]);
+            }
+        } finally {
+            statements.release(ADJUST_QUANTITY_SQL, adjust);
+            statements.release(INSERT_MOVEMENT_SQL, record);
+            statements.release(SELECT_QUANTITY_SQL, select);
+        }
+    }
 
-        db.update(InventoryContract.InventoryEntry.TABLE_NAME, values, selection, selectionArgs);
+    /**
+     * This method applies a committed quantity to the kept instance of
+     * an item. Inside an enclosing transaction, which may still be
+     * rolled back, the instance is dropped instead.
+     *
+     * @param db The database.
+     * @param id The id of the item.
+     * @param quantity The quantity read after the write, or ADJUST_REJECTED.
+     */
+    private void cacheQuantity(SQLiteDatabase db, long id, int quantity) {
+        if(quantity == ADJUST_REJECTED) {
+            // The row was not changed
+            return;
+        }
+
+        if(db.inTransaction()) {
+            items.remove(id);
+        } else {
+            items.setQuantity(id, quantity);
+        }
+    }
+
+    /**
+     * This method runs the compiled quantity adjust statement and, if
+     * the row was changed, appends the movement to the ledger.
+     *
+     * @param statement The compiled ADJUST_QUANTITY_SQL statement, inside a transaction.
+     * @param record The compiled INSERT_MOVEMENT_SQL statement.
+     * @param id The id of the item.
+     * @param delta The amount to add.
+     * @param time The time of the movement in seconds.
+     * @return True if the row was changed.
+     */
+    private static boolean adjustQuantity(SQLiteStatement statement, SQLiteStatement record, long id, int delta,
+                                          long time) {
+        statement.bindLong(1, delta);
+        statement.bindLong(2, id);
+        statement.bindLong(3, delta);
+        if(statement.executeUpdateDelete() != 1) {
+            return false;
+        }
+
+        if(delta != 0) {
+            record.bindLong(1, id);
+            record.bindLong(2, delta < 0 ? InventoryMovementEntry.KIND_SALE : InventoryMovementEntry.KIND_RESTOCK);
+            record.bindLong(3, delta);
+            record.bindLong(4, time);
+            record.executeInsert();
+        }
+        return true;
+    }
+
+    /**
+     * This method appends an adjustment to the ledger for each row of a
+     * selection whose quantity is about to be set, for writers which set
+     * the quantity column directly. It must be called in the transaction
+     * of the update, before it.
+     *
+     * @param db The writable database, inside a transaction.
+     * @param quantity The quantity the rows are set to.
+     * @param selection The selection of the update, or null for every row.
+     * @param selectionArgs The arguments of the selection, may be null.
+     */
+    void recordAdjustments(SQLiteDatabase db, int quantity, String selection, String[] selectionArgs) {
+        String sql = INSERT_ADJUSTMENT_SQL;
+        if(selection != null) {
+            sql += " AND (" + selection + ")";
+        }
+
+        int argCount = selectionArgs == null ? 0 : selectionArgs.length;
+        Object[] args = new Object[3 + argCount];
+        args[0] = quantity;
+        args[1] = currentTimeSeconds();
+        args[2] = quantity;
+        for(int i = 0; i < argCount; i++) {
+            args[3 + i] = selectionArgs[i];
+        }
+        db.execSQL(sql, args);
+    }
+
+    /**
+     * This method compares the quantity of every item with the sum of
+     * its movements, and rewrites the quantities which differ, for
+     * example after rows were changed other than through this class.
+     *
+     * @return True if every quantity matched its movements.
+     */
+    public boolean checkLedger() {
+        SQLiteDatabase db = getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            boolean consistent = DatabaseUtils.longForQuery(db, InventoryMovementEntry.SELECT_STALE_COUNT, null) == 0;
+            if(!consistent) {
+                db.execSQL(InventoryMovementEntry.REBUILD_QUANTITIES);
+                items.clear();
+            }
+
+            db.setTransactionSuccessful();
+            return consistent;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * This method folds the movements before a day into one movement per
+     * item, kind and day, which keeps their sum and count. The recent
+     * movements are kept as they are. It runs in one transaction.
+     *
+     * @param cutoffSeconds The start of the first day to keep, in seconds
+     *                      since the epoch. It is rounded down to a day.
+     * @return The number of movements removed.
+     */
+    public int compactLedger(long cutoffSeconds) {
+        long cutoff = cutoffSeconds - cutoffSeconds % InventoryMovementEntry.SECONDS_PER_DAY;
+
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement fold = db.compileStatement(FOLD_MOVEMENTS_SQL);
+        SQLiteStatement delete = db.compileStatement(DELETE_FOLDED_SQL);
+        db.beginTransaction();
+        try {
+            fold.bindLong(1, cutoff);
+            fold.executeUpdateDelete();
+
+            delete.bindLong(1, cutoff);
+            delete.bindLong(2, cutoff);
+            int removed = delete.executeUpdateDelete();
+
+            db.setTransactionSuccessful();
+            return removed;
+        } finally {
+            db.endTransaction();
+            fold.close();
+            delete.close();
+        }
+    }
+
+    /**
+     * The UTC day of a movement, in SQL.
+     *
+     * @param row The prefix of the movement columns, may be empty.
+     */
+    private static String movementDay(String row) {
+        return "(" + row + InventoryMovementEntry.COLUMN_TIME + " / " + InventoryMovementEntry.SECONDS_PER_DAY + ")";
+    }
+
+    private static long currentTimeSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * This method reads the quantity of an item.
+     *
+     * @param statement The compiled SELECT_QUANTITY_SQL statement.
+     * @param id The id of the item.
+     * @return The quantity, or ADJUST_REJECTED if the item does not exist.
+     */
+    private static int readQuantity(SQLiteStatement statement, long id) {
+        statement.bindLong(1, id);
+        try {
+            return (int) statement.simpleQueryForLong();
+        } catch(SQLiteDoneException e) {
+            return ADJUST_REJECTED;
+        }
     }
 
     /**
@@ -123,11 +1151,14 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
         // Obtain a database object
         SQLiteDatabase db = getWritableDatabase();
 
-        // Determine the row to update
-        String selection = InventoryEntry._ID + "= ?";
-        String[] selectionArgs = new String[] { String.valueOf(item.getId())};
-
-        db.delete(InventoryContract.InventoryEntry.TABLE_NAME, selection, selectionArgs);
+        SQLiteStatement statement = statements.acquire(db, DELETE_ITEM_SQL);
+        try {
+            statement.bindLong(1, item.getId());
+            statement.executeUpdateDelete();
+        } finally {
+            statements.release(DELETE_ITEM_SQL, statement);
+            items.remove(item.getId());
+        }
     }
 
 }
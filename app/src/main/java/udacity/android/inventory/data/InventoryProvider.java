@@ -0,0 +1,333 @@
+package udacity.android.inventory.data;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+
+/**
+ * This class is a ContentProvider over the inventory database. It
+ * serves the collection URI and single item URIs, notifies observers
+ * of the URIs after every write, and applies batches of operations
+ * in one transaction with a single notification. Writes are applied
+ * to the shared item instances of the database helper.
+ *
+ * The supplier of an item is read and written as its email, in the
+ * column COLUMN_SUPPLIER_EMAIL. Queries join the email from the
+ * suppliers table and writes replace it with the id of the supplier.
+ * An update which sets the quantity records the change in the stock
+ * movements ledger as an adjustment.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class InventoryProvider extends ContentProvider {
+
+    /** Log tag for this class */
+    public static final String LOG_TAG = InventoryProvider.class.getSimpleName();
+
+    /** URI matcher codes for the collection and a single item. */
+    private static final int ITEMS = 100;
+    private static final int ITEM_ID = 101;
+
+    /** Matches content URIs to the codes. */
+    private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY, ITEMS);
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY + "/#", ITEM_ID);
+    }
+
+    /** Selection of a single row by id. */
+    private static final String SELECTION_ID = InventoryEntry._ID + "= ?";
+
+    /** True on the thread applying a batch, whose notification is sent at the end. */
+    private final ThreadLocal<Boolean> applyingBatch = new ThreadLocal<>();
+
+    /** Database helper object. */
+    private InventoryDbHelper dbHelper;
+
+    /**
+     * This method initializes the provider.
+     *
+     * @return True, the provider was loaded.
+     */
+    @Override
+    public boolean onCreate() {
+        dbHelper = InventoryDbHelper.getInstance(getContext());
+        return true;
+    }
+
+    /**
+     * This method queries the collection or a single item. The cursor
+     * is registered for notifications of the passed in URI.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        switch(uriMatcher.match(uri)) {
+            case ITEMS:
+                break;
+            case ITEM_ID:
+                selection = SELECTION_ID;
+                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
+                break;
+            default:
+                throw new IllegalArgumentException("Cannot query unknown URI " + uri);
+        }
+
+        Cursor cursor = db.query(InventoryDbHelper.ITEMS_TABLE, projection, selection, selectionArgs,
+                null, null, sortOrder);
+        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        return cursor;
+    }
+
+    /**
+     * This method inserts an item into the collection.
+     */
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        if(uriMatcher.match(uri) != ITEMS) {
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long id = db.insert(InventoryEntry.TABLE_NAME, null, toSupplierId(db, values));
+        if(id == -1) {
+            return null;
+        }
+
+        notifyChange(InventoryEntry.CONTENT_URI);
+        return ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id);
+    }
+
+    /**
+     * This method inserts all items in one transaction and sends one
+     * notification.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        if(uriMatcher.match(uri) != ITEMS) {
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int count = 0;
+
+        boolean committed = false;
+        db.beginTransaction();
+        try {
+            for(ContentValues value : values) {
+                if(db.insert(InventoryEntry.TABLE_NAME, null, toSupplierId(db, value)) != -1) {
+                    count++;
+                }
+            }
+            db.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            db.endTransaction();
+            dbHelper.getSupplierCache().endTransaction(db, committed);
+        }
+
+        if(count > 0) {
+            notifyChange(InventoryEntry.CONTENT_URI);
+        }
+        return count;
+    }
+
+    /**
+     * This method updates the collection or a single item.
+     */
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        switch(uriMatcher.match(uri)) {
+            case ITEMS:
+                break;
+            case ITEM_ID:
+                selection = SELECTION_ID;
+                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
+                break;
+            default:
+                throw new IllegalArgumentException("Update is not supported for " + uri);
+        }
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues row = toSupplierId(db, values);
+        Integer quantity = values.getAsInteger(InventoryEntry.COLUMN_QUANTITY);
+        int rows;
+        if(quantity == null) {
+            rows = db.update(InventoryEntry.TABLE_NAME, row, selection, selectionArgs);
+        } else {
+            // The quantity is set directly, the difference is recorded first
+            db.beginTransaction();
+            try {
+                dbHelper.recordAdjustments(db, quantity, selection, selectionArgs);
+                rows = db.update(InventoryEntry.TABLE_NAME, row, selection, selectionArgs);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
+        if(rows > 0) {
+            ItemCache items = dbHelper.getItemCache();
+            if(uriMatcher.match(uri) != ITEM_ID) {
+                items.clear();
+            } else if(db.inTransaction()) {
+                // A batch may still be rolled back
+                items.remove(ContentUris.parseId(uri));
+            } else {
+                items.update(ContentUris.parseId(uri), values);
+            }
+
+            notifyChange(uri);
+        }
+        return rows;
+    }
+
+    /**
+     * This method deletes from the collection or a single item.
+     */
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        switch(uriMatcher.match(uri)) {
+            case ITEMS:
+                break;
+            case ITEM_ID:
+                selection = SELECTION_ID;
+                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
+                break;
+            default:
+                throw new IllegalArgumentException("Deletion is not supported for " + uri);
+        }
+
+        int rows = dbHelper.getWritableDatabase().delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+        if(rows > 0) {
+            if(uriMatcher.match(uri) == ITEM_ID) {
+                dbHelper.getItemCache().remove(ContentUris.parseId(uri));
+            } else {
+                dbHelper.getItemCache().clear();
+            }
+
+            notifyChange(uri);
+        }
+        return rows;
+    }
+
+    /**
+     * This method applies the operations in one transaction. Observers
+     * are notified once, after the transaction is committed.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        boolean committed = false;
+
+        applyingBatch.set(Boolean.TRUE);
+        db.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            db.endTransaction();
+            dbHelper.getSupplierCache().endTransaction(db, committed);
+            applyingBatch.remove();
+        }
+
+        if(!operations.isEmpty()) {
+            notifyChange(InventoryEntry.CONTENT_URI);
+        }
+        return results;
+    }
+
+    /**
+     * This method runs the provider methods declared in InventoryContract.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if(InventoryContract.METHOD_ADJUST_QUANTITY.equals(method)) {
+            long id = Long.parseLong(arg);
+            int quantity = dbHelper.adjustQuantity(id, extras.getInt(InventoryContract.EXTRA_DELTA));
+
+            if(quantity != InventoryDbHelper.ADJUST_REJECTED) {
+                notifyChange(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id));
+            }
+
+            Bundle result = new Bundle();
+            result.putInt(InventoryContract.EXTRA_QUANTITY, quantity);
+            return result;
+        }
+
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * This method returns the MIME type of the URI.
+     */
+    @Override
+    public String getType(Uri uri) {
+        switch(uriMatcher.match(uri)) {
+            case ITEMS:
+                return InventoryEntry.CONTENT_LIST_TYPE;
+            case ITEM_ID:
+                return InventoryEntry.CONTENT_ITEM_TYPE;
+            default:
+                throw new IllegalArgumentException("Unknown URI " + uri);
+        }
+    }
+
+    /**
+     * This method returns the values to write to the inventory table,
+     * with the supplier email replaced by the id of the supplier. The
+     * supplier is added if it is new. The passed in values are left
+     * unchanged, to be applied to the shared item instances.
+     *
+     * @param db The writable database.
+     * @param values The values of the item, with the supplier email.
+     * @return The values with the supplier id.
+     */
+    private ContentValues toSupplierId(SQLiteDatabase db, ContentValues values) {
+        if(values == null || !values.containsKey(InventoryEntry.COLUMN_SUPPLIER_EMAIL)) {
+            return values;
+        }
+
+        ContentValues row = new ContentValues(values);
+        String email = row.getAsString(InventoryEntry.COLUMN_SUPPLIER_EMAIL);
+        row.remove(InventoryEntry.COLUMN_SUPPLIER_EMAIL);
+        if(email == null) {
+            // Rejected by the table like a missing email
+            row.putNull(InventoryEntry.COLUMN_SUPPLIER_ID);
+        } else {
+            row.put(InventoryEntry.COLUMN_SUPPLIER_ID, dbHelper.getSupplierCache().getId(db, email));
+        }
+        return row;
+    }
+
+    /**
+     * This method notifies the observers of a URI unless a batch is
+     * being applied on this thread.
+     *
+     * @param uri The changed URI.
+     */
+    private void notifyChange(Uri uri) {
+        if(applyingBatch.get() == null) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package udacity.android.inventory.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryContract.InventoryMovementEntry;
+import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.SupplierOrder;
+
+/**
+ * This class runs every write to the inventory on a single background
+ * thread, so writes never block the UI thread and never run in
+ * parallel with each other. Writes go through the content provider so
+ * its observers are notified. Each write takes an optional callback
+ * which is called on the main thread with the result.
+ *
+ * The writer thread also compacts the stock movements ledger, a short
+ * time after the writer is created and then periodically, between the
+ * other writes.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class InventoryWriter {
+
+    /** Log tag for this class */
+    public static final String LOG_TAG = InventoryWriter.class.getSimpleName();
+
+    /**
+     * Interface to receive the result of a write on the main thread.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called on the main thread when the write is done.
+         *
+         * @param result The result of the write, or null if it failed.
+         */
+        void onComplete(T result);
+    }
+
+    /**
+     * A write run on the writer thread.
+     *
+     * @param <T> The type of the result.
+     */
+    private abstract static class Write<T> {
+        abstract T run();
+    }
+
+    /** The number of days of movements kept one row per movement. */
+    public static final int LEDGER_RETENTION_DAYS = 7;
+
+    /** The delay of the first compaction, after the reads at start up. */
+    private static final long COMPACTION_DELAY_MS = 30 * 1000;
+
+    /** The time between compactions while the process runs. */
+    private static final long COMPACTION_INTERVAL_MS = 6 * 60 * 60 * 1000;
+
+    /** The writer shared by the whole process. */
+    private static InventoryWriter instance;
+
+    private final ContentResolver resolver;
+    private final InventoryDbHelper dbHelper;
+
+    /** The writer thread and the main thread. */
+    private final Handler writeHandler;
+    private final Handler mainHandler;
+
+    /**
+     * Folds the movements older than LEDGER_RETENTION_DAYS into daily
+     * movements, then schedules the next compaction.
+     */
+    private final Runnable compactLedger = new Runnable() {
+        @Override
+        public void run() {
+            long today = System.currentTimeMillis() / 1000 / InventoryMovementEntry.SECONDS_PER_DAY;
+            try {
+                int removed = dbHelper.compactLedger(
+                        (today - LEDGER_RETENTION_DAYS) * InventoryMovementEntry.SECONDS_PER_DAY);
+                Log.i(LOG_TAG, "Compacted " + removed + " stock movements.");
+            } catch(RuntimeException e) {
+                Log.e(LOG_TAG, "Ledger compaction failed.", e);
+            }
+            writeHandler.postDelayed(this, COMPACTION_INTERVAL_MS);
+        }
+    };
+
+    /**
+     * This method returns the writer shared by the whole process.
+     *
+     * @param context The calling context.
+     * @return The shared writer.
+     */
+    public static synchronized InventoryWriter getInstance(Context context) {
+        if(instance == null) {
+            instance = new InventoryWriter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context The application context.
+     */
+    private InventoryWriter(Context context) {
+        resolver = context.getContentResolver();
+        dbHelper = InventoryDbHelper.getInstance(context);
+
+        HandlerThread writeThread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        writeThread.start();
+        writeHandler = new Handler(writeThread.getLooper());
+        mainHandler = new Handler(Looper.getMainLooper());
+
+        writeHandler.postDelayed(compactLedger, COMPACTION_DELAY_MS);
+    }
+
+    /**
+     * This method inserts an item.
+     *
+     * @param values The column values of the item.
+     * @param callback Receives the URI of the new item, may be null.
+     */
+    public void insert(final ContentValues values, Callback<Uri> callback) {
+        post(new Write<Uri>() {
+            @Override
+            Uri run() {
+                return resolver.insert(InventoryEntry.CONTENT_URI, values);
+            }
+        }, callback);
+    }
+
+    /**
+     * This method updates the collection or a single item.
+     *
+     * @param uri The collection URI or an item URI.
+     * @param values The new column values.
+     * @param callback Receives the number of updated rows, may be null.
+     */
+    public void update(final Uri uri, final ContentValues values, Callback<Integer> callback) {
+        post(new Write<Integer>() {
+            @Override
+            Integer run() {
+                return resolver.update(uri, values, null, null);
+            }
+        }, callback);
+    }
+
+    /**
+     * This method deletes an item.
+     *
+     * @param uri The item URI.
+     * @param callback Receives the number of deleted rows, may be null.
+     */
+    public void delete(final Uri uri, Callback<Integer> callback) {
+        post(new Write<Integer>() {
+            @Override
+            Integer run() {
+                return resolver.delete(uri, null, null);
+            }
+        }, callback);
+    }
+
+    /**
+     * This method adds a delta to the quantity of an item, rejecting
+     * the change if the quantity would become negative.
+     *
+     * @param id The id of the item.
+     * @param delta The amount to add, negative for a sale.
+     * @param callback Receives the new quantity or
+     *                 InventoryDbHelper.ADJUST_REJECTED, may be null.
+     */
+    public void adjustQuantity(final long id, final int delta, Callback<Integer> callback) {
+        post(new Write<Integer>() {
+            @Override
+            Integer run() {
+                Bundle extras = new Bundle();
+                extras.putInt(InventoryContract.EXTRA_DELTA, delta);
+
+                Bundle result = resolver.call(InventoryEntry.CONTENT_URI,
+                        InventoryContract.METHOD_ADJUST_QUANTITY, String.valueOf(id), extras);
+
+                return result == null ? InventoryDbHelper.ADJUST_REJECTED
+                        : result.getInt(InventoryContract.EXTRA_QUANTITY, InventoryDbHelper.ADJUST_REJECTED);
+            }
+        }, callback);
+    }
+
+    /**
+     * This method applies several operations in one transaction.
+     *
+     * @param operations The operations.
+     * @param callback Receives the results, may be null.
+     */
+    public void applyBatch(final ArrayList<ContentProviderOperation> operations,
+                           Callback<ContentProviderResult[]> callback) {
+        post(new Write<ContentProviderResult[]>() {
+            @Override
+            ContentProviderResult[] run() {
+                try {
+                    return resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+                } catch(Exception e) {
+                    throw new IllegalStateException("Batch failed.", e);
+                }
+            }
+        }, callback);
+    }
+
+    /**
+     * This method builds the order of the supplier of an item, covering
+     * the item and the supplier's other items below their reorder
+     * threshold. It is read on the writer thread, after the writes
+     * already queued, so it sees them.
+     *
+     * @param item The item to order.
+     * @param callback Receives the order, or null if it failed.
+     */
+    public void prepareOrder(final Item item, Callback<SupplierOrder> callback) {
+        post(new Write<SupplierOrder>() {
+            @Override
+            SupplierOrder run() {
+                return ReorderEngine.getOrder(dbHelper, item);
+            }
+        }, callback);
+    }
+
+    /**
+     * This method returns the handler of the writer thread, for writers
+     * which schedule their own work on it.
+     *
+     * @return The handler.
+     */
+    Handler getWriteHandler() {
+        return writeHandler;
+    }
+
+    /**
+     * This method returns the database helper used by the writer.
+     *
+     * @return The database helper.
+     */
+    InventoryDbHelper getDbHelper() {
+        return dbHelper;
+    }
+
+    /**
+     * This method runs a write on the writer thread and passes its
+     * result to the callback on the main thread.
+     *
+     * @param write The write.
+     * @param callback The callback, may be null.
+     * @param <T> The type of the result.
+     */
+    private <T> void post(final Write<T> write, final Callback<T> callback) {
+        writeHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                T result = null;
+                try {
+                    result = write.run();
+                } catch(RuntimeException e) {
+                    Log.e(LOG_TAG, "Write failed.", e);
+                }
+
+                if(callback != null) {
+                    final T finalResult = result;
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onComplete(finalResult);
+                        }
+                    });
+                }
+            }
+        });
+    }
+}
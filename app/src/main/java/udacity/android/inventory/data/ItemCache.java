@@ -0,0 +1,179 @@
+package udacity.android.inventory.data;
+
+import android.content.ContentValues;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.model.Item;
+
+/**
+ * This class maps item ids to the one Item instance the app shares for
+ * each row, so screens can pass an id and read the current item without
+ * a query. The least recently used items are evicted once the cache is
+ * full.
+ *
+ * A cached instance is never changed, so any thread may read it while
+ * another writes. The database helper replaces the cached instance with
+ * a copy holding the written columns after each write it commits, and
+ * holders read the item again by id to see the write, which costs no
+ * query. Callers must not change an instance they got from the cache;
+ * to edit an item they write a new Item with the same id.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+final class ItemCache {
+
+    /** The default number of items kept. */
+    static final int DEFAULT_MAX_SIZE = 256;
+
+    private final LinkedHashMap<Long, Item> items;
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The number of items kept.
+     */
+    ItemCache(final int maxSize) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive.");
+        }
+
+        items = new LinkedHashMap<Long, Item>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Item> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * This method returns the cached item and marks it as recently used.
+     *
+     * @param id The id of the item.
+     * @return The item, or null if it is not cached.
+     */
+    synchronized Item get(long id) {
+        return items.get(id);
+    }
+
+    /**
+     * This method caches an item read from the database, unless another
+     * thread cached the same row first, so each row has one instance.
+     *
+     * @param item The item read from the database.
+     * @return The cached instance for the row.
+     */
+    synchronized Item putIfAbsent(Item item) {
+        Item cached = items.get(item.getId());
+        if(cached != null) {
+            return cached;
+        }
+
+        items.put(item.getId(), item);
+        return item;
+    }
+
+    /**
+     * This method replaces the cached instance for the row of a written
+     * item, if there is one, with a copy of the item.
+     *
+     * @param item The item as written.
+     */
+    synchronized void update(Item item) {
+        if(items.containsKey(item.getId())) {
+            items.put(item.getId(), copy(item));
+        }
+    }
+
+    /**
+     * This method replaces the cached instance for a row, if there is
+     * one, with a copy holding the written column values. Columns not in
+     * the values keep their cached value.
+     *
+     * @param id The id of the row.
+     * @param values The written column values.
+     */
+    synchronized void update(long id, ContentValues values) {
+        Item cached = items.get(id);
+        if(cached == null) {
+            return;
+        }
+
+        Item written = copy(cached);
+        if(values.containsKey(InventoryEntry.COLUMN_DESCRIPTION)) {
+            written.setDescription(values.getAsString(InventoryEntry.COLUMN_DESCRIPTION));
+        }
+        if(values.containsKey(InventoryEntry.COLUMN_PRICE_CENTS)) {
+            written.setPriceCents(values.getAsLong(InventoryEntry.COLUMN_PRICE_CENTS));
+        }
+        if(values.containsKey(InventoryEntry.COLUMN_QUANTITY)) {
+            written.setQuantity(values.getAsInteger(InventoryEntry.COLUMN_QUANTITY));
+        }
+        if(values.containsKey(InventoryEntry.COLUMN_SUPPLIER_EMAIL)) {
+            written.setSupplierEmail(values.getAsString(InventoryEntry.COLUMN_SUPPLIER_EMAIL));
+        }
+        if(values.containsKey(InventoryEntry.COLUMN_IMAGE)) {
+            written.setImage(values.getAsString(InventoryEntry.COLUMN_IMAGE));
+        }
+        if(values.containsKey(InventoryEntry.COLUMN_REORDER_THRESHOLD)) {
+            written.setReorderThreshold(values.getAsInteger(InventoryEntry.COLUMN_REORDER_THRESHOLD));
+        }
+        items.put(id, written);
+    }
+
+    /**
+     * This method replaces the cached instance for a row, if there is
+     * one, with a copy holding the written quantity.
+     *
+     * @param id The id of the row.
+     * @param quantity The written quantity.
+     */
+    synchronized void setQuantity(long id, int quantity) {
+        Item cached = items.get(id);
+        if(cached != null && cached.getQuantity() != quantity) {
+            Item written = copy(cached);
+            written.setQuantity(quantity);
+            items.put(id, written);
+        }
+    }
+
+    /**
+     * This method removes the item of a row.
+     *
+     * @param id The id of the row.
+     */
+    synchronized void remove(long id) {
+        items.remove(id);
+    }
+
+    /**
+     * This method removes every item, after writes to rows which are
+     * not known one by one.
+     */
+    synchronized void clear() {
+        items.clear();
+    }
+
+    /**
+     * This method returns the number of cached items.
+     *
+     * @return The number of items.
+     */
+    synchronized int size() {
+        return items.size();
+    }
+
+    /**
+     * This method copies every column of an item.
+     *
+     * @param item The item.
+     * @return A new instance with the same id and columns.
+     */
+    private static Item copy(Item item) {
+        return new Item(item.getId(), item.getDescription(), item.getPriceCents(), item.getQuantity(),
+                item.getSupplierEmail(), item.getImage(), item.getReorderThreshold());
+    }
+}
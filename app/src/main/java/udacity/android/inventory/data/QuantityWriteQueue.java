@@ -0,0 +1,224 @@
+package udacity.android.inventory.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+
+/**
+ * This class is a write-behind queue for quantity changes. Changes
+ * are coalesced per item id and written on the writer thread in a
+ * single transaction, either a short time after the first change or
+ * as soon as the queue holds changes for capacity items. Until a
+ * change is written its delta is reported by pendingDelta so the
+ * display can show the expected quantity right away. The written
+ * quantities are passed to the listener on the callback thread. If a
+ * write fails its changes are dropped and the listener is told, so the
+ * display falls back to the stored quantities.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+public class QuantityWriteQueue {
+
+    /** Log tag for this class */
+    public static final String LOG_TAG = QuantityWriteQueue.class.getSimpleName();
+
+    /** The default time changes wait to be coalesced before they are written. */
+    public static final long DEFAULT_FLUSH_DELAY_MS = 250;
+
+    /** The default number of items with changes that forces a write. */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * Interface to receive the quantities of the items after their
+     * changes have been written, or the items whose write failed.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the callback thread after a write.
+         *
+         * @param ids The ids of the written items.
+         * @param quantities The quantity of each item in the database, or
+         *                   InventoryDbHelper.ADJUST_REJECTED if it does not exist.
+         * @param count The number of written items.
+         */
+        void onQuantitiesWritten(long[] ids, int[] quantities, int count);
+
+        /**
+         * Called on the callback thread after a write failed. None of
+         * the changes were written and they are no longer pending.
+         *
+         * @param ids The ids of the items whose changes were dropped.
+         * @param count The number of items.
+         */
+        void onQuantitiesFailed(long[] ids, int count);
+    }
+
+    /** Database helper object. */
+    private final InventoryDbHelper dbHelper;
+
+    private final Listener listener;
+    private final long flushDelayMs;
+    private final int capacity;
+
+    /** The thread the changes are written on, and the thread the listener is called on. */
+    private final Handler writeHandler;
+    private final Handler callbackHandler;
+
+    /** Changes not yet written, and changes being written, by item id. Guarded by this. */
+    private final LongSparseArray<Integer> queued = new LongSparseArray<>();
+    private final LongSparseArray<Integer> inFlight = new LongSparseArray<>();
+
+    /** Writes the queued changes. */
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Constructor with the default delay and capacity, writing on the
+     * thread of the writer and calling the listener on the main thread.
+     *
+     * @param writer The writer whose thread the changes are written on.
+     * @param listener Receives the written quantities.
+     */
+    public QuantityWriteQueue(InventoryWriter writer, Listener listener) {
+        this(writer.getDbHelper(), writer.getWriteHandler(), listener, DEFAULT_FLUSH_DELAY_MS,
+                DEFAULT_CAPACITY, Looper.getMainLooper());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dbHelper A database helper object.
+     * @param writeHandler The handler of the thread the changes are written on.
+     * @param listener Receives the written quantities.
+     * @param flushDelayMs The time changes wait before they are written.
+     * @param capacity The number of items with changes that forces a write.
+     * @param callbackLooper The looper of the thread the listener is called on.
+     */
+    public QuantityWriteQueue(InventoryDbHelper dbHelper, Handler writeHandler, Listener listener,
+                              long flushDelayMs, int capacity, Looper callbackLooper) {
+        this.dbHelper = dbHelper;
+        this.writeHandler = writeHandler;
+        this.listener = listener;
+        this.flushDelayMs = flushDelayMs;
+        this.capacity = capacity;
+        callbackHandler = new Handler(callbackLooper);
+    }
+
+    /**
+     * This method queues a change to the quantity of an item.
+     *
+     * @param id The id of the item.
+     * @param delta The amount to add, negative for a sale.
+     */
+    public synchronized void enqueue(long id, int delta) {
+        boolean firstChange = queued.size() == 0;
+        queued.put(id, queued.get(id, 0) + delta);
+
+        if(queued.size() >= capacity) {
+            writeHandler.removeCallbacks(flushRunnable);
+            writeHandler.post(flushRunnable);
+        } else if(firstChange) {
+            writeHandler.postDelayed(flushRunnable, flushDelayMs);
+        }
+    }
+
+    /**
+     * This method returns the total of the changes to an item that
+     * have not been reported to the listener yet.
+     *
+     * @param id The id of the item.
+     * @return The pending delta, 0 if there is none.
+     */
+    public synchronized int pendingDelta(long id) {
+        return queued.get(id, 0) + inFlight.get(id, 0);
+    }
+
+    /**
+     * This method returns whether any change has not been reported to
+     * the listener yet.
+     *
+     * @return True if changes are pending.
+     */
+    public synchronized boolean hasPending() {
+        return queued.size() > 0 || inFlight.size() > 0;
+    }
+
+    /**
+     * This method writes the queued changes without waiting for the
+     * flush delay, for example when the activity is paused or destroyed.
+     */
+    public synchronized void drain() {
+        if(queued.size() > 0) {
+            writeHandler.removeCallbacks(flushRunnable);
+            writeHandler.post(flushRunnable);
+        }
+    }
+
+    /**
+     * This method writes the queued changes in one transaction. It is
+     * run on the write thread. A failed transaction is rolled back, so
+     * its changes are dropped rather than retried.
+     */
+    private void flush() {
+        final long[] ids;
+        final int[] deltas;
+        final int count;
+
+        // Move the queued changes to the in flight changes
+        synchronized(this) {
+            count = queued.size();
+            if(count == 0) {
+                return;
+            }
+
+            ids = new long[count];
+            deltas = new int[count];
+            for(int i = 0; i < count; i++) {
+                ids[i] = queued.keyAt(i);
+                deltas[i] = queued.valueAt(i);
+                inFlight.put(ids[i], inFlight.get(ids[i], 0) + deltas[i]);
+            }
+            queued.clear();
+        }
+
+        final int[] quantities = new int[count];
+        boolean written = false;
+        try {
+            dbHelper.adjustQuantities(ids, deltas, count, quantities);
+            written = true;
+        } catch(RuntimeException e) {
+            Log.e(LOG_TAG, "Quantity write failed.", e);
+        }
+
+        final boolean finalWritten = written;
+        callbackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // The written quantities include the in flight changes, a failed write drops them
+                synchronized(QuantityWriteQueue.this) {
+                    for(int i = 0; i < count; i++) {
+                        int remaining = inFlight.get(ids[i], 0) - deltas[i];
+                        if(remaining == 0) {
+                            inFlight.remove(ids[i]);
+                        } else {
+                            inFlight.put(ids[i], remaining);
+                        }
+                    }
+                }
+
+                if(finalWritten) {
+                    listener.onQuantitiesWritten(ids, quantities, count);
+                } else {
+                    listener.onQuantitiesFailed(ids, count);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,156 @@
+package udacity.android.inventory.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.SupplierOrder;
+
+/**
+ * This class finds the items below their reorder threshold and groups
+ * them into one order per supplier. The low stock rows are read with
+ * one query from the partial low stock index, which holds only those
+ * rows and keeps them ordered by supplier id, so the cost depends on
+ * the number of low items rather than on the size of the inventory.
+ * The orders are built while the rows are read, one supplier at a time,
+ * and the email of each supplier is looked up once from the cache.
+ *
+ * The methods run on the calling thread.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class ReorderEngine {
+
+    /** The columns of the low stock queries. */
+    private static final String LOW_STOCK_COLUMNS = "SELECT " +
+            InventoryEntry._ID + ", " +
+            InventoryEntry.COLUMN_DESCRIPTION + ", " +
+            InventoryEntry.COLUMN_QUANTITY + ", " +
+            InventoryEntry.COLUMN_REORDER_THRESHOLD + ", " +
+            InventoryEntry.COLUMN_SUPPLIER_ID + " FROM " + InventoryEntry.TABLE_NAME;
+
+    /**
+     * Reads every low stock row grouped by supplier. The condition must
+     * be spelled as in the index for SQLite to use the partial index.
+     */
+    private static final String LOW_STOCK_SQL = LOW_STOCK_COLUMNS +
+            " WHERE " + InventoryEntry.LOW_STOCK_SELECTION +
+            " ORDER BY " + InventoryEntry.COLUMN_SUPPLIER_ID + ", " + InventoryEntry._ID;
+
+    /** Reads the low stock rows of one supplier. */
+    private static final String SUPPLIER_LOW_STOCK_SQL = LOW_STOCK_COLUMNS +
+            " WHERE " + InventoryEntry.COLUMN_SUPPLIER_ID + " = ? AND " + InventoryEntry.LOW_STOCK_SELECTION +
+            " ORDER BY " + InventoryEntry._ID;
+
+    private static final int ID = 0;
+    private static final int DESCRIPTION = 1;
+    private static final int QUANTITY = 2;
+    private static final int REORDER_THRESHOLD = 3;
+    private static final int SUPPLIER_ID = 4;
+
+    /**
+     * Interface to receive the orders as they are built.
+     */
+    public interface OrderListener {
+
+        /**
+         * Called once per supplier with low stock, in supplier id order.
+         *
+         * @param order The order of the supplier.
+         * @return False to stop before the next supplier.
+         */
+        boolean onOrder(SupplierOrder order);
+    }
+
+    /**
+     * Private constructor throws AssertionError to
+     * prevent instantiation.
+     */
+    private ReorderEngine() {
+        throw new AssertionError();
+    }
+
+    /**
+     * This method builds one order for each supplier with items below
+     * their reorder threshold, covering all of those items, and passes
+     * each to the listener. Only the order being built is held, so the
+     * memory used does not depend on the number of suppliers.
+     *
+     * @param dbHelper The database helper.
+     * @param listener Receives the orders.
+     * @return The number of orders passed to the listener.
+     */
+    public static int forEachOrder(InventoryDbHelper dbHelper, OrderListener listener) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        SupplierCache suppliers = dbHelper.getSupplierCache();
+        Cursor cursor = db.rawQuery(LOW_STOCK_SQL, null);
+        try {
+            int orders = 0;
+            SupplierOrder order = null;
+            long orderSupplierId = SupplierCache.NO_SUPPLIER;
+            while(cursor.moveToNext()) {
+                long supplierId = cursor.getLong(SUPPLIER_ID);
+                if(order != null && orderSupplierId != supplierId) {
+                    orders++;
+                    if(!listener.onOrder(order)) {
+                        return orders;
+                    }
+                    order = null;
+                }
+
+                if(order == null) {
+                    order = new SupplierOrder(suppliers.getEmail(db, supplierId));
+                    orderSupplierId = supplierId;
+                }
+                addLine(order, cursor);
+            }
+
+            if(order != null) {
+                orders++;
+                listener.onOrder(order);
+            }
+            return orders;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * This method builds the order of the supplier of an item, covering
+     * the item and every other item of the supplier below its reorder
+     * threshold. The item comes first even if it is not low on stock.
+     *
+     * @param dbHelper The database helper.
+     * @param item The item to order.
+     * @return The order of the supplier of the item.
+     */
+    public static SupplierOrder getOrder(InventoryDbHelper dbHelper, Item item) {
+        SupplierOrder order = new SupplierOrder(item.getSupplierEmail());
+        order.addLine(item.getId(), item.getDescription(), item.getQuantity(), item.getReorderThreshold());
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        long supplierId = dbHelper.getSupplierCache().findId(db, item.getSupplierEmail());
+        if(supplierId == SupplierCache.NO_SUPPLIER) {
+            return order;
+        }
+
+        Cursor cursor = db.rawQuery(SUPPLIER_LOW_STOCK_SQL, new String[] { String.valueOf(supplierId) });
+        try {
+            while(cursor.moveToNext()) {
+                if(cursor.getLong(ID) != item.getId()) {
+                    addLine(order, cursor);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return order;
+    }
+
+    private static void addLine(SupplierOrder order, Cursor cursor) {
+        order.addLine(cursor.getLong(ID), cursor.getString(DESCRIPTION), cursor.getInt(QUANTITY),
+                cursor.getInt(REORDER_THRESHOLD));
+    }
+}
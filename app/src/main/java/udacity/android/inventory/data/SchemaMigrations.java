@@ -0,0 +1,407 @@
+package udacity.android.inventory.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import udacity.android.inventory.data.InventoryContract.InventorySearchEntry;
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryContract.InventorySummaryEntry;
+import udacity.android.inventory.data.InventoryContract.InventorySupplierEntry;
+
+/**
+ * This class upgrades the inventory database from any earlier version
+ * to the current one without losing rows. Each schema version has one
+ * migration step, and the steps are run in version order. Every step
+ * commits in its own transaction together with the new version number,
+ * so an interrupted upgrade resumes from the last completed step.
+ *
+ * Steps that change the type of a column rebuild the table with a
+ * chunked copy-and-swap instead: the rows are copied to a new table in
+ * chunks, each chunk in its own transaction, and the new table replaces
+ * the old one in a final transaction. An interrupted copy resumes after
+ * the last copied row. The two kinds of step are separate types, and
+ * migrate runs each the way its type needs.
+ *
+ * A step spells out the tables and indexes of its own version instead
+ * of using the contract, whose definitions follow the newest version.
+ * The contract is only used for objects which have not changed since.
+ *
+ * @author Joseph Stewart
+ * @version 1.2
+ */
+final class SchemaMigrations {
+
+    /** Log tag for this class */
+    public static final String LOG_TAG = SchemaMigrations.class.getSimpleName();
+
+    /** The number of rows copied per transaction by a copy-and-swap. */
+    static final int COPY_CHUNK_SIZE = 5000;
+
+    /** A migration step from the previous version to toVersion. */
+    abstract static class Migration {
+
+        /** The version the step upgrades to. */
+        final int toVersion;
+
+        Migration(int toVersion) {
+            this.toVersion = toVersion;
+        }
+    }
+
+    /**
+     * A migration step which changes the schema in one transaction,
+     * together with the new version number.
+     */
+    abstract static class TransactionMigration extends Migration {
+
+        TransactionMigration(int toVersion) {
+            super(toVersion);
+        }
+
+        /**
+         * This method changes the schema. It is called inside the
+         * transaction of the step.
+         *
+         * @param db The database being upgraded.
+         */
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    /**
+     * A migration step which rebuilds a table with a chunked copy-and-swap.
+     * The new table is created under a temporary name, filled in chunks
+     * of rows ordered by id, and renamed to the table name after the old
+     * table is dropped. Dropping the old table also drops its indexes and
+     * triggers, which afterSwap creates again.
+     */
+    abstract static class CopyAndSwapMigration extends Migration {
+
+        final String table;
+        final String newTable;
+        final String createNewTable;
+        final String copyChunk;
+
+        /**
+         * Constructor.
+         *
+         * @param toVersion The version the step upgrades to.
+         * @param table The table to rebuild.
+         * @param newTableColumns The column definitions of the new table.
+         * @param columns The columns of the new table to fill.
+         * @param expressions The expressions over the old table giving the
+         *                    values of the columns, in the same order.
+         */
+        CopyAndSwapMigration(int toVersion, String table, String newTableColumns, String columns,
+                             String expressions) {
+            super(toVersion);
+            this.table = table;
+            newTable = table + "_v" + toVersion;
+            createNewTable = "CREATE TABLE IF NOT EXISTS " + newTable + "(" + newTableColumns + ");";
+            copyChunk = "INSERT INTO " + newTable + " (" + columns + ") SELECT " + expressions +
+                    " FROM " + table + " WHERE _id > ? ORDER BY _id LIMIT " + COPY_CHUNK_SIZE;
+        }
+
+        /**
+         * This method prepares the tables the copy reads from. It is
+         * called in its own transaction before the copy, also when an
+         * interrupted copy resumes, so it must be safe to run again.
+         *
+         * @param db The database being upgraded.
+         */
+        void beforeCopy(SQLiteDatabase db) {
+        }
+
+        /**
+         * This method creates the indexes and triggers of the new table.
+         * It is called in the transaction that replaces the old table.
+         *
+         * @param db The database being upgraded.
+         */
+        abstract void afterSwap(SQLiteDatabase db);
+    }
+
+    /** The migration steps, in version order. */
+    private static final Migration[] MIGRATIONS = {
+
+            // Version 2 added the covering index of the main list
+            new TransactionMigration(2) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS inventory_list_index ON inventory" +
+                            "(_id,description,price,quantity);");
+                }
+            },
+
+            // Version 3 added the full-text search table and its triggers
+            new TransactionMigration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(InventorySearchEntry.CREATE_SEARCH_TABLE);
+                    db.execSQL("INSERT INTO inventory_fts(docid,description,supplier)" +
+                            " SELECT _id,description,supplier FROM inventory;");
+                    createVersion3SearchTriggers(db);
+                }
+            },
+
+            // Version 4 added the image to the list index
+            new TransactionMigration(4) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("DROP INDEX IF EXISTS inventory_list_index");
+                    db.execSQL("CREATE INDEX inventory_list_index ON inventory" +
+                            "(_id,description,price,quantity,image);");
+                }
+            },
+
+            // Version 5 stores the price as integer cents instead of REAL
+            new CopyAndSwapMigration(5, "inventory",
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "description TEXT NOT NULL," +
+                            "price_cents INTEGER NOT NULL DEFAULT 0," +
+                            "quantity INTEGER NOT NULL DEFAULT 0," +
+                            "supplier TEXT NOT NULL," +
+                            "image TEXT",
+                    "_id,description,price_cents,quantity,supplier,image",
+                    "_id,description,CAST(ROUND(price * 100) AS INTEGER),quantity,supplier,image") {
+                @Override
+                void afterSwap(SQLiteDatabase db) {
+                    // The search table is kept, the ids of its rows did not change
+                    db.execSQL("CREATE INDEX inventory_list_index ON inventory" +
+                            "(_id,description,price_cents,quantity,image);");
+                    createVersion3SearchTriggers(db);
+                }
+            },
+
+            // Version 6 added the summary table and its triggers, counting items
+            // with fewer than 5 units as low on stock
+            new TransactionMigration(6) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL(InventorySummaryEntry.CREATE_SUMMARY_TABLE);
+                    db.execSQL("INSERT OR REPLACE INTO inventory_summary" +
+                            "(_id,item_count,unit_count,stock_value_cents,low_stock_count) SELECT 1," +
+                            "COUNT(*),IFNULL(SUM(quantity), 0),IFNULL(SUM(price_cents * quantity), 0)," +
+                            "IFNULL(SUM(quantity < 5), 0) FROM inventory;");
+                    db.execSQL("CREATE TRIGGER inventory_summary_insert AFTER INSERT ON inventory BEGIN " +
+                            "UPDATE inventory_summary SET item_count = item_count + 1," +
+                            "unit_count = unit_count + new.quantity," +
+                            "stock_value_cents = stock_value_cents + new.price_cents * new.quantity," +
+                            "low_stock_count = low_stock_count + (new.quantity < 5) WHERE _id = 1; END;");
+                    db.execSQL("CREATE TRIGGER inventory_summary_update AFTER UPDATE OF price_cents,quantity " +
+                            "ON inventory BEGIN " +
+                            "UPDATE inventory_summary SET unit_count = unit_count + new.quantity - old.quantity," +
+                            "stock_value_cents = stock_value_cents + new.price_cents * new.quantity" +
+                            " - old.price_cents * old.quantity," +
+                            "low_stock_count = low_stock_count + (new.quantity < 5) - (old.quantity < 5)" +
+                            " WHERE _id = 1; END;");
+                    db.execSQL("CREATE TRIGGER inventory_summary_delete AFTER DELETE ON inventory BEGIN " +
+                            "UPDATE inventory_summary SET item_count = item_count - 1," +
+                            "unit_count = unit_count - old.quantity," +
+                            "stock_value_cents = stock_value_cents - old.price_cents * old.quantity," +
+                            "low_stock_count = low_stock_count - (old.quantity < 5) WHERE _id = 1; END;");
+                }
+            },
+
+            // Version 7 added the reorder threshold, counted by the summary, and the
+            // partial index of the rows below it
+            new TransactionMigration(7) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE inventory ADD COLUMN reorder_threshold INTEGER NOT NULL DEFAULT 5");
+
+                    db.execSQL("DROP TRIGGER IF EXISTS " + InventorySummaryEntry.INSERT_TRIGGER_NAME);
+                    db.execSQL("DROP TRIGGER IF EXISTS " + InventorySummaryEntry.UPDATE_TRIGGER_NAME);
+                    db.execSQL("DROP TRIGGER IF EXISTS " + InventorySummaryEntry.DELETE_TRIGGER_NAME);
+                    db.execSQL(InventorySummaryEntry.CREATE_INSERT_TRIGGER);
+                    db.execSQL(InventorySummaryEntry.CREATE_UPDATE_TRIGGER);
+                    db.execSQL(InventorySummaryEntry.CREATE_DELETE_TRIGGER);
+                    db.execSQL(InventorySummaryEntry.REBUILD_SUMMARY);
+
+                    if(InventoryDbHelper.supportsPartialIndexes(db)) {
+                        db.execSQL("CREATE INDEX IF NOT EXISTS inventory_low_stock_index ON inventory(supplier)" +
+                                " WHERE quantity < reorder_threshold;");
+                    }
+                }
+            },
+
+            // Version 8 moved the supplier emails to the suppliers table, each stored
+            // once, and refers to them by id
+            new CopyAndSwapMigration(8, "inventory",
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                            "description TEXT NOT NULL," +
+                            "price_cents INTEGER NOT NULL DEFAULT 0," +
+                            "quantity INTEGER NOT NULL DEFAULT 0," +
+                            "supplier_id INTEGER NOT NULL REFERENCES suppliers(_id)," +
+                            "image TEXT," +
+                            "reorder_threshold INTEGER NOT NULL DEFAULT 5",
+                    "_id,description,price_cents,quantity,supplier_id,image,reorder_threshold",
+                    "_id,description,price_cents,quantity," +
+                            "(SELECT suppliers._id FROM suppliers WHERE suppliers.email = inventory.supplier)," +
+                            "image,reorder_threshold") {
+                @Override
+                void beforeCopy(SQLiteDatabase db) {
+                    db.execSQL(InventorySupplierEntry.CREATE_SUPPLIERS_TABLE);
+                    db.execSQL("INSERT OR IGNORE INTO suppliers(email) SELECT DISTINCT supplier FROM inventory" +
+                            " ORDER BY supplier;");
+                }
+
+                @Override
+                void afterSwap(SQLiteDatabase db) {
+                    // The search and summary tables are kept, the rows did not change
+                    db.execSQL(InventoryEntry.CREATE_LIST_INDEX);
+                    db.execSQL(InventoryEntry.CREATE_SUPPLIER_INDEX);
+                    InventoryDbHelper.createLowStockIndex(db);
+
+                    db.execSQL(InventorySearchEntry.CREATE_INSERT_TRIGGER);
+                    db.execSQL(InventorySearchEntry.CREATE_UPDATE_TRIGGER);
+                    db.execSQL(InventorySearchEntry.CREATE_DELETE_TRIGGER);
+                    db.execSQL(InventorySummaryEntry.CREATE_INSERT_TRIGGER);
+                    db.execSQL(InventorySummaryEntry.CREATE_UPDATE_TRIGGER);
+                    db.execSQL(InventorySummaryEntry.CREATE_DELETE_TRIGGER);
+                }
+            },
+
+            // Version 9 added the stock movements ledger, opened with the current quantities
+            new TransactionMigration(9) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    InventoryDbHelper.createMovementsTable(db);
+                }
+            }
+    };
+
+    /**
+     * Private constructor throws AssertionError to
+     * prevent instantiation.
+     */
+    private SchemaMigrations() {
+        throw new AssertionError();
+    }
+
+    /**
+     * This method runs the steps after oldVersion up to newVersion.
+     * Called outside of a transaction, every step commits on its own;
+     * called inside one, all the steps commit together with it.
+     *
+     * @param db The database to upgrade.
+     * @param oldVersion The version of the database.
+     * @param newVersion The version to upgrade to.
+     * @throws IllegalStateException If a step between the versions is missing.
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        int version = oldVersion;
+        for(Migration migration : MIGRATIONS) {
+            if(migration.toVersion <= oldVersion || migration.toVersion > newVersion) {
+                continue;
+            }
+            if(migration.toVersion != version + 1) {
+                throw new IllegalStateException("No migration to version " + (version + 1));
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            if(migration instanceof CopyAndSwapMigration) {
+                runCopyAndSwap(db, (CopyAndSwapMigration) migration);
+            } else {
+                runInTransaction(db, (TransactionMigration) migration);
+            }
+            version = migration.toVersion;
+
+            Log.i(LOG_TAG, "Migrated to version " + version + " in "
+                    + (SystemClock.elapsedRealtime() - start) + " ms");
+        }
+
+        if(version != newVersion) {
+            throw new IllegalStateException("No migration to version " + (version + 1));
+        }
+    }
+
+    /**
+     * This method runs a step and sets the new version in one transaction.
+     *
+     * @param db The database being upgraded.
+     * @param migration The step to run.
+     */
+    private static void runInTransaction(SQLiteDatabase db, TransactionMigration migration) {
+        db.beginTransaction();
+        try {
+            migration.migrate(db);
+            db.setVersion(migration.toVersion);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * This method runs a copy-and-swap step. The new table is created in
+     * one transaction, the rows after the last one already copied are
+     * copied one chunk per transaction, and the old table is replaced and
+     * the new version set in a last transaction.
+     *
+     * @param db The database being upgraded.
+     * @param migration The step to run.
+     */
+    private static void runCopyAndSwap(SQLiteDatabase db, CopyAndSwapMigration migration) {
+        db.beginTransaction();
+        try {
+            migration.beforeCopy(db);
+            db.execSQL(migration.createNewTable);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Copy the rows after the last one already copied, one chunk per transaction
+        SQLiteStatement copy = db.compileStatement(migration.copyChunk);
+        try {
+            int copied;
+            do {
+                db.beginTransaction();
+                try {
+                    long lastId = DatabaseUtils.longForQuery(db,
+                            "SELECT IFNULL(MAX(_id), 0) FROM " + migration.newTable, null);
+                    copy.bindLong(1, lastId);
+                    copied = copy.executeUpdateDelete();
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } while(copied == COPY_CHUNK_SIZE);
+        } finally {
+            copy.close();
+        }
+
+        // Replace the old table
+        db.beginTransaction();
+        try {
+            db.execSQL("DROP TABLE " + migration.table);
+            db.execSQL("ALTER TABLE " + migration.newTable + " RENAME TO " + migration.table);
+            migration.afterSwap(db);
+            db.setVersion(migration.toVersion);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * This method creates the triggers which kept the search table in
+     * sync with the inventory table from version 3 to 7, when the
+     * supplier email was a column of the inventory table.
+     *
+     * @param db The database being upgraded.
+     */
+    private static void createVersion3SearchTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER inventory_fts_insert AFTER INSERT ON inventory BEGIN " +
+                "INSERT INTO inventory_fts(docid,description,supplier)" +
+                " VALUES (new._id,new.description,new.supplier); END;");
+        db.execSQL("CREATE TRIGGER inventory_fts_update AFTER UPDATE OF description,supplier ON inventory BEGIN " +
+                "UPDATE inventory_fts SET description = new.description,supplier = new.supplier" +
+                " WHERE docid = old._id; END;");
+        db.execSQL("CREATE TRIGGER inventory_fts_delete AFTER DELETE ON inventory BEGIN " +
+                "DELETE FROM inventory_fts WHERE docid = old._id; END;");
+    }
+}
@@ -0,0 +1,182 @@
+package udacity.android.inventory.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * This class ranks full-text search matches and keeps the best ones.
+ * Each match is scored from its FTS matchinfo 'pcx' blob: for every
+ * phrase and column the hits in the row are divided by the hits in
+ * all rows, so rare words count more, and description hits are
+ * weighted above supplier hits. Only the best matches are kept, in a
+ * min-heap of primitive arrays, so ranking a large result set does
+ * not allocate per row.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+final class SearchRanker {
+
+    /** The weight of each column of the search table, in column order. */
+    private static final double[] COLUMN_WEIGHTS = { 2.0, 1.0 };
+
+    /** Heap of the best matches, the worst kept match at the root. */
+    private final long[] ids;
+    private final double[] scores;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param limit The number of matches to keep.
+     */
+    SearchRanker(int limit) {
+        ids = new long[limit];
+        scores = new double[limit];
+    }
+
+    /**
+     * This method converts text entered by the user to an FTS query
+     * that matches every word as a prefix. Characters other than
+     * letters and digits separate words and are otherwise dropped, so
+     * the user cannot enter FTS operators.
+     *
+     * @param query The entered text.
+     * @return The FTS query, or null if the text contains no words.
+     */
+    static String toPrefixQuery(String query) {
+        if(query == null) {
+            return null;
+        }
+
+        StringBuilder match = new StringBuilder();
+        for(String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if(word.length() > 0) {
+                if(match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(word).append('*');
+            }
+        }
+
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * This method scores a match and keeps it if it is among the best.
+     * Of matches with the same score the lowest ids are kept.
+     *
+     * @param id The id of the matching row.
+     * @param matchInfo The matchinfo 'pcx' blob of the row.
+     */
+    void offer(long id, byte[] matchInfo) {
+        double score = score(matchInfo);
+
+        if(size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if(score > scores[0] || (score == scores[0] && id < ids[0])) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * This method returns the ids of the kept matches, best match first.
+     * Matches with the same score are ordered by id.
+     *
+     * @return The ids.
+     */
+    long[] results() {
+        long[] results = new long[size];
+
+        // Removing the root repeatedly yields the matches worst first
+        for(int i = size - 1; i >= 0; i--) {
+            results[i] = ids[0];
+            size--;
+            swap(0, size);
+            siftDown(0);
+        }
+
+        return results;
+    }
+
+    /**
+     * This method computes the score of a match.
+     *
+     * @param matchInfo The matchinfo 'pcx' blob of the row.
+     * @return The score.
+     */
+    private static double score(byte[] matchInfo) {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+
+        double score = 0;
+        for(int phrase = 0; phrase < phrases; phrase++) {
+            for(int column = 0; column < columns; column++) {
+                int offset = 2 + 3 * (phrase * columns + column);
+                int hitsInRow = info.get(offset);
+                int hitsInAllRows = info.get(offset + 1);
+
+                if(hitsInRow > 0) {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                    score += weight * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+
+        return score;
+    }
+
+    /** Heap operations */
+
+    private boolean worse(int a, int b) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && ids[a] > ids[b]);
+    }
+
+    private void siftUp(int index) {
+        while(index > 0) {
+            int parent = (index - 1) / 2;
+            if(!worse(index, parent)) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while(true) {
+            int left = 2 * index + 1;
+            int right = left + 1;
+            int worst = index;
+
+            if(left < size && worse(left, worst)) {
+                worst = left;
+            }
+            if(right < size && worse(right, worst)) {
+                worst = right;
+            }
+            if(worst == index) {
+                return;
+            }
+
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
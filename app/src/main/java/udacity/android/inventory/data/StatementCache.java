@@ -0,0 +1,117 @@
+package udacity.android.inventory.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class keeps compiled statements for reuse, so the hot write
+ * paths do not build and parse their SQL again on every call. A
+ * statement is used by one thread at a time: acquire takes it out of
+ * the cache and release puts it back. No lock is held while a
+ * statement runs, so a thread waiting for the database inside a
+ * transaction can never block another one on the cache.
+ *
+ * Statements belong to the open database. clear closes the idle ones
+ * and makes the ones in use close when they are released, and must be
+ * called before the database is closed or its schema is changed.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+final class StatementCache {
+
+    /** The most idle statements kept for each SQL string. */
+    private static final int MAX_IDLE_PER_SQL = 4;
+
+    /** The idle statements of each SQL string. */
+    private final Map<String, ArrayDeque<SQLiteStatement>> idle = new HashMap<>();
+
+    /** The statements acquired since the last clear. */
+    private final Set<SQLiteStatement> inUse =
+            Collections.newSetFromMap(new IdentityHashMap<SQLiteStatement, Boolean>());
+
+    /** Incremented by clear, so statements compiled before it are not cached. */
+    private int generation;
+
+    /**
+     * This method returns a statement for the SQL, compiling it if no
+     * idle one is cached. It must be given back with release.
+     *
+     * @param db The open database.
+     * @param sql The SQL of the statement.
+     * @return The statement, for the calling thread only.
+     */
+    SQLiteStatement acquire(SQLiteDatabase db, String sql) {
+        int compiledGeneration;
+        synchronized(this) {
+            ArrayDeque<SQLiteStatement> statements = idle.get(sql);
+            SQLiteStatement statement = statements == null ? null : statements.poll();
+            if(statement != null) {
+                inUse.add(statement);
+                return statement;
+            }
+            compiledGeneration = generation;
+        }
+
+        // Compiling needs a connection, it is done without holding the lock
+        SQLiteStatement statement = db.compileStatement(sql);
+        synchronized(this) {
+            if(compiledGeneration == generation) {
+                inUse.add(statement);
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * This method gives a statement back to the cache. A statement
+     * compiled before the last clear, or one too many, is closed.
+     *
+     * @param sql The SQL the statement was acquired for.
+     * @param statement The statement.
+     */
+    void release(String sql, SQLiteStatement statement) {
+        statement.clearBindings();
+        synchronized(this) {
+            if(inUse.remove(statement)) {
+                ArrayDeque<SQLiteStatement> statements = idle.get(sql);
+                if(statements == null) {
+                    statements = new ArrayDeque<>(MAX_IDLE_PER_SQL);
+                    idle.put(sql, statements);
+                }
+                if(statements.size() < MAX_IDLE_PER_SQL) {
+                    statements.push(statement);
+                    return;
+                }
+            }
+        }
+        statement.close();
+    }
+
+    /**
+     * This method closes the idle statements. The statements in use are
+     * closed when they are released.
+     */
+    void clear() {
+        ArrayDeque<SQLiteStatement> closing = new ArrayDeque<>();
+        synchronized(this) {
+            for(ArrayDeque<SQLiteStatement> statements : idle.values()) {
+                closing.addAll(statements);
+            }
+            idle.clear();
+            inUse.clear();
+            generation++;
+        }
+
+        for(SQLiteStatement statement : closing) {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package udacity.android.inventory.data;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+
+import udacity.android.inventory.data.InventoryContract.InventorySupplierEntry;
+
+/**
+ * This class interns the suppliers table in memory: it maps supplier ids
+ * to one String instance for each email and emails back to ids, so rows
+ * read with a supplier id share the email instead of allocating a copy,
+ * and writes look up the id of a known supplier without a query. There
+ * is one entry per supplier, and suppliers are few next to items, so
+ * nothing is evicted.
+ *
+ * A supplier written inside a transaction is only cached once the
+ * outermost transaction commits, so a rollback cannot leave the id of a
+ * row which no longer exists. Code which looks up ids inside its own
+ * transaction calls endTransaction after ending it.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+final class SupplierCache {
+
+    /** Returned when an email has no supplier row. */
+    static final long NO_SUPPLIER = -1;
+
+    /** Adds a supplier unless its email is already stored. */
+    private static final String INSERT_SQL = "INSERT OR IGNORE INTO " + InventorySupplierEntry.TABLE_NAME +
+            " (" + InventorySupplierEntry.COLUMN_EMAIL + ") VALUES (?)";
+
+    /** Reads the id of an email. */
+    private static final String SELECT_ID_SQL = "SELECT " + InventorySupplierEntry._ID +
+            " FROM " + InventorySupplierEntry.TABLE_NAME +
+            " WHERE " + InventorySupplierEntry.COLUMN_EMAIL + " = ?";
+
+    /** Reads the email of an id. */
+    private static final String SELECT_EMAIL_SQL = "SELECT " + InventorySupplierEntry.COLUMN_EMAIL +
+            " FROM " + InventorySupplierEntry.TABLE_NAME +
+            " WHERE " + InventorySupplierEntry._ID + " = ?";
+
+    private final StatementCache statements;
+
+    /** The committed suppliers. */
+    private final HashMap<String, Long> ids = new HashMap<>();
+    private final HashMap<Long, String> emails = new HashMap<>();
+
+    /** The suppliers looked up inside the open write transaction. */
+    private final HashMap<String, Long> pendingIds = new HashMap<>();
+    private final HashMap<Long, String> pendingEmails = new HashMap<>();
+    private boolean pendingFailed;
+
+    /**
+     * Constructor.
+     *
+     * @param statements The statement cache of the database helper.
+     */
+    SupplierCache(StatementCache statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * This method returns the id of the supplier with an email, adding
+     * the supplier if it is new.
+     *
+     * @param db The writable database.
+     * @param email The email of the supplier.
+     * @return The id of the supplier.
+     */
+    long getId(SQLiteDatabase db, String email) {
+        long id = findCachedId(db, email);
+        if(id != NO_SUPPLIER) {
+            return id;
+        }
+
+        SQLiteStatement insert = statements.acquire(db, INSERT_SQL);
+        try {
+            insert.bindString(1, email);
+            insert.executeInsert();
+        } finally {
+            statements.release(INSERT_SQL, insert);
+        }
+
+        id = readId(db, email);
+        cache(db, id, email);
+        return id;
+    }
+
+    /**
+     * This method returns the id of the supplier with an email, without
+     * adding it.
+     *
+     * @param db The database.
+     * @param email The email of the supplier.
+     * @return The id of the supplier, or NO_SUPPLIER if there is none.
+     */
+    long findId(SQLiteDatabase db, String email) {
+        long id = findCachedId(db, email);
+        if(id != NO_SUPPLIER) {
+            return id;
+        }
+
+        id = readId(db, email);
+        if(id != NO_SUPPLIER) {
+            cache(db, id, email);
+        }
+        return id;
+    }
+
+    /**
+     * This method returns the shared instance of the email of a supplier.
+     *
+     * @param db The database.
+     * @param id The id of the supplier.
+     * @return The email, or null if there is no supplier with the id.
+     */
+    String getEmail(SQLiteDatabase db, long id) {
+        boolean inTransaction = db.inTransaction();
+        synchronized(this) {
+            String email = emails.get(id);
+            if(email == null && inTransaction) {
+                email = pendingEmails.get(id);
+            }
+            if(email != null) {
+                return email;
+            }
+        }
+
+        SQLiteStatement select = statements.acquire(db, SELECT_EMAIL_SQL);
+        String email;
+        try {
+            select.bindLong(1, id);
+            email = select.simpleQueryForString();
+        } catch(SQLiteDoneException e) {
+            return null;
+        } finally {
+            statements.release(SELECT_EMAIL_SQL, select);
+        }
+
+        return cache(db, id, email);
+    }
+
+    /**
+     * This method is called after a transaction which may have looked up
+     * suppliers has ended. Once the outermost transaction has ended, the
+     * suppliers looked up inside it are cached if it committed.
+     *
+     * @param db The database.
+     * @param successful Whether the transaction was marked successful.
+     */
+    void endTransaction(SQLiteDatabase db, boolean successful) {
+        boolean inTransaction = db.inTransaction();
+        synchronized(this) {
+            // A nested transaction which failed rolls back the outermost one
+            pendingFailed |= !successful;
+            if(inTransaction) {
+                return;
+            }
+
+            if(!pendingFailed) {
+                ids.putAll(pendingIds);
+                emails.putAll(pendingEmails);
+            }
+            pendingIds.clear();
+            pendingEmails.clear();
+            pendingFailed = false;
+        }
+    }
+
+    /**
+     * This method removes every supplier, after the suppliers table was
+     * changed other than through this cache.
+     */
+    synchronized void clear() {
+        ids.clear();
+        emails.clear();
+        pendingIds.clear();
+        pendingEmails.clear();
+        pendingFailed = false;
+    }
+
+    private long findCachedId(SQLiteDatabase db, String email) {
+        boolean inTransaction = db.inTransaction();
+        synchronized(this) {
+            Long id = ids.get(email);
+            if(id == null && inTransaction) {
+                id = pendingIds.get(email);
+            }
+            return id == null ? NO_SUPPLIER : id;
+        }
+    }
+
+    private long readId(SQLiteDatabase db, String email) {
+        SQLiteStatement select = statements.acquire(db, SELECT_ID_SQL);
+        try {
+            select.bindString(1, email);
+            return select.simpleQueryForLong();
+        } catch(SQLiteDoneException e) {
+            return NO_SUPPLIER;
+        } finally {
+            statements.release(SELECT_ID_SQL, select);
+        }
+    }
+
+    /**
+     * This method caches a supplier read from the database, or keeps it
+     * pending inside a transaction, unless the email is already shared.
+     *
+     * @return The shared instance of the email.
+     */
+    private String cache(SQLiteDatabase db, long id, String email) {
+        boolean inTransaction = db.inTransaction();
+        synchronized(this) {
+            String shared = emails.get(id);
+            if(shared != null) {
+                return shared;
+            }
+
+            if(inTransaction) {
+                shared = pendingEmails.get(id);
+                if(shared != null) {
+                    return shared;
+                }
+                pendingIds.put(email, id);
+                pendingEmails.put(id, email);
+            } else {
+                ids.put(email, id);
+                emails.put(id, email);
+            }
+            return email;
+        }
+    }
+}
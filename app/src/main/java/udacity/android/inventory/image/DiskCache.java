@@ -0,0 +1,238 @@
+package udacity.android.inventory.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class is a size-bounded disk cache of resized images. Each
+ * image is stored as a WebP file named by the hash of its key. When
+ * the total size exceeds the limit the least recently used files are
+ * deleted. The cache is used from several decode threads: its lock is
+ * held only to look up files and keep the total size, and images are
+ * decoded and compressed outside it, so one slow image does not hold
+ * up the others.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+class DiskCache {
+
+    /** Log tag for this class */
+    private static final String LOG_TAG = DiskCache.class.getSimpleName();
+
+    /** The suffix of images being written. */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Compression of the cached images. */
+    private static final Bitmap.CompressFormat FORMAT = Bitmap.CompressFormat.WEBP;
+    private static final int QUALITY = 85;
+
+    /** Orders files from least to most recently used. */
+    private static final Comparator<File> LEAST_RECENTLY_USED = new Comparator<File>() {
+        @Override
+        public int compare(File a, File b) {
+            long difference = a.lastModified() - b.lastModified();
+            return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+        }
+    };
+
+    private final File directory;
+    private final long maxBytes;
+
+    /** The total size of the cached files, -1 until the directory is scanned. Guarded by this. */
+    private long size = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory of the cache.
+     * @param maxBytes The maximum total size of the cached files.
+     */
+    DiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * This method reads an image from the cache.
+     *
+     * @param key The key of the image.
+     * @param config The bitmap config to decode to.
+     * @return The image, or null if it is not cached.
+     */
+    Bitmap get(String key, Bitmap.Config config) {
+        File file = fileFor(key);
+        synchronized(this) {
+            if(!file.exists()) {
+                return null;
+            }
+
+            // Mark the file as recently used, so a trim while it is decoded keeps it
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = config;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if(bitmap == null) {
+            // A damaged file, or one deleted by a trim meanwhile
+            synchronized(this) {
+                remove(file);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * This method writes an image to the cache and deletes the least
+     * recently used images if the cache is over its limit.
+     *
+     * @param key The key of the image.
+     * @param bitmap The image.
+     */
+    void put(String key, Bitmap bitmap) {
+        synchronized(this) {
+            if(!ensureDirectory()) {
+                return;
+            }
+        }
+
+        // Each writer compresses to its own file, which replaces the image once complete
+        File file = fileFor(key);
+        File temp = null;
+        OutputStream out = null;
+        try {
+            temp = File.createTempFile(file.getName(), TEMP_SUFFIX, directory);
+            out = new BufferedOutputStream(new FileOutputStream(temp));
+            bitmap.compress(FORMAT, QUALITY, out);
+            out.close();
+            out = null;
+
+            synchronized(this) {
+                remove(file);
+                if(temp.renameTo(file)) {
+                    size += file.length();
+                }
+                trim();
+            }
+        } catch(IOException e) {
+            Log.e(LOG_TAG, "Could not cache image.", e);
+        } finally {
+            if(out != null) {
+                try {
+                    out.close();
+                } catch(IOException e) {
+                    Log.e(LOG_TAG, "Error closing cache file.", e);
+                }
+            }
+            if(temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * This method creates the directory and scans its size the first
+     * time the cache is written. Images left half written by a previous
+     * process are deleted.
+     *
+     * @return True if the directory exists.
+     */
+    private boolean ensureDirectory() {
+        if(!directory.exists() && !directory.mkdirs()) {
+            return false;
+        }
+
+        if(size < 0) {
+            size = 0;
+            File[] files = directory.listFiles();
+            if(files != null) {
+                for(File file : files) {
+                    if(file.getName().endsWith(TEMP_SUFFIX)) {
+                        file.delete();
+                    } else {
+                        size += file.length();
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method deletes the least recently used files until the cache
+     * is within its limit. Images still being written are not counted
+     * in the size and are left alone.
+     */
+    private void trim() {
+        if(size <= maxBytes) {
+            return;
+        }
+
+        File[] files = directory.listFiles();
+        if(files == null) {
+            return;
+        }
+
+        Arrays.sort(files, LEAST_RECENTLY_USED);
+        for(int i = 0; i < files.length && size > maxBytes; i++) {
+            if(!files[i].getName().endsWith(TEMP_SUFFIX)) {
+                remove(files[i]);
+            }
+        }
+    }
+
+    /**
+     * This method deletes a cached file.
+     *
+     * @param file The file.
+     */
+    private void remove(File file) {
+        long length = file.length();
+        if(file.delete() && size >= 0) {
+            size -= length;
+        }
+    }
+
+    /**
+     * This method returns the file of a key.
+     *
+     * @param key The key.
+     * @return The file, which may not exist.
+     */
+    private File fileFor(String key) {
+        return new File(directory, hash(key));
+    }
+
+    /**
+     * This method hashes a key to a file name.
+     *
+     * @param key The key.
+     * @return The hex MD5 of the key.
+     */
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for(byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch(NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            return String.valueOf(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,508 @@
+package udacity.android.inventory.image;
+
+import android.app.ActivityManager;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class loads item images on background threads, downsampled to
+ * the size they are displayed at. The bounds of an image are decoded
+ * first to pick the largest power of two sample size that still covers
+ * the target size, so full resolution camera photos are never held in
+ * memory. Results are kept in a memory cache bounded by bytes and a
+ * disk cache of resized images, both keyed by the image URI and the
+ * target size. Requests for a key that is already loading share the
+ * same decode.
+ *
+ * Thumbnails have their own memory cache with a fixed budget and are
+ * decoded as RGB_565. Requests can be cancelled, and pending decodes
+ * run in priority order, so rows on screen load before prefetched
+ * rows and rows that scrolled away do not load at all. A list row can
+ * keep one request and load each image it is bound to into it; the
+ * cache key of each thumbnail URI is kept, so a thumbnail found in the
+ * memory cache is shown without allocating.
+ *
+ * @author Joseph Stewart
+ * @version 1.1
+ */
+public class ImageLoader {
+
+    /** Log tag for this class */
+    public static final String LOG_TAG = ImageLoader.class.getSimpleName();
+
+    /** The maximum size of the disk cache. */
+    private static final long DISK_CACHE_BYTES = 32 * 1024 * 1024;
+
+    /** The name of the disk cache directory. */
+    private static final String DISK_CACHE_DIRECTORY = "images";
+
+    /** The number of decode threads. */
+    private static final int DECODE_THREADS = 2;
+
+    /** The fixed memory budget of the thumbnail cache. */
+    private static final int THUMBNAIL_CACHE_BYTES = 4 * 1024 * 1024;
+
+    /** The number of thumbnail URIs whose cache keys are kept. */
+    private static final int THUMBNAIL_KEYS = 1024;
+
+    /** Priorities of requests, lower values are decoded first. */
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_PREFETCH = 1;
+
+    /**
+     * Interface to receive a loaded image on the main thread.
+     */
+    public interface Callback {
+
+        /**
+         * Called on the main thread when the image is loaded.
+         *
+         * @param bitmap The image, or null if it could not be loaded.
+         */
+        void onImageLoaded(Bitmap bitmap);
+    }
+
+    /**
+     * A request for an image, which can be cancelled until its callback
+     * has been called. A request from newRequest can be loaded again.
+     * Only used on the main thread.
+     */
+    public final class Request {
+
+        private final Callback callback;
+
+        /** The decode the request waits for, null once done or cancelled. */
+        private DecodeTask task;
+
+        private Request(Callback callback) {
+            this.callback = callback;
+        }
+
+        /**
+         * This method cancels the request. Its callback will not be
+         * called, and the decode is dropped if no other request needs it.
+         */
+        public void cancel() {
+            if(task == null) {
+                return;
+            }
+
+            task.requests.remove(this);
+            if(task.requests.isEmpty()) {
+                task.cancelled = true;
+                decodeQueue.remove(task);
+                inFlight.remove(task.key);
+            }
+            task = null;
+        }
+    }
+
+    /**
+     * A decode of one key, ordered by priority and then by most recent
+     * request so the rows the user scrolled to last are decoded first.
+     */
+    private final class DecodeTask implements Runnable, Comparable<DecodeTask> {
+
+        final String key;
+        final Uri uri;
+        final int width;
+        final int height;
+        final boolean thumbnail;
+        final long sequence;
+        volatile int priority;
+        volatile boolean cancelled;
+
+        /** The requests waiting for the decode. Only used on the main thread. */
+        final List<Request> requests = new ArrayList<>();
+
+        DecodeTask(String key, Uri uri, int width, int height, boolean thumbnail, int priority) {
+            this.key = key;
+            this.uri = uri;
+            this.width = width;
+            this.height = height;
+            this.thumbnail = thumbnail;
+            this.priority = priority;
+            this.sequence = nextSequence++;
+        }
+
+        @Override
+        public void run() {
+            if(cancelled) {
+                return;
+            }
+
+            final Bitmap bitmap = loadInBackground(key, uri, width, height, thumbnail);
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(DecodeTask.this, bitmap);
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(DecodeTask other) {
+            if(priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return sequence > other.sequence ? -1 : (sequence < other.sequence ? 1 : 0);
+        }
+    }
+
+    /** The loader shared by the whole process. */
+    private static ImageLoader instance;
+
+    private final ContentResolver resolver;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final LruCache<String, Bitmap> thumbnailCache;
+    private final DiskCache diskCache;
+    private final PriorityBlockingQueue<Runnable> decodeQueue = new PriorityBlockingQueue<>();
+    private final ThreadPoolExecutor decodeExecutor;
+    private final Handler mainHandler;
+
+    /** The decode running or pending for each key. Only used on the main thread. */
+    private final Map<String, DecodeTask> inFlight = new HashMap<>();
+
+    /** Orders decodes of the same priority. Only used on the main thread. */
+    private long nextSequence;
+
+    /** The cache key of each thumbnail URI, for thumbnails of thumbnailKeySize. */
+    private final LruCache<String, String> thumbnailKeys = new LruCache<>(THUMBNAIL_KEYS);
+    private int thumbnailKeySize;
+
+    /**
+     * This method returns the loader shared by the whole process.
+     *
+     * @param context The calling context.
+     * @return The shared loader.
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if(instance == null) {
+            instance = new ImageLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param context The application context.
+     */
+    private ImageLoader(Context context) {
+        resolver = context.getContentResolver();
+
+        // Use an eighth of the memory available to the app for images
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryCacheBytes = activityManager.getMemoryClass() * 1024 * 1024 / 8;
+        memoryCache = new BitmapCache(memoryCacheBytes);
+        thumbnailCache = new BitmapCache(THUMBNAIL_CACHE_BYTES);
+
+        diskCache = new DiskCache(new File(context.getCacheDir(), DISK_CACHE_DIRECTORY), DISK_CACHE_BYTES);
+        decodeExecutor = new ThreadPoolExecutor(DECODE_THREADS, DECODE_THREADS, 0, TimeUnit.MILLISECONDS, decodeQueue);
+        decodeExecutor.prestartAllCoreThreads();
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * A memory cache bounded by the bytes of its bitmaps.
+     */
+    private static class BitmapCache extends LruCache<String, Bitmap> {
+
+        BitmapCache(int maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    }
+
+    /**
+     * This method loads an image downsampled to a target size. It must
+     * be called on the main thread. If the image is in the memory cache
+     * the callback is called before this method returns.
+     *
+     * @param uri The URI of the image.
+     * @param width The target width in pixels.
+     * @param height The target height in pixels.
+     * @param callback Receives the image on the main thread.
+     * @return The request, which can be cancelled.
+     */
+    public Request load(Uri uri, int width, int height, Callback callback) {
+        return load(uri, width, height, false, PRIORITY_VISIBLE, callback);
+    }
+
+    /**
+     * This method loads a square thumbnail, kept within the fixed
+     * thumbnail memory budget. It must be called on the main thread.
+     * If the thumbnail is in the memory cache the callback is called
+     * before this method returns.
+     *
+     * @param uri The URI of the image.
+     * @param size The target width and height in pixels.
+     * @param priority PRIORITY_VISIBLE or PRIORITY_PREFETCH.
+     * @param callback Receives the thumbnail on the main thread, may be
+     *                 null to only fill the caches.
+     * @return The request, which can be cancelled.
+     */
+    public Request loadThumbnail(Uri uri, int size, int priority, Callback callback) {
+        return load(uri, size, size, true, priority, callback);
+    }
+
+    /**
+     * This method returns a request that is not loading anything yet.
+     * It is passed to loadThumbnail for every image, so a list row does
+     * not allocate a request and a callback for each image it shows.
+     *
+     * @param callback Receives the thumbnails on the main thread.
+     * @return The request.
+     */
+    public Request newRequest(Callback callback) {
+        return new Request(callback);
+    }
+
+    /**
+     * This method loads a square thumbnail into a request from
+     * newRequest, cancelling the image the request was loading. It must
+     * be called on the main thread. If the thumbnail is in the memory
+     * cache the callback is called before this method returns, and
+     * nothing is allocated; the URI is only parsed to start a decode.
+     *
+     * @param request The request to reuse.
+     * @param image The URI of the image.
+     * @param size The target width and height in pixels.
+     * @param priority PRIORITY_VISIBLE or PRIORITY_PREFETCH.
+     */
+    public void loadThumbnail(Request request, String image, int size, int priority) {
+        request.cancel();
+
+        String key = thumbnailKey(image, size);
+        Bitmap cached = thumbnailCache.get(key);
+        if(cached != null) {
+            request.callback.onImageLoaded(cached);
+            return;
+        }
+
+        start(request, key, Uri.parse(image), size, size, true, priority);
+    }
+
+    /**
+     * This method returns the cache key of a thumbnail, the same key
+     * load builds from the parsed URI. Only one thumbnail size is used
+     * by the app, the keys are dropped if another size is requested.
+     *
+     * @param image The URI of the image.
+     * @param size The width and height of the thumbnail.
+     * @return The key.
+     */
+    private String thumbnailKey(String image, int size) {
+        if(size != thumbnailKeySize) {
+            thumbnailKeys.evictAll();
+            thumbnailKeySize = size;
+        }
+
+        String key = thumbnailKeys.get(image);
+        if(key == null) {
+            key = "thumbnail:" + image + "@" + size + "x" + size;
+            thumbnailKeys.put(image, key);
+        }
+        return key;
+    }
+
+    /**
+     * This method returns the cached image or starts or joins a decode.
+     *
+     * @param uri The URI of the image.
+     * @param width The target width in pixels.
+     * @param height The target height in pixels.
+     * @param thumbnail True to use the thumbnail cache.
+     * @param priority The priority of the request.
+     * @param callback Receives the image on the main thread, may be null.
+     * @return The request.
+     */
+    private Request load(Uri uri, int width, int height, boolean thumbnail, int priority, Callback callback) {
+        String key = (thumbnail ? "thumbnail:" : "") + uri + "@" + width + "x" + height;
+        Request request = new Request(callback);
+
+        Bitmap cached = (thumbnail ? thumbnailCache : memoryCache).get(key);
+        if(cached != null) {
+            if(callback != null) {
+                callback.onImageLoaded(cached);
+            }
+            return request;
+        }
+
+        start(request, key, uri, width, height, thumbnail, priority);
+        return request;
+    }
+
+    /**
+     * This method adds a request to the decode of its key, starting the
+     * decode if none is pending or running.
+     *
+     * @param request The request.
+     * @param key The key of the image.
+     * @param uri The URI of the image.
+     * @param width The target width in pixels.
+     * @param height The target height in pixels.
+     * @param thumbnail True to use the thumbnail cache.
+     * @param priority The priority of the request.
+     */
+    private void start(Request request, String key, Uri uri, int width, int height, boolean thumbnail,
+                       int priority) {
+        // Join a decode of the same key that is already pending or running
+        DecodeTask task = inFlight.get(key);
+        if(task != null) {
+            task.requests.add(request);
+            request.task = task;
+
+            // Move a pending decode ahead if it is now needed sooner
+            if(priority < task.priority && decodeQueue.remove(task)) {
+                task.priority = priority;
+                decodeQueue.add(task);
+            }
+            return;
+        }
+
+        task = new DecodeTask(key, uri, width, height, thumbnail, priority);
+        task.requests.add(request);
+        request.task = task;
+        inFlight.put(key, task);
+        decodeExecutor.execute(task);
+    }
+
+    /**
+     * This method passes a loaded image to every request waiting for it.
+     *
+     * @param task The finished decode.
+     * @param bitmap The image, or null.
+     */
+    private void deliver(DecodeTask task, Bitmap bitmap) {
+        if(bitmap != null) {
+            (task.thumbnail ? thumbnailCache : memoryCache).put(task.key, bitmap);
+        }
+
+        if(inFlight.get(task.key) == task) {
+            inFlight.remove(task.key);
+        }
+
+        for(Request request : task.requests) {
+            request.task = null;
+            if(request.callback != null) {
+                request.callback.onImageLoaded(bitmap);
+            }
+        }
+        task.requests.clear();
+    }
+
+    /**
+     * This method reads an image from the disk cache, or decodes it from
+     * its URI and writes the result to the disk cache.
+     *
+     * @param key The key of the image.
+     * @param uri The URI of the image.
+     * @param width The target width in pixels.
+     * @param height The target height in pixels.
+     * @param thumbnail True to decode with the smaller thumbnail config.
+     * @return The image, or null if it could not be loaded.
+     */
+    private Bitmap loadInBackground(String key, Uri uri, int width, int height, boolean thumbnail) {
+        Bitmap.Config config = thumbnail ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        Bitmap bitmap = diskCache.get(key, config);
+        if(bitmap != null) {
+            return bitmap;
+        }
+
+        bitmap = decodeSampled(uri, width, height, config);
+        if(bitmap != null) {
+            diskCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * This method decodes an image with the largest sample size that
+     * still covers the target size.
+     *
+     * @param uri The URI of the image.
+     * @param width The target width in pixels.
+     * @param height The target height in pixels.
+     * @param config The bitmap config to decode to.
+     * @return The image, or null if it could not be decoded.
+     */
+    private Bitmap decodeSampled(Uri uri, int width, int height, Bitmap.Config config) {
+        ParcelFileDescriptor parcelFileDescriptor = null;
+        try {
+            parcelFileDescriptor = resolver.openFileDescriptor(uri, "r");
+            if(parcelFileDescriptor == null) {
+                return null;
+            }
+            FileDescriptor fileDescriptor = parcelFileDescriptor.getFileDescriptor();
+
+            // Read the dimensions only
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+            options.inJustDecodeBounds = false;
+            options.inPreferredConfig = config;
+            return BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+        } catch(Exception e) {
+            Log.e(LOG_TAG, "Could not load image.", e);
+            return null;
+        } finally {
+            try {
+                if(parcelFileDescriptor != null) {
+                    parcelFileDescriptor.close();
+                }
+            } catch(IOException e) {
+                Log.e(LOG_TAG, "Error closing ParcelFile Descriptor", e);
+            }
+        }
+    }
+
+    /**
+     * This method calculates the largest power of two sample size that
+     * keeps both dimensions at least as large as the target.
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param targetWidth The target width.
+     * @param targetHeight The target height.
+     * @return The sample size.
+     */
+    static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+
+        if(targetWidth > 0 && targetHeight > 0) {
+            while(width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight) {
+                inSampleSize *= 2;
+            }
+        }
+
+        return inSampleSize;
+    }
+}
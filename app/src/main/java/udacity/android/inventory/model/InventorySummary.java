@@ -0,0 +1,68 @@
+package udacity.android.inventory.model;
+
+/**
+ * This class holds the totals over the whole inventory shown in the
+ * header of the main screen.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public class InventorySummary {
+
+    private final long itemCount;
+    private final long unitCount;
+    private final long stockValueCents;
+    private final long lowStockCount;
+
+    public InventorySummary(long itemCount, long unitCount, long stockValueCents, long lowStockCount) {
+        this.itemCount = itemCount;
+        this.unitCount = unitCount;
+        this.stockValueCents = stockValueCents;
+        this.lowStockCount = lowStockCount;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public long getUnitCount() {
+        return unitCount;
+    }
+
+    public long getStockValueCents() {
+        return stockValueCents;
+    }
+
+    public long getLowStockCount() {
+        return lowStockCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof InventorySummary)) {
+            return false;
+        }
+
+        InventorySummary other = (InventorySummary) o;
+        return itemCount == other.itemCount && unitCount == other.unitCount
+                && stockValueCents == other.stockValueCents && lowStockCount == other.lowStockCount;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (itemCount ^ (itemCount >>> 32));
+        result = 31 * result + (int) (unitCount ^ (unitCount >>> 32));
+        result = 31 * result + (int) (stockValueCents ^ (stockValueCents >>> 32));
+        result = 31 * result + (int) (lowStockCount ^ (lowStockCount >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Items: " + itemCount + ", Units: " + unitCount + ", Value: " + Money.format(stockValueCents)
+                + ", Low Stock: " + lowStockCount;
+    }
+}
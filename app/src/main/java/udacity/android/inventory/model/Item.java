@@ -11,34 +11,44 @@ import android.os.Parcelable;
  */
 public class Item implements Parcelable {
 
+    /** The reorder threshold of items which were not given one. */
+    public static final int DEFAULT_REORDER_THRESHOLD = 5;
+
     private long id;
     private String description;
-    private double price;
+    private long priceCents;
     private int quantity;
     private String supplierEmail;
     private String image;
+    private int reorderThreshold = DEFAULT_REORDER_THRESHOLD;
 
     public Item() {
 
     }
 
-    public Item(String description, double price, int quantity, String supplierEmail, String image) {
+    public Item(String description, long priceCents, int quantity, String supplierEmail, String image) {
         this.description = description;
-        this.price = price;
+        this.priceCents = priceCents;
         this.quantity = quantity;
         this.supplierEmail = supplierEmail;
         this.image = image;
     }
 
-    public Item(long id, String description, double price, int quantity, String supplierEmail, String image) {
+    public Item(long id, String description, long priceCents, int quantity, String supplierEmail, String image) {
         this.id = id;
         this.description = description;
-        this.price = price;
+        this.priceCents = priceCents;
         this.quantity = quantity;
         this.supplierEmail = supplierEmail;
         this.image = image;
     }
 
+    public Item(long id, String description, long priceCents, int quantity, String supplierEmail, String image,
+                int reorderThreshold) {
+        this(id, description, priceCents, quantity, supplierEmail, image);
+        this.reorderThreshold = reorderThreshold;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -63,12 +73,12 @@ public class Item implements Parcelable {
         this.image = image;
     }
 
-    public double getPrice() {
-        return price;
+    public long getPriceCents() {
+        return priceCents;
     }
 
-    public void setPrice(double price) {
-        this.price = price;
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
     }
 
     public int getQuantity() {
@@ -87,9 +97,26 @@ public class Item implements Parcelable {
         this.supplierEmail = supplierEmail;
     }
 
+    public int getReorderThreshold() {
+        return reorderThreshold;
+    }
+
+    public void setReorderThreshold(int reorderThreshold) {
+        this.reorderThreshold = reorderThreshold;
+    }
+
+    /**
+     * This method returns whether the item is below its reorder threshold.
+     *
+     * @return True if the item should be reordered.
+     */
+    public boolean isLowStock() {
+        return quantity < reorderThreshold;
+    }
+
     @Override
     public String toString() {
-        return "ID: " + id + ", Description: " + description + ", Price: " + price
+        return "ID: " + id + ", Description: " + description + ", Price: " + Money.format(priceCents)
                 + ", Quantity: " + quantity + ", Supplier Email: " + supplierEmail;
     }
 
@@ -102,10 +129,11 @@ public class Item implements Parcelable {
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeLong(id);
         dest.writeString(description);
-        dest.writeDouble(price);
+        dest.writeLong(priceCents);
         dest.writeInt(quantity);
         dest.writeString(supplierEmail);
         dest.writeString(image);
+        dest.writeInt(reorderThreshold);
     }
 
     public static final Parcelable.Creator<Item> CREATOR
@@ -122,9 +150,10 @@ public class Item implements Parcelable {
     private Item(Parcel in) {
         id = in.readLong();
         description = in.readString();
-        price = in.readDouble();
+        priceCents = in.readLong();
         quantity = in.readInt();
         supplierEmail = in.readString();
         image = in.readString();
+        reorderThreshold = in.readInt();
     }
 }
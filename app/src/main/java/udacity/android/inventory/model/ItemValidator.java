@@ -0,0 +1,126 @@
+package udacity.android.inventory.model;
+
+/**
+ * This class checks the values entered for a new item and parses them
+ * into an Item. The price and quantity may be left blank and then
+ * default to zero, and the reorder threshold to the default threshold.
+ * The description and supplier email are required.
+ * A validator can be reused for any number of items.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class ItemValidator {
+
+    /** Problems found in the values, combined as bit flags. */
+    public static final int VALID = 0;
+    public static final int BLANK_FORM = 1;
+    public static final int NOT_A_NUMBER = 1 << 1;
+    public static final int NEGATIVE_NUMBER = 1 << 2;
+    public static final int MISSING_REQUIRED = 1 << 3;
+
+    private int errors;
+    private Item item;
+
+    /**
+     * This method validates the values of an item. Surrounding white
+     * space is ignored.
+     *
+     * @param description The description.
+     * @param price The price, such as "12.99", or blank for zero.
+     * @param quantity The quantity, or blank for zero.
+     * @param supplierEmail The supplier email.
+     * @param image The image URI, may be blank.
+     * @return The problems found, VALID if there are none.
+     */
+    public int validate(String description, String price, String quantity, String supplierEmail, String image) {
+        return validate(description, price, quantity, supplierEmail, image, null);
+    }
+
+    /**
+     * This method validates the values of an item with a reorder
+     * threshold. Surrounding white space is ignored.
+     *
+     * @param description The description.
+     * @param price The price, such as "12.99", or blank for zero.
+     * @param quantity The quantity, or blank for zero.
+     * @param supplierEmail The supplier email.
+     * @param image The image URI, may be blank.
+     * @param reorderThreshold The reorder threshold, or blank for the default.
+     * @return The problems found, VALID if there are none.
+     */
+    public int validate(String description, String price, String quantity, String supplierEmail, String image,
+                        String reorderThreshold) {
+        description = trim(description);
+        price = trim(price);
+        quantity = trim(quantity);
+        supplierEmail = trim(supplierEmail);
+        image = trim(image);
+        reorderThreshold = trim(reorderThreshold);
+
+        item = null;
+        errors = VALID;
+
+        // Verify the form is not blank
+        if(description.isEmpty() && price.isEmpty() && quantity.isEmpty()
+                && supplierEmail.isEmpty() && image.isEmpty() && reorderThreshold.isEmpty()) {
+            errors = BLANK_FORM;
+            return errors;
+        }
+
+        // Price and Quantity can be zero if information about a new product is
+        // not determined yet
+        long priceCents = 0;
+        int quantityValue = 0;
+        int thresholdValue = Item.DEFAULT_REORDER_THRESHOLD;
+        try {
+            if(!price.isEmpty()) {
+                priceCents = Money.parseCents(price);
+            }
+            if(!quantity.isEmpty()) {
+                quantityValue = Integer.parseInt(quantity);
+            }
+            if(!reorderThreshold.isEmpty()) {
+                thresholdValue = Integer.parseInt(reorderThreshold);
+            }
+        } catch(NumberFormatException e) {
+            errors |= NOT_A_NUMBER;
+        }
+
+        if(priceCents < 0 || quantityValue < 0 || thresholdValue < 0) {
+            errors |= NEGATIVE_NUMBER;
+        }
+
+        if(description.isEmpty() || supplierEmail.isEmpty()) {
+            errors |= MISSING_REQUIRED;
+        }
+
+        if(errors == VALID) {
+            item = new Item(description, priceCents, quantityValue, supplierEmail, image);
+            item.setReorderThreshold(thresholdValue);
+        }
+        return errors;
+    }
+
+    /**
+     * This method returns the problems found by the last validation.
+     *
+     * @return The problems, VALID if there were none.
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * This method returns the item parsed by the last validation.
+     *
+     * @return The item, or null if the values were not valid.
+     */
+    public Item getItem() {
+        return item;
+    }
+
+    private static String trim(String value) {
+        return value == null ? "" : value.trim();
+    }
+}
@@ -0,0 +1,110 @@
+package udacity.android.inventory.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * This class converts prices between the text entered or shown to the
+ * user and the whole number of cents they are stored as, so amounts
+ * are exact and can be summed by the database.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class Money {
+
+    /** The number of decimals of a price. */
+    private static final int CENTS_SCALE = 2;
+
+    /**
+     * Private constructor throws AssertionError to
+     * prevent instantiation.
+     */
+    private Money() {
+        throw new AssertionError();
+    }
+
+    /**
+     * This method parses a price such as "1.5" or "12.99" into cents.
+     * Digits past the cents are rounded half up.
+     *
+     * @param price The price text.
+     * @return The price in cents.
+     * @throws NumberFormatException If the text is not a number or does
+     *         not fit in a long number of cents.
+     */
+    public static long parseCents(String price) {
+        try {
+            return new BigDecimal(price.trim())
+                    .setScale(CENTS_SCALE, RoundingMode.HALF_UP)
+                    .movePointRight(CENTS_SCALE)
+                    .longValueExact();
+        } catch(ArithmeticException e) {
+            throw new NumberFormatException("Price out of range: " + price);
+        }
+    }
+
+    /**
+     * This method formats cents as a price with two decimals, such as
+     * "12.99".
+     *
+     * @param cents The price in cents.
+     * @return The price text.
+     */
+    public static String format(long cents) {
+        return BigDecimal.valueOf(cents, CENTS_SCALE).toPlainString();
+    }
+
+    /**
+     * This method writes cents as a price with two decimals into a
+     * buffer, the same text as format without allocating. It is used
+     * when binding the rows of the list.
+     *
+     * @param cents The price in cents.
+     * @param buffer The buffer to write to.
+     * @param offset The position to start writing at.
+     * @return The end of the written text.
+     */
+    public static int format(long cents, char[] buffer, int offset) {
+        if(cents < 0) {
+            buffer[offset++] = '-';
+            cents = -cents;
+        }
+
+        offset = formatInteger(cents / 100, buffer, offset);
+        long fraction = cents % 100;
+        buffer[offset++] = '.';
+        buffer[offset++] = (char) ('0' + fraction / 10);
+        buffer[offset++] = (char) ('0' + fraction % 10);
+        return offset;
+    }
+
+    /**
+     * This method writes the decimal digits of a number into a buffer,
+     * such as a quantity shown next to a price.
+     *
+     * @param value The number.
+     * @param buffer The buffer to write to.
+     * @param offset The position to start writing at.
+     * @return The end of the written text.
+     */
+    public static int formatInteger(long value, char[] buffer, int offset) {
+        if(value < 0) {
+            buffer[offset++] = '-';
+            value = -value;
+        }
+
+        // Count the digits, then write them from the last one
+        int digits = 1;
+        for(long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+
+        int end = offset + digits;
+        for(int i = end - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+}
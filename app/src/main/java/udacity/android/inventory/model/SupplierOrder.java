@@ -0,0 +1,134 @@
+package udacity.android.inventory.model;
+
+import java.util.Arrays;
+
+/**
+ * This class represents one reorder sent to a supplier, with a line for
+ * each item to restock. The lines are kept in parallel arrays, so an
+ * order for a supplier of thousands of items is a handful of objects.
+ *
+ * The quantity ordered for an item restocks it to twice its reorder
+ * threshold, so it is not low again after the next few sales.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+public final class SupplierOrder {
+
+    private final String supplierEmail;
+
+    private long[] itemIds = new long[8];
+    private String[] descriptions = new String[8];
+    private int[] quantities = new int[8];
+    private int[] orderQuantities = new int[8];
+    private int lineCount;
+    private long totalUnits;
+
+    /**
+     * Constructor.
+     *
+     * @param supplierEmail The supplier the order is sent to.
+     */
+    public SupplierOrder(String supplierEmail) {
+        this.supplierEmail = supplierEmail;
+    }
+
+    /**
+     * This method returns the quantity to order for an item, enough to
+     * restock it to twice its reorder threshold and at least one unit.
+     *
+     * @param quantity The quantity on hand.
+     * @param reorderThreshold The reorder threshold of the item.
+     * @return The quantity to order.
+     */
+    public static int suggestQuantity(int quantity, int reorderThreshold) {
+        long order = 2L * reorderThreshold - quantity;
+        return (int) Math.min(Math.max(order, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * This method adds a line for an item.
+     *
+     * @param itemId The id of the item.
+     * @param description The description of the item.
+     * @param quantity The quantity on hand.
+     * @param reorderThreshold The reorder threshold of the item.
+     */
+    public void addLine(long itemId, String description, int quantity, int reorderThreshold) {
+        if(lineCount == itemIds.length) {
+            int capacity = lineCount * 2;
+            itemIds = Arrays.copyOf(itemIds, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            orderQuantities = Arrays.copyOf(orderQuantities, capacity);
+        }
+
+        int orderQuantity = suggestQuantity(quantity, reorderThreshold);
+        itemIds[lineCount] = itemId;
+        descriptions[lineCount] = description;
+        quantities[lineCount] = quantity;
+        orderQuantities[lineCount] = orderQuantity;
+        totalUnits += orderQuantity;
+        lineCount++;
+    }
+
+    /**
+     * This method returns whether the order has a line for an item.
+     *
+     * @param itemId The id of the item.
+     * @return True if the item is ordered.
+     */
+    public boolean contains(long itemId) {
+        for(int i = 0; i < lineCount; i++) {
+            if(itemIds[i] == itemId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getSupplierEmail() {
+        return supplierEmail;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public long getItemId(int line) {
+        checkLine(line);
+        return itemIds[line];
+    }
+
+    public String getDescription(int line) {
+        checkLine(line);
+        return descriptions[line];
+    }
+
+    /** The quantity on hand of the item of a line. */
+    public int getQuantity(int line) {
+        checkLine(line);
+        return quantities[line];
+    }
+
+    public int getOrderQuantity(int line) {
+        checkLine(line);
+        return orderQuantities[line];
+    }
+
+    /** The number of units ordered over all lines. */
+    public long getTotalUnits() {
+        return totalUnits;
+    }
+
+    private void checkLine(int line) {
+        if(line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + line + " of " + lineCount);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Supplier Email: " + supplierEmail + ", Lines: " + lineCount + ", Units: " + totalUnits;
+    }
+}
@@ -0,0 +1,102 @@
+package udacity.android.inventory.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for patching the in-memory inventory columns.
+ */
+public class ColumnarInventoryTest {
+
+    @Test
+    public void put_keepsRowsInIdOrder() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        assertEquals(0, inventory.put(10, "Ten", 1000, 1, null));
+        assertEquals(1, inventory.put(30, "Thirty", 3000, 3, "content://image/30"));
+        assertEquals(1, inventory.put(20, "Twenty", 2000, 2, null));
+
+        assertEquals(3, inventory.size());
+        assertEquals(10, inventory.getId(0));
+        assertEquals(20, inventory.getId(1));
+        assertEquals(30, inventory.getId(2));
+        assertEquals("Twenty", inventory.getDescription(1));
+        assertEquals(2000, inventory.getPriceCents(1));
+        assertEquals(2, inventory.getQuantity(1));
+        assertNull(inventory.getImage(1));
+        assertEquals("content://image/30", inventory.getImage(2));
+    }
+
+    @Test
+    public void put_replacesAnExistingRow() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        inventory.put(1, "Old", 100, 1, null);
+        inventory.put(2, "Other", 200, 2, null);
+
+        assertEquals(0, inventory.put(1, "New", 150, 5, "content://image/1"));
+        assertEquals(2, inventory.size());
+        assertEquals("New", inventory.getDescription(0));
+        assertEquals(150, inventory.getPriceCents(0));
+        assertEquals(5, inventory.getQuantity(0));
+        assertEquals("content://image/1", inventory.getImage(0));
+        assertEquals("Other", inventory.getDescription(1));
+    }
+
+    @Test
+    public void put_growsPastTheInitialCapacity() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        for(int i = 1000; i > 0; i--) {
+            inventory.put(i, "Item " + i, i, i % 50, null);
+        }
+
+        assertEquals(1000, inventory.size());
+        for(int position = 0; position < 1000; position++) {
+            assertEquals(position + 1, inventory.getId(position));
+            assertEquals("Item " + (position + 1), inventory.getDescription(position));
+            assertEquals(position + 1, inventory.getPriceCents(position));
+        }
+    }
+
+    @Test
+    public void put_sharesEqualDescriptions() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        inventory.put(1, new String("Widget"), 100, 1, null);
+        inventory.put(2, new String("Widget"), 100, 1, null);
+
+        assertSame(inventory.getDescription(0), inventory.getDescription(1));
+    }
+
+    @Test
+    public void setQuantity_patchesOneRow() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        inventory.put(5, "Five", 500, 5, null);
+        inventory.put(6, "Six", 600, 6, null);
+
+        assertEquals(1, inventory.setQuantity(6, 0));
+        assertEquals(0, inventory.getQuantity(1));
+        assertEquals(5, inventory.getQuantity(0));
+        assertEquals(-1, inventory.setQuantity(7, 1));
+    }
+
+    @Test
+    public void remove_closesTheGap() {
+        ColumnarInventory inventory = new ColumnarInventory();
+        for(long id = 1; id <= 5; id++) {
+            inventory.put(id, "Item " + id, id * 100, (int) id, null);
+        }
+
+        assertEquals(2, inventory.remove(3));
+        assertEquals(-1, inventory.remove(3));
+        assertEquals(4, inventory.size());
+        assertEquals(-1, inventory.positionOf(3));
+        assertEquals(2, inventory.positionOf(4));
+        assertEquals("Item 4", inventory.getDescription(2));
+        assertEquals(5, inventory.getQuantity(3));
+
+        // The freed row is reused by the next new item
+        assertEquals(4, inventory.put(6, "Item 6", 600, 6, null));
+        assertEquals(5, inventory.size());
+    }
+}
@@ -0,0 +1,205 @@
+package udacity.android.inventory.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for reading CSV records from a stream.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void readRecord_splitsPlainFields() throws IOException {
+        CsvReader reader = reader("a,b,,d\r\n1,2,3,4\r\n");
+
+        assertRecord(reader, "a", "b", "", "d");
+        assertRecord(reader, "1", "2", "3", "4");
+        assertFalse(reader.readRecord());
+        assertEquals(0, reader.getFieldCount());
+    }
+
+    @Test
+    public void readRecord_readsQuotedFields() throws IOException {
+        CsvReader reader = reader("\"Widget, large\",\"say \"\"hi\"\"\",\"\"\n");
+
+        assertRecord(reader, "Widget, large", "say \"hi\"", "");
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void readRecord_keepsLineBreaksInQuotedFields() throws IOException {
+        CsvReader reader = reader("\"two\r\nlines\",x\nnext,y\n");
+
+        assertRecord(reader, "two\r\nlines", "x");
+        assertEquals(1, reader.getRecordLine());
+        assertRecord(reader, "next", "y");
+        assertEquals(3, reader.getRecordLine());
+    }
+
+    @Test
+    public void readRecord_acceptsEveryLineEnding() throws IOException {
+        CsvReader reader = reader("a\rb\nc\r\nd");
+
+        assertRecord(reader, "a");
+        assertRecord(reader, "b");
+        assertRecord(reader, "c");
+        assertRecord(reader, "d");
+        assertEquals(4, reader.getRecordLine());
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void readRecord_skipsBlankLinesAndByteOrderMark() throws IOException {
+        CsvReader reader = reader("\uFEFFheader\r\n\r\n\n\rrow\r\n\r\n");
+
+        assertRecord(reader, "header");
+        assertEquals(1, reader.getRecordLine());
+        assertRecord(reader, "row");
+        assertEquals(5, reader.getRecordLine());
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void readRecord_keepsQuotesInsideUnquotedFields() throws IOException {
+        CsvReader reader = reader("12\" pipe,x\n");
+
+        assertRecord(reader, "12\" pipe", "x");
+    }
+
+    @Test
+    public void readRecord_growsForManyFields() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for(int i = 0; i < 20; i++) {
+            csv.append(i == 0 ? "" : ",").append(i);
+        }
+        CsvReader reader = reader(csv.toString());
+
+        assertTrue(reader.readRecord());
+        assertEquals(20, reader.getFieldCount());
+        assertEquals("19", reader.getField(19));
+        assertNull(reader.getField(20));
+    }
+
+    @Test
+    public void readRecord_readsAcrossBufferBoundaries() throws IOException {
+        // Records longer than the buffer, split between reads of one character
+        StringBuilder longField = new StringBuilder();
+        for(int i = 0; i < 10000; i++) {
+            longField.append((char) ('a' + i % 26));
+        }
+        final String csv = "\"" + longField + "\"\r\nend\r\n";
+        CsvReader reader = new CsvReader(new Reader() {
+            private int position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if(position == csv.length()) {
+                    return -1;
+                }
+                buffer[offset] = csv.charAt(position++);
+                return 1;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        assertRecord(reader, longField.toString());
+        assertRecord(reader, "end");
+        assertEquals(2, reader.getRecordLine());
+    }
+
+    @Test
+    public void readRecord_marksAQuoteOpenAtTheEndAsMalformed() throws IOException {
+        CsvReader reader = reader("a,b\n\"c,d\ne,f\r\ng,h\n");
+
+        assertRecord(reader, "a", "b");
+        assertFalse(reader.isMalformed());
+        assertTrue(reader.readRecord());
+        assertTrue(reader.isMalformed());
+        assertEquals(2, reader.getRecordLine());
+
+        // Reading resumes at the line after the quote
+        assertRecord(reader, "e", "f");
+        assertFalse(reader.isMalformed());
+        assertEquals(3, reader.getRecordLine());
+        assertRecord(reader, "g", "h");
+        assertEquals(4, reader.getRecordLine());
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void readRecord_resumesAfterAQuoteOpenAtTheEndWithoutALineBreak() throws IOException {
+        CsvReader reader = reader("a,b\r\nc,\"d");
+
+        assertRecord(reader, "a", "b");
+        assertTrue(reader.readRecord());
+        assertTrue(reader.isMalformed());
+        assertFalse(reader.readRecord());
+    }
+
+    @Test
+    public void readRecord_resumesAfterTheLineOfAStrayQuote() throws IOException {
+        // The stray quote runs over the following lines until the limit
+        String line = "row,1\r\n";
+        int lines = CsvReader.MAX_FIELD_LENGTH / line.length() * 2;
+        StringBuilder csv = new StringBuilder("stray,\"quote\r\n");
+        for(int i = 0; i < lines; i++) {
+            csv.append(line);
+        }
+        CsvReader reader = reader(csv.toString());
+
+        assertTrue(reader.readRecord());
+        assertTrue(reader.isMalformed());
+        assertEquals(2, reader.getFieldCount());
+        assertTrue(reader.getField(1).length() <= CsvReader.MAX_FIELD_LENGTH + 1);
+
+        // Every line after the quote is read, on its own line number
+        int records = 0;
+        while(reader.readRecord()) {
+            assertFalse(reader.isMalformed());
+            assertEquals("row", reader.getField(0));
+            assertEquals("1", reader.getField(1));
+            assertEquals(records + 2, reader.getRecordLine());
+            records++;
+        }
+        assertEquals(lines, records);
+    }
+
+    @Test
+    public void readRecord_endsALongUnquotedFieldAtTheLineBreak() throws IOException {
+        StringBuilder csv = new StringBuilder("a,");
+        for(int i = 0; i <= CsvReader.MAX_FIELD_LENGTH; i++) {
+            csv.append('x');
+        }
+        csv.append(",b\nnext,c\n");
+        CsvReader reader = reader(csv.toString());
+
+        assertTrue(reader.readRecord());
+        assertTrue(reader.isMalformed());
+        assertRecord(reader, "next", "c");
+        assertEquals(2, reader.getRecordLine());
+        assertFalse(reader.readRecord());
+    }
+
+    private static CsvReader reader(String csv) {
+        return new CsvReader(new StringReader(csv));
+    }
+
+    private static void assertRecord(CsvReader reader, String... fields) throws IOException {
+        assertTrue(reader.readRecord());
+        assertEquals(fields.length, reader.getFieldCount());
+        for(int i = 0; i < fields.length; i++) {
+            assertEquals(fields[i], reader.getField(i));
+        }
+    }
+}
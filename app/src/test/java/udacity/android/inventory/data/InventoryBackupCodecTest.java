@@ -0,0 +1,122 @@
+package udacity.android.inventory.data;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the variable length number and string encoding of the
+ * backup snapshots.
+ */
+public class InventoryBackupCodecTest {
+
+    @Test
+    public void varLong_usesSevenBitsPerByte() {
+        assertEquals(1, encodedSize(0));
+        assertEquals(1, encodedSize(127));
+        assertEquals(2, encodedSize(128));
+        assertEquals(2, encodedSize(16383));
+        assertEquals(3, encodedSize(16384));
+        assertEquals(9, encodedSize(Long.MAX_VALUE));
+
+        // Negative numbers are written as unsigned, so they take every byte
+        assertEquals(10, encodedSize(-1));
+    }
+
+    @Test
+    public void varLong_roundTrips() {
+        long[] values = { 0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, 1L << 42,
+                Long.MAX_VALUE, -1, Long.MIN_VALUE };
+
+        InventoryBackup.Encoder encoder = new InventoryBackup.Encoder();
+        for(long value : values) {
+            encoder.writeVarLong(value);
+        }
+
+        InventoryBackup.Decoder decoder = decoder(encoder);
+        for(long value : values) {
+            assertEquals(value, decoder.readVarLong());
+        }
+    }
+
+    @Test
+    public void zigZag_keepsSmallNegativesShort() {
+        InventoryBackup.Encoder encoder = new InventoryBackup.Encoder();
+        encoder.writeZigZag(-1);
+        encoder.writeZigZag(1);
+        encoder.writeZigZag(-64);
+        assertEquals(3, encoder.size);
+        assertEquals(1, encoder.bytes[0]);
+        assertEquals(2, encoder.bytes[1]);
+        assertEquals(127, encoder.bytes[2]);
+    }
+
+    @Test
+    public void zigZag_roundTrips() {
+        long[] values = { 0, -1, 1, -64, 64, -250, 1299, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+
+        InventoryBackup.Encoder encoder = new InventoryBackup.Encoder();
+        for(long value : values) {
+            encoder.writeZigZag(value);
+        }
+
+        InventoryBackup.Decoder decoder = decoder(encoder);
+        for(long value : values) {
+            assertEquals(value, decoder.readZigZag());
+        }
+    }
+
+    @Test
+    public void string_roundTripsNullEmptyAndUtf8() {
+        StringBuilder longText = new StringBuilder();
+        for(int i = 0; i < 200; i++) {
+            longText.append("é€");
+        }
+        String[] values = { null, "", "Widget", "Café – 12 €", longText.toString(), null };
+
+        InventoryBackup.Encoder encoder = new InventoryBackup.Encoder();
+        for(String value : values) {
+            encoder.writeString(value);
+        }
+
+        // Null is a single zero, empty is its length plus one
+        assertEquals(0, encoder.bytes[0]);
+        assertEquals(1, encoder.bytes[1]);
+
+        InventoryBackup.Decoder decoder = decoder(encoder);
+        for(String value : values) {
+            if(value == null) {
+                assertNull(decoder.readString());
+            } else {
+                assertEquals(value, decoder.readString());
+            }
+        }
+    }
+
+    @Test
+    public void reset_reusesTheBuffer() {
+        InventoryBackup.Encoder encoder = new InventoryBackup.Encoder();
+        encoder.writeString("First row");
+        encoder.reset();
+        encoder.writeVarLong(5);
+
+        ByteBuffer buffer = ByteBuffer.wrap(encoder.bytes, 0, encoder.size);
+        InventoryBackup.Decoder decoder = new InventoryBackup.Decoder(buffer);
+        assertEquals(5, decoder.readVarLong());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    private static int encodedSize(long value) {
+        InventoryBackup.Encoder encoder = new InventoryBackup.Encoder();
+        encoder.writeVarLong(value);
+        return encoder.size;
+    }
+
+    private static InventoryBackup.Decoder decoder(InventoryBackup.Encoder encoder) {
+        return new InventoryBackup.Decoder(ByteBuffer.wrap(encoder.bytes, 0, encoder.size));
+    }
+}
@@ -0,0 +1,82 @@
+package udacity.android.inventory.data;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the search query conversion and the ranking of matches.
+ */
+public class SearchRankerTest {
+
+    @Test
+    public void toPrefixQuery_matchesEveryWordAsPrefix() {
+        assertEquals("item* 42*", SearchRanker.toPrefixQuery("item 42"));
+        assertEquals("supplier7*", SearchRanker.toPrefixQuery("  supplier7 "));
+        assertEquals("café*", SearchRanker.toPrefixQuery("café"));
+    }
+
+    @Test
+    public void toPrefixQuery_dropsOperators() {
+        assertEquals("drop* table*", SearchRanker.toPrefixQuery("\"drop\" -table*"));
+        assertEquals("a* b*", SearchRanker.toPrefixQuery("a:(b)"));
+    }
+
+    @Test
+    public void toPrefixQuery_returnsNullWithoutWords() {
+        assertNull(SearchRanker.toPrefixQuery(null));
+        assertNull(SearchRanker.toPrefixQuery(""));
+        assertNull(SearchRanker.toPrefixQuery(" *\"- "));
+    }
+
+    @Test
+    public void results_keepBestMatchesBestFirst() {
+        SearchRanker ranker = new SearchRanker(3);
+
+        // Description hits weigh twice as much as supplier hits
+        ranker.offer(1, matchInfo(0, 1, 1, 10));
+        ranker.offer(2, matchInfo(1, 10, 0, 1));
+        ranker.offer(3, matchInfo(1, 1, 0, 1));
+        ranker.offer(4, matchInfo(0, 10, 1, 10));
+        ranker.offer(5, matchInfo(2, 10, 0, 1));
+
+        assertArrayEquals(new long[] { 3, 5, 2 }, ranker.results());
+    }
+
+    @Test
+    public void results_orderEqualScoresById() {
+        SearchRanker ranker = new SearchRanker(2);
+        ranker.offer(9, matchInfo(1, 2, 0, 1));
+        ranker.offer(4, matchInfo(1, 2, 0, 1));
+        ranker.offer(7, matchInfo(1, 2, 0, 1));
+
+        assertArrayEquals(new long[] { 4, 7 }, ranker.results());
+    }
+
+    @Test
+    public void results_holdFewerMatchesThanTheLimit() {
+        SearchRanker ranker = new SearchRanker(20);
+        assertEquals(0, ranker.results().length);
+
+        ranker.offer(1, matchInfo(1, 1, 0, 1));
+        assertArrayEquals(new long[] { 1 }, ranker.results());
+    }
+
+    /**
+     * Builds the matchinfo 'pcx' blob of one phrase over the description
+     * and supplier columns.
+     */
+    private static byte[] matchInfo(int descriptionHits, int descriptionHitsInAllRows,
+                                    int supplierHits, int supplierHitsInAllRows) {
+        ByteBuffer info = ByteBuffer.allocate(8 * 4).order(ByteOrder.nativeOrder());
+        info.putInt(1).putInt(2);
+        info.putInt(descriptionHits).putInt(descriptionHitsInAllRows).putInt(1);
+        info.putInt(supplierHits).putInt(supplierHitsInAllRows).putInt(1);
+        return info.array();
+    }
+}
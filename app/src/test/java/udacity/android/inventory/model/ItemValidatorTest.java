@@ -0,0 +1,70 @@
+package udacity.android.inventory.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the checks of the values entered for a new item.
+ */
+public class ItemValidatorTest {
+
+    private final ItemValidator validator = new ItemValidator();
+
+    @Test
+    public void validate_parsesValidValues() {
+        assertEquals(ItemValidator.VALID, validator.validate(" Widget ", "12.99", "3",
+                "supplier@example.com", "content://media/external/images/media/1"));
+
+        Item item = validator.getItem();
+        assertEquals("Widget", item.getDescription());
+        assertEquals(1299, item.getPriceCents());
+        assertEquals(3, item.getQuantity());
+        assertEquals("supplier@example.com", item.getSupplierEmail());
+        assertEquals("content://media/external/images/media/1", item.getImage());
+        assertEquals(Item.DEFAULT_REORDER_THRESHOLD, item.getReorderThreshold());
+    }
+
+    @Test
+    public void validate_defaultsBlankNumbers() {
+        assertEquals(ItemValidator.VALID, validator.validate("Widget", "", " ", "supplier@example.com", null));
+
+        Item item = validator.getItem();
+        assertEquals(0, item.getPriceCents());
+        assertEquals(0, item.getQuantity());
+    }
+
+    @Test
+    public void validate_readsReorderThreshold() {
+        assertEquals(ItemValidator.VALID, validator.validate("Widget", "1", "2", "supplier@example.com", "", "12"));
+        assertEquals(12, validator.getItem().getReorderThreshold());
+    }
+
+    @Test
+    public void validate_rejectsBlankForm() {
+        assertEquals(ItemValidator.BLANK_FORM, validator.validate(" ", "", null, "", null));
+        assertNull(validator.getItem());
+    }
+
+    @Test
+    public void validate_combinesProblems() {
+        assertEquals(ItemValidator.NOT_A_NUMBER | ItemValidator.MISSING_REQUIRED,
+                validator.validate("", "12.x9", "1", "supplier@example.com", null));
+        assertEquals(ItemValidator.NEGATIVE_NUMBER, validator.validate("Widget", "1", "-1",
+                "supplier@example.com", null));
+        assertEquals(ItemValidator.NEGATIVE_NUMBER | ItemValidator.MISSING_REQUIRED,
+                validator.validate("Widget", "-0.50", "1", "", null));
+        assertEquals(ItemValidator.NOT_A_NUMBER, validator.validate("Widget", "1", "1",
+                "supplier@example.com", null, "many"));
+        assertEquals(ItemValidator.NOT_A_NUMBER, validator.getErrors());
+        assertNull(validator.getItem());
+    }
+
+    @Test
+    public void validate_forgetsThePreviousItem() {
+        validator.validate("Widget", "1", "1", "supplier@example.com", null);
+        validator.validate("Widget", "1", "x", "supplier@example.com", null);
+        assertNull(validator.getItem());
+    }
+}
@@ -0,0 +1,65 @@
+package udacity.android.inventory.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for the conversions between price text and cents.
+ */
+public class MoneyTest {
+
+    @Test
+    public void parseCents_readsWholeAndFractionalPrices() {
+        assertEquals(1299, Money.parseCents("12.99"));
+        assertEquals(150, Money.parseCents("1.5"));
+        assertEquals(300, Money.parseCents(" 3 "));
+        assertEquals(0, Money.parseCents("0"));
+        assertEquals(-250, Money.parseCents("-2.50"));
+    }
+
+    @Test
+    public void parseCents_roundsHalfUpPastTheCents() {
+        assertEquals(1, Money.parseCents("0.005"));
+        assertEquals(0, Money.parseCents("0.0049"));
+        assertEquals(1000, Money.parseCents("9.999"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseCents_rejectsText() {
+        Money.parseCents("12.x9");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseCents_rejectsPricesOutOfRange() {
+        Money.parseCents("1e30");
+    }
+
+    @Test
+    public void format_writesTwoDecimals() {
+        assertEquals("12.99", Money.format(1299));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("0.00", Money.format(0));
+        assertEquals("-2.50", Money.format(-250));
+    }
+
+    @Test
+    public void formatIntoBuffer_matchesFormat() {
+        char[] buffer = new char[32];
+        long[] values = { 0, 1, 9, 10, 99, 100, 1299, -1, -250, 123456789, Long.MAX_VALUE };
+        for(long cents : values) {
+            int end = Money.format(cents, buffer, 3);
+            assertEquals(Money.format(cents), new String(buffer, 3, end - 3));
+        }
+    }
+
+    @Test
+    public void formatInteger_writesEveryDigit() {
+        char[] buffer = new char[32];
+        long[] values = { 0, 7, 10, 42, 1000000, -42, Long.MAX_VALUE };
+        for(long value : values) {
+            int end = Money.formatInteger(value, buffer, 1);
+            assertEquals(String.valueOf(value), new String(buffer, 1, end - 1));
+        }
+    }
+}
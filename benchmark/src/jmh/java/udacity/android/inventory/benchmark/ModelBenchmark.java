@@ -0,0 +1,113 @@
+package udacity.android.inventory.benchmark;
+
+import android.content.ContentValues;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.inventory.data.InventoryDbHelper;
+import udacity.android.inventory.model.Item;
+import udacity.android.inventory.model.ItemValidator;
+import udacity.android.inventory.model.Money;
+
+/**
+ * Benchmarks for the per-item work of the app which does not touch
+ * the database: building items and their column values, formatting
+ * prices and quantities for display, and validating entered values.
+ * Each call cycles through a table of inputs so no value is constant.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    private final String[] descriptions = new String[INPUTS];
+    private final long[] priceCents = new long[INPUTS];
+    private final int[] quantities = new int[INPUTS];
+    private final String[] emails = new String[INPUTS];
+    private final String[] images = new String[INPUTS];
+    private final String[] priceTexts = new String[INPUTS];
+    private final String[] quantityTexts = new String[INPUTS];
+    private final Item[] items = new Item[INPUTS];
+
+    private final char[] buffer = new char[32];
+    private final ItemValidator validator = new ItemValidator();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for(int i = 0; i < INPUTS; i++) {
+            descriptions[i] = "Item " + i;
+            priceCents[i] = i * 137L;
+            quantities[i] = i % 50;
+            emails[i] = "supplier" + (i % 100) + "@example.com";
+            images[i] = "content://media/external/images/media/" + i;
+            priceTexts[i] = Money.format(priceCents[i]);
+            quantityTexts[i] = String.valueOf(quantities[i]);
+            items[i] = new Item(i, descriptions[i], priceCents[i], quantities[i], emails[i], images[i]);
+        }
+    }
+
+    private int next() {
+        next = (next + 1) & (INPUTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Item itemConstruction() {
+        int i = next();
+        return new Item(descriptions[i], priceCents[i], quantities[i], emails[i], images[i]);
+    }
+
+    @Benchmark
+    public ContentValues itemToContentValues() {
+        return InventoryDbHelper.toContentValues(items[next()]);
+    }
+
+    /** The price and quantity text of the details screen. */
+    @Benchmark
+    public void formatDetailsStrings(Blackhole blackhole) {
+        Item item = items[next()];
+        blackhole.consume("Price: $" + Money.format(item.getPriceCents()));
+        blackhole.consume("Quantity: " + String.valueOf(item.getQuantity()));
+    }
+
+    /** The price and quantity text of a list row, written into a reused buffer. */
+    @Benchmark
+    public int formatListRow() {
+        Item item = items[next()];
+        int end = Money.format(item.getPriceCents(), buffer, 0);
+        return end + Money.formatInteger(item.getQuantity(), buffer, end);
+    }
+
+    @Benchmark
+    public long parsePrice() {
+        return Money.parseCents(priceTexts[next()]);
+    }
+
+    @Benchmark
+    public Item validateValidItem() {
+        int i = next();
+        validator.validate(descriptions[i], priceTexts[i], quantityTexts[i], emails[i], images[i]);
+        return validator.getItem();
+    }
+
+    @Benchmark
+    public int validateInvalidItem() {
+        int i = next();
+        return validator.validate(descriptions[i], "12,99", quantityTexts[i], "", images[i]);
+    }
+}
@@ -0,0 +1,242 @@
+package udacity.android.inventory.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import udacity.android.inventory.data.InventoryContract.InventoryEntry;
+import udacity.android.inventory.data.InventoryContract.InventoryMovementEntry;
+import udacity.android.inventory.data.InventoryContract.InventorySearchEntry;
+import udacity.android.inventory.data.InventoryContract.InventorySummaryEntry;
+import udacity.android.inventory.data.InventoryContract.InventorySupplierEntry;
+
+/**
+ * Benchmarks for the SQL workloads of the app against an embedded
+ * SQLite database file with the schema of the app, including the
+ * suppliers table, the list index, the triggers of the search and
+ * summary tables and of the stock movements ledger, and the settings
+ * of the durable profile.
+ *
+ * @author Joseph Stewart
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SqliteBenchmark {
+
+    private static final String INSERT_SQL = "INSERT INTO " + InventoryEntry.TABLE_NAME + " (" +
+            InventoryEntry.COLUMN_DESCRIPTION + ", " +
+            InventoryEntry.COLUMN_PRICE_CENTS + ", " +
+            InventoryEntry.COLUMN_QUANTITY + ", " +
+            InventoryEntry.COLUMN_SUPPLIER_ID + ", " +
+            InventoryEntry.COLUMN_IMAGE + ") VALUES (?, ?, ?, ?, ?)";
+
+    /** The number of suppliers the rows are spread over. */
+    private static final int SUPPLIERS = 100;
+
+    private static final String SCAN_SQL = "SELECT " + InventoryEntry._ID + ", " +
+            InventoryEntry.COLUMN_DESCRIPTION + ", " +
+            InventoryEntry.COLUMN_PRICE_CENTS + ", " +
+            InventoryEntry.COLUMN_QUANTITY + ", " +
+            InventoryEntry.COLUMN_IMAGE + " FROM " + InventoryEntry.TABLE_NAME +
+            " ORDER BY " + InventoryEntry._ID;
+
+    private static final String UPDATE_SQL = "UPDATE " + InventoryEntry.TABLE_NAME + " SET " +
+            InventoryEntry.COLUMN_QUANTITY + " = " + InventoryEntry.COLUMN_QUANTITY + " + ? WHERE " +
+            InventoryEntry._ID + " = ? AND " + InventoryEntry.COLUMN_QUANTITY + " + ? >= 0";
+
+    private static final String MOVEMENT_SQL = "INSERT INTO " + InventoryMovementEntry.TABLE_NAME + " (" +
+            InventoryMovementEntry.COLUMN_ITEM_ID + ", " +
+            InventoryMovementEntry.COLUMN_KIND + ", " +
+            InventoryMovementEntry.COLUMN_DELTA + ", " +
+            InventoryMovementEntry.COLUMN_TIME + ") VALUES (?, ?, ?, ?)";
+
+    /** A database file with the schema of the app. */
+    @State(Scope.Thread)
+    public static class Database {
+
+        @Param({ "1000", "10000", "100000" })
+        public int size;
+
+        File file;
+        Connection connection;
+
+        @Setup(Level.Trial)
+        public void open() throws IOException, SQLException {
+            file = File.createTempFile("inventory_benchmark", ".db");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute("PRAGMA journal_mode = WAL");
+                statement.execute("PRAGMA synchronous = FULL");
+                statement.executeUpdate(InventorySupplierEntry.CREATE_SUPPLIERS_TABLE);
+                for(int i = 1; i <= SUPPLIERS; i++) {
+                    statement.executeUpdate("INSERT INTO " + InventorySupplierEntry.TABLE_NAME + " VALUES (" +
+                            i + ", 'supplier" + i + "@example.com')");
+                }
+                statement.executeUpdate(InventoryEntry.CREATE_INVENTORY_TABLE);
+                statement.executeUpdate(InventoryEntry.CREATE_LIST_INDEX);
+                statement.executeUpdate(InventoryEntry.CREATE_SUPPLIER_INDEX);
+                statement.executeUpdate(InventorySearchEntry.CREATE_SEARCH_TABLE);
+                statement.executeUpdate(InventorySearchEntry.CREATE_INSERT_TRIGGER);
+                statement.executeUpdate(InventorySearchEntry.CREATE_UPDATE_TRIGGER);
+                statement.executeUpdate(InventorySearchEntry.CREATE_DELETE_TRIGGER);
+                statement.executeUpdate(InventorySummaryEntry.CREATE_SUMMARY_TABLE);
+                statement.executeUpdate(InventorySummaryEntry.REBUILD_SUMMARY);
+                statement.executeUpdate(InventorySummaryEntry.CREATE_INSERT_TRIGGER);
+                statement.executeUpdate(InventorySummaryEntry.CREATE_UPDATE_TRIGGER);
+                statement.executeUpdate(InventorySummaryEntry.CREATE_DELETE_TRIGGER);
+                statement.executeUpdate(InventoryMovementEntry.CREATE_MOVEMENTS_TABLE);
+                statement.executeUpdate(InventoryMovementEntry.CREATE_ITEM_INDEX);
+                statement.executeUpdate(InventoryMovementEntry.CREATE_INSERT_TRIGGER);
+                statement.executeUpdate(InventoryMovementEntry.CREATE_DELETE_TRIGGER);
+            } finally {
+                statement.close();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            connection.close();
+            new File(file.getPath() + "-wal").delete();
+            new File(file.getPath() + "-shm").delete();
+            file.delete();
+        }
+
+        void clear() throws SQLException {
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate("DELETE FROM " + InventoryEntry.TABLE_NAME);
+            } finally {
+                statement.close();
+            }
+        }
+
+        /** Writes size rows in one transaction, as InventoryDbHelper.insertAll does per chunk. */
+        void insertRows() throws SQLException {
+            connection.setAutoCommit(false);
+            PreparedStatement insert = connection.prepareStatement(INSERT_SQL);
+            try {
+                for(int i = 0; i < size; i++) {
+                    insert.setString(1, "Item " + i);
+                    insert.setLong(2, (i % 1000) * 10);
+                    insert.setInt(3, i % 50);
+                    insert.setLong(4, 1 + i % SUPPLIERS);
+                    insert.setString(5, "content://media/external/images/media/" + i);
+                    insert.executeUpdate();
+                }
+                connection.commit();
+            } finally {
+                insert.close();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /** An empty database before each insert. */
+    @State(Scope.Thread)
+    public static class EmptyDatabase extends Database {
+
+        @Setup(Level.Invocation)
+        public void empty() throws SQLException {
+            clear();
+        }
+    }
+
+    /** A database filled with size rows once. */
+    @State(Scope.Thread)
+    public static class FilledDatabase extends Database {
+
+        PreparedStatement update;
+        PreparedStatement movement;
+        long nextId;
+
+        @Setup(Level.Trial)
+        public void fill() throws SQLException {
+            insertRows();
+            update = connection.prepareStatement(UPDATE_SQL);
+            movement = connection.prepareStatement(MOVEMENT_SQL);
+        }
+
+        @TearDown(Level.Trial)
+        public void closeUpdate() throws SQLException {
+            update.close();
+            movement.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void bulkInsert(EmptyDatabase database) throws SQLException {
+        database.insertRows();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void fullScan(FilledDatabase database, Blackhole blackhole) throws SQLException {
+        Statement statement = database.connection.createStatement();
+        try {
+            ResultSet rows = statement.executeQuery(SCAN_SQL);
+            while(rows.next()) {
+                blackhole.consume(rows.getLong(1));
+                blackhole.consume(rows.getString(2));
+                blackhole.consume(rows.getLong(3));
+                blackhole.consume(rows.getInt(4));
+                blackhole.consume(rows.getString(5));
+            }
+            rows.close();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * One committed quantity change with its ledger movement, as a sale
+     * written by itself.
+     */
+    @Benchmark
+    public int updateById(FilledDatabase database) throws SQLException {
+        database.nextId = database.nextId % database.size + 1;
+        int delta = database.nextId % 2 == 0 ? 1 : -1;
+
+        database.connection.setAutoCommit(false);
+        try {
+            database.update.setInt(1, delta);
+            database.update.setLong(2, database.nextId);
+            database.update.setInt(3, delta);
+            int rows = database.update.executeUpdate();
+            if(rows == 1) {
+                database.movement.setLong(1, database.nextId);
+                database.movement.setInt(2, delta < 0 ? InventoryMovementEntry.KIND_SALE
+                        : InventoryMovementEntry.KIND_RESTOCK);
+                database.movement.setInt(3, delta);
+                database.movement.setLong(4, System.currentTimeMillis() / 1000);
+                database.movement.executeUpdate();
+            }
+            database.connection.commit();
+            return rows;
+        } finally {
+            database.connection.setAutoCommit(true);
+        }
+    }
+}